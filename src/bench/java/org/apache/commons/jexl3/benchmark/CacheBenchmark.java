@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlCache;
+import org.apache.commons.jexl3.internal.ConcurrentCache;
+import org.apache.commons.jexl3.internal.SoftCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The soft cache against the concurrent cache under a skewed, shared access pattern.
+ * <p>Run with -t to vary the number of threads; 90% of accesses hit 10% of a key space 4 times the capacity.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(Threads.MAX)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class CacheBenchmark {
+    /** The cache capacity. */
+    static final int CAPACITY = 256;
+    /** The cache implementation: soft or concurrent. */
+    @Param({"soft", "concurrent"})
+    public String cache;
+    /** The cache under test. */
+    private JexlCache<Integer, Integer> jexlCache;
+
+    @Setup
+    public void setup() {
+        jexlCache = "soft".equals(cache) ? new SoftCache<>(CAPACITY) : new ConcurrentCache<>(CAPACITY);
+    }
+
+    @Benchmark
+    public Integer getOrPut() {
+        final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        final int key = rnd.nextInt(10) == 0 ? rnd.nextInt(4 * CAPACITY) : rnd.nextInt(4 * CAPACITY / 10);
+        final Integer value = jexlCache.get(key);
+        if (value == null) {
+            jexlCache.put(key, key);
+            return key;
+        }
+        return value;
+    }
+}
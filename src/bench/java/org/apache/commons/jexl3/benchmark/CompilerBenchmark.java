@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The compilation tiers on the scripts they target, rule-like expressions.
+ * <p>The rule is fully compiled; the mixed script has a declaration and a call that stay interpreted
+ * between compiled expression statements.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class CompilerBenchmark {
+    /** The evaluation tier. */
+    @Param({"interpreted", "closureTree", "bytecode"})
+    public String tier;
+    /** The context. */
+    private JexlContext context;
+    /** A fully compilable rule. */
+    private JexlScript rule;
+    /** A script mixing compiled and interpreted statements. */
+    private JexlScript mixed;
+
+    @Setup
+    public void setup() {
+        final JexlEngine jexl = new JexlBuilder()
+            .compileThreshold("interpreted".equals(tier) ? 0 : 1)
+            .closureTree("closureTree".equals(tier))
+            .create();
+        context = new MapContext();
+        context.set("age", 42);
+        context.set("income", 52_000);
+        context.set("score", 715);
+        context.set("country", "FR");
+        rule = jexl.createScript(
+            "(age >= 18 && age < 65) && (income * 12 / 100 > 5000 || score >= 700) && country != 'US'"
+            + " ? score - (age % 10) * 3 : -1");
+        mixed = jexl.createScript("var base = income / 12; age > 30 ? base * 2 : base; size(country) + score");
+        // executes once to trigger compilation
+        rule();
+        mixed();
+    }
+
+    @Benchmark
+    public Object rule() {
+        return rule.execute(context);
+    }
+
+    @Benchmark
+    public Object mixed() {
+        return mixed.execute(context);
+    }
+}
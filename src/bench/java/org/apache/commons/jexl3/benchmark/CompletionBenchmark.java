@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlDebugger;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loops using break, continue and return statements.
+ * <p>The completion parameter compares statements completing as results with statements thrown as
+ * exceptions, as they are when a probe is set.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class CompletionBenchmark {
+    /** How control statements complete. */
+    @Param({"results", "exceptions"})
+    public String completion;
+    private JexlScript loop;
+    private JexlScript nested;
+    private JexlScript early;
+
+    @Setup
+    public void setup() {
+        final JexlBuilder builder = new JexlBuilder();
+        if ("exceptions".equals(completion)) {
+            builder.probe(new JexlDebugger() { });
+        }
+        final JexlEngine jexl = builder.create();
+        loop = jexl.createScript("var s = 0; for (var i : 0 .. 9999) { if (i % 2 == 0) continue; "
+            + "if (i > 9990) break; s += i } s");
+        nested = jexl.createScript("var s = 0; foo : for (var i : 0 .. 99) { for (var j : 0 .. 99) { "
+            + "if (j > i) continue foo; s += j } } s");
+        early = jexl.createScript("function f(n) { for (var i : 0 .. n) { if (i * i > n) return i } -1 } "
+            + "var s = 0; for (var k : 0 .. 999) { s += f(k) } s");
+    }
+
+    @Benchmark
+    public Object loop() {
+        return loop.execute(null);
+    }
+
+    @Benchmark
+    public Object nested() {
+        return nested.execute(null);
+    }
+
+    @Benchmark
+    public Object early() {
+        return early.execute(null);
+    }
+}
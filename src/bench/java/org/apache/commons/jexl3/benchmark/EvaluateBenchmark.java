@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluating cached expressions and arithmetic loops, interpreted or compiled.
+ * <p>The tier parameter compares the interpreter with the closure tree and bytecode compilation tiers;
+ * compiled scripts are compiled on their first execution, during setup.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class EvaluateBenchmark {
+    /** The evaluation tier. */
+    @Param({"interpreted", "closureTree", "bytecode"})
+    public String tier;
+    /** The number of loop iterations. */
+    @Param({"1000"})
+    public int n;
+    /** The context of the expression. */
+    private JexlContext context;
+    /** An arithmetic and comparison expression. */
+    private JexlExpression expression;
+    /** A loop over an untyped local. */
+    private JexlScript loop;
+    /** A loop over int and long locals. */
+    private JexlScript typedLoop;
+    /** A loop over a range. */
+    private JexlScript rangeLoop;
+    /** A loop on double arithmetic. */
+    private JexlScript doubleLoop;
+
+    @Setup
+    public void setup() {
+        final JexlEngine jexl = new JexlBuilder()
+            .cache(64)
+            .compileThreshold("interpreted".equals(tier) ? 0 : 1)
+            .closureTree("closureTree".equals(tier))
+            .create();
+        context = new MapContext();
+        context.set("a", 7);
+        context.set("b", 3);
+        context.set("c", 11L);
+        expression = jexl.createExpression("(a * b + c - a / 2) > 20 ? a + b : c * 2");
+        loop = jexl.createScript("var s = 0; for (var i = 0; i < n; ++i) { s += i * 2 - 1 } s", "n");
+        typedLoop = jexl.createScript("long s = 0; for (int i = 0; i < n; ++i) { s += i * 2 - 1 } s", "n");
+        rangeLoop = jexl.createScript("var s = 0; for (var i : 0 .. n - 1) { s += i * 2 - 1 } s", "n");
+        doubleLoop = jexl.createScript("double s = 0; int i = 0; while (i < n) { s += i * 0.5; i += 1; } s", "n");
+        // executes once to trigger compilation
+        expression();
+        loop();
+        typedLoop();
+        rangeLoop();
+        doubleLoop();
+    }
+
+    @Benchmark
+    public Object expression() {
+        return expression.evaluate(context);
+    }
+
+    @Benchmark
+    public Object loop() {
+        return loop.execute(null, n);
+    }
+
+    @Benchmark
+    public Object typedLoop() {
+        return typedLoop.execute(null, n);
+    }
+
+    @Benchmark
+    public Object rangeLoop() {
+        return rangeLoop.execute(null, n);
+    }
+
+    @Benchmark
+    public Object doubleLoop() {
+        return doubleLoop.execute(null, n);
+    }
+}
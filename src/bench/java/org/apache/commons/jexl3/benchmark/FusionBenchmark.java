@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlDebugger;
+import org.apache.commons.jexl3.JexlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A selection, projection and selection chain iterated by a loop.
+ * <p>The evaluation parameter compares the chain fused in one pipeline, the chain evaluated as stacked
+ * iterators, as it is when a probe is set, and the equivalent hand-written loop.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class FusionBenchmark {
+    /** How the chain is evaluated. */
+    @Param({"fused", "stacked", "loop"})
+    public String evaluation;
+    /** The number of elements. */
+    @Param({"10000"})
+    public int size;
+    private JexlScript sum;
+
+    @Setup
+    public void setup() {
+        final JexlBuilder builder = new JexlBuilder();
+        if ("stacked".equals(evaluation)) {
+            builder.probe(new JexlDebugger() { });
+        }
+        sum = "loop".equals(evaluation)
+            ? builder.create().createScript("var s = 0; for (var i : 0 .. n - 1) { if (i % 3 > 0) { var e = i * 2; "
+                + "if (e < 15000) { s += e } } } s", "n")
+            : builder.create().createScript("var s = 0; for (var e : ...(0 .. n - 1).[@ % 3 > 0].{@ * 2}.[@ < 15000]) "
+                + "{ s += e } s", "n");
+    }
+
+    @Benchmark
+    public Object sum() {
+        return sum.execute(null, size);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generators and await.
+ * <p>The continuations parameter compares generators replayed for each element with generators
+ * suspended at each yield; the latter need a runtime providing virtual threads.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class GeneratorBenchmark {
+    /** Whether generators run as continuations. */
+    @Param({"false", "true"})
+    public boolean continuations;
+    /** The number of generated elements. */
+    @Param({"100"})
+    public int n;
+    /** A completed future. */
+    private CompletableFuture<Integer> future;
+    private JexlScript flat;
+    private JexlScript nested;
+    private JexlScript deep;
+    private JexlScript await;
+    private JexlScript async;
+
+    @Setup
+    public void setup() {
+        final JexlEngine jexl = new JexlBuilder()
+            .continuations(continuations)
+            .asyncExecutor(Runnable::run)
+            .create();
+        future = CompletableFuture.completedFuture(41);
+        flat = jexl.createScript("[...{ for (var i : 0 .. n - 1) { yield i } }]", "n");
+        nested = jexl.createScript(
+            "[...{ for (var i : 0 .. n - 1) { if (i % 2 == 0) { yield i } else { var j = -i; { yield j } } } }]", "n");
+        deep = jexl.createScript("var s = 0; for (var e : ...{ for (var i : 1 .. n / 10) { if (i > 0) { "
+            + "for (var j : 1 .. 10) { { if (j > 0) { while (true) { yield j; break } } } } } } }) { s += e } s", "n");
+        await = jexl.createScript("(await x) + 1", "x");
+        async = jexl.createScript("x * 2", "x");
+    }
+
+    @Benchmark
+    public Object flat() {
+        return flat.execute(null, n);
+    }
+
+    @Benchmark
+    public Object nested() {
+        return nested.execute(null, n);
+    }
+
+    @Benchmark
+    public Object deep() {
+        return deep.execute(null, n);
+    }
+
+    @Benchmark
+    public Object await() {
+        return await.execute(null, future);
+    }
+
+    @Benchmark
+    public Object executeAsync() {
+        return async.executeAsync(null, 21).join();
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.introspection.JexlPermissions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bean, map and list access and method calls.
+ * <p>The binding parameter compares members invoked through reflection with members bound to
+ * method handles and generated functions.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class IntrospectionBenchmark {
+    /** The member binding. */
+    @Param({"reflection", "methodHandles"})
+    public String binding;
+    /** The context. */
+    private JexlContext context;
+    private JexlScript getProperty;
+    private JexlScript setProperty;
+    private JexlScript getField;
+    private JexlScript mapGet;
+    private JexlScript mapPut;
+    private JexlScript listGet;
+    private JexlScript method;
+    private JexlScript argument;
+    /** The bean passed as argument. */
+    private Bean bean;
+    private JexlScript varargs;
+    private JexlScript chain;
+
+    /**
+     * The bean accessed by scripts.
+     */
+    public static class Bean {
+        public int count = 3;
+        private String name = "jexl";
+        private Bean next;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public Bean getNext() {
+            return next;
+        }
+
+        public void setNext(final Bean next) {
+            this.next = next;
+        }
+
+        public int twice(final int x) {
+            return 2 * x;
+        }
+
+        public int sum(final int... values) {
+            int s = 0;
+            for (final int value : values) {
+                s += value;
+            }
+            return s;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        final JexlEngine jexl = new JexlBuilder()
+            .permissions(JexlPermissions.UNRESTRICTED)
+            .methodHandles("methodHandles".equals(binding))
+            .strict(true)
+            .create();
+        bean = new Bean();
+        bean.setNext(new Bean());
+        bean.getNext().setNext(new Bean());
+        final Map<String, Object> map = new HashMap<>();
+        map.put("key", 42);
+        map.put("other", "value");
+        final List<Object> list = new ArrayList<>();
+        for (int i = 0; i < 16; ++i) {
+            list.add(i);
+        }
+        context = new MapContext();
+        context.set("bean", bean);
+        context.set("map", map);
+        context.set("list", list);
+        getProperty = jexl.createScript("bean.name");
+        setProperty = jexl.createScript("bean.name = 'jexl'");
+        getField = jexl.createScript("bean.count");
+        mapGet = jexl.createScript("map.key");
+        mapPut = jexl.createScript("map.key = 42");
+        listGet = jexl.createScript("list[7]");
+        method = jexl.createScript("bean.twice(21)");
+        argument = jexl.createScript("bean.twice(i)", "bean", "i");
+        varargs = jexl.createScript("bean.sum(1, 2, 3, 4)");
+        chain = jexl.createScript("bean.next.next.name");
+    }
+
+    @Benchmark
+    public Object getProperty() {
+        return getProperty.execute(context);
+    }
+
+    @Benchmark
+    public Object setProperty() {
+        return setProperty.execute(context);
+    }
+
+    @Benchmark
+    public Object getField() {
+        return getField.execute(context);
+    }
+
+    @Benchmark
+    public Object mapGet() {
+        return mapGet.execute(context);
+    }
+
+    @Benchmark
+    public Object mapPut() {
+        return mapPut.execute(context);
+    }
+
+    @Benchmark
+    public Object listGet() {
+        return listGet.execute(context);
+    }
+
+    @Benchmark
+    public Object method() {
+        return method.execute(context);
+    }
+
+    @Benchmark
+    public Object argument() {
+        return argument.execute(null, bean, 21);
+    }
+
+    @Benchmark
+    public Object varargs() {
+        return varargs.execute(context);
+    }
+
+    @Benchmark
+    public Object chain() {
+        return chain.execute(context);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEvalContext;
+import org.apache.commons.jexl3.JexlProfiler;
+import org.apache.commons.jexl3.JexlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of budgets, metrics and profiling on one workload.
+ * <p>The workload calls a lambda from a loop and builds a map, so it exercises statements,
+ * closures, introspection and allocations.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class OverheadBenchmark {
+    /** The workload. */
+    static final String WORKLOAD =
+        "var f = (x) -> x * 2 + 1;\n"
+        + "var m = {:};\n"
+        + "for (var i = 0; i < n; ++i) {\n"
+        + "  m[i % 10] = f(i);\n"
+        + "}\n"
+        + "size(m) + m[3]";
+    /** The instrumentation: none, budget, metrics, profiler or sampling. */
+    @Param({"none", "budget", "metrics", "profiler", "sampling"})
+    public String mode;
+    /** The number of loop iterations. */
+    @Param({"100"})
+    public int n;
+    /** The profiler, if any. */
+    private JexlProfiler profiler;
+    /** The context. */
+    private JexlContext context;
+    /** The workload script. */
+    private JexlScript script;
+
+    @Setup
+    public void setup() {
+        final JexlBuilder builder = new JexlBuilder();
+        final JexlEvalContext ctxt = new JexlEvalContext();
+        switch (mode) {
+            case "budget":
+                // budgets large enough to never be exceeded
+                ctxt.getEngineOptions().setNodeBudget(Long.MAX_VALUE / 2);
+                ctxt.getEngineOptions().setTimeBudget(TimeUnit.HOURS.toMillis(1));
+                ctxt.getEngineOptions().setAllocationBudget(Long.MAX_VALUE / 2);
+                break;
+            case "metrics":
+                builder.metrics(true);
+                break;
+            case "profiler":
+                profiler = new JexlProfiler();
+                builder.probe(profiler);
+                break;
+            case "sampling":
+                profiler = new JexlProfiler(1, TimeUnit.MILLISECONDS);
+                builder.probe(profiler);
+                break;
+            default:
+                break;
+        }
+        context = ctxt;
+        script = builder.create().createScript(WORKLOAD, "n");
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (profiler != null) {
+            profiler.close();
+        }
+    }
+
+    @Benchmark
+    public Object workload() {
+        return script.execute(context, n);
+    }
+}
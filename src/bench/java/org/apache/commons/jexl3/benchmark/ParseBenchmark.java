@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing small and large sources, with and without the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class ParseBenchmark {
+    /** A one line expression. */
+    static final String SMALL = "x.size() > 0 ? x[0] * 2 + y : y - 1";
+    /** An engine without cache. */
+    private JexlEngine uncached;
+    /** An engine with cache. */
+    private JexlEngine cached;
+    /** A source of about 200 lines. */
+    private String large;
+
+    /**
+     * Creates a source with functions, loops, conditionals and literals.
+     * @param functions the number of functions
+     * @return the source
+     */
+    static String largeSource(final int functions) {
+        final StringBuilder strb = new StringBuilder();
+        for (int f = 0; f < functions; ++f) {
+            strb.append("function f").append(f).append("(x, y) {\n")
+                .append("  var s = 0;\n")
+                .append("  for (var i : 0 .. x) {\n")
+                .append("    if (i % 2 == 0) { s += i * y } else { s -= i / 2 }\n")
+                .append("  }\n")
+                .append("  var m = { 'a' : s, 'b' : [x, y, 'text'], 'c' : x =~ [1, 2, 3] };\n")
+                .append("  return m.a + size(m.b);\n")
+                .append("}\n");
+        }
+        strb.append("var r = 0;\n");
+        for (int f = 0; f < functions; ++f) {
+            strb.append("r += f").append(f).append("(").append(f).append(", 2);\n");
+        }
+        strb.append("r;\n");
+        return strb.toString();
+    }
+
+    @Setup
+    public void setup() {
+        uncached = new JexlBuilder().cache(0).create();
+        cached = new JexlBuilder().cache(64).cacheThreshold(Integer.MAX_VALUE).create();
+        large = largeSource(25);
+        cached.createScript(SMALL, "x", "y");
+        cached.createScript(large);
+    }
+
+    @Benchmark
+    public JexlScript parseSmall() {
+        return uncached.createScript(SMALL, "x", "y");
+    }
+
+    @Benchmark
+    public JexlScript parseLarge() {
+        return uncached.createScript(large);
+    }
+
+    @Benchmark
+    public JexlScript cachedSmall() {
+        return cached.createScript(SMALL, "x", "y");
+    }
+
+    @Benchmark
+    public JexlScript cachedLarge() {
+        return cached.createScript(large);
+    }
+}
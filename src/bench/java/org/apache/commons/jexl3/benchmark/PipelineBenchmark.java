@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Projections and selections over lists and ranges.
+ * <p>Chained stages run fused in one loop; the parallel parameter evaluates them on the fork-join pool.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class PipelineBenchmark {
+    /** Whether stages run in parallel. */
+    @Param({"false", "true"})
+    public boolean parallel;
+    /** The number of elements. */
+    @Param({"1000", "100000"})
+    public int size;
+    /** The source list. */
+    private List<Integer> list;
+    private JexlScript projection;
+    private JexlScript selection;
+    private JexlScript chained;
+    private JexlScript lambdas;
+    private JexlScript range;
+    private JexlScript heavy;
+
+    @Setup
+    public void setup() {
+        final JexlEngine jexl = new JexlBuilder().parallel(parallel).create();
+        list = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            list.add(i);
+        }
+        projection = jexl.createScript("[...list.{@ * 2}]", "list");
+        selection = jexl.createScript("[...list.[@ % 3 == 0]]", "list");
+        chained = jexl.createScript("[...list.[@ % 2 == 0].{@ * 3}.[@ % 5 != 0]]", "list");
+        lambdas = jexl.createScript("[...list.{x -> x + 1}.[x -> x % 2 == 0]]", "list");
+        range = jexl.createScript("[...(0 .. n - 1).{@ * @}.[@ % 7 == 1]]", "n");
+        heavy = jexl.createScript(
+            "[...(1 .. n / 50).{x -> { var s = 0; for (var i : 1 .. 500) { s += (x * i) % 7 } s }}]", "n");
+    }
+
+    @Benchmark
+    public Object projection() {
+        return projection.execute(null, list);
+    }
+
+    @Benchmark
+    public Object selection() {
+        return selection.execute(null, list);
+    }
+
+    @Benchmark
+    public Object chained() {
+        return chained.execute(null, list);
+    }
+
+    @Benchmark
+    public Object lambdas() {
+        return lambdas.execute(null, list);
+    }
+
+    @Benchmark
+    public Object range() {
+        return range.execute(null, size);
+    }
+
+    @Benchmark
+    public Object heavy() {
+        return heavy.execute(null, size);
+    }
+}
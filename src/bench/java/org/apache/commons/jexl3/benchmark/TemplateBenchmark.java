@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.benchmark;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JxltEngine;
+import org.apache.commons.jexl3.MapContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Template and unified expression rendering.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms1G", "-Xmx1G"})
+public class TemplateBenchmark {
+    /** A template iterating over a list of maps. */
+    static final String TEMPLATE =
+        "<table title='${title}'>\n"
+        + "$$ for (var row : rows) {\n"
+        + "<tr><td>${row.name}</td><td>${row.value * 2}</td><td>${row.value > 50 ? 'high' : 'low'}</td></tr>\n"
+        + "$$ }\n"
+        + "</table>\n";
+    /** The template engine. */
+    private JxltEngine jxlt;
+    /** The context. */
+    private JexlContext context;
+    private JxltEngine.Template template;
+    private JxltEngine.Expression immediate;
+    private JxltEngine.Expression deferred;
+
+    @Setup
+    public void setup() {
+        final JexlEngine jexl = new JexlBuilder().cache(64).create();
+        jxlt = jexl.createJxltEngine();
+        final List<Object> rows = new ArrayList<>();
+        for (int r = 0; r < 100; ++r) {
+            final Map<String, Object> row = new HashMap<>();
+            row.put("name", "row" + r);
+            row.put("value", r);
+            rows.add(row);
+        }
+        context = new MapContext();
+        context.set("title", "benchmark");
+        context.set("rows", rows);
+        context.set("user", "jexl");
+        context.set("count", 42);
+        template = jxlt.createTemplate(TEMPLATE);
+        immediate = jxlt.createExpression("Hello ${user}, you have ${count} messages");
+        deferred = jxlt.createExpression("Hello ${user}, you have #{count + 1} messages");
+    }
+
+    @Benchmark
+    public String template() {
+        final StringWriter writer = new StringWriter();
+        template.evaluate(context, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String createTemplate() {
+        final StringWriter writer = new StringWriter();
+        jxlt.createTemplate(TEMPLATE).evaluate(context, writer);
+        return writer.toString();
+    }
+
+    @Benchmark
+    public Object immediate() {
+        return immediate.evaluate(context);
+    }
+
+    @Benchmark
+    public Object deferred() {
+        return deferred.prepare(context).evaluate(context);
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * JMH benchmarks of the engine.
+ * <p>
+ * The benchmarks are compiled and run by the benchmark profile, which adds this source root and the
+ * JMH dependencies to the test classpath; they are not part of the regular build.
+ * </p>
+ * <pre>
+ * mvn -Pbenchmark test
+ * mvn -Pbenchmark test -Dbenchmark=org.apache.commons.jexl3.benchmark.EvaluateBenchmark
+ * </pre>
+ * <p>
+ * Results are written to target/jmh-result.<i>benchmark</i>.json. Benchmarks comparing engine options
+ * take them as parameters; for instance EvaluateBenchmark runs each script interpreted, compiled to a
+ * closure tree and compiled to bytecode, and IntrospectionBenchmark binds members through reflection or
+ * through method handles.
+ * </p>
+ * <ul>
+ * <li>ParseBenchmark: parsing small and large sources, with and without the cache.</li>
+ * <li>EvaluateBenchmark: cached expressions, arithmetic loops, typed locals and range loops per tier.</li>
+ * <li>CompilerBenchmark: rule-like scripts, fully and partly compiled, per tier.</li>
+ * <li>IntrospectionBenchmark: bean, map and list access, method, argument and varargs calls per binding.</li>
+ * <li>PipelineBenchmark: projections and selections, fused and in parallel, and a CPU heavy projection.</li>
+ * <li>CompletionBenchmark: loops using break, continue and return, completed as results or thrown.</li>
+ * <li>FusionBenchmark: a chain fused, stacked and written as a loop.</li>
+ * <li>GeneratorBenchmark: generators replayed or run as continuations, and await.</li>
+ * <li>TemplateBenchmark: template and unified expression rendering.</li>
+ * <li>OverheadBenchmark: the cost of budgets, metrics and profiling on one workload.</li>
+ * </ul>
+ */
+package org.apache.commons.jexl3.benchmark;
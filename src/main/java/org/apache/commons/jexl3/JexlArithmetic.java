@@ -38,6 +38,7 @@ import java.util.Optional;
 
 import java.util.concurrent.Future;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -3040,6 +3041,7 @@ public class JexlArithmetic {
 
     /**
      * Coerce to a Future.
+     * <p>A completion stage that is not a future is bridged to a future completing with it.</p>
      *
      * @param val object to be coerced.
      * @return a Future
@@ -3048,6 +3050,17 @@ public class JexlArithmetic {
         if (val instanceof Future) {
             return (Future) val;
         }
+        if (val instanceof CompletionStage) {
+            final CompletableFuture<Object> future = new CompletableFuture<>();
+            ((CompletionStage<?>) val).whenComplete((value, xany) -> {
+                if (xany != null) {
+                    future.completeExceptionally(xany);
+                } else {
+                    future.complete(value);
+                }
+            });
+            return future;
+        }
         return CompletableFuture.completedFuture(val);
     }
 
@@ -21,6 +21,7 @@ import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
 
@@ -151,6 +152,36 @@ public class JexlBuilder {
    /** The parser class factory. */
    private Supplier<JexlScriptParser> parserFactory;
 
+    /** The maximum number of idle parsers kept for reuse. */
+    private int parserPool = Runtime.getRuntime().availableProcessors();
+
+    /** The executor used for background engine tasks. */
+    private Executor executor;
+
+    /** The executor running asynchronous script executions. */
+    private Executor asyncExecutor;
+
+    /** The number of executions after which a script is compiled, 0 to never compile. */
+    private int compileThreshold = 0;
+
+    /** Whether scripts are compiled to closure trees rather than bytecode. */
+    private boolean closureTree = false;
+
+    /** Whether introspection executors bind members to method handles rather than using reflection. */
+    private boolean methodHandles = false;
+
+    /** Whether generators run as continuations rather than being replayed. */
+    private boolean continuations = false;
+
+    /** Whether the engine records metrics. */
+    private boolean metrics = false;
+
+    /** The metrics listener. */
+    private JexlMetrics.Listener metricsListener;
+
+    /** The name the engine metrics are registered with as an MXBean. */
+    private String jmxName;
+
     /** The stack overflow limit. */
     private int stackOverflow = Integer.MAX_VALUE;
 
@@ -332,6 +363,236 @@ public class JexlBuilder {
         return this;
     }
 
+    /**
+     * Sets the maximum number of idle parsers the engine keeps for reuse.
+     * <p>Parsers are not thread-safe; concurrent parsing borrows idle ones from a pool and creates new
+     * ones when none is available. This bounds how many are kept around after use.</p>
+     *
+     * @param size the pool size, if not strictly positive, the engine keeps a single parser
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder parserPool(final int size) {
+        this.parserPool = Math.max(1, size);
+        return this;
+    }
+
+    /**
+     * @return the maximum number of idle parsers kept for reuse
+     * @since 4.0
+     */
+    public int parserPool() {
+        return parserPool;
+    }
+
+    /**
+     * Sets the executor the engine uses for background tasks, like bulk precompilation.
+     * <p>When not set, the engine uses the common fork-join pool; a virtual thread executor can be used
+     * on runtimes that provide one.</p>
+     *
+     * @param e the executor
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder executor(final Executor e) {
+        this.executor = e;
+        return this;
+    }
+
+    /**
+     * @return the executor used for background tasks, null if the common fork-join pool is used
+     * @since 4.0
+     */
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor running the asynchronous executions of scripts.
+     * <p>When not set, each execution runs on its own virtual thread if the runtime provides them, on the
+     * common fork-join pool otherwise.</p>
+     *
+     * @param e the executor
+     * @return this builder
+     * @see JexlScript#executeAsync(JexlContext, Object...)
+     * @since 4.0
+     */
+    public JexlBuilder asyncExecutor(final Executor e) {
+        this.asyncExecutor = e;
+        return this;
+    }
+
+    /**
+     * @return the executor running asynchronous script executions, null if the default one is used
+     * @since 4.0
+     */
+    public Executor asyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Sets the number of executions after which a script is compiled to bytecode.
+     * <p>Compilation covers the literals, variables and operators of top-level expression statements;
+     * declarations, assignments, blocks, conditional and loop statements, calls and property accesses
+     * remain interpreted. The semantics of arithmetic, overloads and options are unchanged.
+     * Compilation is disabled when the engine has a probe; scripts are compiled to closure trees
+     * instead of bytecode when the library is loaded as a named module.</p>
+     *
+     * @param threshold the number of executions, 0 or less to never compile
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder compileThreshold(final int threshold) {
+        this.compileThreshold = Math.max(0, threshold);
+        return this;
+    }
+
+    /**
+     * @return the number of executions after which a script is compiled, 0 if never
+     * @since 4.0
+     */
+    public int compileThreshold() {
+        return compileThreshold;
+    }
+
+    /**
+     * Sets whether scripts reaching the compile threshold are compiled to closure trees rather than bytecode.
+     * <p>A closure tree is a tree of small executable objects with operands, symbols and operators
+     * resolved once; it is lighter than bytecode, does not generate classes and is a better fit for
+     * scripts that are executed often but not enough to amortize bytecode generation.</p>
+     *
+     * @param flag true to compile to closure trees
+     * @return this builder
+     * @see #compileThreshold(int)
+     * @since 4.0
+     */
+    public JexlBuilder closureTree(final boolean flag) {
+        this.closureTree = flag;
+        return this;
+    }
+
+    /**
+     * @return whether scripts are compiled to closure trees rather than bytecode
+     * @since 4.0
+     */
+    public boolean closureTree() {
+        return closureTree;
+    }
+
+    /**
+     * Sets whether the default uberspect executors invoke methods and fields through method handles
+     * rather than through reflection.
+     * <p>Getters and setters of public classes are bound to functions generated by the lambda
+     * metafactory, other members to method handles. This only applies when no uberspect is set.</p>
+     *
+     * @param flag true to bind members to method handles
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder methodHandles(final boolean flag) {
+        this.methodHandles = flag;
+        return this;
+    }
+
+    /**
+     * @return whether the default uberspect executors use method handles rather than reflection
+     * @since 4.0
+     */
+    public boolean methodHandles() {
+        return methodHandles;
+    }
+
+    /**
+     * Sets whether generators run as continuations rather than being replayed.
+     * <p>A continuation runs the generator body on its own thread, suspended at each yield, so that
+     * resuming it does not depend on how deeply the yield is nested; a replayed generator re-enters
+     * its enclosing statements down to the suspended yield for every element.
+     * Continuations run on virtual threads and are disabled by default.
+     * Generators are always replayed when the runtime does not provide virtual threads or when the
+     * engine has a probe.</p>
+     *
+     * @param flag true to run generators as continuations, false to replay them
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder continuations(final boolean flag) {
+        this.continuations = flag;
+        return this;
+    }
+
+    /**
+     * @return whether generators run as continuations
+     * @since 4.0
+     */
+    public boolean continuations() {
+        return continuations;
+    }
+
+    /**
+     * Sets whether the engine records metrics.
+     * <p>Metrics count parses, cache hits and misses, evaluations and their outcome, introspection misses,
+     * and measure parse and evaluation latencies; they are available through {@link JexlEngine#getMetrics()}.</p>
+     *
+     * @param flag true to record metrics
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder metrics(final boolean flag) {
+        this.metrics = flag;
+        return this;
+    }
+
+    /**
+     * @return whether the engine records metrics, also true when a metrics listener or JMX name is set
+     * @since 4.0
+     */
+    public boolean metrics() {
+        return metrics || metricsListener != null || jmxName != null;
+    }
+
+    /**
+     * Sets the listener receiving the events the engine metrics record.
+     * <p>Setting a listener enables metrics.</p>
+     *
+     * @param listener the listener
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder metricsListener(final JexlMetrics.Listener listener) {
+        this.metricsListener = listener;
+        return this;
+    }
+
+    /**
+     * @return the metrics listener
+     * @since 4.0
+     */
+    public JexlMetrics.Listener metricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Sets the name the engine metrics are registered with in the platform MBean server.
+     * <p>Setting a name enables metrics; the metrics can be unregistered through
+     * {@link JexlMetrics#unregister()}.</p>
+     *
+     * @param name the engine name
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder jmxName(final String name) {
+        this.jmxName = name;
+        return this;
+    }
+
+    /**
+     * @return the name the engine metrics are registered with
+     * @since 4.0
+     */
+    public String jmxName() {
+        return jmxName;
+    }
+
     /**
      * Sets the features the engine will use as a base by default.
      * <p>Note that the script flag will be ignored; the engine will be able to parse expressions and scripts.
@@ -545,6 +806,30 @@ public class JexlBuilder {
         return options.isSafe();
     }
 
+    /**
+     * Sets whether projections and selections of lists, arrays and ranges evaluate their elements
+     * concurrently.
+     * <p>The elements are evaluated on the engine {@link #executor(java.util.concurrent.Executor) executor}
+     * if it is a fork-join pool, on the common fork-join pool otherwise. Scripts can also set this flag
+     * through the <code>#pragma jexl.options '+parallel'</code> pragma.</p>
+     *
+     * @param flag true means parallel projections and selections, false sequential ones
+     * @return this builder
+     * @since 4.0
+     */
+    public JexlBuilder parallel(final boolean flag) {
+        options.setParallel(flag);
+        return this;
+    }
+
+    /**
+     * @return true if projections and selections are parallel, false otherwise
+     * @since 4.0
+     */
+    public Boolean parallel() {
+        return options.isParallel();
+    }
+
     /**
      * Sets whether the engine will report debugging information when error occurs.
      *
@@ -689,7 +974,10 @@ public class JexlBuilder {
     /**
      * Sets the expression cache size the engine will use.
      * <p>The cache will contain at most <code>size</code> expressions of at most <code>cacheThreshold</code> length.
-     * Note that all JEXL caches are held through SoftReferences and may be garbage-collected.</p>
+     * Note that the default JEXL caches are held through SoftReferences and may be garbage-collected.</p>
+     * <p>The cache implementation can be changed through {@link #cacheFactory(IntFunction)}; for instance,
+     * the <code>ConcurrentCache</code> implementation uses lock-free reads and a frequency-aware eviction policy
+     * which suits highly concurrent usages better.</p>
      *
      * @param size if not strictly positive, no cache is used.
      * @return this builder
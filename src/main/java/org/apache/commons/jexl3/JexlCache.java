@@ -77,6 +77,134 @@ public interface JexlCache<K, V> {
      */
     int size();
 
+    /**
+     * Gets a snapshot of this cache usage statistics.
+     * <p>Hits, misses, puts and evictions are recorded by the cache; bypasses, scope collisions and
+     * parsing time are recorded by the engine using it and only appear in the engine statistics.</p>
+     *
+     * @return the statistics or null if this cache does not record any
+     * @since 4.0
+     */
+    default Statistics statistics() {
+        return null;
+    }
+
+    /**
+     * A snapshot of cache usage statistics.
+     * <p>All counters are cumulative since the cache creation and are not reset by {@link #clear()};
+     * a snapshot does not change, get a new one to observe later usage.</p>
+     * @since 4.0
+     */
+    final class Statistics {
+        /** The number of successful lookups. */
+        private final long hits;
+        /** The number of failed lookups. */
+        private final long misses;
+        /** The number of entries put in cache. */
+        private final long puts;
+        /** The number of entries evicted. */
+        private final long evictions;
+        /** The number of sources that did not use the cache because of their length. */
+        private final long bypasses;
+        /** The number of misses on a source cached using another scope. */
+        private final long scopeMisses;
+        /** The cumulative time spent parsing on misses, in nanoseconds. */
+        private final long parseTime;
+
+        /**
+         * Creates a snapshot of the counters recorded by a cache.
+         * @param hits the number of successful lookups
+         * @param misses the number of failed lookups
+         * @param puts the number of entries put in cache
+         * @param evictions the number of evicted entries
+         */
+        public Statistics(final long hits, final long misses, final long puts, final long evictions) {
+            this(hits, misses, puts, evictions, 0L, 0L, 0L);
+        }
+
+        /**
+         * Creates a snapshot of the counters recorded by a cache and the engine using it.
+         * @param hits the number of successful lookups
+         * @param misses the number of failed lookups
+         * @param puts the number of entries put in cache
+         * @param evictions the number of evicted entries
+         * @param bypasses the number of sources that bypassed the cache
+         * @param scopeMisses the number of scope collisions
+         * @param parseTime the cumulative time spent parsing on misses, in nanoseconds
+         */
+        public Statistics(final long hits, final long misses, final long puts, final long evictions,
+                          final long bypasses, final long scopeMisses, final long parseTime) {
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+            this.evictions = evictions;
+            this.bypasses = bypasses;
+            this.scopeMisses = scopeMisses;
+            this.parseTime = parseTime;
+        }
+
+        /** @return the number of successful lookups, including scope misses */
+        public long getHits() {
+            return hits;
+        }
+
+        /** @return the number of failed lookups */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** @return the number of entries put in cache */
+        public long getPuts() {
+            return puts;
+        }
+
+        /** @return the number of evicted entries */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /** @return the number of sources that bypassed the cache because of the cache threshold */
+        public long getBypasses() {
+            return bypasses;
+        }
+
+        /**
+         * Gets the number of scope collisions.
+         * <p>A collision occurs when a source is parsed using a scope whose signature differs from the
+         * one it was last parsed with, as in creating a script with parameters (a) and then (a, b);
+         * both variants are cached.</p>
+         * @return the number of misses on a source cached using another scope
+         */
+        public long getScopeMisses() {
+            return scopeMisses;
+        }
+
+        /** @return the cumulative time spent parsing on misses, in nanoseconds */
+        public long getParseTime() {
+            return parseTime;
+        }
+
+        /**
+         * Gets the ratio of usable hits over lookups.
+         * @return the hit ratio, between 0 and 1, 0 if the cache was never used
+         */
+        public double getHitRatio() {
+            final long lookups = getHits() + getMisses();
+            return lookups == 0 ? 0d : (double) getHits() / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + getHits()
+                + ", misses=" + getMisses()
+                + ", puts=" + getPuts()
+                + ", evictions=" + getEvictions()
+                + ", bypasses=" + getBypasses()
+                + ", scopeMisses=" + getScopeMisses()
+                + ", parseTime=" + getParseTime() + "ns";
+        }
+    }
+
     /**
      * A cached reference.
      */
@@ -27,7 +27,18 @@ import java.math.MathContext;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.jexl3.introspection.JexlUberspect;
 
@@ -332,6 +343,187 @@ public abstract class JexlEngine {
      */
     public abstract void clearCache();
 
+    /**
+     * Gets the expression cache usage statistics.
+     * <p>These help sizing the cache and its threshold; they count hits, misses, evictions, puts,
+     * bypasses due to the cache threshold, hits discarded because of a scope mismatch and the cumulative
+     * parsing time on misses.</p>
+     *
+     * @return the statistics or null if this engine has no cache or its cache does not record statistics
+     * @since 4.0
+     */
+    public JexlCache.Statistics getCacheStatistics() {
+        return null;
+    }
+
+    /**
+     * Gets the metrics of this engine.
+     *
+     * @return the metrics or null if this engine does not record any
+     * @since 4.0
+     */
+    public JexlMetrics getMetrics() {
+        return null;
+    }
+
+    /**
+     * Writes a bundle of precompiled scripts to a file.
+     * <p>The bundle stores the scripts syntax trees, scopes and pragmas along with a fingerprint of the
+     * grammar and features they were compiled with; it can be loaded through {@link #readScripts(Path)}
+     * to avoid parsing the same sources again.</p>
+     *
+     * @param file the bundle file
+     * @param scripts the scripts, created by this engine with its default features
+     * @throws IOException if writing fails or a script can not be encoded
+     * @since 4.0
+     */
+    public abstract void writeScripts(Path file, Collection<? extends JexlScript> scripts) throws IOException;
+
+    /**
+     * Reads a bundle of precompiled scripts from a file.
+     * <p>The file is memory-mapped and each script is decoded on first access only; a decoded script
+     * is also stored in the expression cache so creating a script from the same source does not parse it.</p>
+     * <p>Bundles written with a different grammar or different features are rejected.</p>
+     *
+     * @param file the bundle file
+     * @return the scripts keyed by their {@link #bundleKey(boolean, String) kind and source text}, in bundle order
+     * @throws IOException if reading fails or the bundle is stale
+     * @since 4.0
+     */
+    public abstract Map<String, JexlScript> readScripts(Path file) throws IOException;
+
+    /**
+     * Gets the key of a script in the map returned by {@link #readScripts(Path)}.
+     * <p>Keys combine the kind of the script, created as a script or as an expression, with its source
+     * text so that a script and an expression sharing the same source do not collide.</p>
+     *
+     * @param expression whether the script was created as an expression
+     * @param source the script source text
+     * @return the key
+     * @since 4.0
+     */
+    public static String bundleKey(final boolean expression, final String source) {
+        return (expression ? "expression:" : "script:") + source;
+    }
+
+    /**
+     * The result of a bulk precompilation.
+     * <p>Each source is either successfully compiled into a script or failed with a parsing error.</p>
+     * @since 4.0
+     */
+    public static final class Precompiled {
+        /** The compiled scripts. */
+        private final Map<String, JexlScript> scripts;
+        /** The parsing errors. */
+        private final Map<String, JexlException> errors;
+
+        /**
+         * Creates a precompilation result.
+         * @param theScripts the compiled scripts keyed by source
+         * @param theErrors the parsing errors keyed by source
+         */
+        public Precompiled(final Map<String, JexlScript> theScripts, final Map<String, JexlException> theErrors) {
+            this.scripts = Collections.unmodifiableMap(theScripts);
+            this.errors = Collections.unmodifiableMap(theErrors);
+        }
+
+        /**
+         * @return the compiled scripts keyed by their source, in submission order
+         */
+        public Map<String, JexlScript> getScripts() {
+            return scripts;
+        }
+
+        /**
+         * @return the parsing errors keyed by their source, in submission order
+         */
+        public Map<String, JexlException> getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return true if all sources compiled, false otherwise
+         */
+        public boolean isSuccess() {
+            return errors.isEmpty();
+        }
+    }
+
+    /**
+     * Compiles a batch of script sources in parallel.
+     * <p>Sources are parsed on the engine executor, the common fork-join pool by default, and the resulting
+     * scripts are stored in the expression cache; this is meant to warm up an engine before use.</p>
+     *
+     * @param sources the script sources
+     * @return the compiled scripts and the parsing errors
+     * @since 4.0
+     */
+    public Precompiled precompile(final Collection<String> sources) {
+        return precompile(sources, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compiles a batch of script sources in parallel.
+     * <p>Sources are split in four times as many batches as there are processors so that uneven source lengths
+     * still balance across tasks, each batch compiled by one task submitted to the executor; duplicate sources
+     * are compiled once.</p>
+     * <p>Each script info is named after the position of its source in the collection, as in
+     * <code>precompile[3]</code>, so that parsing errors point at the offending source.</p>
+     *
+     * @param sources the script sources
+     * @param executor the executor running the compilation tasks
+     * @return the compiled scripts and the parsing errors
+     * @since 4.0
+     */
+    public Precompiled precompile(final Collection<String> sources, final Executor executor) {
+        // the position of each distinct source in the submitted collection
+        final Map<String, Integer> positions = new LinkedHashMap<>();
+        int position = 0;
+        for (final String src : sources) {
+            positions.putIfAbsent(src, position++);
+        }
+        final List<String> unique = new ArrayList<>(positions.keySet());
+        final int size = unique.size();
+        final JexlScript[] scripts = new JexlScript[size];
+        final JexlException[] errors = new JexlException[size];
+        final int nbatch = Math.max(1, Math.min(size, Runtime.getRuntime().availableProcessors() * 4));
+        final List<CompletableFuture<Void>> tasks = new ArrayList<>(nbatch);
+        for (int b = 0; b < nbatch; ++b) {
+            final int first = b * size / nbatch;
+            final int last = (b + 1) * size / nbatch;
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int s = first; s < last; ++s) {
+                    final String src = unique.get(s);
+                    final JexlInfo info = createInfo("precompile[" + positions.get(src) + "]", null, 1, 1);
+                    try {
+                        scripts[s] = createScript(null, info, src);
+                    } catch (final JexlException xjexl) {
+                        errors[s] = xjexl;
+                    }
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (final CompletionException xcompletion) {
+            final Throwable cause = xcompletion.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw xcompletion;
+        }
+        final Map<String, JexlScript> compiled = new LinkedHashMap<>();
+        final Map<String, JexlException> failed = new LinkedHashMap<>();
+        for (int s = 0; s < size; ++s) {
+            if (scripts[s] != null) {
+                compiled.put(unique.get(s), scripts[s]);
+            } else {
+                failed.put(unique.get(s), errors[s]);
+            }
+        }
+        return new Precompiled(compiled, failed);
+    }
+
     /**
      * Creates an JexlExpression from a String containing valid JEXL syntax.
      * This method parses the expression which must contain either a reference or an expression.
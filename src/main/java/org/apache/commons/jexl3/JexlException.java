@@ -17,6 +17,7 @@
 
 package org.apache.commons.jexl3;
 
+import org.apache.commons.jexl3.internal.FlightRecorder;
 import org.apache.commons.jexl3.parser.JavaccError;
 import org.apache.commons.jexl3.parser.ParseException;
 import org.apache.commons.jexl3.parser.TokenMgrException;
@@ -78,6 +79,10 @@ public class JexlException extends RuntimeException {
     protected JexlException(final JexlInfo info, final String msg, final Throwable cause, boolean trace) {
         super(msg != null ? msg : "", unwrap(cause), !trace, trace);
         this.info = info;
+        // control flow exceptions do not trace
+        if (trace) {
+            FlightRecorder.exception(this, info, msg);
+        }
     }
 
     /**
@@ -1042,6 +1047,45 @@ public class JexlException extends RuntimeException {
         }
     }
 
+    /**
+     * Thrown when an evaluation exceeds one of its budgets.
+     * <p>As a cancellation, it can not be caught by a script and is only thrown if the evaluation is
+     * cancellable.</p>
+     *
+     * @see JexlOptions#setNodeBudget(long)
+     * @see JexlOptions#setTimeBudget(long)
+     * @see JexlOptions#setAllocationBudget(long)
+     * @since 4.0
+     */
+    public static class Budget extends Cancel {
+        private static final long serialVersionUID = 20261017120000L;
+        /** The exceeded budget. */
+        private final String budget;
+
+        /**
+         * Creates a new instance of Budget.
+         *
+         * @param info the node where the budget was found exceeded
+         * @param name the exceeded budget, nodes, time or allocation
+         */
+        public Budget(final JexlInfo info, final String name) {
+            super(info);
+            budget = name;
+        }
+
+        /**
+         * @return the exceeded budget, nodes, time or allocation
+         */
+        public String getBudget() {
+            return budget;
+        }
+
+        @Override
+        protected String detailedMessage() {
+            return "execution " + budget + " budget exceeded";
+        }
+    }
+
     /**
      * Thrown to branch a script execution.
      *
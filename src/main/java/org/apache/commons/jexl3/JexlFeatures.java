@@ -68,7 +68,7 @@ public final class JexlFeatures {
         "global assign/modify", "array reference", "create instance", "loop", "function",
         "method call", "set/map/array literal", "pragma", "annotation", "script", "lexical", "lexicalShade",
         "thin-arrow", "fat-arrow", "namespace pragma", "namespace identifier", "import pragma", "comparator names", "pragma anywhere",
-        "const capture", "ref capture", "strict statement", "matching names"
+        "const capture", "ref capture", "strict statement", "matching names", "constant folding"
     };
     /** Registers feature ordinal. */
     private static final int REGISTER = 0;
@@ -124,6 +124,8 @@ public final class JexlFeatures {
     public static final int STRICT_STATEMENT = 25;
     /** Matching names (in) syntax. */
     public static final int MATCHING_NAMES = 26;
+    /** Constant folding feature ordinal. */
+    public static final int CONSTANT_FOLDING = 27;
     /**
      * All features.
      * Ensure this is updated if additional features are added.
@@ -692,6 +694,29 @@ public final class JexlFeatures {
         return getFeature(MATCHING_NAMES);
     }
 
+    /**
+     * Sets whether constant expressions are folded after parsing.
+     * <p>
+     * When enabled, constant arithmetic, string and comparison sub-expressions are evaluated once
+     * using the engine arithmetic, if/ternary branches with constant conditions are pruned and
+     * boolean identities are simplified. The parsed text of a script reflects these simplifications.
+     * @param flag true to enable, false to disable
+     * @return this features instance
+     * @since 4.0
+     */
+    public JexlFeatures constantFolding(final boolean flag) {
+        setFeature(CONSTANT_FOLDING, flag);
+        return this;
+    }
+
+    /**
+     * @return true if constant folding is enabled, false otherwise
+     * @since 4.0
+     */
+    public boolean supportsConstantFolding() {
+        return getFeature(CONSTANT_FOLDING);
+    }
+
     /**
      * Sets whether lambda captured-variables are constant or mutable.
      * <p>
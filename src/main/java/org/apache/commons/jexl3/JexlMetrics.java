@@ -0,0 +1,470 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The metrics of an engine: parsing, cache usage, evaluations and introspection misses.
+ * <p>Counters are {@link LongAdder}s and latencies are recorded in fixed-bucket histograms so that recording
+ * from many threads does not contend. Only top-level evaluations are counted, not the closures and nested
+ * scripts they call. Cache hits and misses are not counted again but read from the engine
+ * {@link JexlCache.Statistics cache statistics}.</p>
+ * <p>An engine records metrics when built with {@link JexlBuilder#metrics(boolean)}, a listener or a JMX name;
+ * without, its only cost is a null check. The metrics can be registered as an MXBean and a
+ * {@link Listener} receives each recorded event, to bridge to another collector.</p>
+ * @since 4.0
+ */
+public final class JexlMetrics implements JexlMetricsMXBean {
+    /** The JMX domain. */
+    public static final String DOMAIN = "org.apache.commons.jexl3";
+    /** The listener, may be null. */
+    private final Listener listener;
+    /** The number of parses. */
+    private final LongAdder parses = new LongAdder();
+    /** The cache statistics supplier, may be null. */
+    private final Supplier<JexlCache.Statistics> cacheStatistics;
+    /** The cache statistics at the last reset, may be null. */
+    private volatile JexlCache.Statistics cacheBaseline;
+    /** The parse latencies. */
+    private final Histogram parseTimes = new Histogram();
+    /** The number of failed evaluations. */
+    private final LongAdder failures = new LongAdder();
+    /** The number of cancelled evaluations. */
+    private final LongAdder cancellations = new LongAdder();
+    /** The number of stack overflows. */
+    private final LongAdder stackOverflows = new LongAdder();
+    /** The evaluation latencies, also counting evaluations. */
+    private final Histogram executionTimes = new Histogram();
+    /** The number of introspection misses. */
+    private final LongAdder introspectionMisses = new LongAdder();
+    /** The name this instance is registered with. */
+    private ObjectName objectName;
+
+    /**
+     * Creates metrics.
+     * @param listener the listener, may be null
+     */
+    public JexlMetrics(final Listener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * Creates metrics.
+     * @param listener the listener, may be null
+     * @param statistics the cache statistics supplier, may be null or supply null if there is no cache
+     */
+    public JexlMetrics(final Listener listener, final Supplier<JexlCache.Statistics> statistics) {
+        this.listener = listener;
+        this.cacheStatistics = statistics;
+    }
+
+    /**
+     * Receives the events recorded by metrics.
+     * <p>Methods are called by the evaluating threads and should return quickly, without throwing.</p>
+     */
+    public interface Listener {
+        /**
+         * Called after parsing a source or finding it in the cache.
+         * @param info the source info, may be null
+         * @param length the source length
+         * @param nanos the parse duration, 0 for cache hits
+         * @param hit whether the tree came from the cache
+         */
+        default void parsed(final JexlInfo info, final int length, final long nanos, final boolean hit) {
+            // nothing
+        }
+
+        /**
+         * Called after an evaluation.
+         * @param info the script info, may be null
+         * @param nanos the evaluation duration
+         * @param failure the exception ending the evaluation, null if successful
+         */
+        default void executed(final JexlInfo info, final long nanos, final Throwable failure) {
+            // nothing
+        }
+
+        /**
+         * Called when introspection can not resolve a property or method.
+         * @param type the class of the object
+         * @param member the property or method name
+         */
+        default void introspectionMissed(final Class<?> type, final Object member) {
+            // nothing
+        }
+    }
+
+    /**
+     * Records a parse.
+     * @param info the source info
+     * @param length the source length
+     * @param nanos the parse duration
+     */
+    public void recordParse(final JexlInfo info, final int length, final long nanos) {
+        parses.increment();
+        parseTimes.record(nanos);
+        if (listener != null) {
+            listener.parsed(info, length, nanos, false);
+        }
+    }
+
+    /**
+     * Records a parse served by the cache.
+     * <p>Only the listener is notified, the cache statistics count the hit.</p>
+     * @param info the source info
+     * @param length the source length
+     */
+    public void recordCacheHit(final JexlInfo info, final int length) {
+        if (listener != null) {
+            listener.parsed(info, length, 0L, true);
+        }
+    }
+
+    /**
+     * Records an evaluation.
+     * @param info the script info
+     * @param nanos the evaluation duration
+     * @param failure the exception ending the evaluation, null if successful
+     */
+    public void recordExecution(final JexlInfo info, final long nanos, final Throwable failure) {
+        executionTimes.record(nanos);
+        if (failure instanceof JexlException.StackOverflow) {
+            stackOverflows.increment();
+        } else if (failure instanceof JexlException.Cancel) {
+            cancellations.increment();
+        } else if (failure != null) {
+            failures.increment();
+        }
+        if (listener != null) {
+            listener.executed(info, nanos, failure);
+        }
+    }
+
+    /**
+     * Records an introspection miss.
+     * @param object the object whose property or method could not be resolved
+     * @param member the property or method name
+     */
+    public void recordIntrospectionMiss(final Object object, final Object member) {
+        introspectionMisses.increment();
+        if (listener != null) {
+            listener.introspectionMissed(object != null ? object.getClass() : null, member);
+        }
+    }
+
+    /**
+     * Registers these metrics in the platform MBean server.
+     * <p>The object name is {@value #DOMAIN}:type=JexlEngine,name=<i>name</i>.</p>
+     * @param name the engine name
+     * @return the object name
+     * @throws JMException if registration fails, as when the name is already used
+     */
+    public synchronized ObjectName register(final String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("already registered as " + objectName);
+        }
+        final ObjectName oname = new ObjectName(DOMAIN + ":type=JexlEngine,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, oname);
+        objectName = oname;
+        return oname;
+    }
+
+    /**
+     * Unregisters these metrics from the platform MBean server.
+     * @throws JMException if unregistration fails
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * @return the name these metrics are registered with, null if not registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * @return the parse latencies
+     */
+    public Histogram getParseHistogram() {
+        return parseTimes;
+    }
+
+    /**
+     * @return the evaluation latencies
+     */
+    public Histogram getExecutionHistogram() {
+        return executionTimes;
+    }
+
+    @Override
+    public long getParses() {
+        return parses.sum();
+    }
+
+    /**
+     * Reads a cache statistic since the last reset.
+     * @param statistic the statistic getter
+     * @return the statistic value, 0 if there is no cache
+     */
+    private long cacheCount(final ToLongFunction<JexlCache.Statistics> statistic) {
+        final JexlCache.Statistics current = cacheStatistics != null ? cacheStatistics.get() : null;
+        if (current == null) {
+            return 0L;
+        }
+        final JexlCache.Statistics baseline = cacheBaseline;
+        return baseline != null
+            ? Math.max(0L, statistic.applyAsLong(current) - statistic.applyAsLong(baseline))
+            : statistic.applyAsLong(current);
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheCount(JexlCache.Statistics::getHits);
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheCount(JexlCache.Statistics::getMisses);
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        final long hits = getCacheHits();
+        final long lookups = hits + getCacheMisses();
+        return lookups == 0 ? 0d : (double) hits / lookups;
+    }
+
+    @Override
+    public double getMeanParseTime() {
+        return parseTimes.getMean();
+    }
+
+    @Override
+    public long[] getParseLatencies() {
+        return parseTimes.getCounts();
+    }
+
+    @Override
+    public long getExecutions() {
+        return executionTimes.getCount();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getCancellations() {
+        return cancellations.sum();
+    }
+
+    @Override
+    public long getStackOverflows() {
+        return stackOverflows.sum();
+    }
+
+    @Override
+    public double getMeanExecutionTime() {
+        return executionTimes.getMean();
+    }
+
+    @Override
+    public long[] getExecutionLatencies() {
+        return executionTimes.getCounts();
+    }
+
+    @Override
+    public long getIntrospectionMisses() {
+        return introspectionMisses.sum();
+    }
+
+    @Override
+    public long[] getLatencyBounds() {
+        return Histogram.BOUNDS.clone();
+    }
+
+    @Override
+    public void reset() {
+        parses.reset();
+        cacheBaseline = cacheStatistics != null ? cacheStatistics.get() : null;
+        parseTimes.reset();
+        failures.reset();
+        cancellations.reset();
+        stackOverflows.reset();
+        executionTimes.reset();
+        introspectionMisses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "parses=" + getParses()
+            + ", cacheHits=" + getCacheHits()
+            + ", cacheMisses=" + getCacheMisses()
+            + ", executions=" + getExecutions()
+            + ", failures=" + getFailures()
+            + ", cancellations=" + getCancellations()
+            + ", stackOverflows=" + getStackOverflows()
+            + ", introspectionMisses=" + getIntrospectionMisses();
+    }
+
+    /**
+     * A latency histogram with fixed buckets.
+     * <p>The bucket bounds follow a 1-2-5 progression from 1 microsecond to 5 seconds; a value falls in the first
+     * bucket whose bound is greater or equal, the last bucket counting values above 5 seconds.</p>
+     */
+    public static final class Histogram {
+        /** The buckets upper bounds in nanoseconds. */
+        private static final long[] BOUNDS = bounds();
+        /** The counts per bucket. */
+        private final LongAdder[] counts = new LongAdder[BOUNDS.length + 1];
+        /** The sum of recorded values. */
+        private final LongAdder total = new LongAdder();
+
+        /**
+         * Creates an empty histogram.
+         */
+        Histogram() {
+            for (int b = 0; b < counts.length; ++b) {
+                counts[b] = new LongAdder();
+            }
+        }
+
+        /**
+         * Computes the bucket bounds.
+         * @return the bounds
+         */
+        private static long[] bounds() {
+            final long[] steps = {1L, 2L, 5L};
+            final long[] bounds = new long[21];
+            long decade = 1_000L;
+            for (int b = 0; b < bounds.length; ++b) {
+                bounds[b] = decade * steps[b % 3];
+                if (b % 3 == 2) {
+                    decade *= 10L;
+                }
+            }
+            return bounds;
+        }
+
+        /**
+         * Records a value.
+         * @param nanos the value in nanoseconds
+         */
+        public void record(final long nanos) {
+            final int found = Arrays.binarySearch(BOUNDS, nanos);
+            counts[found >= 0 ? found : -found - 1].increment();
+            total.add(nanos);
+        }
+
+        /**
+         * @return the bucket upper bounds in nanoseconds, the last bucket being unbounded
+         */
+        public long[] getBounds() {
+            return BOUNDS.clone();
+        }
+
+        /**
+         * @return the counts per bucket, one more than bounds
+         */
+        public long[] getCounts() {
+            final long[] values = new long[counts.length];
+            for (int b = 0; b < values.length; ++b) {
+                values[b] = counts[b].sum();
+            }
+            return values;
+        }
+
+        /**
+         * @return the number of recorded values
+         */
+        public long getCount() {
+            long count = 0;
+            for (final LongAdder adder : counts) {
+                count += adder.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @return the sum of recorded values in nanoseconds
+         */
+        public long getTotal() {
+            return total.sum();
+        }
+
+        /**
+         * @return the mean value in nanoseconds, 0 if none
+         */
+        public double getMean() {
+            final long count = getCount();
+            return count == 0 ? 0d : (double) getTotal() / count;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket it falls into.
+         * @param percent the percentile, between 0 and 100
+         * @return the estimate in nanoseconds, 0 if empty, Long.MAX_VALUE if above the last bound
+         */
+        public long getPercentile(final double percent) {
+            final long[] values = getCounts();
+            long count = 0;
+            for (final long value : values) {
+                count += value;
+            }
+            if (count == 0) {
+                return 0L;
+            }
+            final double rank = Math.max(1d, Math.ceil(count * Math.min(100d, Math.max(0d, percent)) / 100d));
+            long seen = 0;
+            for (int b = 0; b < BOUNDS.length; ++b) {
+                seen += values[b];
+                if (seen >= rank) {
+                    return BOUNDS[b];
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Resets the histogram.
+         */
+        void reset() {
+            for (final LongAdder adder : counts) {
+                adder.reset();
+            }
+            total.reset();
+        }
+    }
+}
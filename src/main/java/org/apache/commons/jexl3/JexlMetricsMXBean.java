@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+/**
+ * The management interface of engine metrics.
+ * <p>Times are in nanoseconds; latency distributions are counts per bucket, the bucket upper bounds being
+ * given by {@link #getLatencyBounds()} and the last bucket counting longer latencies.</p>
+ * @since 4.0
+ */
+public interface JexlMetricsMXBean {
+    /**
+     * @return the number of scripts and expressions parsed
+     */
+    long getParses();
+
+    /**
+     * @return the number of parse requests served by the cache
+     */
+    long getCacheHits();
+
+    /**
+     * @return the number of parse requests looked up in the cache and parsed
+     */
+    long getCacheMisses();
+
+    /**
+     * @return the ratio of cache hits over cache lookups, 0 if none
+     */
+    double getCacheHitRatio();
+
+    /**
+     * @return the mean parse time
+     */
+    double getMeanParseTime();
+
+    /**
+     * @return the parse latency distribution
+     */
+    long[] getParseLatencies();
+
+    /**
+     * @return the number of evaluations, successful or not
+     */
+    long getExecutions();
+
+    /**
+     * @return the number of evaluations that failed, excluding cancellations and stack overflows
+     */
+    long getFailures();
+
+    /**
+     * @return the number of evaluations cancelled, including those exceeding a budget
+     */
+    long getCancellations();
+
+    /**
+     * @return the number of evaluations that overflowed the stack
+     */
+    long getStackOverflows();
+
+    /**
+     * @return the mean evaluation time
+     */
+    double getMeanExecutionTime();
+
+    /**
+     * @return the evaluation latency distribution
+     */
+    long[] getExecutionLatencies();
+
+    /**
+     * @return the number of properties and methods introspection could not resolve
+     */
+    long getIntrospectionMisses();
+
+    /**
+     * @return the latency buckets upper bounds
+     */
+    long[] getLatencyBounds();
+
+    /**
+     * Resets all metrics.
+     */
+    void reset();
+}
@@ -38,12 +38,18 @@ import org.apache.commons.jexl3.internal.Engine;
  * <li>strictArithmetic: whether null as operand is an error</li>
  * <li>sharedInstance: whether these options can be modified at runtime during execution (expert)</li>
  * <li>assertions: whether failed assertions is an error</li>
+ * <li>parallel: whether projections and selections of lists, arrays and ranges evaluate their elements
+ * concurrently</li>
  * </ul>
  * The sensible default is cancellable, strict and strictArithmetic.
+ * <p>The properties also hold the budgets of an evaluation: the number of evaluated nodes, the wall-clock time and
+ * the bytes allocated by the evaluating thread; none is set by default.</p>
  * <p>This interface replaces the now deprecated JexlEngine.Options.
  * @since 3.2
  */
 public final class JexlOptions {
+    /** The parallel bit. */
+    private static final int PARALLEL = 11;
     /** The assertions bit. */
     private static final int ASSERTIONS = 10;
     /** The interpolation string bit. */
@@ -70,7 +76,7 @@ public final class JexlOptions {
     private static final String[] NAMES = {
         "cancellable", "strict", "silent", "safe", "lexical", "antish", 
         "lexicalShade", "sharedInstance", "constCapture", "strictInterpolation",
-        "assertions"
+        "assertions", "parallel"
     };
     /** Default mask .*/
     private static int DEFAULT = 1 /*<< CANCELLABLE*/ | 1 << STRICT | 1 << ANTISH | 1 << SAFE;
@@ -80,6 +86,12 @@ public final class JexlOptions {
     private int mathScale = Integer.MIN_VALUE;
     /** The arithmetic strict math flag. */
     private boolean strictArithmetic = true;
+    /** The maximum number of evaluated nodes, 0 if unbounded. */
+    private long nodeBudget;
+    /** The maximum evaluation time in milliseconds, 0 if unbounded. */
+    private long timeBudget;
+    /** The maximum number of bytes allocated by the evaluating thread, 0 if unbounded. */
+    private long allocationBudget;
     /** The default flags, all but safe. */
     private int flags = DEFAULT;
     /** The namespaces .*/
@@ -216,6 +228,14 @@ public final class JexlOptions {
         return isSet(ASSERTIONS, flags);
     }
 
+    /**
+     * Checks whether projections and selections evaluate their elements concurrently.
+     * @return true when parallel, false otherwise
+     */
+    public boolean isParallel() {
+        return isSet(PARALLEL, flags);
+    }
+
     /**
      * Checks whether runtime variable scope is lexical.
      * <p>If true, lexical scope applies to local variables and parameters.
@@ -310,6 +330,18 @@ public final class JexlOptions {
         flags = set(ASSERTIONS, flags, flag);
     }
 
+    /**
+     * Sets whether projections and selections of lists, arrays and ranges evaluate their elements
+     * concurrently.
+     * <p>The elements are split among the workers of a fork-join pool, each running its own interpreter;
+     * the results keep the order of the elements. The evaluated expressions should thus not assign shared
+     * variables.</p>
+     * @param flag true when parallel, false otherwise
+     */
+    public void setParallel(final boolean flag) {
+        flags = set(PARALLEL, flags, flag);
+    }
+
     /**
      * Sets whether the engine uses a strict block lexical scope during
      * evaluation.
@@ -349,6 +381,67 @@ public final class JexlOptions {
         this.mathScale = mscale;
     }
 
+    /**
+     * Gets the maximum number of nodes an evaluation may go through.
+     * @return the budget, 0 if unbounded
+     * @since 4.0
+     */
+    public long getNodeBudget() {
+        return nodeBudget;
+    }
+
+    /**
+     * Sets the maximum number of nodes an evaluation may go through.
+     * <p>Nodes are counted at each cancellation check, ie once per statement, loop iteration, call or
+     * navigation step; when exceeded, the evaluation throws a {@link JexlException.Budget}.</p>
+     * @param budget the budget, 0 or less if unbounded
+     * @since 4.0
+     */
+    public void setNodeBudget(final long budget) {
+        this.nodeBudget = Math.max(0L, budget);
+    }
+
+    /**
+     * Gets the maximum wall-clock time of an evaluation.
+     * @return the budget in milliseconds, 0 if unbounded
+     * @since 4.0
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Sets the maximum wall-clock time of an evaluation.
+     * <p>The clock is sampled every few cancellation checks; time spent in a single method call is only
+     * accounted for once it returns.</p>
+     * @param budget the budget in milliseconds, 0 or less if unbounded
+     * @since 4.0
+     */
+    public void setTimeBudget(final long budget) {
+        this.timeBudget = Math.max(0L, budget);
+    }
+
+    /**
+     * Gets the maximum number of bytes an evaluation may allocate.
+     * @return the budget in bytes, 0 if unbounded
+     * @since 4.0
+     */
+    public long getAllocationBudget() {
+        return allocationBudget;
+    }
+
+    /**
+     * Sets the maximum number of bytes an evaluation may allocate.
+     * <p>Allocations are sampled every few cancellation checks through the thread management bean and only
+     * account for the thread that started the evaluation; the budget is ignored when the virtual machine
+     * does not measure thread allocations.</p>
+     * @param budget the budget in bytes, 0 or less if unbounded
+     * @since 4.0
+     */
+    public void setAllocationBudget(final long budget) {
+        this.allocationBudget = Math.max(0L, budget);
+    }
+
     /**
      * Sets whether the engine considers null in navigation expression as null or as errors
      * during evaluation.
@@ -426,6 +519,9 @@ public final class JexlOptions {
         mathContext = src.mathContext;
         mathScale = src.mathScale;
         strictArithmetic = src.strictArithmetic;
+        nodeBudget = src.nodeBudget;
+        timeBudget = src.timeBudget;
+        allocationBudget = src.allocationBudget;
         flags = src.flags;
         namespaces = src.namespaces;
         imports = src.imports;
@@ -0,0 +1,942 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.jexl3.parser.ASTBlock;
+import org.apache.commons.jexl3.parser.ASTFunctionStatement;
+import org.apache.commons.jexl3.parser.ASTIdentifier;
+import org.apache.commons.jexl3.parser.ASTInitialization;
+import org.apache.commons.jexl3.parser.ASTJexlLambda;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * A probe profiling script evaluations.
+ * <p>The profiler attributes calls and time to the scripts, functions and lambdas being evaluated - the frames -
+ * and to the lines of the statements they run. Each thread builds its own call tree, a path of frames and
+ * statements, from the probe notifications; the reports merge them.</p>
+ * <p>In exact mode, the time spent in each statement and frame is measured on entry and exit. In sampling mode,
+ * statements only mark themselves as the one their thread evaluates and a daemon thread periodically counts
+ * them, avoiding the clock reads and the call tree updates; the reports give sample counts instead of times and
+ * calls, the sampled stacks being rebuilt from the frames and the syntactic nesting of statements.</p>
+ * <p>The profiles of finished threads are merged together as new threads register and reports are taken,
+ * so that short-lived threads do not accumulate.</p>
+ * <p>The profiler is attached to an engine as its probe:</p>
+ * <pre>
+ * JexlProfiler profiler = new JexlProfiler(1, TimeUnit.MILLISECONDS);
+ * JexlEngine jexl = new JexlBuilder().probe(profiler).create();
+ * ...
+ * profiler.writeCollapsedStacks(writer);
+ * profiler.close();
+ * </pre>
+ * <p>Like any probe, it disables the optimizations that bypass statement notifications: the profile reflects
+ * the interpreted evaluation. Reports are best taken once the profiled evaluations are done; taken during
+ * evaluations, they may miss the latest counts.</p>
+ * @since 4.0
+ */
+public class JexlProfiler implements JexlProbe, AutoCloseable {
+    /** The sampling period in nanoseconds, 0 when exact. */
+    private final long period;
+    /** The frame id generator. */
+    private final AtomicLong frameIds = new AtomicLong();
+    /** The statement sites by node. */
+    private final Map<JexlNode, Site> sites = new ConcurrentHashMap<>();
+    /** The minimum number of registered profiles before finished threads are drained. */
+    private static final int DRAIN = 64;
+    /** The thread profiles. */
+    private final Queue<Profile> profiles = new ConcurrentLinkedQueue<>();
+    /** The number of registered profiles since the last drain. */
+    private final AtomicInteger registered = new AtomicInteger();
+    /** The number of registered profiles triggering the next drain. */
+    private volatile int drainAt = DRAIN;
+    /** The merged profiles of finished threads. */
+    private final Profile retired = new Profile(null);
+    /** The current thread profile. */
+    private final ThreadLocal<Profile> local = ThreadLocal.withInitial(this::register);
+    /** Whether the profiler receives notifications. */
+    private volatile boolean enabled = true;
+    /** Whether the profiler is closed. */
+    private volatile boolean closed;
+    /** The sampling thread, created on the first evaluation. */
+    private Thread sampler;
+
+    /**
+     * Creates an exact profiler.
+     */
+    public JexlProfiler() {
+        period = 0L;
+    }
+
+    /**
+     * Creates a sampling profiler.
+     * @param interval the sampling interval
+     * @param unit the interval unit
+     */
+    public JexlProfiler(final long interval, final TimeUnit unit) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("sampling interval must be positive");
+        }
+        period = unit.toNanos(interval);
+    }
+
+    /**
+     * @return true if sampling, false if exact
+     */
+    public boolean isSampling() {
+        return period > 0;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets whether this profiler receives notifications.
+     * @param flag true to profile, false to pause
+     */
+    public void setEnabled(final boolean flag) {
+        enabled = flag;
+    }
+
+    /**
+     * Stops sampling.
+     * <p>The profile remains available.</p>
+     */
+    @Override
+    public void close() {
+        final Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = sampler;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Creates and registers the current thread profile.
+     * @return the profile
+     */
+    private Profile register() {
+        final Profile profile = new Profile(Thread.currentThread());
+        profiles.add(profile);
+        if (registered.incrementAndGet() >= drainAt) {
+            drain();
+        }
+        if (period > 0L) {
+            startSampler();
+        }
+        return profile;
+    }
+
+    /**
+     * Merges the profiles of finished threads in the retired one.
+     */
+    private void drain() {
+        synchronized (retired) {
+            int live = 0;
+            final Iterator<Profile> iterator = profiles.iterator();
+            while (iterator.hasNext()) {
+                final Profile profile = iterator.next();
+                if (profile.isAlive()) {
+                    live += 1;
+                } else {
+                    iterator.remove();
+                    synchronized (profile) {
+                        merge(profile.root, retired.root);
+                        profile.drained = true;
+                    }
+                }
+            }
+            registered.set(live);
+            drainAt = Math.max(DRAIN, 2 * live);
+        }
+    }
+
+    /**
+     * Adds the calls of a tree to another one.
+     * @param from the added tree
+     * @param into the tree to add to
+     */
+    private static void merge(final Call from, final Call into) {
+        for (final Call call : from.children()) {
+            final Call target = into.child(call.site);
+            target.calls += call.calls;
+            target.total += call.total;
+            target.self += call.self;
+            target.samples += call.samples;
+            merge(call, target);
+        }
+    }
+
+    /**
+     * Drains the finished threads and gets the profiles to report.
+     * @return the live profiles and the retired one
+     */
+    private List<Profile> profiles() {
+        drain();
+        final List<Profile> list = new ArrayList<>(profiles);
+        list.add(retired);
+        return list;
+    }
+
+    /**
+     * @return the number of thread profiles not merged yet
+     */
+    int getProfileCount() {
+        return profiles.size();
+    }
+
+    /**
+     * Starts the sampling thread if not already started.
+     */
+    private synchronized void startSampler() {
+        if (sampler == null && !closed) {
+            sampler = new Thread(this::sample, "jexl-profiler");
+            sampler.setDaemon(true);
+            sampler.start();
+        }
+    }
+
+    /**
+     * The sampling loop, counting the stack each thread evaluates.
+     * <p>In sampling mode, the call trees are only written by this thread.</p>
+     */
+    private void sample() {
+        final List<Site> path = new ArrayList<>();
+        while (!closed) {
+            LockSupport.parkNanos(period);
+            for (final Profile profile : profiles) {
+                JexlNode node = profile.statement;
+                final Link top = profile.frames;
+                if (top == null) {
+                    continue;
+                }
+                // the path from the top frame statement to the root frame
+                path.clear();
+                for (Link link = top; link != null; link = link.parent) {
+                    final Site site = node != null ? site(node) : null;
+                    if (site != null) {
+                        final Site[] lines = lines(site);
+                        for (int l = lines.length - 1; l >= 0; --l) {
+                            path.add(lines[l]);
+                        }
+                    }
+                    path.add(site != null && site.owner != null ? site.owner : frameSite(link.info, link.parent != null));
+                    node = link.caller;
+                }
+                synchronized (profile) {
+                    if (!profile.drained) {
+                        Call call = profile.root;
+                        for (int p = path.size() - 1; p >= 0; --p) {
+                            call = call.child(path.get(p));
+                        }
+                        call.samples += 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the statement lines enclosing a statement in its frame, as they would be nested in exact mode.
+     * <p>The enclosing statements are those whose parent is a block or the script.</p>
+     * @param site the statement site
+     * @return the sites from the outermost statement down to the statement, one per line
+     */
+    private Site[] lines(final Site site) {
+        Site[] lines = site.lines;
+        if (lines == null) {
+            final List<Site> list = new ArrayList<>();
+            for (JexlNode node = site.node; node != null && !(node instanceof ASTJexlScript); node = node.jjtGetParent()) {
+                final JexlNode parent = node.jjtGetParent();
+                if (node == site.node
+                    || (!isTransparent(node) && (parent instanceof ASTBlock || parent instanceof ASTJexlScript))) {
+                    final Site line = node == site.node ? site : site(node);
+                    if (list.isEmpty() || !list.get(0).equals(line)) {
+                        list.add(0, line);
+                    }
+                }
+            }
+            lines = list.toArray(new Site[0]);
+            site.lines = lines;
+        }
+        return lines;
+    }
+
+    @Override
+    public long loadSource(final JexlInfo script, final String source) {
+        return 0L;
+    }
+
+    @Override
+    public long startScript(final JexlInfo script) {
+        final long id = frameIds.incrementAndGet();
+        if (period > 0L) {
+            local.get().startFrame(id, script);
+        } else {
+            local.get().push(null, id, script);
+        }
+        return id;
+    }
+
+    @Override
+    public boolean endScript(final Frame frame, final Object result, final Throwable any) {
+        final long id = frame != null ? frame.getFrameId() : -1L;
+        if (period > 0L) {
+            local.get().endFrame(id);
+        } else {
+            local.get().pop(null, id);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startStatement(final JexlInfo source, final JexlNode node, final Frame frame) {
+        if (!isTransparent(node)) {
+            if (period > 0L) {
+                local.get().statement = node;
+            } else {
+                local.get().push(site(node), 0L, null);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endStatement(final JexlInfo source, final JexlNode node, final Frame frame,
+                                final Object result, final Throwable any) {
+        // when sampling, the ended statement is attributed the time until the next one starts
+        if (period == 0L && !isTransparent(node)) {
+            local.get().pop(node, 0L);
+        }
+        return true;
+    }
+
+    /**
+     * Whether a statement is only a container, its statements being attributed to the enclosing one.
+     * @param node the statement
+     * @return true for scripts and blocks
+     */
+    private static boolean isTransparent(final JexlNode node) {
+        return node instanceof ASTJexlScript || node instanceof ASTBlock;
+    }
+
+    /**
+     * Gets the site of a statement.
+     * @param node the statement
+     * @return the site
+     */
+    private Site site(final JexlNode node) {
+        final Site site = sites.get(node);
+        return site != null ? site : sites.computeIfAbsent(node, JexlProfiler::statementSite);
+    }
+
+    /**
+     * Gets the name of a source.
+     * @param info the source info
+     * @return the name
+     */
+    private static String source(final JexlInfo info) {
+        return info != null && info.getName() != null ? info.getName() : "?";
+    }
+
+    /**
+     * Creates the site of a statement.
+     * @param node the statement
+     * @return the site, line-wide
+     */
+    private static Site statementSite(final JexlNode node) {
+        final JexlInfo info = node.jexlInfo();
+        final String source = source(info);
+        final int line = info != null ? info.getLine() : 0;
+        JexlNode script = node.jjtGetParent();
+        while (script != null && !(script instanceof ASTJexlScript)) {
+            script = script.jjtGetParent();
+        }
+        final Site owner = script != null ? frameSite((ASTJexlScript) script) : null;
+        return new Site(source + ":" + line, source, line, false, node, owner);
+    }
+
+    /**
+     * Creates the site of a script or lambda.
+     * @param script the script
+     * @return the site
+     */
+    private static Site frameSite(final ASTJexlScript script) {
+        final JexlInfo info = script.jexlInfo();
+        final String source = source(info);
+        final int line = info != null ? info.getLine() : 0;
+        if (!(script instanceof ASTJexlLambda)) {
+            return new Site(source, source, line, true, script, null);
+        }
+        // functions and lambdas assigned to a variable are named after it
+        String name = "lambda";
+        final JexlNode parent = script.jjtGetParent();
+        if ((parent instanceof ASTFunctionStatement || parent instanceof ASTInitialization)
+            && parent.jjtGetChild(0) instanceof ASTIdentifier) {
+            name = ((ASTIdentifier) parent.jjtGetChild(0)).getName();
+        }
+        final int column = info != null ? info.getColumn() : 0;
+        return new Site(name + "@" + source + ":" + line + ":" + column, source, line, true, script, null);
+    }
+
+    /**
+     * Creates the site of a frame that ran no statement.
+     * @param info the frame script info
+     * @param nested whether the frame is called from another one, thus a lambda
+     * @return the site
+     */
+    private static Site frameSite(final JexlInfo info, final boolean nested) {
+        final String source = source(info);
+        final int line = info != null ? info.getLine() : 0;
+        if (!nested) {
+            return new Site(source, source, line, true, null, null);
+        }
+        final int column = info != null ? info.getColumn() : 0;
+        return new Site("lambda@" + source + ":" + line + ":" + column, source, line, true, null, null);
+    }
+
+    /**
+     * Gets the hot spots, sorted by decreasing self time then samples.
+     * <p>Statements are reported by line, the frames by script, function or lambda; the total time of
+     * recursive calls is only counted once.</p>
+     * @return the hot spots
+     */
+    public List<Hotspot> getHotspots() {
+        final Map<Site, Hotspot> spots = new LinkedHashMap<>();
+        final Map<Site, int[]> active = new HashMap<>();
+        for (final Profile profile : profiles()) {
+            synchronized (profile) {
+                collect(profile.root, spots, active);
+            }
+        }
+        final List<Hotspot> list = new ArrayList<>(spots.values());
+        list.sort(Comparator.comparingLong(Hotspot::getSelfTime)
+            .thenComparingLong(Hotspot::getSamples)
+            .reversed());
+        return list;
+    }
+
+    /**
+     * Aggregates the calls of a tree by site.
+     * @param parent the tree root
+     * @param spots the hot spots
+     * @param active the sites on the current path, to count recursive calls total time once
+     */
+    private static void collect(final Call parent, final Map<Site, Hotspot> spots, final Map<Site, int[]> active) {
+        for (final Call call : parent.children()) {
+            final Hotspot spot = spots.computeIfAbsent(call.site, Hotspot::new);
+            final int[] depth = active.computeIfAbsent(call.site, s -> new int[1]);
+            spot.calls += call.calls;
+            spot.self += call.self;
+            spot.samples += call.samples;
+            if (depth[0] == 0) {
+                spot.total += call.total;
+            }
+            depth[0] += 1;
+            collect(call, spots, active);
+            depth[0] -= 1;
+        }
+    }
+
+    /**
+     * Writes the hot spots report.
+     * <p>Each line gives the calls, the total and self times in milliseconds, the samples and the site.</p>
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeHotspots(final Appendable out) throws IOException {
+        out.append(String.format("%12s %12s %12s %10s  %s%n", "calls", "total(ms)", "self(ms)", "samples", "site"));
+        for (final Hotspot spot : getHotspots()) {
+            out.append(String.format("%12d %12.3f %12.3f %10d  %s%n",
+                spot.calls, spot.total / 1e6, spot.self / 1e6, spot.samples, spot.site.label));
+        }
+    }
+
+    /**
+     * Gets the collapsed stacks, the flame graph input.
+     * <p>Each stack is the path of frames and statement lines separated by semicolons; its value is the self
+     * time in microseconds when exact, the number of samples when sampling.</p>
+     * @return the values by stack, sorted by stack
+     */
+    public Map<String, Long> getCollapsedStacks() {
+        final Map<String, Long> stacks = new TreeMap<>();
+        for (final Profile profile : profiles()) {
+            synchronized (profile) {
+                collapse(profile.root, new StringBuilder(), stacks);
+            }
+        }
+        return stacks;
+    }
+
+    /**
+     * Collapses the paths of a tree.
+     * @param parent the tree root
+     * @param path the path to the root
+     * @param stacks the values by stack
+     */
+    private void collapse(final Call parent, final StringBuilder path, final Map<String, Long> stacks) {
+        for (final Call call : parent.children()) {
+            final int length = path.length();
+            if (length > 0) {
+                path.append(';');
+            }
+            path.append(call.site.label);
+            final long value = period > 0L ? call.samples : TimeUnit.NANOSECONDS.toMicros(call.self);
+            if (value > 0) {
+                stacks.merge(path.toString(), value, Long::sum);
+            }
+            collapse(call, path, stacks);
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Writes the collapsed stacks, one per line followed by its value, as flame graph tools expect.
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public void writeCollapsedStacks(final Appendable out) throws IOException {
+        for (final Map.Entry<String, Long> stack : getCollapsedStacks().entrySet()) {
+            out.append(stack.getKey()).append(' ').append(Long.toString(stack.getValue())).append('\n');
+        }
+    }
+
+    /**
+     * A profiled location: a script, function or lambda or the line of a statement.
+     */
+    private static final class Site {
+        /** The label, frames and lines sharing one being merged. */
+        private final String label;
+        /** The source name. */
+        private final String source;
+        /** The line. */
+        private final int line;
+        /** Whether a frame. */
+        private final boolean frame;
+        /** The script or statement node, null if unknown. */
+        private final JexlNode node;
+        /** The site of the frame running a statement. */
+        private final Site owner;
+        /** The enclosing statement lines, computed by the sampler. */
+        private Site[] lines;
+
+        Site(final String label, final String source, final int line, final boolean frame, final JexlNode node,
+             final Site owner) {
+            this.label = label;
+            this.source = source;
+            this.line = line;
+            this.frame = frame;
+            this.node = node;
+            this.owner = owner;
+        }
+
+        @Override
+        public int hashCode() {
+            return label.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Site)) {
+                return false;
+            }
+            final Site other = (Site) obj;
+            return frame == other.frame && label.equals(other.label);
+        }
+    }
+
+    /**
+     * The hot spot of a site.
+     */
+    public static final class Hotspot {
+        /** The site. */
+        private final Site site;
+        /** The number of calls. */
+        private long calls;
+        /** The total time. */
+        private long total;
+        /** The self time. */
+        private long self;
+        /** The self samples. */
+        private long samples;
+
+        Hotspot(final Site site) {
+            this.site = site;
+        }
+
+        /**
+         * @return the site label, source:line for statements, the source or name@source:line:column for frames
+         */
+        public String getSite() {
+            return site.label;
+        }
+
+        /**
+         * @return the source name
+         */
+        public String getSource() {
+            return site.source;
+        }
+
+        /**
+         * @return the line
+         */
+        public int getLine() {
+            return site.line;
+        }
+
+        /**
+         * @return true if a script, function or lambda, false if a statement line
+         */
+        public boolean isFrame() {
+            return site.frame;
+        }
+
+        /**
+         * @return the number of calls, 0 when sampling
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * @return the total time in nanoseconds, 0 when sampling
+         */
+        public long getTotalTime() {
+            return total;
+        }
+
+        /**
+         * @return the self time in nanoseconds, 0 when sampling
+         */
+        public long getSelfTime() {
+            return self;
+        }
+
+        /**
+         * @return the number of samples, 0 when exact
+         */
+        public long getSamples() {
+            return samples;
+        }
+
+        @Override
+        public String toString() {
+            return site.label + " calls=" + calls + " total=" + total + " self=" + self + " samples=" + samples;
+        }
+    }
+
+    /**
+     * A node of a call tree, a site reached through a path.
+     */
+    private static final class Call {
+        /** The site. */
+        private final Site site;
+        /** The children by site, null if none. */
+        private Map<Site, Call> children;
+        /** The last child found, the likeliest next one. */
+        private Call last;
+        /** The number of calls. */
+        private long calls;
+        /** The total time. */
+        private long total;
+        /** The self time. */
+        private long self;
+        /** The samples, only written by the sampling thread. */
+        private long samples;
+
+        Call(final Site site) {
+            this.site = site;
+        }
+
+        /**
+         * @return the children
+         */
+        Iterable<Call> children() {
+            return children != null ? children.values() : Arrays.<Call>asList();
+        }
+
+        /**
+         * Gets or creates a child call without counting it; the caller holds the profile monitor.
+         * @param site the child site
+         * @return the child
+         */
+        Call child(final Site site) {
+            if (children == null) {
+                children = new LinkedHashMap<>();
+            }
+            return children.computeIfAbsent(site, Call::new);
+        }
+    }
+
+    /**
+     * A frame being evaluated when sampling.
+     */
+    private static final class Link {
+        /** The calling frame, null for the outermost. */
+        private final Link parent;
+        /** The frame id. */
+        private final long id;
+        /** The frame script info. */
+        private final JexlInfo info;
+        /** The statement of the calling frame. */
+        private final JexlNode caller;
+
+        Link(final Link parent, final long id, final JexlInfo info, final JexlNode caller) {
+            this.parent = parent;
+            this.id = id;
+            this.info = info;
+            this.caller = caller;
+        }
+    }
+
+    /**
+     * A stack entry, a frame or a statement being evaluated.
+     */
+    private static final class Entry {
+        /** The statement site, null for a frame. */
+        private Site site;
+        /** The statement node. */
+        private JexlNode node;
+        /** The frame id. */
+        private long frameId;
+        /** The frame script info. */
+        private JexlInfo info;
+        /** The call, null for a frame until resolved. */
+        private Call call;
+        /** The start time. */
+        private long start;
+        /** The total time of the nested entries. */
+        private long nested;
+        /** Whether a statement nested in one of the same line, sharing its call. */
+        private boolean merged;
+    }
+
+    /**
+     * The profile of a thread.
+     * <p>When exact, only the thread updates it; when sampling, the thread only updates its frames and statement
+     * and the sampler updates the call tree. The call tree structure is modified and read under the profile
+     * monitor.</p>
+     */
+    private static final class Profile {
+        /** The thread, null for the retired profile. */
+        private final WeakReference<Thread> thread;
+        /** The call tree root. */
+        private final Call root = new Call(null);
+        /** The stack. */
+        private Entry[] stack = new Entry[16];
+        /** The stack depth. */
+        private int depth;
+        /** The frames being evaluated, when sampling. */
+        private volatile Link frames;
+        /** The statement being evaluated, when sampling. */
+        private volatile JexlNode statement;
+        /** Whether merged in the retired profile, guarded by the profile monitor. */
+        private boolean drained;
+
+        Profile(final Thread owner) {
+            thread = owner != null ? new WeakReference<>(owner) : null;
+        }
+
+        /**
+         * @return true if the thread is still running
+         */
+        boolean isAlive() {
+            final Thread owner = thread != null ? thread.get() : null;
+            return owner != null && owner.isAlive();
+        }
+
+        /**
+         * Starts a frame when sampling.
+         * @param id the frame id
+         * @param info the frame script info
+         */
+        void startFrame(final long id, final JexlInfo info) {
+            frames = new Link(frames, id, info, statement);
+            statement = null;
+        }
+
+        /**
+         * Ends a frame and the frames above it when sampling.
+         * @param id the frame id, -1 for the top one
+         */
+        void endFrame(final long id) {
+            Link link = frames;
+            while (link != null && id >= 0 && link.id != id) {
+                link = link.parent;
+            }
+            if (link != null) {
+                statement = link.caller;
+                frames = link.parent;
+            }
+        }
+
+        /**
+         * Gets or creates a child call, counting it.
+         * @param parent the parent
+         * @param site the child site
+         * @return the child
+         */
+        private Call enter(final Call parent, final Site site) {
+            Call call = parent.last;
+            if (call == null || !call.site.equals(site)) {
+                call = parent.children != null ? parent.children.get(site) : null;
+                if (call == null) {
+                    call = new Call(site);
+                    synchronized (this) {
+                        if (parent.children == null) {
+                            parent.children = new LinkedHashMap<>();
+                        }
+                        parent.children.put(site, call);
+                    }
+                }
+                parent.last = call;
+            }
+            call.calls += 1;
+            return call;
+        }
+
+        /**
+         * Gets the call of an entry, resolving frames that did not run a statement yet.
+         * @param index the entry index, -1 for the root
+         * @param owner the frame site if known
+         * @return the call
+         */
+        private Call call(final int index, final Site owner) {
+            if (index < 0) {
+                return root;
+            }
+            final Entry entry = stack[index];
+            if (entry.call == null) {
+                final Site site = owner != null ? owner : frameSite(entry.info, index > 0);
+                entry.call = enter(call(index - 1, null), site);
+            }
+            return entry.call;
+        }
+
+        /**
+         * Pushes a frame or a statement.
+         * @param site the statement site, null for a frame
+         * @param id the frame id
+         * @param info the frame script info
+         */
+        void push(final Site site, final long id, final JexlInfo info) {
+            final Entry top = depth > 0 ? stack[depth - 1] : null;
+            final boolean merged = site != null && top != null && site.equals(top.site);
+            final Call call;
+            if (site == null) {
+                call = null;
+            } else if (merged) {
+                // a statement on the line of its enclosing one is counted with it
+                call = top.call;
+                call.calls += 1;
+            } else {
+                call = enter(call(depth - 1, top != null && top.site == null ? site.owner : null), site);
+            }
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+            Entry entry = stack[depth];
+            if (entry == null) {
+                entry = new Entry();
+                stack[depth] = entry;
+            }
+            depth += 1;
+            entry.site = site;
+            entry.node = site != null ? site.node : null;
+            entry.frameId = id;
+            entry.info = info;
+            entry.call = call;
+            entry.merged = merged;
+            entry.nested = 0L;
+            entry.start = System.nanoTime();
+        }
+
+        /**
+         * Pops a frame or a statement and the entries above it, which did not notify their end.
+         * @param node the statement node, null for a frame
+         * @param id the frame id, -1 for any frame
+         */
+        void pop(final JexlNode node, final long id) {
+            int index = depth - 1;
+            while (index >= 0 && !matches(stack[index], node, id)) {
+                index -= 1;
+            }
+            if (index < 0) {
+                return;
+            }
+            final long now = System.nanoTime();
+            for (int e = depth - 1; e >= index; --e) {
+                final Entry entry = stack[e];
+                final Call call = call(e, null);
+                final long elapsed = now - entry.start;
+                if (!entry.merged) {
+                    call.total += elapsed;
+                }
+                call.self += elapsed - entry.nested;
+                if (e > 0) {
+                    stack[e - 1].nested += elapsed;
+                }
+                entry.site = null;
+                entry.node = null;
+                entry.info = null;
+                entry.call = null;
+            }
+            depth = index;
+        }
+
+        /**
+         * Whether an entry is the one ending.
+         * @param entry the entry
+         * @param node the statement node, null for a frame
+         * @param id the frame id, -1 for any frame
+         * @return true if it matches
+         */
+        private static boolean matches(final Entry entry, final JexlNode node, final long id) {
+            if (node != null) {
+                return entry.node == node;
+            }
+            return entry.site == null && (id < 0 || entry.frameId == id);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A JEXL Script.
@@ -158,6 +159,38 @@ public interface JexlScript {
      */
     Callable<Object> callable(JexlContext context, Object... args);
 
+    /**
+     * Executes the script asynchronously.
+     *
+     * @param context the context
+     * @return the future result
+     * @see #executeAsync(JexlContext, Object...)
+     * @since 4.0
+     */
+    default CompletableFuture<Object> executeAsync(final JexlContext context) {
+        return executeAsync(context, (Object[]) null);
+    }
+
+    /**
+     * Executes the script asynchronously.
+     *
+     * <p>The script runs on the engine asynchronous executor, a virtual thread per execution by default
+     * when the runtime provides them; awaiting a future then parks the virtual thread instead of holding
+     * a platform thread.</p>
+     * <p>Cancelling the returned future cancels the execution, interrupting it if requested.</p>
+     * <p>This default implementation runs {@link #execute(JexlContext, Object...)} on the common fork-join pool
+     * and does not cancel it.</p>
+     *
+     * @param context the context
+     * @param args the script arguments
+     * @return the future result
+     * @see JexlBuilder#asyncExecutor(java.util.concurrent.Executor)
+     * @since 4.0
+     */
+    default CompletableFuture<Object> executeAsync(final JexlContext context, final Object... args) {
+        return CompletableFuture.supplyAsync(() -> execute(context, args));
+    }
+
     /**
      * Curries this script, returning a script with bound arguments.
      *
@@ -429,4 +429,14 @@ public abstract class JxltEngine {
      * Clears the cache.
      */
     public abstract void clearCache();
+
+    /**
+     * Gets the template expression cache usage statistics.
+     *
+     * @return the statistics or null if the cache does not record statistics
+     * @since 4.0
+     */
+    public JexlCache.Statistics getCacheStatistics() {
+        return null;
+    }
 }
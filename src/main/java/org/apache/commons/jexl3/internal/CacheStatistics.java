@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.jexl3.JexlCache;
+
+/**
+ * Records cache usage counters.
+ * <p>Caches record hits, misses, puts and evictions; engines record bypasses, scope collisions and
+ * parsing time. Both expose their counters as read-only {@link JexlCache.Statistics} snapshots.</p>
+ */
+final class CacheStatistics {
+    /** The number of successful lookups. */
+    private final LongAdder hits = new LongAdder();
+    /** The number of failed lookups. */
+    private final LongAdder misses = new LongAdder();
+    /** The number of entries put in cache. */
+    private final LongAdder puts = new LongAdder();
+    /** The number of entries evicted. */
+    private final LongAdder evictions = new LongAdder();
+    /** The number of sources that did not use the cache because of their length. */
+    private final LongAdder bypasses = new LongAdder();
+    /** The number of misses on a source cached using another scope. */
+    private final LongAdder scopeMisses = new LongAdder();
+    /** The cumulative time spent parsing on misses, in nanoseconds. */
+    private final LongAdder parseTime = new LongAdder();
+
+    /** Records a successful lookup. */
+    void recordHit() {
+        hits.increment();
+    }
+
+    /** Records a failed lookup. */
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /** Records an entry put in cache. */
+    void recordPut() {
+        puts.increment();
+    }
+
+    /** Records an entry eviction. */
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * Records entries evicted at once.
+     * @param count the number of evicted entries
+     */
+    void recordEvictions(final int count) {
+        evictions.add(count);
+    }
+
+    /** Records a source not looked up in cache because of its length. */
+    void recordBypass() {
+        bypasses.increment();
+    }
+
+    /** Records a miss on a source that was cached using another scope, a scope collision. */
+    void recordScopeMiss() {
+        scopeMisses.increment();
+    }
+
+    /**
+     * Records the time spent parsing after a miss.
+     * @param nanos the duration in nanoseconds
+     */
+    void recordParseTime(final long nanos) {
+        parseTime.add(nanos);
+    }
+
+    /**
+     * Creates a snapshot of the counters.
+     * @return the statistics
+     */
+    JexlCache.Statistics snapshot() {
+        return new JexlCache.Statistics(hits.sum(), misses.sum(), puts.sum(), evictions.sum(),
+            bypasses.sum(), scopeMisses.sum(), parseTime.sum());
+    }
+
+    /**
+     * Creates a snapshot of the counters recorded by a cache completed by the ones recorded by its engine.
+     * @param cached the cache statistics
+     * @return the statistics, null if the cache does not record any
+     */
+    JexlCache.Statistics snapshot(final JexlCache.Statistics cached) {
+        return cached == null ? null : new JexlCache.Statistics(
+            cached.getHits(), cached.getMisses(), cached.getPuts(), cached.getEvictions(),
+            bypasses.sum(), scopeMisses.sum(), parseTime.sum());
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.parser.ASTIdentifier;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * Compiles scripts to trees of closures.
+ * <p>Each node of the syntax tree becomes a small executable object whose operands, symbol and operator
+ * are resolved once; evaluating it avoids the visitor double dispatch and the per-call checks of the
+ * interpreter. The operations themselves are the ones of the interpreter, so arithmetic, overloads and
+ * options behave the same; constructs that are not compiled are delegated to the interpreter. Which
+ * constructs are compiled is decided by {@link Lowering}, as for bytecode.</p>
+ * <p>Unlike bytecode compilation, this does not generate classes and works in any runtime configuration.</p>
+ */
+final class ClosureCompiler {
+    /**
+     * A compiled node.
+     */
+    @FunctionalInterface
+    interface Node {
+        /**
+         * Evaluates this node.
+         * @param interpreter the interpreter
+         * @return the node value
+         */
+        Object eval(Interpreter interpreter);
+    }
+
+    /**
+     * A binary operation.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        /**
+         * Applies the operation.
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return the result
+         */
+        Object apply(Interpreter interpreter, JexlNode node, Object left, Object right);
+    }
+
+    /**
+     * The compiled form of a script, a sequence of statements.
+     */
+    static final class Tree extends Compiled {
+        /** The statements. */
+        private final Node[] statements;
+
+        /**
+         * Creates a tree.
+         * @param theStatements the statements
+         */
+        Tree(final Node[] theStatements) {
+            this.statements = theStatements;
+        }
+
+        @Override
+        public Object execute(final Interpreter interpreter) {
+            Object result = null;
+            for (final Node statement : statements) {
+                result = statement.eval(interpreter);
+            }
+            return result;
+        }
+    }
+
+    /** The number of nodes compiled rather than delegated. */
+    private int compiled = 0;
+
+    /**
+     * Use the compile method.
+     */
+    private ClosureCompiler() {
+    }
+
+    /**
+     * Compiles a script.
+     * @param script the script
+     * @return the compiled script or null if nothing in the script could be compiled
+     */
+    static Compiled compile(final ASTJexlScript script) {
+        final ClosureCompiler compiler = new ClosureCompiler();
+        final Node[] statements = new Node[script.jjtGetNumChildren()];
+        for (int c = 0; c < statements.length; ++c) {
+            statements[c] = compiler.compile(script.jjtGetChild(c));
+        }
+        return compiler.compiled > 0 ? new Tree(statements) : null;
+    }
+
+    /**
+     * Compiles a node.
+     * @param node the node
+     * @return the executable node
+     */
+    private Node compile(final JexlNode node) {
+        final Lowering.Kind kind = Lowering.kindOf(node);
+        if (kind == null) {
+            // statements completing as results end the compiled sequence through their exception
+            return interpreter -> Completion.raise(interpreter, node.jjtAccept(interpreter, null));
+        }
+        final Node compiledNode;
+        switch (kind) {
+            case CONSTANT:
+                compiledNode = constant(Lowering.constant(node));
+                break;
+            case VARIABLE:
+                compiledNode = variable((ASTIdentifier) node);
+                break;
+            case STATEMENT:
+                final Node expression = compile(node.jjtGetChild(0));
+                compiledNode = interpreter -> {
+                    interpreter.cancelCheck(node);
+                    return expression.eval(interpreter);
+                };
+                break;
+            case ENCLOSED:
+                final Node enclosed = compile(node.jjtGetChild(0));
+                compiledNode = interpreter -> {
+                    try {
+                        return enclosed.eval(interpreter);
+                    } catch (final JexlException.Yield stmtYield) {
+                        return stmtYield.getValue();
+                    }
+                };
+                break;
+            case ADD:
+                compiledNode = binary(node, Interpreter::add);
+                break;
+            case SUBTRACT:
+                compiledNode = binary(node, Interpreter::subtract);
+                break;
+            case MULTIPLY:
+                compiledNode = binary(node, Interpreter::multiply);
+                break;
+            case DIVIDE:
+                compiledNode = binary(node, Interpreter::divide);
+                break;
+            case MOD:
+                compiledNode = binary(node, Interpreter::mod);
+                break;
+            case COMPARE:
+                final JexlOperator operator = Lowering.comparison(node);
+                compiledNode = binary(node, (i, n, l, r) -> i.compare(n, operator, l, r));
+                break;
+            case NOT:
+                final Node operand = compile(node.jjtGetChild(0));
+                compiledNode = interpreter -> interpreter.not(node, operand.eval(interpreter));
+                break;
+            case AND:
+                compiledNode = logical(node, true);
+                break;
+            case OR:
+                compiledNode = logical(node, false);
+                break;
+            case TERNARY:
+                compiledNode = ternary(node);
+                break;
+            default:
+                compiledNode = elvis(node);
+                break;
+        }
+        compiled += 1;
+        return compiledNode;
+    }
+
+    private static Node constant(final Object value) {
+        return interpreter -> value;
+    }
+
+    /**
+     * Compiles a variable access.
+     * <p>Non-shaded local variables are read directly from the frame when they hold a value, anything else
+     * goes through the interpreter variable resolution.</p>
+     * @param identifier the identifier
+     * @return the executable node
+     */
+    private static Node variable(final ASTIdentifier identifier) {
+        final int symbol = identifier.getSymbol();
+        if (symbol >= 0 && !identifier.isShaded()) {
+            return interpreter -> {
+                interpreter.cancelCheck(identifier);
+                final Frame frame = interpreter.frame;
+                if (frame != null && frame.has(symbol)) {
+                    final Object value = frame.get(symbol);
+                    if (value != null && value != Scope.UNDEFINED) {
+                        return value;
+                    }
+                }
+                return interpreter.getVariable(frame, interpreter.block, identifier);
+            };
+        }
+        return interpreter -> {
+            interpreter.cancelCheck(identifier);
+            return interpreter.getVariable(interpreter.frame, interpreter.block, identifier);
+        };
+    }
+
+    private Node binary(final JexlNode node, final Operation operation) {
+        final Node left = compile(node.jjtGetChild(0));
+        final Node right = compile(node.jjtGetChild(1));
+        return interpreter -> operation.apply(interpreter, node, left.eval(interpreter), right.eval(interpreter));
+    }
+
+    /**
+     * Compiles a short-circuit and/or.
+     * @param node the operator node
+     * @param and true for and, false for or
+     * @return the executable node
+     */
+    private Node logical(final JexlNode node, final boolean and) {
+        final JexlNode leftNode = node.jjtGetChild(0);
+        final JexlNode rightNode = node.jjtGetChild(1);
+        final Node left = compile(leftNode);
+        final Node right = compile(rightNode);
+        return interpreter -> {
+            // and: false shortcuts, or: true shortcuts
+            if (test(interpreter, leftNode, left.eval(interpreter)) != and) {
+                return !and;
+            }
+            return test(interpreter, rightNode, right.eval(interpreter));
+        };
+    }
+
+    private static boolean test(final Interpreter interpreter, final JexlNode node, final Object value) {
+        try {
+            return interpreter.arithmetic.toBoolean(value);
+        } catch (final ArithmeticException xrt) {
+            throw interpreter.createException(node, "boolean coercion error", xrt);
+        }
+    }
+
+    /**
+     * Evaluates the condition of a conditional operator, a null operand error is a null condition.
+     * @param interpreter the interpreter
+     * @param condition the condition
+     * @return the condition value
+     */
+    private static Object condition(final Interpreter interpreter, final Node condition) {
+        try {
+            return condition.eval(interpreter);
+        } catch (final JexlException xany) {
+            if (!(xany.getCause() instanceof JexlArithmetic.NullOperand)) {
+                throw xany;
+            }
+            return null;
+        }
+    }
+
+    private Node ternary(final JexlNode node) {
+        final Node condition = compile(node.jjtGetChild(0));
+        final Node then = compile(node.jjtGetChild(1));
+        final Node otherwise = node.jjtGetNumChildren() == 3 ? compile(node.jjtGetChild(2)) : constant(null);
+        return interpreter -> {
+            final Object value = condition(interpreter, condition);
+            return value != null && interpreter.arithmetic.toBoolean(value)
+                ? then.eval(interpreter)
+                : otherwise.eval(interpreter);
+        };
+    }
+
+    private Node elvis(final JexlNode node) {
+        final Node condition = compile(node.jjtGetChild(0));
+        final Node otherwise = compile(node.jjtGetChild(1));
+        return interpreter -> {
+            final Object value = condition(interpreter, condition);
+            return value != null && interpreter.arithmetic.toBoolean(value)
+                ? value
+                : otherwise.eval(interpreter);
+        };
+    }
+}
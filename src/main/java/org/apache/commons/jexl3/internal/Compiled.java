@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+/**
+ * The compiled form of a script body.
+ * <p>A compiled script replaces the evaluation of the statements of a top-level script; the interpreter
+ * still sets up the frame, lexical block, options and return type checks around it and remains
+ * responsible for evaluating whatever could not be compiled.</p>
+ * @since 4.0
+ */
+public abstract class Compiled {
+    /**
+     * Default constructor.
+     */
+    protected Compiled() {
+        // nothing to initialize
+    }
+
+    /**
+     * Executes the script body.
+     * @param interpreter the interpreter providing the evaluation context
+     * @return the value of the last statement
+     */
+    public abstract Object execute(Interpreter interpreter);
+}
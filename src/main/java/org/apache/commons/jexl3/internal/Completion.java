@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlInfo;
+import org.apache.commons.jexl3.parser.ASTBlock;
+import org.apache.commons.jexl3.parser.ASTBreak;
+import org.apache.commons.jexl3.parser.ASTContinue;
+import org.apache.commons.jexl3.parser.ASTDoWhileStatement;
+import org.apache.commons.jexl3.parser.ASTForStatement;
+import org.apache.commons.jexl3.parser.ASTForeachStatement;
+import org.apache.commons.jexl3.parser.ASTIfStatement;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.ASTLabelledStatement;
+import org.apache.commons.jexl3.parser.ASTRemove;
+import org.apache.commons.jexl3.parser.ASTWhileStatement;
+import org.apache.commons.jexl3.parser.ASTYieldStatement;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * The abrupt completion of a break, continue, remove, return or yield statement.
+ * <p>Instead of throwing the corresponding {@link JexlException}, the interpreter returns a completion
+ * from these statements when every enclosing statement up to the target is a block, an if or a loop;
+ * those propagate the completion as their result until the target loop, block or script consumes it.
+ * A completion that would cross any other construct is thrown as the exception, as is a completion
+ * reaching code that does not expect one (compiled scripts).</p>
+ */
+final class Completion {
+    /** Break kind. */
+    private static final int BREAK = 0;
+    /** Continue kind. */
+    private static final int CONTINUE = 1;
+    /** Remove kind. */
+    private static final int REMOVE = 2;
+    /** Return (or yield) kind. */
+    private static final int RETURN = 3;
+    /** The completing statement. */
+    private final JexlNode statement;
+    /** The kind. */
+    private final int kind;
+    /** The target label, null if none. */
+    private final String label;
+    /** The returned value. */
+    private final Object value;
+
+    /**
+     * Creates a completion.
+     * @param stmt the statement
+     * @param val the returned value if any
+     */
+    Completion(final JexlNode stmt, final Object val) {
+        statement = stmt;
+        kind = kindOf(stmt);
+        label = stmt instanceof ASTLabelledStatement ? ((ASTLabelledStatement) stmt).getLabel() : null;
+        value = val;
+    }
+
+    /**
+     * Gets the kind of completion of a statement.
+     * @param stmt the statement
+     * @return the kind
+     */
+    private static int kindOf(final JexlNode stmt) {
+        if (stmt instanceof ASTBreak) {
+            return BREAK;
+        }
+        if (stmt instanceof ASTContinue) {
+            return CONTINUE;
+        }
+        if (stmt instanceof ASTRemove) {
+            return REMOVE;
+        }
+        return RETURN;
+    }
+
+    /**
+     * Whether a node is a loop.
+     * @param node the node
+     * @return true if for, foreach, while or do-while
+     */
+    private static boolean isLoop(final JexlNode node) {
+        return node instanceof ASTForStatement
+            || node instanceof ASTForeachStatement
+            || node instanceof ASTWhileStatement
+            || node instanceof ASTDoWhileStatement;
+    }
+
+    /**
+     * Whether a completion reaching a node ends there.
+     * @param kind the completion kind
+     * @param label the completion label
+     * @param node the node
+     * @return true if the node is the target
+     */
+    private static boolean isTarget(final int kind, final String label, final JexlNode node) {
+        switch (kind) {
+            case BREAK:
+                if (isLoop(node)) {
+                    return label == null || label.equals(((ASTLabelledStatement) node).getLabel());
+                }
+                return (node instanceof ASTBlock || node instanceof ASTIfStatement)
+                    && label != null && label.equals(((ASTLabelledStatement) node).getLabel());
+            case CONTINUE:
+                return isLoop(node) && (label == null || label.equals(((ASTLabelledStatement) node).getLabel()));
+            case REMOVE:
+                return node instanceof ASTForeachStatement
+                    && (label == null || label.equals(((ASTForeachStatement) node).getLabel()));
+            default:
+                return node instanceof ASTJexlScript;
+        }
+    }
+
+    /**
+     * Checks whether a statement can complete through a returned value rather than an exception.
+     * <p>The answer only depends on the tree shape; it is computed once and kept as the statement node value.</p>
+     * @param stmt the break, continue, remove, return or yield statement
+     * @return true if all enclosing statements up to the target propagate completions
+     */
+    static boolean isSignalled(final JexlNode stmt) {
+        final Object cached = stmt.jjtGetValue();
+        if (cached instanceof Boolean) {
+            return (Boolean) cached;
+        }
+        final boolean signalled = signals(stmt);
+        stmt.jjtSetValue(signalled);
+        return signalled;
+    }
+
+    /**
+     * Walks the enclosing statements of a break, continue, remove, return or yield up to its target.
+     * @param stmt the statement
+     * @return true if all enclosing statements up to the target propagate completions
+     */
+    private static boolean signals(final JexlNode stmt) {
+        final int kind = kindOf(stmt);
+        final String label = stmt instanceof ASTLabelledStatement ? ((ASTLabelledStatement) stmt).getLabel() : null;
+        for (JexlNode node = stmt.jjtGetParent(); node != null; node = node.jjtGetParent()) {
+            if (isTarget(kind, label, node)) {
+                return true;
+            }
+            if (!(isLoop(node) || node instanceof ASTBlock || node instanceof ASTIfStatement)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Throws the exception of a completion that can not be handled as a value.
+     * @param interpreter the interpreter
+     * @param result the evaluation result, maybe a completion
+     * @return the result if not a completion
+     */
+    static Object raise(final Interpreter interpreter, final Object result) {
+        if (result instanceof Completion) {
+            throw ((Completion) result).toException(interpreter);
+        }
+        return result;
+    }
+
+    /**
+     * Creates the exception equivalent to this completion.
+     * @param interpreter the interpreter
+     * @return the exception
+     */
+    JexlException toException(final Interpreter interpreter) {
+        final JexlInfo info = interpreter.detailedInfo(statement);
+        switch (kind) {
+            case BREAK:
+                return new JexlException.Break(info, label);
+            case CONTINUE:
+                return new JexlException.Continue(info, label);
+            case REMOVE:
+                return new JexlException.Remove(info, label);
+            default:
+                return statement instanceof ASTYieldStatement
+                    ? new JexlException.Yield(info, null, value)
+                    : new JexlException.Return(info, null, value);
+        }
+    }
+
+    /**
+     * Whether this completion ends at a node.
+     * @param node the loop, block or if statement
+     * @return true if the node is the target
+     */
+    boolean isTarget(final JexlNode node) {
+        return isTarget(kind, label, node);
+    }
+
+    /**
+     * @return true if this is a break
+     */
+    boolean isBreak() {
+        return kind == BREAK;
+    }
+
+    /**
+     * @return true if this is a remove
+     */
+    boolean isRemove() {
+        return kind == REMOVE;
+    }
+
+    /**
+     * @return the returned or yielded value
+     */
+    Object getValue() {
+        return value;
+    }
+}
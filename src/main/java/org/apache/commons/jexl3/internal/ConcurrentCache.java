@@ -0,0 +1,528 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.jexl3.JexlCache;
+
+/**
+ * A cache tailored for high concurrency with a frequency-aware eviction policy.
+ * <p>Reads are lock-free: the entry is fetched from a concurrent map and the access is recorded in a lossy,
+ * striped ring buffer. Recency and frequency bookkeeping is replayed in batches by whichever thread
+ * manages to grab the eviction lock, typically when a buffer fills up or when an entry is added.</p>
+ * <p>Eviction follows the W-TinyLFU scheme: new entries are admitted in a small LRU window; when they
+ * overflow it, they compete with the least recently used entry of the main segmented LRU (probation and protected)
+ * and only replace it if their estimated access frequency - kept in a 4-bit count-min sketch - is higher.
+ * A burst of one-off scripts thus does not flush frequently used ones out of the cache.</p>
+ * <p>Unlike {@link SoftCache}, entries are strongly referenced.</p>
+ * <p>Use through {@link org.apache.commons.jexl3.JexlBuilder#cacheFactory(java.util.function.IntFunction)}
+ * as in <code>new JexlBuilder().cacheFactory(ConcurrentCache::new)</code>.</p>
+ * @param <K> the cache key type
+ * @param <V> the cache value type
+ * @since 4.0
+ */
+public class ConcurrentCache<K, V> implements JexlCache<K, V> {
+    /** The node is in the admission window. */
+    private static final int WINDOW = 0;
+    /** The node is in the probation segment. */
+    private static final int PROBATION = 1;
+    /** The node is in the protected segment. */
+    private static final int PROTECTED = 2;
+    /** The node is no longer in the cache. */
+    private static final int DEAD = -1;
+    /** The number of read buffers, a power of 2. */
+    private static final int NBUFFERS;
+    static {
+        final int ncpu = Math.min(Runtime.getRuntime().availableProcessors(), 16);
+        NBUFFERS = Integer.highestOneBit(Math.max(1, ncpu) * 2 - 1);
+    }
+
+    /**
+     * A cache entry and its position in the access-ordered lists.
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    private static final class Node<K, V> {
+        /** The key. */
+        private final K key;
+        /** The value. */
+        private volatile V value;
+        /** The segment this node belongs to, guarded by the eviction lock. */
+        private int queue = WINDOW;
+        /** Previous in access order, guarded by the eviction lock. */
+        private Node<K, V> prev;
+        /** Next in access order, guarded by the eviction lock. */
+        private Node<K, V> next;
+
+        Node(final K key, final V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An access-ordered doubly linked list; head is the least recently used.
+     * <p>Not thread-safe, guarded by the eviction lock.</p>
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    private static final class AccessOrder<K, V> {
+        /** Least recently used. */
+        private Node<K, V> head;
+        /** Most recently used. */
+        private Node<K, V> tail;
+        /** The number of nodes. */
+        private int size;
+
+        void add(final Node<K, V> node) {
+            node.next = null;
+            node.prev = tail;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size += 1;
+        }
+
+        void remove(final Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size -= 1;
+        }
+
+        void moveToTail(final Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
+
+        Node<K, V> poll() {
+            final Node<K, V> node = head;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void clear() {
+            for (Node<K, V> node = head; node != null; node = node.next) {
+                node.queue = DEAD;
+            }
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * A lossy ring buffer of accessed nodes.
+     * <p>Offering is lock-free and drops the access when the buffer is full; draining is guarded by
+     * the eviction lock.</p>
+     */
+    private static final class ReadBuffer {
+        /** The buffer size, a power of 2. */
+        private static final int SIZE = 64;
+        /** The mask to compute a slot index. */
+        private static final int MASK = SIZE - 1;
+        /** The buffer slots. */
+        private final AtomicReferenceArray<Node<?, ?>> slots = new AtomicReferenceArray<>(SIZE);
+        /** The number of offered accesses. */
+        private final AtomicLong writes = new AtomicLong();
+        /** The number of drained accesses. */
+        private volatile long reads;
+
+        /**
+         * Records an access.
+         * @param node the accessed node
+         * @return the number of pending accesses or -1 if the access was dropped, the buffer being full or contended
+         */
+        long offer(final Node<?, ?> node) {
+            final long w = writes.get();
+            final long pending = w - reads;
+            if (pending >= SIZE || !writes.compareAndSet(w, w + 1)) {
+                return -1;
+            }
+            slots.lazySet((int) (w & MASK), node);
+            return pending + 1;
+        }
+
+        /**
+         * Drains the pending accesses.
+         * @param cache the cache replaying the accesses
+         */
+        @SuppressWarnings("unchecked")
+        <K, V> void drainTo(final ConcurrentCache<K, V> cache) {
+            long r = reads;
+            final long w = writes.get();
+            for (; r < w; ++r) {
+                final int index = (int) (r & MASK);
+                final Node<K, V> node = (Node<K, V>) slots.get(index);
+                if (node == null) {
+                    // offered but not yet published
+                    break;
+                }
+                slots.lazySet(index, null);
+                if (cache != null) {
+                    cache.onAccess(node);
+                }
+            }
+            reads = r;
+        }
+    }
+
+    /**
+     * A count-min sketch estimating access frequencies with 4-bit counters.
+     * <p>Counters are halved periodically so the estimation ages and follows workload changes.</p>
+     */
+    static final class FrequencySketch {
+        /** The seeds used to derive the per-row hashes. */
+        private static final int[] SEEDS = {0x97cb3127, 0xb3ce7e3f, 0x4f6fa9e5, 0x7f4a7c15};
+        /** Mask to halve all the 16 counters of a long at once. */
+        private static final long HALF_MASK = 0x7777777777777777L;
+        /** The counter table, 16 counters per long. */
+        private final long[] table;
+        /** The table index mask. */
+        private final int mask;
+        /** The number of increments before aging. */
+        private final int sampleSize;
+        /** The current number of increments. */
+        private int additions;
+
+        /**
+         * Creates a sketch.
+         * @param capacity the cache capacity
+         */
+        FrequencySketch(final int capacity) {
+            final int length = Integer.highestOneBit(Math.max(16, Math.min(capacity, 1 << 24)) * 2 - 1);
+            table = new long[length];
+            mask = length - 1;
+            sampleSize = 10 * Math.max(capacity, 16);
+        }
+
+        /**
+         * Computes the hash for a row.
+         * @param hash the key hash
+         * @param row the row
+         * @return the row hash
+         */
+        private static int rowHash(final int hash, final int row) {
+            int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+            h ^= h >>> 16;
+            return h;
+        }
+
+        /**
+         * Estimates how often a key was accessed.
+         * @param key the key
+         * @return the estimated frequency, between 0 and 15
+         */
+        int frequency(final Object key) {
+            final int hash = key.hashCode();
+            int frequency = 15;
+            for (int row = 0; row < SEEDS.length; ++row) {
+                final int h = rowHash(hash, row);
+                final int shift = (h & 15) << 2;
+                final int count = (int) ((table[(h >>> 4) & mask] >>> shift) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        /**
+         * Records an access to a key.
+         * @param key the key
+         */
+        void increment(final Object key) {
+            final int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; ++row) {
+                final int h = rowHash(hash, row);
+                final int index = (h >>> 4) & mask;
+                final int shift = (h & 15) << 2;
+                if (((table[index] >>> shift) & 0xfL) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; ++i) {
+                    table[i] = (table[i] >>> 1) & HALF_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        /**
+         * Resets all counters.
+         */
+        void clear() {
+            Arrays.fill(table, 0L);
+            additions = 0;
+        }
+    }
+
+    /** The cache capacity. */
+    protected final int capacity;
+    /** The cache entries. */
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    /** The lock guarding the access-ordered lists and the sketch. */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /** The striped read buffers. */
+    private final ReadBuffer[] readBuffers;
+    /** The frequency sketch. */
+    private final FrequencySketch sketch;
+    /** The admission window. */
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    /** The probation segment of the main space. */
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    /** The protected segment of the main space. */
+    private final AccessOrder<K, V> protect = new AccessOrder<>();
+    /** The maximum number of entries in the admission window. */
+    private final int windowMax;
+    /** The maximum number of entries in the protected segment. */
+    private final int protectedMax;
+    /** The cache statistics. */
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * Creates a new instance of a concurrent cache.
+     *
+     * @param theSize the cache size
+     */
+    public ConcurrentCache(final int theSize) {
+        capacity = Math.max(1, theSize);
+        data = new ConcurrentHashMap<>(Math.min(capacity, 1024));
+        readBuffers = new ReadBuffer[NBUFFERS];
+        for (int b = 0; b < NBUFFERS; ++b) {
+            readBuffers[b] = new ReadBuffer();
+        }
+        sketch = new FrequencySketch(capacity);
+        // 1% for the window, 80% of the rest for protected
+        windowMax = Math.max(1, capacity / 100);
+        protectedMax = (capacity - windowMax) * 4 / 5;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void clear() {
+        evictionLock.lock();
+        try {
+            for (final ReadBuffer buffer : readBuffers) {
+                buffer.drainTo(null);
+            }
+            data.clear();
+            window.clear();
+            probation.clear();
+            protect.clear();
+            sketch.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<Map.Entry<K, V>> entries() {
+        final List<Map.Entry<K, V>> entries = new ArrayList<>(data.size());
+        for (final Node<K, V> node : data.values()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(node.key, node.value));
+        }
+        return entries;
+    }
+
+    @Override
+    public V get(final K key) {
+        final Node<K, V> node = data.get(key);
+        if (node == null) {
+            statistics.recordMiss();
+            return null;
+        }
+        statistics.recordHit();
+        final V value = node.value;
+        final ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (NBUFFERS - 1)];
+        final long pending = buffer.offer(node);
+        if ((pending < 0 || pending >= ReadBuffer.SIZE / 2) && evictionLock.tryLock()) {
+            try {
+                buffer.drainTo(this);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public V put(final K key, final V script) {
+        statistics.recordPut();
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                final V previous = node.value;
+                node.value = script;
+                onAccess(node);
+                return previous;
+            }
+            node = new Node<>(key, script);
+            data.put(key, node);
+            window.add(node);
+            sketch.increment(key);
+            evict();
+            return null;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    @Override
+    public Statistics statistics() {
+        return statistics.snapshot();
+    }
+
+    /**
+     * Replays all pending accesses; the caller must hold the eviction lock.
+     */
+    private void drainReadBuffers() {
+        for (final ReadBuffer buffer : readBuffers) {
+            buffer.drainTo(this);
+        }
+    }
+
+    /**
+     * Updates recency and frequency of an accessed node; the caller must hold the eviction lock.
+     * @param node the node
+     */
+    void onAccess(final Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                sketch.increment(node.key);
+                window.moveToTail(node);
+                break;
+            case PROBATION:
+                sketch.increment(node.key);
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protect.add(node);
+                // demote protected overflow to probation
+                while (protect.size > protectedMax) {
+                    final Node<K, V> demoted = protect.poll();
+                    demoted.queue = PROBATION;
+                    probation.add(demoted);
+                }
+                break;
+            case PROTECTED:
+                sketch.increment(node.key);
+                protect.moveToTail(node);
+                break;
+            default:
+                // evicted since its access was recorded
+                break;
+        }
+    }
+
+    /**
+     * Evicts entries until the cache fits its capacity; the caller must hold the eviction lock.
+     * <p>Entries overflowing the window become candidates at the tail of probation; each candidate competes
+     * with the probation head - the victim - and the least frequently used of the two is evicted.</p>
+     */
+    private void evict() {
+        int candidates = 0;
+        while (window.size > windowMax) {
+            final Node<K, V> node = window.poll();
+            node.queue = PROBATION;
+            probation.add(node);
+            candidates += 1;
+        }
+        while (data.size() > capacity) {
+            final Node<K, V> evicted;
+            final Node<K, V> victim = probation.head;
+            if (victim == null) {
+                evicted = protect.head != null ? protect.head : window.head;
+            } else if (candidates > 0 && victim != probation.tail) {
+                final Node<K, V> candidate = probation.tail;
+                if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                    evicted = victim;
+                } else {
+                    evicted = candidate;
+                    candidates -= 1;
+                }
+            } else {
+                evicted = victim;
+                candidates = Math.max(0, candidates - 1);
+            }
+            if (evicted == null) {
+                break;
+            }
+            remove(evicted);
+            statistics.recordEviction();
+        }
+    }
+
+    /**
+     * Removes a node from the cache; the caller must hold the eviction lock.
+     * @param node the node
+     */
+    private void remove(final Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protect.remove(node);
+                break;
+            default:
+                break;
+        }
+        node.queue = DEAD;
+        data.remove(node.key, node);
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.parser.ASTJexlLambda;
+import org.apache.commons.jexl3.parser.ASTYieldStatement;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * A generator running as a continuation.
+ * <p>The generator body is interpreted once, on its own thread; each yield hands its value to the
+ * iterating thread and parks until the next element is requested. Resuming is thus independent of the
+ * yield nesting and the generator does not keep any per-statement state.</p>
+ * <p>Only one of the two threads runs at any time, the hand-off going through volatile fields.
+ * A suspended generator whose iterator is no longer reachable is cancelled and its thread ends.</p>
+ * <p>Generator threads are virtual threads; engines do not run generators as continuations when
+ * the runtime does not provide them.</p>
+ */
+final class Continuation implements Iterator<Object> {
+    /** The virtual thread factory, null if the runtime does not provide virtual threads. */
+    private static final ThreadFactory VIRTUAL = virtualThreads();
+    /** The number of running or suspended generators. */
+    private static final AtomicInteger ACTIVE = new AtomicInteger();
+    /** The delay after which a suspended generator checks whether its iterator is still reachable. */
+    private static final long POLL = TimeUnit.SECONDS.toNanos(1);
+    /** The number of checks of the hand-off before parking, the other side often answering quickly. */
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 2048 : 0;
+    /** The interpreter iterating over the generator. */
+    private final Interpreter caller;
+    /** The generator body. */
+    private final JexlNode script;
+    /** The generator side. */
+    private final Generator generator;
+    /** Whether the first value was requested. */
+    private boolean started;
+    /** Whether a value is available. */
+    private boolean nextValue;
+    /** The next value. */
+    private Object value;
+
+    /**
+     * Creates a continuation.
+     * @param ii the interpreter iterating over the generator
+     * @param lambda the generator
+     */
+    Continuation(final Interpreter ii, final ASTJexlLambda lambda) {
+        caller = ii;
+        script = lambda;
+        generator = new Generator(ii, lambda, this);
+    }
+
+    /**
+     * Gets the factory of virtual threads.
+     * @return the factory or null if virtual threads are not available
+     */
+    private static ThreadFactory virtualThreads() {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (final ReflectiveOperationException | RuntimeException | LinkageError xany) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if generator threads are virtual threads
+     */
+    static boolean isVirtual() {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * Starts a task on a new virtual thread.
+     * <p>This is the default executor of asynchronous script executions, only used if virtual threads are
+     * available.</p>
+     * @param task the task
+     */
+    static void startVirtual(final Runnable task) {
+        VIRTUAL.newThread(task).start();
+    }
+
+    /**
+     * @return the number of running or suspended generators
+     */
+    static int getActiveCount() {
+        return ACTIVE.get();
+    }
+
+    /**
+     * Runs the generator up to its next yield or its end.
+     */
+    private void prepareNextValue() {
+        started = true;
+        try {
+            nextValue = generator.resume();
+            value = nextValue ? generator.value : null;
+        } catch (final JexlException.Cancel xcancel) {
+            nextValue = false;
+            caller.cancelled.weakCompareAndSet(false, Thread.interrupted());
+            if (caller.isCancellable()) {
+                throw xcancel.clean();
+            }
+        } catch (final JexlException xjexl) {
+            nextValue = false;
+            if (!caller.isSilent()) {
+                throw xjexl.clean();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!started) {
+            prepareNextValue();
+        }
+        return nextValue;
+    }
+
+    @Override
+    public Object next() {
+        caller.cancelCheck(script);
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Object result = value;
+        prepareNextValue();
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * The interpreter of the generator body, suspending its thread at each yield.
+     * <p>It only refers to its iterator weakly so that an abandoned generator can be collected.</p>
+     */
+    static final class Generator extends Interpreter implements Runnable {
+        /** The generator body. */
+        private final JexlNode body;
+        /** The iterator. */
+        private final WeakReference<Continuation> owner;
+        /** Whether the generator thread runs, false when the iterating thread does. */
+        private volatile boolean running;
+        /** Whether the generator ended. */
+        private boolean ended;
+        /** The yielded value. */
+        private Object value;
+        /** The error that ended the generator. */
+        private Throwable failure;
+        /** Whether the iterator was collected while the generator was suspended. */
+        private volatile boolean abandoned;
+        /** The generator thread. */
+        private Thread thread;
+        /** The iterating thread. */
+        private volatile Thread consumer;
+
+        /**
+         * Creates the generator interpreter.
+         * @param ii the iterating interpreter
+         * @param lambda the generator
+         * @param iterator the iterator
+         */
+        Generator(final Interpreter ii, final ASTJexlLambda lambda, final Continuation iterator) {
+            super(ii.jexl, ii.options, ii.context, ii.info, lambda.createFrame(ii.frame));
+            budget = ii.budget;
+            fp = ii.fp + 1;
+            body = lambda.jjtGetChild(0);
+            owner = new WeakReference<>(iterator);
+        }
+
+        @Override
+        protected boolean isNested() {
+            return true;
+        }
+
+        @Override
+        protected boolean isCancelled() {
+            return abandoned || super.isCancelled();
+        }
+
+        @Override
+        public void run() {
+            try {
+                block = new LexicalFrame(frame, null).defineArgs();
+                interpret(body);
+            } catch (final Throwable xany) {
+                failure = xany;
+            } finally {
+                ACTIVE.decrementAndGet();
+                value = null;
+                ended = true;
+                running = false;
+                LockSupport.unpark(consumer);
+            }
+        }
+
+        /**
+         * Resumes the generator and waits for its next yield or its end.
+         * @return true if a value was yielded, false if the generator ended
+         */
+        boolean resume() {
+            if (ended) {
+                return false;
+            }
+            consumer = Thread.currentThread();
+            running = true;
+            if (thread == null) {
+                thread = newThread(this);
+                ACTIVE.incrementAndGet();
+                thread.start();
+            } else {
+                LockSupport.unpark(thread);
+            }
+            boolean interrupted = false;
+            for (int spin = SPINS; running && spin > 0; --spin) {
+                // spin
+            }
+            while (running) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    // the generator is cancelled in turn
+                    interrupted = true;
+                    thread.interrupt();
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                final Throwable xany = failure;
+                failure = null;
+                InterpreterBase.<RuntimeException>doThrow(xany);
+            }
+            return !ended;
+        }
+
+        /**
+         * Hands a value to the iterating thread and waits until the next one is requested.
+         * @param val the yielded value
+         */
+        private void suspend(final Object val) {
+            value = val;
+            running = false;
+            LockSupport.unpark(consumer);
+            boolean interrupted = false;
+            for (int spin = SPINS; !running && spin > 0; --spin) {
+                // spin
+            }
+            while (!running) {
+                LockSupport.parkNanos(this, POLL);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                }
+                if (!running && owner.get() == null) {
+                    abandoned = true;
+                    break;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        protected Object visit(final ASTYieldStatement node, final Object data) {
+            if (!node.isReturn()) {
+                // yielding the value of a switch or block expression
+                return super.visit(node, data);
+            }
+            cancelCheck(node);
+            try {
+                beforeStatement(node);
+                final Object val = node.jjtGetChild(0).jjtAccept(this, data);
+                suspend(val);
+                cancelCheck(node);
+                afterStatement(node, val, null);
+                return val;
+            } catch (Throwable thrown) {
+                afterStatement(node, null, thrown);
+                InterpreterBase.<RuntimeException>doThrow(thrown);
+                // Never reaches here
+                return null;
+            }
+        }
+
+        /**
+         * Creates a generator thread.
+         * @param runnable the generator
+         * @return the virtual thread
+         */
+        private static Thread newThread(final Runnable runnable) {
+            return VIRTUAL.newThread(runnable);
+        }
+    }
+}
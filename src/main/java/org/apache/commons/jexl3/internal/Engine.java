@@ -21,8 +21,11 @@ import static org.apache.commons.jexl3.parser.JexlParser.PRAGMA_JEXLNS;
 import static org.apache.commons.jexl3.parser.JexlParser.PRAGMA_MODULE;
 import static org.apache.commons.jexl3.parser.JexlParser.PRAGMA_OPTIONS;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -30,12 +33,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+import javax.management.JMException;
+
 import org.apache.commons.jexl3.JexlArithmetic;
 import org.apache.commons.jexl3.JexlBuilder;
 import org.apache.commons.jexl3.JexlCache;
@@ -44,6 +51,7 @@ import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.JexlFeatures;
 import org.apache.commons.jexl3.JexlInfo;
+import org.apache.commons.jexl3.JexlMetrics;
 import org.apache.commons.jexl3.JexlOptions;
 import org.apache.commons.jexl3.JexlProbe;
 import org.apache.commons.jexl3.JexlScript;
@@ -57,10 +65,12 @@ import org.apache.commons.jexl3.parser.ASTArrayAccess;
 import org.apache.commons.jexl3.parser.ASTFunctionNode;
 import org.apache.commons.jexl3.parser.ASTIdentifier;
 import org.apache.commons.jexl3.parser.ASTIdentifierAccess;
+import org.apache.commons.jexl3.parser.ASTJexlLambda;
 import org.apache.commons.jexl3.parser.ASTJexlScript;
 import org.apache.commons.jexl3.parser.ASTMethodNode;
 import org.apache.commons.jexl3.parser.ASTNumberLiteral;
 import org.apache.commons.jexl3.parser.ASTStringLiteral;
+import org.apache.commons.jexl3.parser.ConstantFolder;
 import org.apache.commons.jexl3.parser.JexlNode;
 import org.apache.commons.jexl3.parser.JexlScriptParser;
 import org.apache.commons.jexl3.parser.Parser;
@@ -87,6 +97,12 @@ public class Engine extends JexlEngine {
                 new Uberspect(LogFactory.getLog(JexlEngine.class),
                         JexlUberspect.JEXL_STRATEGY,
                         JexlPermissions.parse());
+        /** The default uberspector binding members to method handles. */
+        private static final Uberspect BOUND_UBERSPECT =
+                new Uberspect(LogFactory.getLog(JexlEngine.class),
+                        JexlUberspect.JEXL_STRATEGY,
+                        JexlPermissions.parse(),
+                        true);
 
         /** Non-instantiable. */
         private UberspectHolder() {}
@@ -107,6 +123,30 @@ public class Engine extends JexlEngine {
      * The {@link JexlProbe} instance.
      */
     protected final JexlProbe probe;
+    /**
+     * The metrics, null if not recorded.
+     */
+    protected final JexlMetrics metrics;
+    /**
+     * The executor for background tasks, null if the common fork-join pool is used.
+     */
+    protected final Executor executor;
+    /**
+     * The executor running asynchronous script executions.
+     */
+    protected final Executor asyncExecutor;
+    /**
+     * The number of executions after which a script is compiled, 0 if never.
+     */
+    protected final int compileThreshold;
+    /**
+     * Whether scripts are compiled to closure trees rather than bytecode.
+     */
+    protected final boolean closureTree;
+    /**
+     * Whether generators run as continuations rather than being replayed.
+     */
+    protected final boolean continuations;
     /**
      * The map of 'prefix:function' to object implementing the namespaces.
      */
@@ -166,14 +206,24 @@ public class Engine extends JexlEngine {
      * The Jexl script parser factory.
      */
     protected final Supplier<JexlScriptParser> parserFactory;
+    /**
+     * The pool of {@link Parser}s; when parsing expressions, this engine borrows an idle parser if
+     * any is available, otherwise it creates a new one that may be kept for later use.
+     */
+    protected final ParserPool parsers;
     /**
      * The atomic parsing flag; true whilst parsing.
+     * @deprecated 4.0 the engine parses through {@link #parsers}; kept with {@link #parser} for subclasses
+     * that guard the parser with this flag, the engine itself uses neither.
      */
+    @Deprecated
     protected final AtomicBoolean parsing = new AtomicBoolean(false);
     /**
      * The {@link Parser}; when parsing expressions, this engine uses the parser if it
      * is not already in use otherwise it will create a new temporary one.
+     * @deprecated 4.0 the engine parses through {@link #parsers}; this parser is not part of the pool.
      */
+    @Deprecated
     protected final JexlScriptParser parser; //$NON-NLS-1$
     /**
      * The expression max length to hit the cache.
@@ -183,6 +233,19 @@ public class Engine extends JexlEngine {
      * The expression cache.
      */
     protected final JexlCache<Source, ASTJexlScript> cache;
+    /**
+     * The cache statistics recorded by this engine: bypasses, scope collisions and parsing time.
+     */
+    final CacheStatistics parseStatistics = new CacheStatistics();
+    /**
+     * The last scope signature a cached source was parsed with, used to count scope collisions.
+     * <p>Bounded by the cache capacity, the least recently used sources are evicted first.</p>
+     */
+    protected final Map<Source, String> variants;
+    /**
+     * The executors shared by megamorphic call sites.
+     */
+    final InlineCache.Lookup megamorphic = new InlineCache.Lookup();
     /**
      * The default jxlt engine.
      */
@@ -233,7 +296,7 @@ public class Engine extends JexlEngine {
         this.stackOverflow = conf.stackOverflow() > 0? conf.stackOverflow() : Integer.MAX_VALUE;
         // core properties:
         final JexlUberspect uber = conf.uberspect() == null
-                ? getUberspect(conf.logger(), conf.strategy(), conf.permissions())
+                ? getUberspect(conf.logger(), conf.strategy(), conf.permissions(), conf.methodHandles())
                 : conf.uberspect();
         final ClassLoader loader = conf.loader();
         if (loader != null) {
@@ -248,6 +311,13 @@ public class Engine extends JexlEngine {
         this.logger = conf.logger() == null ? LogFactory.getLog(JexlEngine.class) : conf.logger();
         this.arithmetic = conf.arithmetic() == null ? new JexlArithmetic(this.strict) : conf.arithmetic();
         this.probe = conf.probe();
+        this.executor = conf.executor();
+        this.asyncExecutor = conf.asyncExecutor() != null
+            ? conf.asyncExecutor()
+            : Continuation.isVirtual() ? Continuation::startVirtual : ForkJoinPool.commonPool();
+        this.compileThreshold = probe == null ? conf.compileThreshold() : 0;
+        this.closureTree = conf.closureTree() || !ScriptCompiler.isSupported();
+        this.continuations = probe == null && conf.continuations() && Continuation.isVirtual();
         options.setMathContext(arithmetic.getMathContext());
         options.setMathScale(arithmetic.getMathScale());
         options.setStrictArithmetic(arithmetic.isStrict());
@@ -269,13 +339,23 @@ public class Engine extends JexlEngine {
         this.cacheFactory = factory == null ? SoftCache::new : factory;
         this.cache = (JexlCache<Source, ASTJexlScript>) (conf.cache() > 0 ? cacheFactory.apply(conf.cache()) : null);
         this.cacheThreshold = conf.cacheThreshold();
+        this.variants = cache != null ? SoftCache.createSynchronizedLinkedHashMap(cache.capacity()) : null;
         if (uberspect == null) {
             throw new IllegalArgumentException("uberspect can not be null");
         }
         this.parserFactory = conf.parserFactory() == null ?
                () -> new Parser(new StringProvider(";"))
                 : conf.parserFactory();
+        this.parsers = new ParserPool(conf.parserPool(), parserFactory);
         this.parser = parserFactory.get();
+        this.metrics = conf.metrics() ? new JexlMetrics(conf.metricsListener(), this::getCacheStatistics) : null;
+        if (metrics != null && conf.jmxName() != null) {
+            try {
+                metrics.register(conf.jmxName());
+            } catch (final JMException xjmx) {
+                logger.warn("unable to register metrics as " + conf.jmxName(), xjmx);
+            }
+        }
     }
 
 
@@ -295,12 +375,31 @@ public class Engine extends JexlEngine {
             final Log logger,
             final JexlUberspect.ResolverStrategy strategy,
             final JexlPermissions permissions) {
+        return getUberspect(logger, strategy, permissions, false);
+    }
+
+    /**
+     * Gets the default instance of Uberspect.
+     * <p>This is lazily initialized to avoid building a default instance if there
+     * is no use for it.</p>
+     * @param logger the logger to use for the underlying Uberspect
+     * @param strategy the property resolver strategy
+     * @param permissions the introspection permissions
+     * @param bind whether executors bind members to method handles instead of using reflection
+     * @return Uberspect the default uberspector instance.
+     * @since 4.0
+     */
+    public static Uberspect getUberspect(
+            final Log logger,
+            final JexlUberspect.ResolverStrategy strategy,
+            final JexlPermissions permissions,
+            final boolean bind) {
         if ((logger == null || logger.equals(LogFactory.getLog(JexlEngine.class)))
             && (strategy == null || strategy == JexlUberspect.JEXL_STRATEGY)
             && (permissions == null || permissions == JexlPermissions.UNRESTRICTED)) {
-            return UberspectHolder.UBERSPECT;
+            return bind ? UberspectHolder.BOUND_UBERSPECT : UberspectHolder.UBERSPECT;
         }
-        return new Uberspect(logger, strategy, permissions);
+        return new Uberspect(logger, strategy, permissions, bind);
     }
 
     /**
@@ -353,6 +452,7 @@ public class Engine extends JexlEngine {
     @Override
     public void setClassLoader(final ClassLoader loader) {
         jxlt = null;
+        megamorphic.clear();
         uberspect.setClassLoader(loader);
         if (functions != null) {
             final Iterable<String> names = new ArrayList<>(functions.keySet());
@@ -385,6 +485,16 @@ public class Engine extends JexlEngine {
         return probe;
     }
 
+    /**
+     * Gets the pool of parsers this engine uses.
+     * <p>Its hit and miss counters indicate how often parsing reused an idle parser.</p>
+     * @return the parser pool
+     * @since 4.0
+     */
+    public ParserPool getParserPool() {
+        return parsers;
+    }
+
     /**
      * Solves a namespace using this engine map of functions.
      * @param name the namespoce name
@@ -635,6 +745,87 @@ public class Engine extends JexlEngine {
         }
     }
 
+    @Override
+    public JexlCache.Statistics getCacheStatistics() {
+        return cache != null ? parseStatistics.snapshot(cache.statistics()) : null;
+    }
+
+    @Override
+    public JexlMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public Precompiled precompile(final Collection<String> sources) {
+        return executor != null ? precompile(sources, executor) : super.precompile(sources);
+    }
+
+    @Override
+    public void writeScripts(final Path file, final Collection<? extends JexlScript> scripts) throws IOException {
+        ScriptBundle.write(this, file, scripts);
+    }
+
+    @Override
+    public Map<String, JexlScript> readScripts(final Path file) throws IOException {
+        return Collections.unmodifiableMap(ScriptBundle.read(this, file));
+    }
+
+    /**
+     * Stores a precompiled script tree in the cache as if it had just been parsed.
+     * @param info the script info
+     * @param features the script features
+     * @param src the script source
+     * @param script the script tree
+     */
+    protected void cacheScript(final JexlInfo info, final JexlFeatures features, final String src, final ASTJexlScript script) {
+        if (cache != null && src.length() < cacheThreshold) {
+            // unless the script is a lambda, its parameters were declared by the scope it was parsed with
+            final Scope scope = script instanceof ASTJexlLambda ? null : script.getScope();
+            final String signature = scope != null && scope.getArgCount() > 0 ? scope.getSignature(true) : "";
+            cache.put(new Source(features, signature, src), script);
+        }
+        if (probe != null) {
+            probe.loadSource(info, src);
+        }
+    }
+
+    /**
+     * Counts an execution of a script, compiling it when reaching the compile threshold.
+     * <p>When the script can not be compiled, it stays interpreted.</p>
+     * @param script the script tree
+     */
+    protected void countExecution(final ASTJexlScript script) {
+        // only the execution reaching the threshold compiles, counting stops there
+        if (compileThreshold > 0 && script.countExecution(compileThreshold)) {
+            try {
+                final Compiled compiled = compile(script);
+                if (compiled != null) {
+                    script.setCompiled(compiled);
+                }
+            } catch (final IOException | ReflectiveOperationException | LinkageError xany) {
+                script.setUncompilable();
+                if (logger.isDebugEnabled()) {
+                    logger.debug("unable to compile script, it will be interpreted", xany);
+                }
+            } catch (final RuntimeException xruntime) {
+                // a tree the compiler did not expect, the script interprets as before
+                script.setUncompilable();
+                logger.warn("unable to compile script, it will be interpreted", xruntime);
+            }
+        }
+    }
+
+    /**
+     * Compiles a script tree.
+     * @param script the script tree
+     * @return the compiled form, null if the script does not benefit from compiling
+     * @throws IOException if generating the bytecode fails
+     * @throws ReflectiveOperationException if loading the bytecode fails
+     */
+    protected Compiled compile(final ASTJexlScript script) throws IOException, ReflectiveOperationException {
+        return closureTree ? ClosureCompiler.compile(script) : ScriptCompiler.compile(script);
+    }
+
     /**
      * Creates an interpreter.
      * @param context a JexlContext; if null, the empty context is used instead.
@@ -1078,41 +1269,67 @@ public class Engine extends JexlEngine {
      * @throws JexlException if any error occurred during parsing
      */
     protected ASTJexlScript parse(final JexlInfo info, final JexlFeatures parsingf, final String src, final Scope scope) {
-        final boolean cached = src.length() < cacheThreshold && cache != null;
+        // a scope with a parent may capture variables while parsing, the tree can not be shared
+        final boolean cached = src.length() < cacheThreshold && cache != null && (scope == null || scope.getParent() == null);
+        final CacheStatistics stats = cache != null ? parseStatistics : null;
         final JexlFeatures features = parsingf != null ? parsingf : DEFAULT_FEATURES;
-        final Source source = cached? new Source(features, src) : null;
+        final Source source = cached? new Source(features, scope, src) : null;
+        final Object flight = FlightRecorder.beginParse();
         ASTJexlScript script;
         if (source != null) {
             script = cache.get(source);
             if (script != null) {
-                final Scope f = script.getScope();
-                if ((scope == null) || (f != null && f.equals(scope))) {
-                    return script;
+                if (metrics != null) {
+                    metrics.recordCacheHit(info, src.length());
                 }
+                FlightRecorder.endParse(flight, info, src.length(), features, true);
+                return script;
             }
+        } else if (stats != null && src.length() >= cacheThreshold) {
+            // scopes with a parent are not shared, they do not count as bypasses
+            stats.recordBypass();
         }
-        // if parser not in use...
-        if (parsing.compareAndSet(false, true)) {
-            try {
-                // lets parse
-                script = parser.parse(info, features, options, uberspect, src, scope);
-            } finally {
-                // no longer in use
-                parsing.set(false);
-            }
-        } else {
-            // ...otherwise parser was in use, create a new temporary one
-            script = parserFactory.get().parse(info, features, options, uberspect, src, scope);
+        final long start = source != null && stats != null || metrics != null ? System.nanoTime() : 0L;
+        // borrow a parser, give it back when done
+        final JexlScriptParser parser = parsers.acquire();
+        try {
+            script = parser.parse(info, features, options, uberspect, src, scope);
+        } finally {
+            parsers.release(parser);
+        }
+        if (features.supportsConstantFolding()) {
+            script = new ConstantFolder(arithmetic, uberspect.getOperator(arithmetic)).fold(script);
         }
         if (source != null) {
+            if (stats != null) {
+                stats.recordParseTime(System.nanoTime() - start);
+                recordVariant(stats, source);
+            }
             cache.put(source, script);
         }
+        if (metrics != null) {
+            metrics.recordParse(info, src.length(), System.nanoTime() - start);
+        }
+        FlightRecorder.endParse(flight, info, src.length(), features, false);
         if (probe != null) {
             probe.loadSource(info, src);
         }
         return script;
     }
 
+    /**
+     * Records the scope signature a source was parsed with, counting a collision when the same source
+     * was previously parsed with another scope.
+     * @param stats the cache statistics
+     * @param source the parsed source
+     */
+    private void recordVariant(final CacheStatistics stats, final Source source) {
+        final String previous = variants.put(source.unscoped(), source.getScope());
+        if (previous != null && !previous.equals(source.getScope())) {
+            stats.recordScopeMiss();
+        }
+    }
+
     /**
      * Trims the source from front and ending spaces.
      * @param str expression to clean
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlOptions;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * The budgets of an evaluation, checked at each cancellation check.
+ * <p>One instance is shared by the interpreters of an evaluation: the top-level one, the closures it calls,
+ * its generators and parallel workers. Counting nodes is a mere increment; the clock and the thread
+ * allocation counter are only sampled every {@link #SAMPLING} checks. Checks from other threads than
+ * the evaluating one are counted without synchronization, the node count being approximate under
+ * parallel evaluation.</p>
+ */
+final class ExecutionBudget {
+    /** The number of checks between clock and allocation samples. */
+    private static final int SAMPLING = 128;
+    /** The maximum number of nodes, Long.MAX_VALUE if unbounded. */
+    private final long maxNodes;
+    /** The nanoTime deadline, only meaningful if timed. */
+    private final long deadline;
+    /** Whether the evaluation is timed. */
+    private final boolean timed;
+    /** The maximum allocated bytes, Long.MAX_VALUE if unbounded. */
+    private final long maxBytes;
+    /** The evaluating thread. */
+    private final Thread thread;
+    /** The bytes the evaluating thread allocated before the evaluation. */
+    private final long startBytes;
+    /** The number of checked nodes. */
+    private long nodes;
+    /** The number of checks before the next sample. */
+    private int countdown = SAMPLING;
+
+    /**
+     * Creates a budget.
+     * @param options the options holding the budgets
+     */
+    private ExecutionBudget(final JexlOptions options) {
+        maxNodes = options.getNodeBudget() > 0 ? options.getNodeBudget() : Long.MAX_VALUE;
+        timed = options.getTimeBudget() > 0;
+        deadline = timed ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getTimeBudget()) : 0L;
+        thread = Thread.currentThread();
+        final long bytes = options.getAllocationBudget() > 0 ? Allocations.of(thread) : -1L;
+        startBytes = bytes;
+        maxBytes = bytes >= 0 ? options.getAllocationBudget() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates the budget of an evaluation.
+     * @param options the evaluation options
+     * @return the budget or null if the options do not set any
+     */
+    static ExecutionBudget create(final JexlOptions options) {
+        if (options.getNodeBudget() <= 0 && options.getTimeBudget() <= 0 && options.getAllocationBudget() <= 0) {
+            return null;
+        }
+        return new ExecutionBudget(options);
+    }
+
+    /**
+     * Counts a node and samples the clock and allocations when due.
+     * @param ii the interpreter
+     * @param node the node being evaluated
+     * @throws JexlException.Budget if a budget is exceeded
+     */
+    void check(final InterpreterBase ii, final JexlNode node) {
+        if (++nodes > maxNodes) {
+            throw new JexlException.Budget(ii.detailedInfo(node), "nodes");
+        }
+        if (--countdown <= 0) {
+            countdown = SAMPLING;
+            if (timed && System.nanoTime() - deadline > 0) {
+                throw new JexlException.Budget(ii.detailedInfo(node), "time");
+            }
+            if (maxBytes != Long.MAX_VALUE && thread == Thread.currentThread()
+                && Allocations.of(thread) - startBytes > maxBytes) {
+                throw new JexlException.Budget(ii.detailedInfo(node), "allocation");
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes checked so far
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * The thread allocation counter, isolated so that the platform bean is only resolved when used.
+     */
+    private static final class Allocations {
+        /** The bean or null if thread allocations are not measured. */
+        private static final com.sun.management.ThreadMXBean BEAN = bean();
+
+        private Allocations() {
+            // no instance
+        }
+
+        /**
+         * Gets the thread management bean measuring allocations.
+         * @return the bean or null if not available
+         */
+        private static com.sun.management.ThreadMXBean bean() {
+            try {
+                final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean) {
+                    final com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+                    return sun.isThreadAllocatedMemorySupported() ? sun : null;
+                }
+            } catch (final LinkageError | RuntimeException xany) {
+                // not measured
+            }
+            return null;
+        }
+
+        /**
+         * Gets the number of bytes a thread allocated.
+         * @param thread the thread
+         * @return the bytes or -1 if not measured
+         */
+        static long of(final Thread thread) {
+            return BEAN != null ? BEAN.getThreadAllocatedBytes(thread.getId()) : -1L;
+        }
+    }
+}
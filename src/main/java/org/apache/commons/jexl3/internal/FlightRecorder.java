@@ -0,0 +1,410 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlFeatures;
+import org.apache.commons.jexl3.JexlInfo;
+
+/**
+ * Emits Java Flight Recorder events for parses, top-level evaluations, introspection misses and exceptions.
+ * <p>The events are named org.apache.commons.jexl3.Parse, Execute, IntrospectionMiss and Exception, in the
+ * JEXL category; each carries the source name and line of its JexlInfo.</p>
+ * <p>Since the same jar runs on Java 8, the event types are created through the jdk.jfr.EventFactory API
+ * by reflection; on runtimes without it, nothing is recorded. An event is only created when a recording
+ * enables its type, otherwise each call costs the enablement check.</p>
+ */
+public final class FlightRecorder {
+    /** The EventFactory.newEvent() method, as (Object)Object. */
+    private static final MethodHandle NEW_EVENT;
+    /** The EventType.isEnabled() method, as (Object)boolean. */
+    private static final MethodHandle IS_ENABLED;
+    /** The Event.begin() method, as (Object)void. */
+    private static final MethodHandle BEGIN;
+    /** The Event.end() method, as (Object)void. */
+    private static final MethodHandle END;
+    /** The Event.shouldCommit() method, as (Object)boolean. */
+    private static final MethodHandle SHOULD_COMMIT;
+    /** The Event.set(int, Object) method, as (Object,int,Object)void. */
+    private static final MethodHandle SET;
+    /** The Event.commit() method, as (Object)void. */
+    private static final MethodHandle COMMIT;
+    /** The parse event type. */
+    private static final Kind PARSE;
+    /** The execution event type. */
+    private static final Kind EXECUTE;
+    /** The introspection miss event type. */
+    private static final Kind MISS;
+    /** The exception event type. */
+    private static final Kind EXCEPTION;
+    static {
+        MethodHandle newEvent = null;
+        MethodHandle isEnabled = null;
+        MethodHandle begin = null;
+        MethodHandle end = null;
+        MethodHandle shouldCommit = null;
+        MethodHandle set = null;
+        MethodHandle commit = null;
+        Kind parse = null;
+        Kind execute = null;
+        Kind miss = null;
+        Kind exception = null;
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final ClassLoader loader = ClassLoader.getSystemClassLoader();
+            final Class<?> eventc = Class.forName("jdk.jfr.Event", false, loader);
+            final Class<?> factoryc = Class.forName("jdk.jfr.EventFactory", false, loader);
+            final Class<?> typec = Class.forName("jdk.jfr.EventType", false, loader);
+            final Api api = new Api(loader);
+            final MethodType objectToVoid = MethodType.methodType(void.class, Object.class);
+            final MethodType objectToBoolean = MethodType.methodType(boolean.class, Object.class);
+            newEvent = lookup.findVirtual(factoryc, "newEvent", MethodType.methodType(eventc))
+                .asType(MethodType.methodType(Object.class, Object.class));
+            isEnabled = lookup.findVirtual(typec, "isEnabled", MethodType.methodType(boolean.class))
+                .asType(objectToBoolean);
+            begin = lookup.findVirtual(eventc, "begin", MethodType.methodType(void.class)).asType(objectToVoid);
+            end = lookup.findVirtual(eventc, "end", MethodType.methodType(void.class)).asType(objectToVoid);
+            shouldCommit = lookup.findVirtual(eventc, "shouldCommit", MethodType.methodType(boolean.class))
+                .asType(objectToBoolean);
+            set = lookup.findVirtual(eventc, "set", MethodType.methodType(void.class, int.class, Object.class))
+                .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+            commit = lookup.findVirtual(eventc, "commit", MethodType.methodType(void.class)).asType(objectToVoid);
+            parse = api.kind("Parse", "JEXL Parse", "A script or expression parsed or found in the engine cache", false,
+                String.class, "source", "Source",
+                int.class, "line", "Line",
+                int.class, "length", "Length",
+                long.class, "features", "Feature Flags",
+                boolean.class, "script", "Script",
+                boolean.class, "cacheHit", "Cache Hit");
+            execute = api.kind("Execute", "JEXL Execute", "A top-level script or expression evaluation", false,
+                String.class, "source", "Source",
+                int.class, "line", "Line",
+                String.class, "script", "Script",
+                String.class, "outcome", "Outcome",
+                String.class, "exception", "Exception");
+            miss = api.kind("IntrospectionMiss", "JEXL Introspection Miss",
+                "A property or method that introspection could not resolve", true,
+                String.class, "source", "Source",
+                int.class, "line", "Line",
+                Class.class, "type", "Type",
+                String.class, "member", "Member");
+            exception = api.kind("Exception", "JEXL Exception",
+                "A JEXL exception created, control flow exceptions excluded", true,
+                String.class, "source", "Source",
+                int.class, "line", "Line",
+                Class.class, "type", "Type",
+                String.class, "message", "Message");
+        } catch (final Exception | LinkageError xany) {
+            // no flight recorder
+            parse = execute = miss = exception = null;
+        }
+        NEW_EVENT = newEvent;
+        IS_ENABLED = isEnabled;
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        SET = set;
+        COMMIT = commit;
+        PARSE = parse;
+        EXECUTE = execute;
+        MISS = miss;
+        EXCEPTION = exception;
+    }
+
+    private FlightRecorder() {
+        // no instance
+    }
+
+    /**
+     * An event type and the factory creating its events.
+     */
+    private static final class Kind {
+        /** The EventFactory. */
+        private final Object factory;
+        /** The EventType. */
+        private final Object type;
+
+        Kind(final Object factory, final Object type) {
+            this.factory = factory;
+            this.type = type;
+        }
+
+        /**
+         * @return whether a recording enables this event type
+         */
+        boolean isEnabled() {
+            try {
+                return (boolean) IS_ENABLED.invokeExact(type);
+            } catch (final Throwable xany) {
+                return false;
+            }
+        }
+
+        /**
+         * Creates an event.
+         * @return the event or null if this type is not enabled
+         */
+        Object create() {
+            try {
+                return isEnabled() ? (Object) NEW_EVENT.invokeExact(factory) : null;
+            } catch (final Throwable xany) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The reflective access to the event factory, only used to create the event types.
+     */
+    private static final class Api {
+        /** The AnnotationElement(Class, Object) constructor. */
+        private final Constructor<?> annotation;
+        /** The ValueDescriptor(Class, String, List) constructor. */
+        private final Constructor<?> value;
+        /** The EventFactory.create(List, List) method. */
+        private final MethodHandle create;
+        /** The EventFactory.getEventType() method. */
+        private final MethodHandle getEventType;
+        /** The Name, Label, Description, Category and StackTrace annotation classes. */
+        private final Class<?> name;
+        private final Class<?> label;
+        private final Class<?> description;
+        private final Class<?> category;
+        private final Class<?> stackTrace;
+
+        Api(final ClassLoader loader) throws Exception {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final Class<?> annotationc = Class.forName("jdk.jfr.AnnotationElement", false, loader);
+            final Class<?> factoryc = Class.forName("jdk.jfr.EventFactory", false, loader);
+            annotation = annotationc.getConstructor(Class.class, Object.class);
+            value = Class.forName("jdk.jfr.ValueDescriptor", false, loader)
+                .getConstructor(Class.class, String.class, List.class);
+            create = lookup.findStatic(factoryc, "create", MethodType.methodType(factoryc, List.class, List.class));
+            getEventType = lookup.findVirtual(factoryc, "getEventType",
+                MethodType.methodType(Class.forName("jdk.jfr.EventType", false, loader)));
+            name = Class.forName("jdk.jfr.Name", false, loader);
+            label = Class.forName("jdk.jfr.Label", false, loader);
+            description = Class.forName("jdk.jfr.Description", false, loader);
+            category = Class.forName("jdk.jfr.Category", false, loader);
+            stackTrace = Class.forName("jdk.jfr.StackTrace", false, loader);
+        }
+
+        /**
+         * Creates an event type.
+         * @param simpleName the name in the JEXL namespace
+         * @param title the label
+         * @param text the description
+         * @param trace whether events record the stack trace
+         * @param fields the fields as triplets of type, name and label
+         * @return the event kind
+         * @throws Exception if the type can not be created
+         */
+        Kind kind(final String simpleName, final String title, final String text, final boolean trace,
+                  final Object... fields) throws Exception {
+            final String[] categories = (String[]) Array.newInstance(String.class, 1);
+            categories[0] = "JEXL";
+            final List<Object> annotations = Arrays.asList(
+                annotation.newInstance(name, "org.apache.commons.jexl3." + simpleName),
+                annotation.newInstance(label, title),
+                annotation.newInstance(description, text),
+                annotation.newInstance(category, categories),
+                annotation.newInstance(stackTrace, trace));
+            final List<Object> values = new ArrayList<>();
+            for (int f = 0; f < fields.length; f += 3) {
+                values.add(value.newInstance(fields[f], fields[f + 1],
+                    Collections.singletonList(annotation.newInstance(label, fields[f + 2]))));
+            }
+            try {
+                final Object factory = create.invoke(annotations, values);
+                return new Kind(factory, getEventType.invoke(factory));
+            } catch (final Exception | Error xany) {
+                throw xany;
+            } catch (final Throwable xany) {
+                throw new IllegalStateException(xany);
+            }
+        }
+    }
+
+    /**
+     * @return whether the Flight Recorder API is available
+     */
+    public static boolean isAvailable() {
+        return PARSE != null;
+    }
+
+    /**
+     * Sets the source name and line of an event, its first two fields.
+     * @param event the event
+     * @param info the info, may be null
+     * @throws Throwable if setting fails
+     */
+    private static void setInfo(final Object event, final JexlInfo info) throws Throwable {
+        SET.invokeExact(event, 0, (Object) (info != null ? info.getName() : null));
+        SET.invokeExact(event, 1, (Object) (info != null ? info.getLine() : 0));
+    }
+
+    /**
+     * Begins a timed event.
+     * @param kind the event kind
+     * @return the event or null if not recorded
+     */
+    private static Object begin(final Kind kind) {
+        final Object event = kind != null ? kind.create() : null;
+        if (event != null) {
+            try {
+                BEGIN.invokeExact(event);
+            } catch (final Throwable xany) {
+                return null;
+            }
+        }
+        return event;
+    }
+
+    /**
+     * Begins a parse event.
+     * @return the event or null if not recorded
+     */
+    static Object beginParse() {
+        return begin(PARSE);
+    }
+
+    /**
+     * Ends a parse event.
+     * @param flight the event, may be null
+     * @param info the source info
+     * @param length the source length
+     * @param features the parsing features
+     * @param hit whether the tree came from the cache
+     */
+    static void endParse(final Object flight, final JexlInfo info, final int length, final JexlFeatures features,
+                         final boolean hit) {
+        if (flight != null) {
+            try {
+                END.invokeExact(flight);
+                if ((boolean) SHOULD_COMMIT.invokeExact(flight)) {
+                    setInfo(flight, info);
+                    SET.invokeExact(flight, 2, (Object) length);
+                    SET.invokeExact(flight, 3, (Object) (features != null ? features.getFlags() : 0L));
+                    SET.invokeExact(flight, 4, (Object) (features != null && features.supportsScript()));
+                    SET.invokeExact(flight, 5, (Object) hit);
+                    COMMIT.invokeExact(flight);
+                }
+            } catch (final Throwable xany) {
+                // not recorded
+            }
+        }
+    }
+
+    /**
+     * Begins an execution event.
+     * @return the event or null if not recorded
+     */
+    static Object beginExecution() {
+        return begin(EXECUTE);
+    }
+
+    /**
+     * Ends an execution event.
+     * @param flight the event, may be null
+     * @param info the script info
+     * @param script the script tree
+     * @param failure the exception ending the execution, null if successful
+     */
+    static void endExecution(final Object flight, final JexlInfo info, final Object script, final Throwable failure) {
+        if (flight != null) {
+            try {
+                END.invokeExact(flight);
+                if ((boolean) SHOULD_COMMIT.invokeExact(flight)) {
+                    final String outcome;
+                    if (failure == null) {
+                        outcome = "success";
+                    } else if (failure instanceof JexlException.StackOverflow) {
+                        outcome = "stackOverflow";
+                    } else if (failure instanceof JexlException.Cancel) {
+                        outcome = "cancelled";
+                    } else {
+                        outcome = "failure";
+                    }
+                    setInfo(flight, info);
+                    SET.invokeExact(flight, 2, (Object) Integer.toHexString(System.identityHashCode(script)));
+                    SET.invokeExact(flight, 3, (Object) outcome);
+                    SET.invokeExact(flight, 4, (Object) (failure != null ? failure.getClass().getName() : null));
+                    COMMIT.invokeExact(flight);
+                }
+            } catch (final Throwable xany) {
+                // not recorded
+            }
+        }
+    }
+
+    /**
+     * @return whether introspection misses are recorded
+     */
+    static boolean isMissEnabled() {
+        return MISS != null && MISS.isEnabled();
+    }
+
+    /**
+     * Records an introspection miss.
+     * @param info the location
+     * @param type the object class
+     * @param member the property or method name
+     */
+    static void introspectionMiss(final JexlInfo info, final Class<?> type, final Object member) {
+        final Object event = MISS != null ? MISS.create() : null;
+        if (event != null) {
+            try {
+                setInfo(event, info);
+                SET.invokeExact(event, 2, (Object) type);
+                SET.invokeExact(event, 3, (Object) String.valueOf(member));
+                COMMIT.invokeExact(event);
+            } catch (final Throwable xany) {
+                // not recorded
+            }
+        }
+    }
+
+    /**
+     * Records the creation of an exception.
+     * @param xjexl the exception
+     * @param info the location
+     * @param message the message
+     */
+    public static void exception(final JexlException xjexl, final JexlInfo info, final String message) {
+        final Object event = EXCEPTION != null ? EXCEPTION.create() : null;
+        if (event != null) {
+            try {
+                setInfo(event, info);
+                SET.invokeExact(event, 2, (Object) xjexl.getClass());
+                SET.invokeExact(event, 3, (Object) message);
+                COMMIT.invokeExact(event);
+            } catch (final Throwable xany) {
+                // not recorded
+            }
+        }
+    }
+}
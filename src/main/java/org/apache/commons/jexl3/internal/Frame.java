@@ -20,15 +20,46 @@ import java.util.Arrays;
 
 /**
  * A call frame, created from a scope, stores the arguments and local variables in a "stack frame" (sic).
+ * <p>Locals declared as {@code int}, {@code long} or {@code double} may be stored unboxed in the
+ * parallel long and double banks; their stack slot then holds a marker and {@link #get(int)} boxes the
+ * value on demand.</p>
  * @since 3.0
  */
 public final class Frame implements Cloneable {
+    /**
+     * The markers of the unboxed slots.
+     */
+    enum Unboxed {
+        /** An int stored in the long bank. */
+        INT(Integer.TYPE),
+        /** A long stored in the long bank. */
+        LONG(Long.TYPE),
+        /** A double stored in the double bank. */
+        DOUBLE(Double.TYPE);
+        /** The primitive type. */
+        private final Class<?> type;
+
+        Unboxed(final Class<?> t) {
+            type = t;
+        }
+
+        /**
+         * @return the primitive type
+         */
+        Class<?> getType() {
+            return type;
+        }
+    }
     /** The scope. */
     private final Scope scope;
     /** The actual stack frame. */
     private final Object[] stack;
     /** Number of curried parameters. */
     private final int curried;
+    /** The unboxed int and long values, allocated on first use. */
+    private long[] longs;
+    /** The unboxed double values, allocated on first use. */
+    private double[] doubles;
 
     /**
      * Creates a new frame.
@@ -57,6 +88,8 @@ public final class Frame implements Cloneable {
     protected Frame(Frame f, Object... values) {
         scope = f.scope;
         stack = f.stack != null ? f.stack.clone() : null;
+        longs = f.longs != null ? f.longs.clone() : null;
+        doubles = f.doubles != null ? f.doubles.clone() : null;
         if (stack != null) {
             int nparm = scope.getArgCount();
             int ncopy = 0;
@@ -88,6 +121,11 @@ public final class Frame implements Cloneable {
                 }
                 // fuzz it a little
                 ns[i] = Closure.class.hashCode() + i;
+            } else if (stack[i] instanceof Unboxed) {
+                if (ns == stack) {
+                    ns = stack.clone();
+                }
+                ns[i] = get(i);
             }
         }
         return ns;
@@ -123,7 +161,70 @@ public final class Frame implements Cloneable {
      * @return the stacked value
      */
     Object get(final int s) {
-        return stack[s];
+        final Object value = stack[s];
+        if (value instanceof Unboxed) {
+            switch ((Unboxed) value) {
+                case INT: return (int) longs[s];
+                case LONG: return longs[s];
+                default: return doubles[s];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Gets the unboxed marker of a slot.
+     * @param s the offset in this frame
+     * @return the marker or null if the slot value is not unboxed
+     */
+    Unboxed unboxed(final int s) {
+        final Object value = stack[s];
+        return value instanceof Unboxed ? (Unboxed) value : null;
+    }
+
+    /**
+     * Gets an unboxed int or long value.
+     * @param s the offset in this frame
+     * @return the value
+     */
+    long getLong(final int s) {
+        return longs[s];
+    }
+
+    /**
+     * Gets an unboxed double value.
+     * @param s the offset in this frame
+     * @return the value
+     */
+    double getDouble(final int s) {
+        return doubles[s];
+    }
+
+    /**
+     * Sets an unboxed int or long value.
+     * @param s the offset in this frame
+     * @param type the INT or LONG marker
+     * @param value the value
+     */
+    void setLong(final int s, final Unboxed type, final long value) {
+        if (longs == null) {
+            longs = new long[stack.length];
+        }
+        longs[s] = value;
+        stack[s] = type;
+    }
+
+    /**
+     * Sets an unboxed double value.
+     * @param s the offset in this frame
+     * @param value the value
+     */
+    void setDouble(final int s, final double value) {
+        if (doubles == null) {
+            doubles = new double[stack.length];
+        }
+        doubles[s] = value;
+        stack[s] = Unboxed.DOUBLE;
     }
 
     /**
@@ -143,6 +244,30 @@ public final class Frame implements Cloneable {
     void set(final int r, final Object value) {
         stack[r] = value;
     }
+
+    /**
+     * Resets this frame to the values of another frame of the same scope.
+     * <p>This allows running a lambda repeatedly on the same frame.</p>
+     * @param template the frame to copy
+     */
+    void reset(final Frame template) {
+        System.arraycopy(template.stack, 0, stack, 0, stack.length);
+        if (template.longs != null) {
+            if (longs == null) {
+                longs = template.longs.clone();
+            } else {
+                System.arraycopy(template.longs, 0, longs, 0, longs.length);
+            }
+        }
+        if (template.doubles != null) {
+            if (doubles == null) {
+                doubles = template.doubles.clone();
+            } else {
+                System.arraycopy(template.doubles, 0, doubles, 0, doubles.length);
+            }
+        }
+    }
+
     /**
      * Assign values to this frame.
      * @param values the values
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlCache;
+import org.apache.commons.jexl3.JexlInfo;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * A polymorphic inline cache of a property, method or operator call site.
+ * <p>
+ * A site keeps up to {@link #POLYMORPHIC} executors; each executor guards its own invocation
+ * (object class, property name, argument classes) and fails when it does not apply, in which case the next
+ * one is tried. When a site resolves more executors than that, it turns megamorphic: it stops caching
+ * locally and property, array access, method and operator sites use the {@link Lookup} shared by all sites
+ * of the engine instead.
+ * </p>
+ * <p>
+ * The hit and miss counters are not synchronized and are only meant for diagnostics.
+ * </p>
+ * @since 4.0
+ */
+public final class InlineCache {
+    /** The maximum number of executors cached by a site. */
+    public static final int POLYMORPHIC = 4;
+    /** No executor. */
+    private static final Object[] EMPTY = {};
+    /** The call site node. */
+    private final JexlNode node;
+    /** The executors, copied on write. */
+    private volatile Object[] entries = EMPTY;
+    /** Whether this site has seen too many executors. */
+    private volatile boolean megamorphic;
+    /** The number of cached executor successes. */
+    private long hits;
+    /** The number of executor resolutions. */
+    private long misses;
+
+    /**
+     * Creates a cache.
+     * @param site the call site node, may be null
+     */
+    InlineCache(final JexlNode site) {
+        node = site;
+    }
+
+    /**
+     * Gets the inline cache of a site, creating it if needed.
+     * @param site the site reference
+     * @return the cache
+     */
+    static InlineCache of(final JexlCache.Reference site) {
+        final Object cached = site.getCache();
+        if (cached instanceof InlineCache) {
+            return (InlineCache) cached;
+        }
+        final JexlNode node = site instanceof JexlNode
+            ? (JexlNode) site
+            : site instanceof TypeFeedback ? ((TypeFeedback) site).getNode() : null;
+        final InlineCache ic = new InlineCache(node);
+        site.setCache(ic);
+        return ic;
+    }
+
+    /**
+     * @return the cached executors
+     */
+    Object[] entries() {
+        return entries;
+    }
+
+    /**
+     * Counts a successful cached executor.
+     */
+    void hit() {
+        hits += 1;
+    }
+
+    /**
+     * Counts an executor resolution.
+     */
+    void miss() {
+        misses += 1;
+    }
+
+    /**
+     * Adds an executor to this site.
+     * <p>Past {@link #POLYMORPHIC} executors, the site turns megamorphic and keeps the ones it has.</p>
+     * @param executor the executor
+     * @return true if added, false if this site is megamorphic
+     */
+    boolean add(final Object executor) {
+        final Object[] current = entries;
+        final int size = current.length;
+        if (size < POLYMORPHIC) {
+            final Object[] next = Arrays.copyOf(current, size + 1);
+            next[size] = executor;
+            entries = next;
+            return true;
+        }
+        megamorphic = true;
+        return false;
+    }
+
+    /**
+     * @return the call site information
+     */
+    public JexlInfo getInfo() {
+        return node != null ? node.jexlInfo() : null;
+    }
+
+    /**
+     * @return the number of invocations that used a cached executor
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of invocations that had to resolve an executor
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of executors cached by this site
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * @return whether this site saw more than {@link #POLYMORPHIC} executors
+     */
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    @Override
+    public String toString() {
+        final JexlInfo info = getInfo();
+        return (info != null ? info.toString() : "?")
+            + (megamorphic ? " megamorphic(" : " polymorphic(") + size() + ")"
+            + ", hits: " + hits
+            + ", misses: " + misses;
+    }
+
+    /**
+     * The executors shared by the megamorphic sites of an engine.
+     * <p>Executors are keyed by operator, object class and discriminant: the property name or key for property
+     * and array accesses - the class for numeric indices -, the
+     * {@link org.apache.commons.jexl3.internal.introspection.MethodKey} for method calls - whose operator is null -
+     * and operator overloads. Since executors guard their own invocation, the key only needs to tell them apart.</p>
+     * <p>The number of keys is bounded, the least frequently used executors are evicted first.</p>
+     */
+    static final class Lookup {
+        /** The maximum number of executors. */
+        static final int CAPACITY = 4096;
+        /** The executors. */
+        private final JexlCache<Key, Object> executors;
+
+        /**
+         * Creates a lookup of {@link #CAPACITY} executors.
+         */
+        Lookup() {
+            this(CAPACITY);
+        }
+
+        /**
+         * Creates a lookup.
+         * @param capacity the maximum number of executors
+         */
+        Lookup(final int capacity) {
+            executors = new ConcurrentCache<>(capacity);
+        }
+
+        /**
+         * Gets an executor.
+         * @param operator the operator, null for method calls
+         * @param clazz the object class
+         * @param property the property
+         * @return the executor or null
+         */
+        Object get(final JexlOperator operator, final Class<?> clazz, final Object property) {
+            return executors.get(new Key(operator, clazz, property));
+        }
+
+        /**
+         * Stores an executor, evicting another one when full.
+         * @param operator the operator, null for method calls
+         * @param clazz the object class
+         * @param property the property
+         * @param executor the executor
+         */
+        void put(final JexlOperator operator, final Class<?> clazz, final Object property, final Object executor) {
+            executors.put(new Key(operator, clazz, property), executor);
+        }
+
+        /**
+         * @return the number of executors
+         */
+        int size() {
+            return executors.size();
+        }
+
+        /**
+         * Clears all executors.
+         */
+        void clear() {
+            executors.clear();
+        }
+    }
+
+    /**
+     * A lookup key.
+     */
+    private static final class Key {
+        /** The operator. */
+        private final JexlOperator operator;
+        /** The object class. */
+        private final Class<?> clazz;
+        /** The property. */
+        private final Object property;
+        /** The hash code. */
+        private final int hashCode;
+
+        Key(final JexlOperator op, final Class<?> c, final Object p) {
+            operator = op;
+            clazz = c;
+            // indices are discriminated by class, not by value
+            property = p instanceof Number ? p.getClass() : p;
+            hashCode = (Objects.hashCode(operator) * 31 + clazz.hashCode()) * 31 + Objects.hashCode(property);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) obj;
+            return operator == key.operator && clazz == key.clazz && Objects.equals(property, key.property);
+        }
+    }
+}
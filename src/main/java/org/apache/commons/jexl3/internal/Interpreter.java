@@ -18,6 +18,7 @@
 package org.apache.commons.jexl3.internal;
 
 import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlCache;
 import org.apache.commons.jexl3.JexlContext;
 import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlException;
@@ -226,7 +227,9 @@ import java.util.Map;
 import java.util.AbstractMap;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
@@ -248,6 +251,12 @@ public class Interpreter extends InterpreterBase {
     protected Object current;
     /** Probe frame for debugging. */
     protected JexlProbe.Frame stackFrame;
+    /** Whether operator nodes record operand type feedback. */
+    private final boolean specializing;
+    /** The unboxed evaluation of typed locals, null if operators are not the default ones. */
+    private final Unboxing unboxing;
+    /** Whether control statements complete through {@link Completion} results rather than exceptions. */
+    private final boolean signalling;
 
     /**
      * The thread local interpreter.
@@ -281,6 +290,9 @@ public class Interpreter extends InterpreterBase {
         super(engine, opts, aContext, info);
         this.frame = eFrame;
         this.current = current;
+        this.specializing = cache && operators.getClass() == Operator.class;
+        this.unboxing = frame != null && operators.getClass() == Operator.class ? new Unboxing(this) : null;
+        this.signalling = isSignalling();
     }
 
     /**
@@ -292,6 +304,19 @@ public class Interpreter extends InterpreterBase {
         super(ii, jexla);
         frame = ii.frame;
         block = ii.block != null? new LexicalFrame(ii.block) : null;
+        specializing = cache && operators.getClass() == Operator.class;
+        unboxing = frame != null && operators.getClass() == Operator.class ? new Unboxing(this) : null;
+        signalling = isSignalling();
+    }
+
+    /**
+     * Whether control statements can complete through results.
+     * <p>Derived interpreters visit statements their own way and probes observe the control exceptions
+     * of the enclosing statements, both only see exceptions.</p>
+     * @return true if this interpreter handles completions
+     */
+    private boolean isSignalling() {
+        return getClass() == Interpreter.class && jexl.getProbe() == null;
     }
 
     /**
@@ -328,6 +353,16 @@ public class Interpreter extends InterpreterBase {
         }
     }
 
+    /**
+     * Whether this interpreter continues an evaluation started on another thread.
+     * <p>A nested interpreter keeps the frame height set at its creation and its evaluation is not
+     * measured as an execution.</p>
+     * @return false by default
+     */
+    protected boolean isNested() {
+        return false;
+    }
+
     /**
      * Interpret the given script/expression.
      * <p>
@@ -341,16 +376,31 @@ public class Interpreter extends InterpreterBase {
         JexlContext.ThreadLocal tcontext = null;
         JexlEngine tjexl = null;
         Interpreter tinter = null;
+        // only top-level evaluations are measured
+        boolean measured = false;
+        long start = 0L;
+        Object flight = null;
+        Throwable failure = null;
 
         try {
             tinter = putThreadInterpreter(this);
             if (tinter != null) {
                 fp = tinter.fp + 1;
+            } else if (!isNested()) {
+                flight = FlightRecorder.beginExecution();
+                if (jexl.metrics != null) {
+                    measured = true;
+                    start = System.nanoTime();
+                }
             }
             if (context instanceof JexlContext.ThreadLocal) {
                 tcontext = jexl.putThreadLocal((JexlContext.ThreadLocal) context);
             }
             tjexl = jexl.putThreadEngine(jexl);
+            if (budget == null) {
+                // nested evaluations share the budget of the enclosing one
+                budget = tinter != null && tinter.budget != null ? tinter.budget : ExecutionBudget.create(options);
+            }
             if (fp > jexl.stackOverflow) {
                 throw new JexlException.StackOverflow(detailedInfo(node), "jexl (" + jexl.stackOverflow + ")", null);
             }
@@ -358,6 +408,9 @@ public class Interpreter extends InterpreterBase {
             Object result = null;
             try {
                 result = node.jjtAccept(this, null);
+                if (result instanceof Completion) {
+                    result = ((Completion) result).getValue();
+                }
             } catch (JexlException.Return xreturn) {
                 result = xreturn.getValue();
             } catch (JexlException.Yield xyield) {
@@ -384,6 +437,7 @@ public class Interpreter extends InterpreterBase {
 
         } catch (final StackOverflowError xstack) {
             final JexlException xjexl = new JexlException.StackOverflow(detailedInfo(node), "jvm", xstack);
+            failure = xjexl;
             if (!isSilent()) {
                 throw xjexl.clean();
             }
@@ -391,22 +445,31 @@ public class Interpreter extends InterpreterBase {
                 logger.warn(xjexl.getMessage(), xjexl.getCause());
             }
         } catch (final JexlException.Cancel xcancel) {
+            failure = xcancel;
             // cancelled |= Thread.interrupted();
             cancelled.weakCompareAndSet(false, Thread.interrupted());
             if (isCancellable()) {
                 throw xcancel.clean();
             }
         } catch (final JexlException xjexl) {
+            failure = xjexl;
             if (!isSilent()) {
                 throw xjexl.clean();
             }
             if (logger.isWarnEnabled()) {
                 logger.warn(xjexl.getMessage(), xjexl.getCause());
             }
+        } catch (final RuntimeException | Error xany) {
+            failure = xany;
+            throw xany;
         } finally {
+            if (measured) {
+                jexl.metrics.recordExecution(info, System.nanoTime() - start, failure);
+            }
+            FlightRecorder.endExecution(flight, info, node, failure);
 
             // clean functors at top level
-            if (fp == 0) {
+            if (tinter == null) {
                 synchronized (this) {
                     if (functors != null) {
                         for (final Object functor : functors.values()) {
@@ -695,11 +758,44 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTAddNode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.evaluate(JexlOperator.ADD, node);
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
+        return add(node, left, right);
+    }
+
+    /**
+     * Adds two operands, used by the interpreter and compiled scripts.
+     * @param node the operator node
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result
+     */
+    protected Object add(final JexlNode node, final Object left, final Object right) {
+        final TypeFeedback feedback = feedback(node, JexlOperator.ADD);
         try {
-            final Object result = operators.tryOverload(node, JexlOperator.ADD, left, right);
-            return result != JexlEngine.TRY_FAILED ? result : arithmetic.add(left, right);
+            if (feedback != null) {
+                final int kind = feedback.guard(left, right);
+                if (kind > 0) {
+                    final Object result = TypeFeedback.add(kind, left, right);
+                    if (result != JexlEngine.TRY_FAILED) {
+                        return result;
+                    }
+                }
+            }
+            final Object result = operators.tryOverload(feedback != null ? feedback : node, JexlOperator.ADD, left, right);
+            if (result != JexlEngine.TRY_FAILED) {
+                return result;
+            }
+            if (feedback != null) {
+                feedback.record(left, right);
+            }
+            return arithmetic.add(left, right);
         } catch (final ArithmeticException xrt) {
             throw createException(findNullOperand(node, left, right), "+ error", xrt);
         }
@@ -707,11 +803,44 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTSubNode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.evaluate(JexlOperator.SUBTRACT, node);
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
+        return subtract(node, left, right);
+    }
+
+    /**
+     * Subtracts two operands, used by the interpreter and compiled scripts.
+     * @param node the operator node
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result
+     */
+    protected Object subtract(final JexlNode node, final Object left, final Object right) {
+        final TypeFeedback feedback = feedback(node, JexlOperator.SUBTRACT);
         try {
-            final Object result = operators.tryOverload(node, JexlOperator.SUBTRACT, left, right);
-            return result != JexlEngine.TRY_FAILED ? result : arithmetic.subtract(left, right);
+            if (feedback != null) {
+                final int kind = feedback.guard(left, right);
+                if (kind > 0) {
+                    final Object result = TypeFeedback.subtract(kind, left, right);
+                    if (result != JexlEngine.TRY_FAILED) {
+                        return result;
+                    }
+                }
+            }
+            final Object result = operators.tryOverload(feedback != null ? feedback : node, JexlOperator.SUBTRACT, left, right);
+            if (result != JexlEngine.TRY_FAILED) {
+                return result;
+            }
+            if (feedback != null) {
+                feedback.record(left, right);
+            }
+            return arithmetic.subtract(left, right);
         } catch (final ArithmeticException xrt) {
             throw createException(findNullOperand(node, left, right), "- error", xrt);
         }
@@ -719,11 +848,44 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTMulNode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.evaluate(JexlOperator.MULTIPLY, node);
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
+        return multiply(node, left, right);
+    }
+
+    /**
+     * Multiplies two operands, used by the interpreter and compiled scripts.
+     * @param node the operator node
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result
+     */
+    protected Object multiply(final JexlNode node, final Object left, final Object right) {
+        final TypeFeedback feedback = feedback(node, JexlOperator.MULTIPLY);
         try {
-            final Object result = operators.tryOverload(node, JexlOperator.MULTIPLY, left, right);
-            return result != JexlEngine.TRY_FAILED ? result : arithmetic.multiply(left, right);
+            if (feedback != null) {
+                final int kind = feedback.guard(left, right);
+                if (kind > 0) {
+                    final Object result = TypeFeedback.multiply(kind, left, right);
+                    if (result != JexlEngine.TRY_FAILED) {
+                        return result;
+                    }
+                }
+            }
+            final Object result = operators.tryOverload(feedback != null ? feedback : node, JexlOperator.MULTIPLY, left, right);
+            if (result != JexlEngine.TRY_FAILED) {
+                return result;
+            }
+            if (feedback != null) {
+                feedback.record(left, right);
+            }
+            return arithmetic.multiply(left, right);
         } catch (final ArithmeticException xrt) {
             throw createException(findNullOperand(node, left, right), "* error", xrt);
         }
@@ -733,9 +895,36 @@ public class Interpreter extends InterpreterBase {
     protected Object visit(final ASTDivNode node, final Object data) {
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
+        return divide(node, left, right);
+    }
+
+    /**
+     * Divides two operands, used by the interpreter and compiled scripts.
+     * @param node the operator node
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result
+     */
+    protected Object divide(final JexlNode node, final Object left, final Object right) {
+        final TypeFeedback feedback = feedback(node, JexlOperator.DIVIDE);
         try {
-            final Object result = operators.tryOverload(node, JexlOperator.DIVIDE, left, right);
-            return result != JexlEngine.TRY_FAILED ? result : arithmetic.divide(left, right);
+            if (feedback != null) {
+                final int kind = feedback.guard(left, right);
+                if (kind > 0) {
+                    final Object result = TypeFeedback.divide(kind, left, right);
+                    if (result != JexlEngine.TRY_FAILED) {
+                        return result;
+                    }
+                }
+            }
+            final Object result = operators.tryOverload(feedback != null ? feedback : node, JexlOperator.DIVIDE, left, right);
+            if (result != JexlEngine.TRY_FAILED) {
+                return result;
+            }
+            if (feedback != null) {
+                feedback.record(left, right);
+            }
+            return arithmetic.divide(left, right);
         } catch (final ArithmeticException xrt) {
             if (!arithmetic.isStrict()) {
                 return 0.0d;
@@ -748,9 +937,36 @@ public class Interpreter extends InterpreterBase {
     protected Object visit(final ASTModNode node, final Object data) {
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
+        return mod(node, left, right);
+    }
+
+    /**
+     * Computes the modulo of two operands, used by the interpreter and compiled scripts.
+     * @param node the operator node
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result
+     */
+    protected Object mod(final JexlNode node, final Object left, final Object right) {
+        final TypeFeedback feedback = feedback(node, JexlOperator.MOD);
         try {
-            final Object result = operators.tryOverload(node, JexlOperator.MOD, left, right);
-            return result != JexlEngine.TRY_FAILED ? result : arithmetic.mod(left, right);
+            if (feedback != null) {
+                final int kind = feedback.guard(left, right);
+                if (kind > 0) {
+                    final Object result = TypeFeedback.mod(kind, left, right);
+                    if (result != JexlEngine.TRY_FAILED) {
+                        return result;
+                    }
+                }
+            }
+            final Object result = operators.tryOverload(feedback != null ? feedback : node, JexlOperator.MOD, left, right);
+            if (result != JexlEngine.TRY_FAILED) {
+                return result;
+            }
+            if (feedback != null) {
+                feedback.record(left, right);
+            }
+            return arithmetic.mod(left, right);
         } catch (final ArithmeticException xrt) {
             if (!arithmetic.isStrict()) {
                 return 0.0d;
@@ -759,6 +975,78 @@ public class Interpreter extends InterpreterBase {
         }
     }
 
+    /**
+     * Gets the operand type feedback of an operator node.
+     * <p>The feedback replaces the node value and keeps the operator overload cache.</p>
+     * @param node the operator node
+     * @param operator the operator
+     * @return the feedback or null if the operator can not be specialized
+     */
+    private TypeFeedback feedback(final JexlNode node, final JexlOperator operator) {
+        if (!specializing || !TypeFeedback.isSpecializable(arithmetic, operators, operator)) {
+            return null;
+        }
+        final Object value = node.jjtGetValue();
+        if (value instanceof TypeFeedback) {
+            return (TypeFeedback) value;
+        }
+        final TypeFeedback feedback = new TypeFeedback(node, operator);
+        node.jjtSetValue(feedback);
+        return feedback;
+    }
+
+    /**
+     * Compares two operands, used by the interpreter and compiled scripts.
+     * @param node the operator node
+     * @param operator the comparison operator
+     * @param left the left operand
+     * @param right the right operand
+     * @return the comparison result
+     */
+    protected boolean compare(final JexlNode node, final JexlOperator operator, final Object left, final Object right) {
+        final JexlOperator op = operator == JexlOperator.NE ? JexlOperator.EQ : operator;
+        final TypeFeedback feedback = feedback(node, op);
+        final JexlCache.Reference reference;
+        if (feedback != null) {
+            final int kind = feedback.guard(left, right);
+            if (kind > 0) {
+                final int cmp = TypeFeedback.compare(kind, left, right);
+                switch (operator) {
+                    case EQ:
+                        return cmp == 0;
+                    case NE:
+                        return cmp != 0;
+                    case LT:
+                        return cmp < 0;
+                    case LTE:
+                        return cmp <= 0;
+                    case GT:
+                        return cmp > 0;
+                    default:
+                        return cmp >= 0;
+                }
+            }
+            feedback.record(left, right);
+            reference = feedback;
+        } else {
+            reference = node;
+        }
+        switch (operator) {
+            case EQ:
+                return operators.equals(reference, JexlOperator.EQ, left, right);
+            case NE:
+                return !operators.equals(reference, JexlOperator.NE, left, right);
+            case LT:
+                return operators.lessThan(reference, left, right);
+            case LTE:
+                return operators.lessThanOrEqual(reference, left, right);
+            case GT:
+                return operators.greaterThan(reference, left, right);
+            default:
+                return operators.greaterThanOrEqual(reference, left, right);
+        }
+    }
+
     @Override
     protected Object visit(final ASTShiftLeftNode node, final Object data) {
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
@@ -900,15 +1188,21 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTEQNode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Boolean unboxed = unboxing.compare(JexlOperator.EQ, node);
+            if (unboxed != null) {
+                return unboxed;
+            }
+        }
         Object left = node.jjtGetChild(0).jjtAccept(this, data);
         JexlNode operand = node.jjtGetChild(1);
         if (operand instanceof ASTSetOperand) {
             return checkSetOperand(node, (ASTSetOperand) operand, left, data, (right) -> {
-                return operators.equals(node, JexlOperator.EQ, left, right);
+                return compare(node, JexlOperator.EQ, left, right);
             });
         } else {
             Object right = operand.jjtAccept(this, data);
-            return operators.equals(node, JexlOperator.EQ, left, right);
+            return compare(node, JexlOperator.EQ, left, right);
         }
     }
 
@@ -925,15 +1219,21 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTNENode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Boolean unboxed = unboxing.compare(JexlOperator.NE, node);
+            if (unboxed != null) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         JexlNode operand = node.jjtGetChild(1);
         if (operand instanceof ASTSetOperand) {
             return checkSetOperand(node, (ASTSetOperand) operand, left, data, (right) -> {
-                return !operators.equals(node, JexlOperator.NE, left, right);
+                return compare(node, JexlOperator.NE, left, right);
             });
         } else {
             Object right = operand.jjtAccept(this, data);
-            return !operators.equals(node, JexlOperator.NE, left, right);
+            return compare(node, JexlOperator.NE, left, right);
         }
     }
 
@@ -950,15 +1250,21 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTGENode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Boolean unboxed = unboxing.compare(JexlOperator.GTE, node);
+            if (unboxed != null) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         JexlNode operand = node.jjtGetChild(1);
         if (operand instanceof ASTSetOperand) {
             return checkSetOperand(node, (ASTSetOperand) operand, left, data, (right) -> {
-                return operators.greaterThanOrEqual(node, left, right);
+                return compare(node, JexlOperator.GTE, left, right);
             });
         } else {
             Object right = operand.jjtAccept(this, data);
-            return operators.greaterThanOrEqual(node, left, right);
+            return compare(node, JexlOperator.GTE, left, right);
         }
     }
 
@@ -975,15 +1281,21 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTGTNode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Boolean unboxed = unboxing.compare(JexlOperator.GT, node);
+            if (unboxed != null) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         JexlNode operand = node.jjtGetChild(1);
         if (operand instanceof ASTSetOperand) {
             return checkSetOperand(node, (ASTSetOperand) operand, left, data, (right) -> {
-                return operators.greaterThan(node, left, right);
+                return compare(node, JexlOperator.GT, left, right);
             });
         } else {
             Object right = operand.jjtAccept(this, data);
-            return operators.greaterThan(node, left, right);
+            return compare(node, JexlOperator.GT, left, right);
         }
     }
 
@@ -1000,15 +1312,21 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTLENode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Boolean unboxed = unboxing.compare(JexlOperator.LTE, node);
+            if (unboxed != null) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         JexlNode operand = node.jjtGetChild(1);
         if (operand instanceof ASTSetOperand) {
             return checkSetOperand(node, (ASTSetOperand) operand, left, data, (right) -> {
-                return operators.lessThanOrEqual(node, left, right);
+                return compare(node, JexlOperator.LTE, left, right);
             });
         } else {
             Object right = operand.jjtAccept(this, data);
-            return operators.lessThanOrEqual(node, left, right);
+            return compare(node, JexlOperator.LTE, left, right);
         }
     }
 
@@ -1025,15 +1343,21 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(final ASTLTNode node, final Object data) {
+        if (unboxing != null && data == null) {
+            final Boolean unboxed = unboxing.compare(JexlOperator.LT, node);
+            if (unboxed != null) {
+                return unboxed;
+            }
+        }
         final Object left = node.jjtGetChild(0).jjtAccept(this, data);
         JexlNode operand = node.jjtGetChild(1);
         if (operand instanceof ASTSetOperand) {
             return checkSetOperand(node, (ASTSetOperand) operand, left, data, (right) -> {
-                return operators.lessThan(node, left, right);
+                return compare(node, JexlOperator.LT, left, right);
             });
         } else {
             Object right = operand.jjtAccept(this, data);
-            return operators.lessThan(node, left, right);
+            return compare(node, JexlOperator.LT, left, right);
         }
     }
 
@@ -1551,6 +1875,16 @@ public class Interpreter extends InterpreterBase {
     @Override
     protected Object visit(final ASTNotNode node, final Object data) {
         final Object val = node.jjtGetChild(0).jjtAccept(this, data);
+        return not(node, val);
+    }
+
+    /**
+     * Negates a logical operand, used by the interpreter and compiled scripts.
+     * @param node the operator node
+     * @param val the operand
+     * @return the result
+     */
+    protected Object not(final JexlNode node, final Object val) {
         try {
             Object result = operators.tryOverload(node, JexlOperator.NOT, val);
             return result != JexlEngine.TRY_FAILED ? result : arithmetic.not(val);
@@ -1598,8 +1932,19 @@ public class Interpreter extends InterpreterBase {
         JexlNode objectNode = null;
         for (int c = 0; c < numChildren; c++) {
             objectNode = node.jjtGetChild(c);
-            // attempt to evaluate the property within the object)
-            object = objectNode.jjtAccept(this, object);
+            // like completions, fusion is left out when probed or derived
+            final int lastStage = signalling && c > 0 && object != null && !options.isParallel()
+                ? Pipeline.lastStage(node, c)
+                : c;
+            if (lastStage > c) {
+                // adjacent projections and selections run as one loop
+                object = Pipeline.create(this, node, c, lastStage, object);
+                c = lastStage;
+                objectNode = node.jjtGetChild(c);
+            } else {
+                // attempt to evaluate the property within the object)
+                object = objectNode.jjtAccept(this, object);
+            }
             cancelCheck(objectNode);
         }
         return object;
@@ -1610,10 +1955,24 @@ public class Interpreter extends InterpreterBase {
         JexlNode valNode = node.jjtGetChild(0);
         if (valNode instanceof ASTSimpleLambda) {
             ASTJexlLambda generator = (ASTJexlLambda) valNode;
-            return new GeneratorIterator(generator);
+            return jexl.continuations ? new Continuation(this, generator) : new GeneratorIterator(generator);
         } else {
             Object iterableValue = valNode.jjtAccept(this, data);
             if (iterableValue != null) {
+                if (options.isParallel()) {
+                    // keep the source splittable by chained projections and selections
+                    List<?> elements = Parallel.elements(this, iterableValue);
+                    if (elements != null) {
+                        return new Parallel.Elements(elements, 0, elements.size());
+                    }
+                }
+                if (signalling && !operators.overloads(JexlOperator.FOR_EACH_INDEXED)) {
+                    // keep the cursor primitive for loops and pipelines
+                    RangeIterator range = RangeIterator.of(iterableValue);
+                    if (range != null) {
+                        return range;
+                    }
+                }
                 Object forEach = operators.tryOverload(node, JexlOperator.FOR_EACH_INDEXED, iterableValue);
                 Iterator<?> itemsIterator = forEach instanceof Iterator ? 
                     (Iterator<?>) forEach : 
@@ -1638,6 +1997,7 @@ public class Interpreter extends InterpreterBase {
             this.script = script;
             Frame scope = script.createFrame(frame);
             generator = jexl.createResumableInterpreter(context, scope, options, info);
+            generator.block = new LexicalFrame(scope, null).defineArgs();
             i = -1;
         }
 
@@ -1768,6 +2128,10 @@ public class Interpreter extends InterpreterBase {
                     // if there is an else, execute it.
                     result = node.jjtGetChild(2).jjtAccept(this, null);
                 }
+                if (result instanceof Completion && ((Completion) result).isTarget(node)) {
+                    // break
+                    result = null;
+                }
             } catch (JexlException.Break stmtBreak) {
                 String target = stmtBreak.getLabel();
                 if (target == null || !target.equals(node.getLabel())) {
@@ -1803,7 +2167,14 @@ public class Interpreter extends InterpreterBase {
             for (int i = 0; i < numChildren; i++) {
                 final JexlNode statement = node.jjtGetChild(i);
                 try {
-                    result = statement.jjtAccept(this, data);
+                    final Object value = statement.jjtAccept(this, data);
+                    if (value instanceof Completion) {
+                        if (((Completion) value).isTarget(node)) {
+                            break;
+                        }
+                        return value;
+                    }
+                    result = value;
                 } catch (JexlException.Break stmtBreak) {
                     String target = stmtBreak.getLabel();
                     if (target != null && target.equals(node.getLabel())) {
@@ -1847,6 +2218,9 @@ public class Interpreter extends InterpreterBase {
                 ? node.jjtGetChild(0).jjtAccept(this, data)
                 : null;
             afterStatement(node, val, null);
+            if (signalling && Completion.isSignalled(node)) {
+                return new Completion(node, val);
+            }
             throw new JexlException.Return(detailedInfo(node), null, val);
         } catch (JexlException.Return result) {
             throw result;
@@ -1865,6 +2239,9 @@ public class Interpreter extends InterpreterBase {
             beforeStatement(node);
             final Object val = node.jjtGetChild(0).jjtAccept(this, data);
             afterStatement(node, val, null);
+            if (signalling && Completion.isSignalled(node)) {
+                return new Completion(node, val);
+            }
             throw new JexlException.Yield(detailedInfo(node), null, val);
         } catch (JexlException.Yield result) {
             throw result;
@@ -1883,6 +2260,9 @@ public class Interpreter extends InterpreterBase {
             beforeStatement(node);
             final Object val = node.getLabel();
             afterStatement(node, val, null);
+            if (signalling && Completion.isSignalled(node)) {
+                return new Completion(node, null);
+            }
             throw new JexlException.Continue(detailedInfo(node), node.getLabel());
         } catch (JexlException.Continue result) {
             throw result;
@@ -1901,6 +2281,9 @@ public class Interpreter extends InterpreterBase {
             beforeStatement(node);
             final Object val = node.getLabel();
             afterStatement(node, val, null);
+            if (signalling && Completion.isSignalled(node)) {
+                return new Completion(node, null);
+            }
             throw new JexlException.Remove(detailedInfo(node), node.getLabel());
         } catch (JexlException.Remove result) {
             throw result;
@@ -1919,6 +2302,9 @@ public class Interpreter extends InterpreterBase {
             beforeStatement(node);
             final Object val = node.getLabel();
             afterStatement(node, val, null);
+            if (signalling && Completion.isSignalled(node)) {
+                return new Completion(node, null);
+            }
             throw new JexlException.Break(detailedInfo(node), node.getLabel());
         } catch (JexlException.Break result) {
             throw result;
@@ -2018,7 +2404,16 @@ public class Interpreter extends InterpreterBase {
                 // Execute loop body
                 if (statement != null) {
                     try {
-                        statement.jjtAccept(this, data);
+                        final Object value = statement.jjtAccept(this, data);
+                        if (value instanceof Completion) {
+                            final Completion completion = (Completion) value;
+                            if (!completion.isTarget(node)) {
+                                return completion;
+                            }
+                            if (completion.isBreak()) {
+                                break;
+                            }
+                        }
                     } catch (JexlException.Break stmtBreak) {
                         String target = stmtBreak.getLabel();
                         if (target == null || target.equals(node.getLabel())) {
@@ -2159,15 +2554,23 @@ public class Interpreter extends InterpreterBase {
                          (Iterator<?>) forEach : 
                          uberspect.getIndexedIterator(iterableValue);
                 } else {
-                    // get an iterator for the collection/array etc via the introspector.
-                    Object forEach = operators.tryOverload(node, JexlOperator.FOR_EACH, iterableValue);
-                    itemsIterator = forEach instanceof Iterator ? 
-                         (Iterator<?>) forEach : 
-                         uberspect.getIterator(iterableValue);
+                    // like completions, the primitive counter is left out when probed or derived
+                    itemsIterator = signalling && !operators.overloads(JexlOperator.FOR_EACH)
+                        ? RangeIterator.of(iterableValue)
+                        : null;
+                    if (itemsIterator == null) {
+                        // get an iterator for the collection/array etc via the introspector.
+                        Object forEach = operators.tryOverload(node, JexlOperator.FOR_EACH, iterableValue);
+                        itemsIterator = forEach instanceof Iterator ?
+                             (Iterator<?>) forEach :
+                             uberspect.getIterator(iterableValue);
+                    }
                 }
             }
             if (itemsIterator != null) {
                 int i = -1;
+                // the unboxed type of the range counter, known after the first assignment declared the variable
+                Frame.Unboxed counter = null;
                 try {
                     /* third objectNode is the statement to execute */
                     final JexlNode statement = node.jjtGetNumChildren() >= 3 ? node.jjtGetChild(2) : null;
@@ -2175,34 +2578,57 @@ public class Interpreter extends InterpreterBase {
                         cancelCheck(loopReference);
                         i += 1;
 
-                        try {
-                            beforeStatement(loopReference);
-                            // set loopVariable to value of iterator
-                            final Object value = itemsIterator.next();
-                            if (loopValueVariable != null) {
-                                if (value instanceof Map.Entry<?,?>) {
-                                    Map.Entry<?,?> entry = (Map.Entry<?,?>) value;
-                                    executeAssign(loopReference, loopVariable, entry.getKey(), null, data);
-                                    executeAssign(loopReference, loopValueVariable, entry.getValue(), null, data);
+                        if (counter != null) {
+                            // the range element is stored as a primitive, only boxed if read as an object
+                            frame.setLong(loopVariable.getSymbol(), counter, ((RangeIterator) itemsIterator).nextLong());
+                        } else {
+                            try {
+                                beforeStatement(loopReference);
+                                // set loopVariable to value of iterator
+                                final Object value = itemsIterator.next();
+                                if (loopValueVariable != null) {
+                                    if (value instanceof Map.Entry<?,?>) {
+                                        Map.Entry<?,?> entry = (Map.Entry<?,?>) value;
+                                        executeAssign(loopReference, loopVariable, entry.getKey(), null, data);
+                                        executeAssign(loopReference, loopValueVariable, entry.getValue(), null, data);
+                                    } else {
+                                        executeAssign(loopReference, loopVariable, i, null, data);
+                                        executeAssign(loopReference, loopValueVariable, value, null, data);
+                                    }
                                 } else {
-                                    executeAssign(loopReference, loopVariable, i, null, data);
-                                    executeAssign(loopReference, loopValueVariable, value, null, data);
+                                    executeAssign(loopReference, loopVariable, value, null, data);
+                                    if (itemsIterator instanceof RangeIterator) {
+                                        counter = counterOf(loopVariable, (RangeIterator) itemsIterator);
+                                    }
                                 }
-                            } else {
-                                executeAssign(loopReference, loopVariable, value, null, data);
+                                afterStatement(loopReference, value, null);
+                            } catch (Throwable thrown) {
+                                afterStatement(loopReference, null, thrown);
+                                InterpreterBase.<RuntimeException>doThrow((Throwable) thrown);
+                                // Never reaches here
+                                return null;
                             }
-                            afterStatement(loopReference, value, null);
-                        } catch (Throwable thrown) {
-                            afterStatement(loopReference, null, thrown);
-                            InterpreterBase.<RuntimeException>doThrow((Throwable) thrown);
-                            // Never reaches here
-                            return null;
                         }
 
                         if (statement != null) {
                             try {
                                 // execute statement
-                                result = statement.jjtAccept(this, data);
+                                final Object value = statement.jjtAccept(this, data);
+                                if (value instanceof Completion) {
+                                    final Completion completion = (Completion) value;
+                                    if (!completion.isTarget(node)) {
+                                        return completion;
+                                    }
+                                    if (completion.isBreak()) {
+                                        break;
+                                    }
+                                    if (completion.isRemove()) {
+                                        itemsIterator.remove();
+                                        i -= 1;
+                                    }
+                                } else {
+                                    result = value;
+                                }
                             } catch (final JexlException.Break stmtBreak) {
                                 String target = stmtBreak.getLabel();
                                 if (target == null || target.equals(node.getLabel())) {
@@ -2247,6 +2673,26 @@ public class Interpreter extends InterpreterBase {
         }
     }
 
+    /**
+     * Gets the unboxed type a foreach variable can hold the elements of a range as.
+     * <p>As typed locals do, an untyped or int variable keeps int elements unboxed; long elements are only
+     * kept unboxed by a long variable since an untyped one would turn later int assignments into longs.</p>
+     * @param variable the loop variable, already assigned once
+     * @param range the range iterator
+     * @return the INT or LONG marker, null if the elements are to be boxed
+     */
+    private Frame.Unboxed counterOf(final ASTIdentifier variable, final RangeIterator range) {
+        final int symbol = variable.getSymbol();
+        if (unboxing == null || !(variable instanceof ASTVar) || symbol < 0 || block.isVariableFinal(symbol)) {
+            return null;
+        }
+        final Class<?> type = block.typeof(symbol);
+        if (type == Long.TYPE) {
+            return Frame.Unboxed.LONG;
+        }
+        return (type == null || type == Integer.TYPE) && range.isInteger() ? Frame.Unboxed.INT : null;
+    }
+
     @Override
     protected Object visit(ASTForeachVar node, Object data) {
         return null;
@@ -2591,7 +3037,18 @@ public class Interpreter extends InterpreterBase {
                 if (node.jjtGetNumChildren() > 1) {
                     try {
                         // execute statement
-                        result = node.jjtGetChild(1).jjtAccept(this, data);
+                        final Object value = node.jjtGetChild(1).jjtAccept(this, data);
+                        if (value instanceof Completion) {
+                            final Completion completion = (Completion) value;
+                            if (!completion.isTarget(node)) {
+                                return completion;
+                            }
+                            if (completion.isBreak()) {
+                                break;
+                            }
+                        } else {
+                            result = value;
+                        }
                     } catch (final JexlException.Break stmtBreak) {
                         String target = stmtBreak.getLabel();
                         if (target == null || target.equals(node.getLabel())) {
@@ -2630,7 +3087,18 @@ public class Interpreter extends InterpreterBase {
                 // execute statement
                 if (nc > 1) {
                     try {
-                        result = node.jjtGetChild(0).jjtAccept(this, data);
+                        final Object value = node.jjtGetChild(0).jjtAccept(this, data);
+                        if (value instanceof Completion) {
+                            final Completion completion = (Completion) value;
+                            if (!completion.isTarget(node)) {
+                                return completion;
+                            }
+                            if (completion.isBreak()) {
+                                break;
+                            }
+                        } else {
+                            result = value;
+                        }
                     } catch (final JexlException.Break stmtBreak) {
                         String target = stmtBreak.getLabel();
                         if (target == null || target.equals(node.getLabel())) {
@@ -3630,8 +4098,15 @@ public class Interpreter extends InterpreterBase {
     protected Object visit(final ASTAwaitFunction node, final Object data) {
         try {
             final Object value = node.jjtGetChild(0).jjtAccept(this, data);
-            Future f = (Future) arithmetic.cast(Future.class, value);
-            return f != null ? f.get() : null;
+            final Future f = (Future) arithmetic.cast(Future.class, value);
+            if (f == null) {
+                return null;
+            }
+            if (!f.isDone() && !(f instanceof CompletableFuture)) {
+                // completable futures block cooperatively on their own; virtual threads just park
+                ForkJoinPool.managedBlock(new Awaiting(f));
+            }
+            return f.get();
         } catch(final ExecutionException xany) {
             throw createException(node, "get", xany);
         } catch(final InterruptedException x) {
@@ -3639,6 +4114,37 @@ public class Interpreter extends InterpreterBase {
         }
     }
 
+    /**
+     * Waits for a future, letting a fork-join pool compensate for the blocked worker.
+     */
+    private static final class Awaiting implements ForkJoinPool.ManagedBlocker {
+        /** The future. */
+        private final Future<?> future;
+
+        /**
+         * Creates the blocker.
+         * @param f the future
+         */
+        Awaiting(final Future<?> f) {
+            future = f;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                future.get();
+            } catch (final ExecutionException | RuntimeException xany) {
+                // reported by the caller
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return future.isDone();
+        }
+    }
+
     /**
      * Runs a node.
      * @param node the node
@@ -3661,6 +4167,31 @@ public class Interpreter extends InterpreterBase {
      * @return the closure return value
      */
     protected Object runClosure(final Closure closure, final Object data) {
+        final JexlProbe probe = jexl.getProbe();
+        if (probe == null || !probe.isEnabled()) {
+            return runClosureBody(closure);
+        }
+        // probes see closure calls as frames
+        final ASTJexlScript script = closure.getScript();
+        try {
+            beforeScript(script);
+            final Object result = runClosureBody(closure);
+            afterScript(script, result, null);
+            return result;
+        } catch (final Throwable thrown) {
+            afterScript(script, null, thrown);
+            InterpreterBase.<RuntimeException>doThrow(thrown);
+            // Never reaches here
+            return null;
+        }
+    }
+
+    /**
+     * Runs the body of a closure.
+     * @param closure the closure
+     * @return the closure return value
+     */
+    private Object runClosureBody(final Closure closure) {
         final ASTJexlScript script = closure.getScript();
         // if empty script, nothing to evaluate
         final int numChildren = script.jjtGetNumChildren();
@@ -3686,11 +4217,20 @@ public class Interpreter extends InterpreterBase {
             block = new LexicalFrame(frame, block).defineArgs();
             try {
                 beforeStatement(script);
-                final int numChildren = script.jjtGetNumChildren();
                 Object result = null;
-                for (int i = 0; i < numChildren; i++) {
-                    final JexlNode child = script.jjtGetChild(i);
-                    result = child.jjtAccept(this, data);
+                final Compiled compiled = script.getCompiled();
+                // compiled code mimics this class visits, not the ones of derived classes
+                if (compiled != null && data == null && getClass() == Interpreter.class) {
+                    result = compiled.execute(this);
+                } else {
+                    final int numChildren = script.jjtGetNumChildren();
+                    for (int i = 0; i < numChildren; i++) {
+                        final JexlNode child = script.jjtGetChild(i);
+                        result = child.jjtAccept(this, data);
+                        if (result instanceof Completion) {
+                            break;
+                        }
+                    }
                 }
                 afterStatement(script, result, null);
                 return result;
@@ -3732,7 +4272,13 @@ public class Interpreter extends InterpreterBase {
             frame.set(symbol, null);
             return null;
         } else {
-            return frame.get(symbol);
+            final Object value = frame.get(symbol);
+            // an unboxed local keeps its declared type and is not final
+            final Frame.Unboxed unboxed = frame.unboxed(symbol);
+            if (unboxed != null && (node.isConstant() || unboxed != Unboxing.markerOf(node.getType()))) {
+                frame.set(symbol, value);
+            }
+            return value;
         }
     }
 
@@ -4155,6 +4701,13 @@ public class Interpreter extends InterpreterBase {
             beforeStatement(node);
 
             ASTVar left = (ASTVar) node.jjtGetChild(0);
+            if (unboxing != null && data == null && node.jjtGetNumChildren() == 2) {
+                final Object unboxed = unboxing.initialize(node, left, node.jjtGetChild(1));
+                if (unboxed != JexlEngine.TRY_FAILED) {
+                    afterStatement(node, unboxed, null);
+                    return unboxed;
+                }
+            }
             Object right = null;
             // First evaluate the right part
             if (node.jjtGetNumChildren() == 2) {
@@ -4196,6 +4749,12 @@ public class Interpreter extends InterpreterBase {
     @Override
     protected Object visit(final ASTAssignment node, final Object data) {
         JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.assign(node, left, node.jjtGetChild(1));
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         Object right = node.jjtGetChild(1).jjtAccept(this, data);
         return executeAssign(node, left, right, null, data);
     }
@@ -4229,6 +4788,12 @@ public class Interpreter extends InterpreterBase {
     @Override
     protected Object visit(final ASTSetAddNode node, final Object data) {
         final JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.selfAssign(node, JexlOperator.SELF_ADD, left, node.jjtGetChild(1));
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
         return executeAssign(node, left, right, JexlOperator.SELF_ADD, data);
     }
@@ -4236,6 +4801,12 @@ public class Interpreter extends InterpreterBase {
     @Override
     protected Object visit(final ASTSetSubNode node, final Object data) {
         final JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.selfAssign(node, JexlOperator.SELF_SUBTRACT, left, node.jjtGetChild(1));
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
         return executeAssign(node, left, right, JexlOperator.SELF_SUBTRACT, data);
     }
@@ -4243,6 +4814,12 @@ public class Interpreter extends InterpreterBase {
     @Override
     protected Object visit(final ASTSetMultNode node, final Object data) {
         final JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.selfAssign(node, JexlOperator.SELF_MULTIPLY, left, node.jjtGetChild(1));
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         final Object right = node.jjtGetChild(1).jjtAccept(this, data);
         return executeAssign(node, left, right, JexlOperator.SELF_MULTIPLY, data);
     }
@@ -4313,18 +4890,36 @@ public class Interpreter extends InterpreterBase {
     @Override
     protected Object visit(final ASTIncrementGetNode node, final Object data) {
         final JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.increment(node, JexlOperator.INCREMENT_AND_GET, left);
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         return executeAssign(node, left, 1, JexlOperator.INCREMENT_AND_GET, data);
     }
 
     @Override
     protected Object visit(final ASTDecrementGetNode node, final Object data) {
         final JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.increment(node, JexlOperator.DECREMENT_AND_GET, left);
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         return executeAssign(node, left, 1, JexlOperator.DECREMENT_AND_GET, data);
     }
 
     @Override
     protected Object visit(final ASTGetIncrementNode node, final Object data) {
         JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.increment(node, JexlOperator.GET_AND_INCREMENT, left);
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         Object value = left.jjtAccept(this, data);
         executeAssign(node, left, 1, JexlOperator.GET_AND_INCREMENT, data);
         return value;
@@ -4333,6 +4928,12 @@ public class Interpreter extends InterpreterBase {
     @Override
     protected Object visit(final ASTGetDecrementNode node, final Object data) {
         final JexlNode left = node.jjtGetChild(0);
+        if (unboxing != null && data == null) {
+            final Object unboxed = unboxing.increment(node, JexlOperator.GET_AND_DECREMENT, left);
+            if (unboxed != JexlEngine.TRY_FAILED) {
+                return unboxed;
+            }
+        }
         final Object value = left.jjtAccept(this, data);
         executeAssign(node, left, 1, JexlOperator.GET_AND_DECREMENT, data);
         return value;
@@ -4406,7 +5007,10 @@ public class Interpreter extends InterpreterBase {
                             // the variable scope must be the parent of the lambdas
                             closure.captureSelfIfRecursive(frame, symbol);
                         }
-                        frame.set(symbol, actual);
+                        // final locals are never unboxed
+                        if (type == null || isFinal || !Unboxing.store(frame, symbol, type, actual)) {
+                            frame.set(symbol, actual);
+                        }
                     } else {
                         // go through potential overload
                         final Object self = getVariable(frame, block, variable);
@@ -5587,6 +6191,12 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(ASTProjectionNode node, Object data) {
+        if (options.isParallel()) {
+            Iterator<?> projected = Parallel.project(this, node, data);
+            if (projected != null) {
+                return projected;
+            }
+        }
         Iterator<?> itemsIterator = prepareIndexedIterator(node, data);
         return itemsIterator != null ? new ProjectionIterator(itemsIterator, node) : null;
     }
@@ -5622,6 +6232,12 @@ public class Interpreter extends InterpreterBase {
 
     @Override
     protected Object visit(ASTMapProjectionNode node, Object data) {
+        if (options.isParallel()) {
+            Iterator<?> projected = Parallel.project(this, node, data);
+            if (projected != null) {
+                return projected;
+            }
+        }
         Iterator<?> itemsIterator = prepareIndexedIterator(node, data);
         return itemsIterator != null ? new MapProjectionIterator(itemsIterator, node) : null;
     }
@@ -5646,17 +6262,10 @@ public class Interpreter extends InterpreterBase {
             } else {
                 Object data = null;
                 boolean selected = false;
-                Object prev = current;
-                try {
-                    do {
-                        data = itemsIterator.next();
-                        Object[] argv = prepareArgs((ASTJexlLambda) node, data);
-                        current = data;
-                        selected = arithmetic.toBoolean(closure.execute(null, argv));
-                    } while (!selected && itemsIterator.hasNext());
-                } finally {
-                    current = prev;
-                }
+                do {
+                    data = itemsIterator.next();
+                    selected = select(data);
+                } while (!selected && itemsIterator.hasNext());
                 if (selected) {
                     hasNextItem = true;
                     nextItem = data;
@@ -5664,6 +6273,22 @@ public class Interpreter extends InterpreterBase {
             }
         }
 
+        /**
+         * Evaluates the filter on an item.
+         * @param data the item
+         * @return true if the item is selected
+         */
+        protected boolean select(Object data) {
+            Object prev = current;
+            try {
+                Object[] argv = prepareArgs((ASTJexlLambda) node, data);
+                current = data;
+                return arithmetic.toBoolean(closure.execute(null, argv));
+            } finally {
+                current = prev;
+            }
+        }
+
         @Override
         public boolean hasNext() {
             if (!hasNextItem) {
@@ -5783,6 +6408,12 @@ public class Interpreter extends InterpreterBase {
            script = (ASTJexlLambda) script.jjtGetChild(0);
         }
 
+        if (options.isParallel()) {
+            Iterator<?> selected = Parallel.select(this, node, script, data);
+            if (selected != null) {
+                return selected;
+            }
+        }
         Iterator<?> itemsIterator = prepareIndexedIterator(child, data);
         return itemsIterator != null ? new SelectionIterator(itemsIterator, script) : null;
     }
@@ -33,6 +33,7 @@ import org.apache.commons.jexl3.JexlException.VariableIssue;
 import org.apache.commons.jexl3.JexlInfo;
 import org.apache.commons.jexl3.JexlOperator;
 import org.apache.commons.jexl3.JexlOptions;
+import org.apache.commons.jexl3.internal.introspection.MethodKey;
 import org.apache.commons.jexl3.introspection.JexlMethod;
 import org.apache.commons.jexl3.introspection.JexlPropertyGet;
 import org.apache.commons.jexl3.introspection.JexlPropertySet;
@@ -85,6 +86,8 @@ public abstract class InterpreterBase extends ParserVisitor {
     protected final boolean cache;
     /** Cancellation support. */
     protected final AtomicBoolean cancelled;
+    /** The budgets of the evaluation, null if none. */
+    protected ExecutionBudget budget;
     /** Empty parameters for method matching. */
     protected static final Object[] EMPTY_PARAMS = new Object[0];
     /** The namespace resolver. */
@@ -160,6 +163,7 @@ public abstract class InterpreterBase extends ParserVisitor {
         ns = ii.ns;
         operators = ii.operators;
         cancelled = ii.cancelled;
+        budget = ii.budget;
         functions = ii.functions;
         functors = ii.functors;
         fqcnSolver = ii.fqcnSolver;
@@ -702,7 +706,9 @@ public abstract class InterpreterBase extends ParserVisitor {
      * @return throws JexlException if strict and not silent, null otherwise
      */
     protected Object operatorError(final JexlCache.Reference ref, final JexlOperator operator, final Throwable cause) {
-        JexlNode node = (ref instanceof JexlNode) ? (JexlNode) ref : null;
+        JexlNode node = (ref instanceof JexlNode)
+            ? (JexlNode) ref
+            : (ref instanceof TypeFeedback) ? ((TypeFeedback) ref).getNode() : null;
         if (isStrictEngine()) {
             throw new JexlException.Operator(detailedInfo(node), operator.getOperatorSymbol(), cause);
         }
@@ -788,17 +794,22 @@ public abstract class InterpreterBase extends ParserVisitor {
     protected static JexlInfo detailedInfo(final JexlInfo info, final JexlNode node) {
         if (info != null) {
             if (node != null) {
-               JexlInfo i = info.at(node.getLine(), node.getColumn());
-               final Debugger dbg = new Debugger();
-               if (dbg.debug(node)) {
-                   return new JexlInfo(i) {
-                       @Override
-                       public JexlInfo.Detail getDetail() {
-                           return dbg;
+               final JexlInfo i = info.at(node.getLine(), node.getColumn());
+               // the detail is only decompiled when asked for, probes get an info for each statement
+               return new JexlInfo(i) {
+                   private Debugger dbg;
+                   private boolean debugged;
+
+                   @Override
+                   public JexlInfo.Detail getDetail() {
+                       if (!debugged) {
+                           final Debugger debugger = new Debugger();
+                           dbg = debugger.debug(node) ? debugger : null;
+                           debugged = true;
                        }
-                   };
-               }
-               return i;
+                       return dbg;
+                   }
+               };
             }
             return info;
         }
@@ -806,6 +817,23 @@ public abstract class InterpreterBase extends ParserVisitor {
         return node != null ? node.jexlInfo() : null;
     }
 
+    /**
+     * Records that introspection could not resolve a property or method, in the engine metrics
+     * and as a Flight Recorder event.
+     * @param node the node, may be null
+     * @param object the object
+     * @param member the property or method name
+     */
+    protected void introspectionMiss(final JexlNode node, final Object object, final Object member) {
+        if (jexl.metrics != null) {
+            jexl.metrics.recordIntrospectionMiss(object, member);
+        }
+        if (FlightRecorder.isMissEnabled()) {
+            FlightRecorder.introspectionMiss(node != null ? detailedInfo(node) : info,
+                object != null ? object.getClass() : null, member);
+        }
+    }
+
     /**
      * Cancels this evaluation, setting the cancel flag that will result in a JexlException.Cancel to be thrown.
      * @return false if already cancelled, true otherwise
@@ -823,13 +851,16 @@ public abstract class InterpreterBase extends ParserVisitor {
     }
 
     /**
-     * Throws a JexlException.Cancel if script execution was cancelled.
+     * Throws a JexlException.Cancel if script execution was cancelled or exceeded one of its budgets.
      * @param node the node being evaluated
      */
     protected void cancelCheck(final JexlNode node) {
         if (isCancelled()) {
             throw new JexlException.Cancel(detailedInfo(node));
         }
+        if (budget != null) {
+            budget.check(this, node);
+        }
     }
 
     /**
@@ -1004,6 +1035,10 @@ public abstract class InterpreterBase extends ParserVisitor {
         Object[] argv;
         /** The cacheable funcall if any. */
         Funcall funcall;
+        /** The target class keying the engine megamorphic lookup, set once this site is full. */
+        Class<?> lookupClass;
+        /** The signature keying the engine megamorphic lookup, set once this site is full. */
+        MethodKey lookupKey;
 
         /**
          * Dispatcher ctor.
@@ -1119,10 +1154,32 @@ public abstract class InterpreterBase extends ParserVisitor {
             // do we have  a method/function name ?
             // attempt to reuse last funcall cached in volatile JexlNode.value (if it was not a variable)
             if (methodName != null && cacheable && ntarget != null) {
-                final Object cached = node.jjtGetValue();
-                if (cached instanceof Funcall) {
-                    return ((Funcall) cached).tryInvoke(InterpreterBase.this, methodName, ntarget, arguments);
+                final InlineCache ic = InlineCache.of(node);
+                for (final Object entry : ic.entries()) {
+                    if (entry instanceof Funcall) {
+                        final Object eval = ((Funcall) entry).tryInvoke(InterpreterBase.this, methodName, ntarget, arguments);
+                        if (eval != JexlEngine.TRY_FAILED) {
+                            ic.hit();
+                            return eval;
+                        }
+                    }
                 }
+                if (ic.size() >= InlineCache.POLYMORPHIC) {
+                    // key before arguments are narrowed
+                    lookupClass = ntarget.getClass();
+                    lookupKey = new MethodKey(methodName, arguments);
+                    final Object cached = ic.isMegamorphic()
+                        ? jexl.megamorphic.get(null, lookupClass, lookupKey)
+                        : null;
+                    if (cached instanceof Funcall) {
+                        final Object eval = ((Funcall) cached).tryInvoke(InterpreterBase.this, methodName, ntarget, arguments);
+                        if (eval != JexlEngine.TRY_FAILED) {
+                            ic.hit();
+                            return eval;
+                        }
+                    }
+                }
+                ic.miss();
             }
             return JexlEngine.TRY_FAILED;
         }
@@ -1139,12 +1196,13 @@ public abstract class InterpreterBase extends ParserVisitor {
             if (vm != null) {
                 // vm cannot be null if xjexl is null
                 final Object eval = vm.invoke(target, argv);
-                // cache executor in volatile JexlNode.value
-                if (funcall != null) {
-                    node.jjtSetValue(funcall);
+                // cache executor in this site or the engine megamorphic lookup
+                if (funcall != null && !InlineCache.of(node).add(funcall) && lookupKey != null) {
+                    jexl.megamorphic.put(null, lookupClass, lookupKey, funcall);
                 }
                 return eval;
             }
+            introspectionMiss(node, target, methodName);
             return unsolvableMethod(node, methodName, argv);
         }
     }
@@ -1172,16 +1230,31 @@ public abstract class InterpreterBase extends ParserVisitor {
         }
         Exception xcause = null;
         try {
-            // attempt to reuse last executor cached in volatile JexlNode.value
-            if (node != null && cache) {
-                final Object cached = node.jjtGetValue();
+            // attempt to reuse the executors cached by this site
+            final InlineCache ic = node != null && cache ? InlineCache.of(node) : null;
+            if (ic != null) {
+                for (final Object entry : ic.entries()) {
+                    if (entry instanceof JexlPropertyGet) {
+                        final JexlPropertyGet vg = (JexlPropertyGet) entry;
+                        final Object value = vg.tryInvoke(object, attribute);
+                        if (!vg.tryFailed(value)) {
+                            ic.hit();
+                            return value;
+                        }
+                    }
+                }
+                final Object cached = ic.isMegamorphic()
+                    ? jexl.megamorphic.get(operator, object.getClass(), attribute)
+                    : null;
                 if (cached instanceof JexlPropertyGet) {
                     final JexlPropertyGet vg = (JexlPropertyGet) cached;
                     final Object value = vg.tryInvoke(object, attribute);
                     if (!vg.tryFailed(value)) {
+                        ic.hit();
                         return value;
                     }
                 }
+                ic.miss();
             }
 
             // attempt arithmetic implementation
@@ -1196,9 +1269,9 @@ public abstract class InterpreterBase extends ParserVisitor {
             final JexlPropertyGet vg = uberspect.getPropertyGet(resolvers, object, attribute);
             if (vg != null) {
                 final Object value = vg.invoke(object);
-                // cache executor in volatile JexlNode.value
-                if (node != null && cache && vg.isCacheable()) {
-                    node.jjtSetValue(vg);
+                // cache executor in this site or the engine megamorphic lookup
+                if (ic != null && vg.isCacheable() && !ic.add(vg)) {
+                    jexl.megamorphic.put(operator, object.getClass(), attribute, vg);
                 }
                 return value;
             }
@@ -1206,6 +1279,9 @@ public abstract class InterpreterBase extends ParserVisitor {
             xcause = xany;
         }
         // lets fail
+        if (xcause == null) {
+            introspectionMiss(node, object, attribute);
+        }
         if (node == null) {
             // direct call
             final String error = "unable to get object property"
@@ -1251,16 +1327,31 @@ public abstract class InterpreterBase extends ParserVisitor {
                     }
                 }
             }
-            // attempt to reuse last executor cached in volatile JexlNode.value
-            if (node != null && cache) {
-                final Object cached = node.jjtGetValue();
+            // attempt to reuse the executors cached by this site
+            final InlineCache ic = node != null && cache && object != null ? InlineCache.of(node) : null;
+            if (ic != null) {
+                for (final Object entry : ic.entries()) {
+                    if (entry instanceof JexlPropertySet) {
+                        final JexlPropertySet setter = (JexlPropertySet) entry;
+                        final Object eval = setter.tryInvoke(object, attribute, value);
+                        if (!setter.tryFailed(eval)) {
+                            ic.hit();
+                            return;
+                        }
+                    }
+                }
+                final Object cached = ic.isMegamorphic()
+                    ? jexl.megamorphic.get(operator, object.getClass(), attribute)
+                    : null;
                 if (cached instanceof JexlPropertySet) {
                     final JexlPropertySet setter = (JexlPropertySet) cached;
                     final Object eval = setter.tryInvoke(object, attribute, value);
                     if (!setter.tryFailed(eval)) {
+                        ic.hit();
                         return;
                     }
                 }
+                ic.miss();
             }
             // attempt arithmetic implementation
             result = (operator == JexlOperator.ARRAY_SET) ? arithmetic.arraySet(object, attribute, value)
@@ -1279,10 +1370,10 @@ public abstract class InterpreterBase extends ParserVisitor {
                 }
             }
             if (vs != null) {
-                // cache executor in volatile JexlNode.value
                 vs.invoke(object, value);
-                if (node != null && cache && vs.isCacheable()) {
-                    node.jjtSetValue(vs);
+                // cache executor in this site or the engine megamorphic lookup
+                if (ic != null && vs.isCacheable() && !ic.add(vs)) {
+                    jexl.megamorphic.put(operator, object.getClass(), attribute, vs);
                 }
                 return;
             }
@@ -1290,6 +1381,9 @@ public abstract class InterpreterBase extends ParserVisitor {
             xcause = xany;
         }
         // lets fail
+        if (xcause == null) {
+            introspectionMiss(node, object, attribute);
+        }
         if (node == null) {
             // direct call
             final String error = "unable to set object property"
@@ -1350,6 +1444,9 @@ public abstract class InterpreterBase extends ParserVisitor {
             xcause = xany;
         }
         // lets fail
+        if (xcause == null) {
+            introspectionMiss(node, object, attribute);
+        }
         if (node == null) {
             // direct call
             final String error = "unable to delete object property"
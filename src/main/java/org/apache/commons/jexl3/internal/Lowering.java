@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.parser.ASTAddNode;
+import org.apache.commons.jexl3.parser.ASTAndNode;
+import org.apache.commons.jexl3.parser.ASTBooleanLiteral;
+import org.apache.commons.jexl3.parser.ASTDivNode;
+import org.apache.commons.jexl3.parser.ASTEQNode;
+import org.apache.commons.jexl3.parser.ASTElvisNode;
+import org.apache.commons.jexl3.parser.ASTEnclosedExpression;
+import org.apache.commons.jexl3.parser.ASTExpressionStatement;
+import org.apache.commons.jexl3.parser.ASTGENode;
+import org.apache.commons.jexl3.parser.ASTGTNode;
+import org.apache.commons.jexl3.parser.ASTIdentifier;
+import org.apache.commons.jexl3.parser.ASTLENode;
+import org.apache.commons.jexl3.parser.ASTLTNode;
+import org.apache.commons.jexl3.parser.ASTModNode;
+import org.apache.commons.jexl3.parser.ASTMulNode;
+import org.apache.commons.jexl3.parser.ASTNENode;
+import org.apache.commons.jexl3.parser.ASTNotNode;
+import org.apache.commons.jexl3.parser.ASTNullLiteral;
+import org.apache.commons.jexl3.parser.ASTNumberLiteral;
+import org.apache.commons.jexl3.parser.ASTOrNode;
+import org.apache.commons.jexl3.parser.ASTSetOperand;
+import org.apache.commons.jexl3.parser.ASTStringLiteral;
+import org.apache.commons.jexl3.parser.ASTSubNode;
+import org.apache.commons.jexl3.parser.ASTTernaryNode;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * Decides which nodes the compilation tiers lower, shared by the bytecode and the closure tree compilers.
+ * <p>Node classes are compared exactly, subclasses may be interpreted differently; a node without a kind
+ * is delegated as a whole, subtree included, to the interpreter. An instance memoizes which subtrees
+ * are entirely lowered during the compilation of one script.</p>
+ */
+final class Lowering {
+    /**
+     * The kinds of lowered nodes.
+     */
+    enum Kind {
+        /** A number, string, boolean or null literal. */
+        CONSTANT,
+        /** A variable read. */
+        VARIABLE,
+        /** An expression statement. */
+        STATEMENT,
+        /** A parenthesized expression. */
+        ENCLOSED,
+        /** Addition. */
+        ADD,
+        /** Subtraction. */
+        SUBTRACT,
+        /** Multiplication. */
+        MULTIPLY,
+        /** Division. */
+        DIVIDE,
+        /** Modulo. */
+        MOD,
+        /** A comparison, equality or ordering. */
+        COMPARE,
+        /** Logical negation. */
+        NOT,
+        /** Short-circuit and. */
+        AND,
+        /** Short-circuit or. */
+        OR,
+        /** The ternary conditional. */
+        TERNARY,
+        /** The elvis conditional. */
+        ELVIS
+    }
+
+    /** The kinds, by node class. */
+    private static final Map<Class<?>, Kind> KINDS = new HashMap<>();
+    /** The comparison operators, by node class. */
+    private static final Map<Class<?>, JexlOperator> COMPARISONS = new HashMap<>();
+
+    static {
+        KINDS.put(ASTNumberLiteral.class, Kind.CONSTANT);
+        KINDS.put(ASTStringLiteral.class, Kind.CONSTANT);
+        KINDS.put(ASTBooleanLiteral.class, Kind.CONSTANT);
+        KINDS.put(ASTNullLiteral.class, Kind.CONSTANT);
+        KINDS.put(ASTIdentifier.class, Kind.VARIABLE);
+        KINDS.put(ASTExpressionStatement.class, Kind.STATEMENT);
+        KINDS.put(ASTEnclosedExpression.class, Kind.ENCLOSED);
+        KINDS.put(ASTAddNode.class, Kind.ADD);
+        KINDS.put(ASTSubNode.class, Kind.SUBTRACT);
+        KINDS.put(ASTMulNode.class, Kind.MULTIPLY);
+        KINDS.put(ASTDivNode.class, Kind.DIVIDE);
+        KINDS.put(ASTModNode.class, Kind.MOD);
+        KINDS.put(ASTNotNode.class, Kind.NOT);
+        KINDS.put(ASTAndNode.class, Kind.AND);
+        KINDS.put(ASTOrNode.class, Kind.OR);
+        KINDS.put(ASTTernaryNode.class, Kind.TERNARY);
+        KINDS.put(ASTElvisNode.class, Kind.ELVIS);
+        COMPARISONS.put(ASTEQNode.class, JexlOperator.EQ);
+        COMPARISONS.put(ASTNENode.class, JexlOperator.NE);
+        COMPARISONS.put(ASTLTNode.class, JexlOperator.LT);
+        COMPARISONS.put(ASTLENode.class, JexlOperator.LTE);
+        COMPARISONS.put(ASTGTNode.class, JexlOperator.GT);
+        COMPARISONS.put(ASTGENode.class, JexlOperator.GTE);
+        for (final Class<?> clazz : COMPARISONS.keySet()) {
+            KINDS.put(clazz, Kind.COMPARE);
+        }
+    }
+
+    /** The nodes known to be entirely lowered or not, subtree included. */
+    private final Map<JexlNode, Boolean> lowered = new IdentityHashMap<>();
+
+    /**
+     * Checks whether a node and all its descendants are lowered.
+     * @param node the node
+     * @return true if nothing in the subtree is delegated to the interpreter
+     */
+    boolean isLowered(final JexlNode node) {
+        Boolean all = lowered.get(node);
+        if (all == null) {
+            all = kindOf(node) != null;
+            for (int c = 0; all && c < node.jjtGetNumChildren(); ++c) {
+                all = isLowered(node.jjtGetChild(c));
+            }
+            lowered.put(node, all);
+        }
+        return all;
+    }
+
+    /**
+     * Gets the kind of a node.
+     * @param node the node
+     * @return the kind or null if the node is delegated to the interpreter
+     */
+    static Kind kindOf(final JexlNode node) {
+        final Kind kind = KINDS.get(node.getClass());
+        if (kind == Kind.COMPARE) {
+            // set operands are membership tests, not comparisons
+            return node.jjtGetChild(1) instanceof ASTSetOperand ? null : kind;
+        }
+        if (kind == Kind.STATEMENT) {
+            // an identifier statement may be an arithmetic method call
+            return node.jjtGetChild(0) instanceof ASTIdentifier ? null : kind;
+        }
+        return kind;
+    }
+
+    /**
+     * Gets the value of a constant node.
+     * @param node a node of the constant kind
+     * @return the literal value
+     */
+    static Object constant(final JexlNode node) {
+        if (node instanceof ASTNumberLiteral) {
+            return ((ASTNumberLiteral) node).getLiteral();
+        }
+        if (node instanceof ASTStringLiteral) {
+            return ((ASTStringLiteral) node).getLiteral();
+        }
+        if (node instanceof ASTBooleanLiteral) {
+            return ((ASTBooleanLiteral) node).getLiteral();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the operator of a comparison node.
+     * @param node a node of the comparison kind
+     * @return the operator
+     */
+    static JexlOperator comparison(final JexlNode node) {
+        return COMPARISONS.get(node.getClass());
+    }
+}
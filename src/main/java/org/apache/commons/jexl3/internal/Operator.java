@@ -348,23 +348,57 @@ public final class Operator implements JexlOperator.Uberspect {
      * @return the operator evaluation result or TRY_FAILED
      */
     private Object tryEval(JexlCache.Reference node, final JexlOperator operator, final Object... args) {
-        if (node != null) {
-            final Object cached = node.getCache();
-            if (cached instanceof JexlMethod) {
-                // we found a method on previous call; try and reuse it (*1)
-                final JexlMethod me = (JexlMethod) cached;
-                Object eval = me.tryInvoke(operator.getMethodName(), arithmetic, args);
-                if (!me.tryFailed(eval)) {
-                    return eval;
+        // no overload, no alternate overload
+        if (!overloads(operator) && !(CMP_OPS.contains(operator) && overloads(JexlOperator.COMPARE))) {
+            return JexlEngine.TRY_FAILED;
+        }
+        final InlineCache ic = node != null ? InlineCache.of(node) : null;
+        InlineCache.Lookup lookup = null;
+        MethodKey key = null;
+        if (ic != null) {
+            for (final Object cached : ic.entries()) {
+                if (cached instanceof JexlMethod) {
+                    // we found a method on previous call; try and reuse it (*1)
+                    final JexlMethod me = (JexlMethod) cached;
+                    final Object eval = me.tryInvoke(operator.getMethodName(), arithmetic, args);
+                    if (!me.tryFailed(eval)) {
+                        ic.hit();
+                        return eval;
+                    }
+                } else if (cached instanceof MethodKey) {
+                    // check for a fail-fast, we tried to find an overload before but could not (*2)
+                    if (key == null) {
+                        key = new MethodKey(operator.getMethodName(), args);
+                    }
+                    if (key.equals(cached)) {
+                        ic.hit();
+                        return JexlEngine.TRY_FAILED;
+                    }
                 }
-            } else if (cached instanceof MethodKey) {
-                // check for a fail-fast, we tried to find an overload before but could not (*2)
-                final MethodKey cachedKey = (MethodKey) cached;
-                final MethodKey key = new MethodKey(operator.getMethodName(), args);
-                if (key.equals(cachedKey)) {
+            }
+            if (ic.size() >= InlineCache.POLYMORPHIC) {
+                final JexlEngine jexl = JexlEngine.getThreadEngine();
+                lookup = jexl instanceof Engine ? ((Engine) jexl).megamorphic : null;
+                if (key == null) {
+                    key = new MethodKey(operator.getMethodName(), args);
+                }
+                final Object cached = lookup != null && ic.isMegamorphic()
+                    ? lookup.get(operator, arithmetic.getClass(), key)
+                    : null;
+                if (cached instanceof JexlMethod) {
+                    final JexlMethod me = (JexlMethod) cached;
+                    final Object eval = me.tryInvoke(operator.getMethodName(), arithmetic, args);
+                    if (!me.tryFailed(eval)) {
+                        ic.hit();
+                        return eval;
+                    }
+                } else if (cached != null) {
+                    // the fail-fast marker, no overload for these arguments
+                    ic.hit();
                     return JexlEngine.TRY_FAILED;
                 }
             }
+            ic.miss();
         }
 
         // trying to find an operator overload
@@ -376,15 +410,19 @@ public final class Operator implements JexlOperator.Uberspect {
         // *1: found a method, try it and cache it if successful
         if (vm != null) {
             final Object result = vm.tryInvoke(operator.getMethodName(), arithmetic, args);
-            if (node != null && !vm.tryFailed(result)) {
-                node.setCache(vm);
+            if (ic != null && !vm.tryFailed(result) && !ic.add(vm) && lookup != null) {
+                lookup.put(operator, arithmetic.getClass(), key, vm);
             }
             return result;
         }
         // *2: could not find an overload for this operator and arguments, keep track of the fail
-        if (node != null) {
-            MethodKey key = new MethodKey(operator.getMethodName(), args);
-            node.setCache(key);
+        if (ic != null) {
+            if (key == null) {
+                key = new MethodKey(operator.getMethodName(), args);
+            }
+            if (!ic.add(key) && lookup != null) {
+                lookup.put(operator, arithmetic.getClass(), key, key);
+            }
         }
         return JexlEngine.TRY_FAILED;
     }
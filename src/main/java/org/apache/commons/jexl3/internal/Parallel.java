@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.parser.ASTJexlLambda;
+import org.apache.commons.jexl3.parser.ASTMapProjectionNode;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * The parallel evaluation of projections and selections.
+ * <p>When the {@link org.apache.commons.jexl3.JexlOptions#isParallel() parallel} option is set, the elements
+ * of a list, array or range are split in slices evaluated as fork-join tasks, each slice by its own
+ * interpreter. Projected values and selection verdicts are stored by element index so the results keep
+ * the encounter order; they are returned as an iterator that a chained projection or selection can split
+ * again.</p>
+ * <p>Other sources, like maps or plain iterators, and selections whose filter uses the element index are
+ * evaluated sequentially.</p>
+ */
+final class Parallel {
+    /** The number of slices per pool worker, balancing elements of uneven cost. */
+    private static final int SLICES = 4;
+
+    private Parallel() {
+        // no instance
+    }
+
+    /**
+     * Gets the elements of a source that can be split.
+     * @param caller the interpreter
+     * @param data the source
+     * @return the list of elements or null if the source can not be split
+     */
+    static List<?> elements(final Interpreter caller, final Object data) {
+        if (caller.operators.overloads(JexlOperator.FOR_EACH_INDEXED)) {
+            return null;
+        }
+        if (data instanceof Elements) {
+            return ((Elements) data).remaining();
+        }
+        if (data instanceof List<?> && data instanceof RandomAccess) {
+            return (List<?>) data;
+        }
+        if (data instanceof Object[]) {
+            return Arrays.asList((Object[]) data);
+        }
+        if (data != null && data.getClass().isArray()) {
+            return new AbstractList<Object>() {
+                @Override
+                public Object get(final int index) {
+                    return Array.get(data, index);
+                }
+
+                @Override
+                public int size() {
+                    return Array.getLength(data);
+                }
+            };
+        }
+        if (data instanceof IntegerRange) {
+            final IntegerRange range = (IntegerRange) data;
+            final boolean ascending = range instanceof IntegerRange.Ascending;
+            final long size = (long) range.getMax() - range.getMin() + 1;
+            return size > Integer.MAX_VALUE ? null : new AbstractList<Integer>() {
+                @Override
+                public Integer get(final int index) {
+                    return ascending ? range.getMin() + index : range.getMax() - index;
+                }
+
+                @Override
+                public int size() {
+                    return (int) size;
+                }
+            };
+        }
+        if (data instanceof LongRange) {
+            final LongRange range = (LongRange) data;
+            final boolean ascending = range instanceof LongRange.Ascending;
+            final long size = range.getMax() - range.getMin() + 1;
+            return size <= 0 || size > Integer.MAX_VALUE ? null : new AbstractList<Long>() {
+                @Override
+                public Long get(final int index) {
+                    return ascending ? range.getMin() + index : range.getMax() - index;
+                }
+
+                @Override
+                public int size() {
+                    return (int) size;
+                }
+            };
+        }
+        return null;
+    }
+
+    /**
+     * Evaluates a projection in parallel.
+     * @param caller the interpreter
+     * @param node the projection or map projection node
+     * @param data the source
+     * @return the iterator on projected values, null if the source can not be split
+     */
+    static Iterator<?> project(final Interpreter caller, final JexlNode node, final Object data) {
+        final List<?> elements = elements(caller, data);
+        if (elements == null || elements.size() < 2) {
+            return null;
+        }
+        final Object[] results = new Object[elements.size()];
+        run(caller, node, results.length, (worker, from, to) -> {
+            final Interpreter.ProjectionIterator projection = node instanceof ASTMapProjectionNode
+                ? worker.new MapProjectionIterator(new Elements(elements, from, to), node)
+                : worker.new ProjectionIterator(new Elements(elements, from, to), node);
+            // the index of the first element of the slice
+            projection.i = from - 1;
+            for (int e = from; e < to; ++e) {
+                results[e] = projection.next();
+            }
+        });
+        return new Elements(Arrays.asList(results), 0, results.length);
+    }
+
+    /**
+     * Evaluates a selection in parallel.
+     * @param caller the interpreter
+     * @param node the selection node
+     * @param filter the filtering lambda
+     * @param data the source
+     * @return the iterator on selected elements, null if the source can not be split or the filter uses the
+     * index
+     */
+    static Iterator<?> select(final Interpreter caller, final JexlNode node, final ASTJexlLambda filter,
+                              final Object data) {
+        if (filter.getArgCount() > 1) {
+            return null;
+        }
+        final List<?> elements = elements(caller, data);
+        if (elements == null || elements.size() < 2) {
+            return null;
+        }
+        final boolean[] selected = new boolean[elements.size()];
+        run(caller, node, selected.length, (worker, from, to) -> {
+            final Interpreter.SelectionIterator selection =
+                worker.new SelectionIterator(Collections.emptyIterator(), filter);
+            for (int e = from; e < to; ++e) {
+                worker.cancelCheck(node);
+                selected[e] = selection.select(elements.get(e));
+            }
+        });
+        final List<Object> results = new ArrayList<>();
+        for (int e = 0; e < selected.length; ++e) {
+            if (selected[e]) {
+                results.add(elements.get(e));
+            }
+        }
+        return new Elements(results, 0, results.size());
+    }
+
+    /**
+     * Evaluates slices of elements on the engine fork-join pool and waits for their completion.
+     * @param caller the interpreter
+     * @param node the evaluated node
+     * @param size the number of elements
+     * @param slice the slice evaluation
+     */
+    private static void run(final Interpreter caller, final JexlNode node, final int size, final Slice slice) {
+        caller.cancelCheck(node);
+        final ForkJoinPool pool = caller.jexl.executor instanceof ForkJoinPool
+            ? (ForkJoinPool) caller.jexl.executor
+            : ForkJoinPool.commonPool();
+        final int grain = Math.max(1, size / (pool.getParallelism() * SLICES));
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Task task = new Task(caller, slice, failure, 0, size, grain);
+        if (ForkJoinTask.inForkJoinPool()) {
+            // nested in a parallel evaluation, help rather than block
+            task.invoke();
+        } else {
+            try {
+                pool.submit(task).get();
+            } catch (final InterruptedException xint) {
+                caller.cancel();
+                throw new JexlException.Cancel(caller.detailedInfo(node));
+            } catch (final ExecutionException xexec) {
+                failure.compareAndSet(null, xexec.getCause());
+            }
+        }
+        final Throwable xany = failure.get();
+        if (xany != null) {
+            InterpreterBase.<RuntimeException>doThrow(xany);
+        }
+    }
+
+    /**
+     * The evaluation of a slice of elements.
+     */
+    @FunctionalInterface
+    private interface Slice {
+        /**
+         * Evaluates the elements of a slice.
+         * @param worker the slice interpreter
+         * @param from the first element index
+         * @param to the index after the last element
+         */
+        void evaluate(Worker worker, int from, int to);
+    }
+
+    /**
+     * Splits the elements until slices are small enough to be evaluated.
+     */
+    private static final class Task extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        /** The calling interpreter. */
+        private final transient Interpreter caller;
+        /** The slice evaluation. */
+        private final transient Slice slice;
+        /** The first failure, that stops the other slices. */
+        private final AtomicReference<Throwable> failure;
+        /** The first element index. */
+        private final int from;
+        /** The index after the last element. */
+        private final int to;
+        /** The slice size under which elements are evaluated. */
+        private final int grain;
+
+        Task(final Interpreter caller, final Slice slice, final AtomicReference<Throwable> failure,
+             final int from, final int to, final int grain) {
+            this.caller = caller;
+            this.slice = slice;
+            this.failure = failure;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Task(caller, slice, failure, from, middle, grain),
+                          new Task(caller, slice, failure, middle, to, grain));
+            } else if (failure.get() == null) {
+                try {
+                    new Worker(caller, failure).evaluate(slice, from, to);
+                } catch (final Throwable xany) {
+                    failure.compareAndSet(null, xany);
+                }
+            }
+        }
+    }
+
+    /**
+     * The interpreter of a slice, sharing the frame and cancellation of the calling interpreter.
+     */
+    static final class Worker extends Interpreter {
+        /** The calling interpreter. */
+        private final Interpreter caller;
+        /** The failure of any slice. */
+        private final AtomicReference<Throwable> failure;
+
+        /**
+         * Creates a slice interpreter.
+         * @param ii the calling interpreter
+         * @param failed the failure of any slice
+         */
+        Worker(final Interpreter ii, final AtomicReference<Throwable> failed) {
+            super(ii.jexl, ii.options, ii.context, ii.info, ii.frame, null);
+            caller = ii;
+            failure = failed;
+            budget = ii.budget;
+            block = ii.block != null ? new LexicalFrame(ii.block) : null;
+            fp = ii.fp;
+        }
+
+        @Override
+        protected boolean isCancelled() {
+            return failure.get() != null || caller.cancelled.get() || super.isCancelled();
+        }
+
+        /**
+         * Evaluates a slice with this interpreter as the thread interpreter.
+         * @param slice the evaluation
+         * @param from the first element index
+         * @param to the index after the last element
+         */
+        void evaluate(final Slice slice, final int from, final int to) {
+            final Interpreter tinter = putThreadInterpreter(this);
+            final JexlEngine tjexl = jexl.putThreadEngine(jexl);
+            final JexlContext.ThreadLocal tcontext = context instanceof JexlContext.ThreadLocal
+                ? jexl.putThreadLocal((JexlContext.ThreadLocal) context)
+                : null;
+            try {
+                slice.evaluate(this, from, to);
+            } finally {
+                if (functors != null) {
+                    for (final Object functor : functors.values()) {
+                        closeIfSupported(functor);
+                    }
+                    functors = null;
+                }
+                if (context instanceof JexlContext.ThreadLocal) {
+                    jexl.putThreadLocal(tcontext);
+                }
+                jexl.putThreadEngine(tjexl);
+                putThreadInterpreter(tinter);
+            }
+        }
+    }
+
+    /**
+     * An iterator on a range of list elements.
+     * <p>Enumerations of splittable sources and parallel results use it so chained projections and
+     * selections can split them again.</p>
+     */
+    static final class Elements implements Iterator<Object> {
+        /** The elements. */
+        private final List<?> list;
+        /** The index after the last element. */
+        private final int end;
+        /** The next element index. */
+        private int index;
+
+        /**
+         * Creates an iterator.
+         * @param elements the elements
+         * @param from the first element index
+         * @param to the index after the last element
+         */
+        Elements(final List<?> elements, final int from, final int to) {
+            list = elements;
+            index = from;
+            end = to;
+        }
+
+        /**
+         * @return the elements not yet iterated
+         */
+        List<?> remaining() {
+            return index == 0 && end == list.size() ? list : list.subList(index, end);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < end;
+        }
+
+        @Override
+        public Object next() {
+            if (index >= end) {
+                throw new NoSuchElementException();
+            }
+            return list.get(index++);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.commons.jexl3.parser.JexlScriptParser;
+
+/**
+ * A bounded, lock-free pool of parsers.
+ * <p>Parsers are costly to create and are not thread-safe; this pool keeps up to a fixed number of idle
+ * instances that concurrent threads can borrow and give back. When no idle parser is available,
+ * a new one is created through the factory; when the pool is full, a returned parser is dropped.</p>
+ * <p>Each slot is an atomic reference, acquiring is a get-and-set to null, releasing a compare-and-set
+ * from null; threads start probing at a slot derived from their id to spread contention.</p>
+ * @since 4.0
+ */
+public final class ParserPool {
+    /** The parser factory. */
+    private final Supplier<JexlScriptParser> factory;
+    /** The idle parser slots. */
+    private final AtomicReferenceArray<JexlScriptParser> slots;
+    /** The number of acquisitions served by an idle parser. */
+    private final LongAdder hits = new LongAdder();
+    /** The number of acquisitions that required creating a parser. */
+    private final LongAdder misses = new LongAdder();
+    /** The number of parsers given back, kept or dropped. */
+    private final LongAdder returned = new LongAdder();
+
+    /**
+     * Creates a pool.
+     * @param size the maximum number of idle parsers, at least 1
+     * @param factory the parser factory
+     */
+    ParserPool(final int size, final Supplier<JexlScriptParser> factory) {
+        this.factory = factory;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+        // mimic the former behavior of an engine owning one parser ready for use
+        slots.set(0, factory.get());
+    }
+
+    /**
+     * @return the first slot to probe for the current thread
+     */
+    private int start() {
+        return (int) (Thread.currentThread().getId() % slots.length());
+    }
+
+    /**
+     * Borrows a parser from the pool, creating one if none is idle.
+     * @return a parser that must be given back through {@link #release(JexlScriptParser)}
+     */
+    JexlScriptParser acquire() {
+        final int length = slots.length();
+        final int start = start();
+        for (int i = 0; i < length; ++i) {
+            final int slot = (start + i) % length;
+            if (slots.get(slot) != null) {
+                final JexlScriptParser parser = slots.getAndSet(slot, null);
+                if (parser != null) {
+                    hits.increment();
+                    return parser;
+                }
+            }
+        }
+        misses.increment();
+        return factory.get();
+    }
+
+    /**
+     * Gives a parser back to the pool.
+     * <p>The parser is dropped if all slots are already occupied.</p>
+     * @param parser the parser
+     */
+    void release(final JexlScriptParser parser) {
+        returned.increment();
+        final int length = slots.length();
+        final int start = start();
+        for (int i = 0; i < length; ++i) {
+            final int slot = (start + i) % length;
+            if (slots.get(slot) == null && slots.compareAndSet(slot, null, parser)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the maximum number of idle parsers this pool keeps
+     */
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return the number of idle parsers currently in the pool
+     */
+    public int size() {
+        int count = 0;
+        for (int i = 0; i < slots.length(); ++i) {
+            if (slots.get(i) != null) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of acquisitions served by an idle parser
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of acquisitions that required creating a new parser
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of parsers borrowed, hits and misses
+     */
+    public long borrowed() {
+        return hits.sum() + misses.sum();
+    }
+
+    /**
+     * @return the number of parsers given back, whether kept or dropped
+     */
+    public long returned() {
+        return returned.sum();
+    }
+}
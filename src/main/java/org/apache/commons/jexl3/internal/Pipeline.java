@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.jexl3.parser.ASTCurrentNode;
+import org.apache.commons.jexl3.parser.ASTJexlLambda;
+import org.apache.commons.jexl3.parser.ASTProjectionNode;
+import org.apache.commons.jexl3.parser.ASTSelectionNode;
+import org.apache.commons.jexl3.parser.ASTSimpleLambda;
+import org.apache.commons.jexl3.parser.ASTStartCountNode;
+import org.apache.commons.jexl3.parser.ASTStopCountNode;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * A fused chain of adjacent projections and selections.
+ * <p>Instead of stacking one iterator per stage, each element of the source runs through all the stages
+ * in one loop with one cancellation check. Lambdas are run by one interpreter per stage on a frame that
+ * is reset for each element, without argument arrays or per-call closures.</p>
+ * <p>Only single-valued projections and selections whose lambdas take at most the element as untyped
+ * parameter are fused; the element and stop counts behave as the iterators they replace, start counts
+ * skipping elements when the pipeline is created.</p>
+ */
+final class Pipeline implements Iterator<Object>, AutoCloseable {
+    /** The marker of an exhausted pipeline. */
+    private static final Object END = new Object();
+    /** Projection kind. */
+    private static final int PROJECT = 0;
+    /** Selection kind. */
+    private static final int SELECT = 1;
+    /** Stop count kind. */
+    private static final int STOP = 2;
+    /** Start count kind. */
+    private static final int START = 3;
+    /** The interpreter evaluating the chain. */
+    private final Interpreter caller;
+    /** The first stage node. */
+    private final JexlNode node;
+    /** The source elements. */
+    private final Iterator<?> source;
+    /** The stages. */
+    private final Stage[] stages;
+    /** The next value, END if none. */
+    private Object next;
+    /** Whether the next value is computed. */
+    private boolean ready;
+
+    /**
+     * Creates a pipeline.
+     * @param ii the interpreter
+     * @param reference the reference holding the stages
+     * @param first the first stage index in the reference
+     * @param last the last stage index in the reference
+     * @param items the source iterator
+     */
+    private Pipeline(final Interpreter ii, final JexlNode reference, final int first, final int last,
+                     final Iterator<?> items) {
+        caller = ii;
+        node = reference.jjtGetChild(first);
+        source = items;
+        stages = new Stage[last - first + 1];
+        for (int s = 0; s < stages.length; ++s) {
+            stages[s] = stage(reference.jjtGetChild(first + s));
+            if (s == 0 && stages[s].kind == START && source instanceof RangeIterator) {
+                // a range skips its first elements without producing them
+                stages[s].count = (int) ((RangeIterator) source).skip(stages[s].limit);
+            } else if (stages[s].kind == START) {
+                // the elements are skipped as the start count iterator does on creation
+                for (int skip = 0; skip < stages[s].limit && pull(s) != END; ++skip) {
+                    stages[s].count += 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fuses the stages of a reference.
+     * @param ii the interpreter
+     * @param reference the reference
+     * @param first the first stage index in the reference
+     * @param last the last stage index in the reference
+     * @param data the source
+     * @return the pipeline or null if the source can not be iterated
+     */
+    static Pipeline create(final Interpreter ii, final JexlNode reference, final int first, final int last,
+                           final Object data) {
+        final Iterator<?> items = ii.prepareIndexedIterator(reference.jjtGetChild(first), data);
+        return items != null ? new Pipeline(ii, reference, first, last, items) : null;
+    }
+
+    /**
+     * Gets the index of the last stage that can be fused with the ones before it.
+     * @param reference the reference
+     * @param first the first stage index in the reference
+     * @return the last stage index, less than first if none
+     */
+    static int lastStage(final JexlNode reference, final int first) {
+        int last = first - 1;
+        final int numChildren = reference.jjtGetNumChildren();
+        while (last + 1 < numChildren && isStage(reference.jjtGetChild(last + 1))) {
+            last += 1;
+        }
+        return last;
+    }
+
+    /**
+     * Whether a node can be fused.
+     * @param child the node
+     * @return true if a single-valued projection or a selection with simple lambdas
+     */
+    private static boolean isStage(final JexlNode child) {
+        if (child instanceof ASTProjectionNode) {
+            if (child.jjtGetNumChildren() != 1) {
+                return false;
+            }
+            final JexlNode expr = expression(child.jjtGetChild(0));
+            return expr instanceof ASTCurrentNode || expr instanceof ASTJexlLambda && isSimple((ASTJexlLambda) expr);
+        }
+        if (child instanceof ASTSelectionNode) {
+            final JexlNode expr = child.jjtGetChild(0);
+            return expr instanceof ASTStopCountNode
+                || expr instanceof ASTStartCountNode
+                || expr instanceof ASTJexlLambda && isSimple(filter((ASTJexlLambda) expr));
+        }
+        return false;
+    }
+
+    /**
+     * Unwraps the lambda or current node of a simple lambda, as projections do.
+     * @param expr the projection expression
+     * @return the expression
+     */
+    private static JexlNode expression(final JexlNode expr) {
+        if (expr instanceof ASTSimpleLambda && expr.jjtGetNumChildren() == 1) {
+            final JexlNode child = expr.jjtGetChild(0);
+            if (child instanceof ASTJexlLambda || child instanceof ASTCurrentNode) {
+                return child;
+            }
+        }
+        return expr;
+    }
+
+    /**
+     * Unwraps the lambda of a simple lambda, as selections do.
+     * @param lambda the selection lambda
+     * @return the filter
+     */
+    private static ASTJexlLambda filter(final ASTJexlLambda lambda) {
+        if (lambda instanceof ASTSimpleLambda && lambda.jjtGetNumChildren() == 1
+            && lambda.jjtGetChild(0) instanceof ASTJexlLambda) {
+            return (ASTJexlLambda) lambda.jjtGetChild(0);
+        }
+        return lambda;
+    }
+
+    /**
+     * Whether a lambda only takes the element, without any typing, default or requirement.
+     * @param lambda the lambda
+     * @return true if its parameter can be set directly in its frame
+     */
+    private static boolean isSimple(final ASTJexlLambda lambda) {
+        if (lambda.isVarArgs() || lambda.getArgCount() > 1) {
+            return false;
+        }
+        final Scope scope = lambda.getScope();
+        return lambda.getArgCount() == 0
+            || scope.getVariableType(0) == null
+            && scope.getVariableValue(0) == null
+            && !scope.isVariableRequired(0);
+    }
+
+    /**
+     * Creates a stage.
+     * @param child the projection or selection node
+     * @return the stage
+     */
+    private Stage stage(final JexlNode child) {
+        final JexlNode expr = child.jjtGetChild(0);
+        if (child instanceof ASTProjectionNode) {
+            final JexlNode projection = expression(expr);
+            return new Stage(PROJECT,
+                projection instanceof ASTCurrentNode ? null : new Call((ASTJexlLambda) projection), 0);
+        }
+        if (expr instanceof ASTStopCountNode || expr instanceof ASTStartCountNode) {
+            final int limit = (Integer) expr.jjtAccept(caller, null);
+            return new Stage(expr instanceof ASTStopCountNode ? STOP : START, null, limit);
+        }
+        return new Stage(SELECT, new Call(filter((ASTJexlLambda) expr)), 0);
+    }
+
+    /**
+     * Runs elements through the first stages until one passes them all.
+     * @param n the number of stages
+     * @return the value out of the stages or END
+     */
+    private Object pull(final int n) {
+        while (true) {
+            for (int s = 0; s < n; ++s) {
+                if (stages[s].kind == STOP && stages[s].count >= stages[s].limit) {
+                    return END;
+                }
+            }
+            if (!source.hasNext()) {
+                return END;
+            }
+            caller.cancelCheck(node);
+            Object value = source.next();
+            boolean passed = true;
+            for (int s = 0; passed && s < n; ++s) {
+                final Stage stage = stages[s];
+                switch (stage.kind) {
+                    case PROJECT:
+                        if (stage.call != null) {
+                            value = stage.call.invoke(value);
+                        }
+                        break;
+                    case SELECT:
+                        passed = caller.arithmetic.toBoolean(stage.call.invoke(value));
+                        break;
+                    default:
+                        break;
+                }
+                if (passed) {
+                    stage.count += 1;
+                }
+            }
+            if (passed) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready) {
+            next = pull(stages.length);
+            ready = true;
+        }
+        return next != END;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = false;
+        final Object value = next;
+        next = null;
+        return value;
+    }
+
+    @Override
+    public void close() {
+        caller.closeIfSupported(source);
+    }
+
+    /**
+     * A stage.
+     */
+    private static final class Stage {
+        /** The kind. */
+        private final int kind;
+        /** The lambda call, null for the identity projection and counts. */
+        private final Call call;
+        /** The stop or start count. */
+        private final int limit;
+        /** The number of elements out of this stage. */
+        private int count;
+
+        Stage(final int kind, final Call call, final int limit) {
+            this.kind = kind;
+            this.call = call;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * The repeated call of a lambda.
+     */
+    private final class Call {
+        /** The closure, capturing variables once. */
+        private final Closure closure;
+        /** The frame after capture. */
+        private final Frame template;
+        /** The frame reset for each call. */
+        private final Frame frame;
+        /** The interpreter running the lambda. */
+        private final Interpreter interpreter;
+
+        Call(final ASTJexlLambda lambda) {
+            closure = new Closure(caller, lambda);
+            template = closure.frame;
+            frame = template != null ? template.clone() : null;
+            interpreter = caller.jexl.createInterpreter(closure.context, frame, closure.options, closure.getInfo());
+        }
+
+        /**
+         * Calls the lambda on an element.
+         * @param value the element, also the current object
+         * @return the lambda result
+         */
+        Object invoke(final Object value) {
+            if (frame != null) {
+                frame.reset(template);
+                if (closure.getScript().getArgCount() == 1) {
+                    frame.set(0, value);
+                }
+            }
+            interpreter.current = value;
+            try {
+                return interpreter.runClosure(closure, null);
+            } finally {
+                interpreter.current = null;
+            }
+        }
+    }
+}
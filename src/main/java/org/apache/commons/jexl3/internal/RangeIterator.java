@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator on an integer or long range whose cursor stays primitive.
+ * <p>Loops and pipelines read the elements through {@link #nextLong()} and {@link #skip(long)} so that values
+ * are only boxed where they escape; {@link #next()} boxes them as the range iterators do.</p>
+ * <p>The last element is tracked by a flag rather than by going past it, ranges ending at the type
+ * boundaries do not overflow.</p>
+ */
+final class RangeIterator implements Iterator<Number> {
+    /** Whether the elements are ints, longs otherwise. */
+    private final boolean ints;
+    /** The last element. */
+    private final long last;
+    /** The step, 1 when ascending, -1 when descending. */
+    private final long step;
+    /** The next element. */
+    private long cursor;
+    /** Whether all elements were iterated. */
+    private boolean done;
+
+    /**
+     * Creates an iterator.
+     * @param integer whether the elements are ints
+     * @param first the first element
+     * @param end the last element
+     * @param ascending whether the range is ascending
+     */
+    private RangeIterator(final boolean integer, final long first, final long end, final boolean ascending) {
+        ints = integer;
+        cursor = first;
+        last = end;
+        step = ascending ? 1L : -1L;
+    }
+
+    /**
+     * Gets an iterator on a range.
+     * @param value an integer range, a long range or a range iterator
+     * @return the iterator or null if the value is not a range
+     */
+    static RangeIterator of(final Object value) {
+        if (value instanceof RangeIterator) {
+            return (RangeIterator) value;
+        }
+        if (value instanceof IntegerRange) {
+            final IntegerRange range = (IntegerRange) value;
+            return range.isReverse()
+                ? new RangeIterator(true, range.getMax(), range.getMin(), false)
+                : new RangeIterator(true, range.getMin(), range.getMax(), true);
+        }
+        if (value instanceof LongRange) {
+            final LongRange range = (LongRange) value;
+            return range.isReverse()
+                ? new RangeIterator(false, range.getMax(), range.getMin(), false)
+                : new RangeIterator(false, range.getMin(), range.getMax(), true);
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the elements are ints, false if longs
+     */
+    boolean isInteger() {
+        return ints;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !done;
+    }
+
+    /**
+     * Gets the next element without boxing it.
+     * @return the element
+     */
+    long nextLong() {
+        if (done) {
+            throw new NoSuchElementException();
+        }
+        final long value = cursor;
+        if (value == last) {
+            done = true;
+        } else {
+            cursor += step;
+        }
+        return value;
+    }
+
+    @Override
+    public Number next() {
+        final long value = nextLong();
+        return ints ? (Number) (int) value : (Number) value;
+    }
+
+    /**
+     * Skips elements.
+     * @param count the number of elements to skip
+     * @return the number of elements skipped, less than count if the iterator got exhausted
+     */
+    long skip(final long count) {
+        if (done || count <= 0) {
+            return 0;
+        }
+        // a negative distance means it overflowed, the range is larger than count
+        final long distance = step > 0 ? last - cursor : cursor - last;
+        if (distance >= 0 && count > distance) {
+            done = true;
+            return distance + 1;
+        }
+        cursor += step * count;
+        return count;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
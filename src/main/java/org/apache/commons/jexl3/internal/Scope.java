@@ -596,7 +596,126 @@ public final class Scope {
         return EMPTY_STRS;
     }
 
-    Scope getParent() {
+    /**
+     * Gets the number of local variables declared in this scope, excluding parameters.
+     * @return the number of variables
+     */
+    public int getVariableCount() {
+        return vars;
+    }
+
+    /**
+     * Gets the parent scope.
+     * @return the parent scope, may be null
+     */
+    public Scope getParent() {
         return parent;
     }
+
+    /**
+     * Computes the signature of this scope and its parents, i.e. their symbols and how they are declared.
+     * <p>Scopes with the same signature resolve identifiers the same way; a script parsed with one of them
+     * can be shared by callers providing the other.</p>
+     * @return the signature
+     */
+    String getSignature() {
+        return getSignature(false);
+    }
+
+    /**
+     * Computes the signature of this scope and its parents.
+     * <p>Considering only the parameters of this scope gives the signature it had before a script was parsed
+     * with it, since parsing declares the local variables in the same scope.</p>
+     * @param parametersOnly whether the local variables of this scope are ignored
+     * @return the signature
+     */
+    String getSignature(final boolean parametersOnly) {
+        final StringBuilder strb = new StringBuilder();
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            strb.append('(').append(scope.parms);
+            if (scope.varArgs) {
+                strb.append('*');
+            }
+            if (scope.isStatic) {
+                strb.append('!');
+            }
+            if (scope.namedVariables != null) {
+                for (final Map.Entry<String, Integer> entry : scope.namedVariables.entrySet()) {
+                    final int symbol = entry.getValue();
+                    if (parametersOnly && scope == this && symbol >= parms) {
+                        continue;
+                    }
+                    strb.append(' ').append(entry.getKey()).append('#').append(symbol);
+                    final Class type = scope.getVariableType(symbol);
+                    if (type != null) {
+                        strb.append(':').append(type.getName());
+                    }
+                    if (scope.isVariableLexical(symbol)) {
+                        strb.append('L');
+                    }
+                    if (scope.isVariableFinal(symbol)) {
+                        strb.append('F');
+                    }
+                    if (scope.isVariableRequired(symbol)) {
+                        strb.append('R');
+                    }
+                    final int captured = scope.getCaptureDeclaration(symbol);
+                    if (captured >= 0) {
+                        strb.append('^').append(captured);
+                    }
+                }
+            }
+            strb.append(')');
+        }
+        return strb.toString();
+    }
+
+    /**
+     * Restores a symbol when decoding a precompiled script.
+     * <p>Symbols must be restored in register order, as they were declared.</p>
+     * @param name the symbol name
+     * @param type the symbol type, may be null
+     * @param isLexical whether the symbol is lexically defined
+     * @param isFinal whether the symbol is final
+     * @param isRequired whether the symbol is non-null
+     * @param value the symbol default value, may be null
+     * @param captured the captured register in the parent scope, -1 if not captured
+     * @return the symbol register
+     */
+    public int restoreSymbol(final String name, final Class<?> type, final boolean isLexical, final boolean isFinal,
+                             final boolean isRequired, final Object value, final int captured) {
+        final int register = addSymbol(name);
+        setVariableType(register, type);
+        if (isLexical) {
+            setVariableLexical(register);
+        }
+        if (isFinal) {
+            setVariableFinal(register);
+        }
+        if (isRequired) {
+            setVariableRequired(register);
+        }
+        setVariableValue(register, value);
+        if (captured >= 0) {
+            setVariableCaptured(register, captured);
+        }
+        return register;
+    }
+
+    /**
+     * Restores the signature of this scope when decoding a precompiled script.
+     * @param parameters the number of parameters
+     * @param variables the number of local variables
+     * @param isVarArgs whether the scope expects a variable number of arguments
+     * @param isStaticScope whether the scope is static
+     * @param type the return type, may be null
+     */
+    public void restoreSignature(final int parameters, final int variables, final boolean isVarArgs,
+                                 final boolean isStaticScope, final Class<?> type) {
+        parms = parameters;
+        vars = variables;
+        varArgs = isVarArgs;
+        isStatic = isStaticScope;
+        returnType = type;
+    }
 }
@@ -26,13 +26,17 @@ import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.JexlScript;
 import org.apache.commons.jexl3.JexlExpression;
 import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.JexlNode;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * <p>A JexlScript implementation.</p>
@@ -218,6 +222,7 @@ public class Script implements JexlScript, JexlExpression {
     @Override
     public Object execute(final JexlContext context, final Object... args) {
         checkCacheVersion();
+        jexl.countExecution(script);
         final Interpreter interpreter = createInterpreter(context, args);
         return interpreter.interpretScript(script);
     }
@@ -495,6 +500,36 @@ public class Script implements JexlScript, JexlExpression {
         return jexl.getVariables(script);
     }
 
+    /**
+     * Gets the inline caches of this script call sites.
+     * <p>Sites only have inline caches once evaluated by an engine that caches.</p>
+     * @return the inline caches, in script order
+     * @since 4.0
+     */
+    List<InlineCache> getInlineCaches() {
+        final List<InlineCache> caches = new ArrayList<>();
+        collectInlineCaches(script, caches);
+        return caches;
+    }
+
+    /**
+     * Collects the inline caches of a node and its descendants.
+     * @param node the node
+     * @param caches the caches
+     */
+    private static void collectInlineCaches(final JexlNode node, final List<InlineCache> caches) {
+        Object value = node.jjtGetValue();
+        if (value instanceof TypeFeedback) {
+            value = ((TypeFeedback) value).getCache();
+        }
+        if (value instanceof InlineCache) {
+            caches.add((InlineCache) value);
+        }
+        for (int c = 0; c < node.jjtGetNumChildren(); ++c) {
+            collectInlineCaches(node.jjtGetChild(c), caches);
+        }
+    }
+
     /**
      * Gets this script pragmas
      * <p>Pragma keys are ant-ish variables, their values are scalar literals..
@@ -530,6 +565,78 @@ public class Script implements JexlScript, JexlExpression {
         return new CallableScript(createInterpreter(context, args));
     }
 
+    @Override
+    public CompletableFuture<Object> executeAsync(final JexlContext context, final Object... args) {
+        checkCacheVersion();
+        jexl.countExecution(script);
+        final AsyncScript async = new AsyncScript(createInterpreter(context, args));
+        try {
+            jexl.asyncExecutor.execute(async);
+        } catch (final RejectedExecutionException xreject) {
+            async.completeExceptionally(xreject);
+        }
+        return async;
+    }
+
+    /**
+     * An asynchronous execution, the future of its result.
+     * <p>Cancelling the future cancels the interpreter and, if interruption is requested, interrupts the
+     * thread running it.</p>
+     */
+    protected class AsyncScript extends CompletableFuture<Object> implements Runnable {
+        /** The actual interpreter. */
+        protected final Interpreter interpreter;
+        /** The thread running the interpreter, null before and after. */
+        private Thread runner;
+
+        /**
+         * The base constructor.
+         * @param intrprtr the interpreter to use
+         */
+        protected AsyncScript(final Interpreter intrprtr) {
+            this.interpreter = intrprtr;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                complete(interpreter.interpretScript(script));
+            } catch (final Throwable xany) {
+                completeExceptionally(xany);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                if (isCancelled()) {
+                    // do not leak the cancellation interrupt to the executor thread
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                interpreter.cancel();
+                if (mayInterruptIfRunning) {
+                    synchronized (this) {
+                        if (runner != null) {
+                            runner.interrupt();
+                        }
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+
     /**
      * Implements the Future and Callable interfaces to help delegation.
      */
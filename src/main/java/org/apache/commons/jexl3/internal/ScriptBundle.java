@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlFeatures;
+import org.apache.commons.jexl3.JexlInfo;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.ScriptCodec;
+
+/**
+ * A bundle of precompiled scripts stored in a file.
+ * <p>The file starts with a header made of a magic number, the bundle format version, the
+ * {@link ScriptCodec#fingerprint() grammar fingerprint} and the engine script and expression features; an index
+ * follows that maps each script kind and source to the offset and length of its encoded tree.</p>
+ * <p>Reading a bundle maps the file in memory and only decodes the index; script trees are decoded
+ * on first access.</p>
+ */
+final class ScriptBundle extends AbstractMap<String, JexlScript> {
+    /** The bundle magic number, 'JEXL'. */
+    private static final int MAGIC = 0x4a45584c;
+    /** The bundle format version. */
+    private static final int VERSION = 1;
+    /** The script features marker. */
+    private static final int SCRIPT = 0;
+    /** The expression features marker. */
+    private static final int EXPRESSION = 1;
+
+    /**
+     * An entry in the bundle index.
+     */
+    private final class Entry implements Map.Entry<String, JexlScript> {
+        /** The script source. */
+        private final String source;
+        /** Whether the script uses the engine expression features. */
+        private final boolean expression;
+        /** The encoded tree offset. */
+        private final int offset;
+        /** The encoded tree length. */
+        private final int length;
+        /** The decoded script. */
+        private volatile Script script;
+
+        Entry(final String src, final boolean expr, final int off, final int len) {
+            source = src;
+            expression = expr;
+            offset = off;
+            length = len;
+        }
+
+        @Override
+        public String getKey() {
+            return JexlEngine.bundleKey(expression, source);
+        }
+
+        @Override
+        public JexlScript getValue() {
+            Script s = script;
+            if (s == null) {
+                // decoding twice is harmless
+                s = decode(this);
+                script = s;
+            }
+            return s;
+        }
+
+        @Override
+        public JexlScript setValue(final JexlScript value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /** The engine that read the bundle. */
+    private final Engine jexl;
+    /** The codec. */
+    private final ScriptCodec codec;
+    /** The mapped file content. */
+    private final ByteBuffer buffer;
+    /** The index. */
+    private final Map<String, Entry> index;
+
+    /**
+     * Creates a bundle.
+     * @param engine the engine
+     * @param content the mapped content of the encoded trees
+     * @param entries the index
+     */
+    private ScriptBundle(final Engine engine, final ByteBuffer content, final Map<String, Entry> entries) {
+        jexl = engine;
+        codec = new ScriptCodec(engine.getUberspect().getClassLoader());
+        buffer = content;
+        index = entries;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public JexlScript get(final Object key) {
+        final Entry entry = index.get(key);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    @Override
+    public Set<Map.Entry<String, JexlScript>> entrySet() {
+        return new AbstractSet<Map.Entry<String, JexlScript>>() {
+            @Override
+            public Iterator<Map.Entry<String, JexlScript>> iterator() {
+                final Iterator<Entry> entries = index.values().iterator();
+                return new Iterator<Map.Entry<String, JexlScript>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, JexlScript> next() {
+                        return entries.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    /**
+     * Decodes a script.
+     * @param entry the script entry
+     * @return the script
+     */
+    private Script decode(final Entry entry) {
+        final ByteBuffer slice = buffer.duplicate();
+        slice.position(entry.offset);
+        slice.limit(slice.position() + entry.length);
+        final JexlFeatures features = entry.expression ? jexl.expressionFeatures : jexl.scriptFeatures;
+        final ASTJexlScript tree;
+        try {
+            tree = codec.decode(new DataInputStream(new BufferInputStream(slice)), features);
+        } catch (final IOException xio) {
+            throw new UncheckedIOException(xio);
+        }
+        final Object value = tree.jjtGetValue();
+        final JexlInfo info = value instanceof JexlInfo ? (JexlInfo) value : jexl.createInfo();
+        jexl.cacheScript(info, features, entry.source, tree);
+        return new Script(jexl, entry.source, info, tree);
+    }
+
+    /**
+     * Writes a bundle.
+     * @param jexl the engine that created the scripts
+     * @param file the file
+     * @param scripts the scripts
+     * @throws IOException if writing fails or a script can not be encoded
+     */
+    static void write(final Engine jexl, final Path file, final Collection<? extends JexlScript> scripts)
+            throws IOException {
+        final ScriptCodec codec = new ScriptCodec(jexl.getUberspect().getClassLoader());
+        final List<Script> sources = new ArrayList<>(scripts.size());
+        final List<byte[]> trees = new ArrayList<>(scripts.size());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (final JexlScript jscript : scripts) {
+            if (!(jscript instanceof Script) || jscript instanceof Closure) {
+                throw new IllegalArgumentException("not a precompilable script: " + jscript);
+            }
+            final Script script = (Script) jscript;
+            final JexlFeatures features = script.getScript().getFeatures();
+            if (!jexl.scriptFeatures.equals(features) && !jexl.expressionFeatures.equals(features)) {
+                throw new IllegalArgumentException("script features differ from engine features: "
+                        + script.getSourceText());
+            }
+            bytes.reset();
+            codec.encode(new DataOutputStream(bytes), script.getScript());
+            sources.add(script);
+            trees.add(bytes.toByteArray());
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(ScriptCodec.fingerprint());
+            writeFeatures(out, jexl.scriptFeatures);
+            writeFeatures(out, jexl.expressionFeatures);
+            out.writeInt(sources.size());
+            int offset = 0;
+            for (int s = 0; s < sources.size(); ++s) {
+                final Script script = sources.get(s);
+                writeString(out, script.getSourceText());
+                out.writeByte(jexl.scriptFeatures.equals(script.getScript().getFeatures()) ? SCRIPT : EXPRESSION);
+                out.writeInt(offset);
+                out.writeInt(trees.get(s).length);
+                offset += trees.get(s).length;
+            }
+            for (final byte[] tree : trees) {
+                out.write(tree);
+            }
+        }
+    }
+
+    /**
+     * Reads a bundle.
+     * @param jexl the engine
+     * @param file the file
+     * @return the bundle
+     * @throws IOException if reading fails or the bundle is stale
+     */
+    static ScriptBundle read(final Engine jexl, final Path file) throws IOException {
+        final ByteBuffer content;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final DataInputStream in = new DataInputStream(new BufferInputStream(content));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a script bundle: " + file);
+        }
+        final int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("stale script bundle, version " + version + ": " + file);
+        }
+        if (in.readInt() != ScriptCodec.fingerprint()) {
+            throw new IOException("stale script bundle, grammar changed: " + file);
+        }
+        if (!readFeatures(in, jexl.scriptFeatures) || !readFeatures(in, jexl.expressionFeatures)) {
+            throw new IOException("stale script bundle, features changed: " + file);
+        }
+        final int count = in.readInt();
+        final String[] sources = new String[count];
+        final int[] layout = new int[count * 3];
+        for (int s = 0; s < count; ++s) {
+            sources[s] = readString(in);
+            layout[s * 3] = in.readByte();
+            layout[s * 3 + 1] = in.readInt();
+            layout[s * 3 + 2] = in.readInt();
+        }
+        // the content position is now the start of the encoded trees
+        final Map<String, Entry> entries = new LinkedHashMap<>(count * 4 / 3 + 1);
+        final ScriptBundle bundle = new ScriptBundle(jexl, content.slice(), entries);
+        for (int s = 0; s < count; ++s) {
+            final Entry entry =
+                    bundle.new Entry(sources[s], layout[s * 3] == EXPRESSION, layout[s * 3 + 1], layout[s * 3 + 2]);
+            entries.put(entry.getKey(), entry);
+        }
+        return bundle;
+    }
+
+    /**
+     * Writes the features fingerprint.
+     * @param out the output
+     * @param features the features
+     * @throws IOException if writing fails
+     */
+    private static void writeFeatures(final DataOutputStream out, final JexlFeatures features) throws IOException {
+        out.writeLong(features.getFlags());
+        final Set<String> reserved = new TreeSet<>(features.getReservedNames());
+        out.writeInt(reserved.size());
+        for (final String name : reserved) {
+            writeString(out, name);
+        }
+    }
+
+    /**
+     * Reads and checks a features fingerprint.
+     * @param in the input
+     * @param features the features to compare to
+     * @return true if the features are the same, false otherwise
+     * @throws IOException if reading fails
+     */
+    private static boolean readFeatures(final DataInputStream in, final JexlFeatures features) throws IOException {
+        final long flags = in.readLong();
+        final int count = in.readInt();
+        final Set<String> reserved = new TreeSet<>();
+        for (int r = 0; r < count; ++r) {
+            reserved.add(readString(in));
+        }
+        return flags == features.getFlags() && Objects.equals(reserved, new TreeSet<>(features.getReservedNames()));
+    }
+
+    /**
+     * Writes a string, not limited in length.
+     * @param out the output
+     * @param str the string
+     * @throws IOException if writing fails
+     */
+    private static void writeString(final DataOutputStream out, final String str) throws IOException {
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string.
+     * @param in the input
+     * @return the string
+     * @throws IOException if reading fails
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * An input stream reading a byte buffer.
+     */
+    private static final class BufferInputStream extends InputStream {
+        /** The buffer. */
+        private final ByteBuffer buffer;
+
+        BufferInputStream(final ByteBuffer buf) {
+            buffer = buf;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int off, final int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(bytes, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
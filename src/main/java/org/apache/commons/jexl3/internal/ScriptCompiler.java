@@ -0,0 +1,865 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.parser.ASTIdentifier;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * Compiles scripts to JVM bytecode.
+ * <p>The generated class evaluates the top-level statements of a script by calling the same operator
+ * implementations as the interpreter (overloads, arithmetic, variable resolution and error reporting)
+ * without going through the visitor; literals, identifiers, arithmetic, comparison, logical and
+ * conditional operators are compiled, any other construct is delegated to the interpreter.</p>
+ * <p>The tier targets expression-shaped scripts, such as rules and predicates evaluated very often.
+ * Local variable declarations and assignments, blocks, conditional and loop statements, function and
+ * method calls and property accesses are not lowered: each is delegated as a whole, subtree included,
+ * to the interpreter which keeps ownership of lexical frames, control flow completions and introspection
+ * caches. A script made only of such statements is not compiled at all.</p>
+ * <p>Classes are generated in the class file version 49 format which does not require stack map frames,
+ * each is defined by its own class loader so it can be unloaded along with its script. When this library
+ * is loaded as a named module, its internal package is not accessible to generated classes and
+ * the engine uses closure trees instead.</p>
+ */
+final class ScriptCompiler {
+    /** The class file major version. */
+    private static final int VERSION = 49;
+    /** The maximum code length that can be addressed by 16-bit branch offsets. */
+    private static final int MAX_CODE = Short.MAX_VALUE;
+    /** The bound on the operand stack depth, the code generation pattern never uses more than 4. */
+    private static final int MAX_STACK = 8;
+    /** Whether the generated classes can access this package. */
+    private static final boolean SUPPORTED = !isNamedModule();
+    /** The generated class counter. */
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    /** The generated class name prefix. */
+    private static final String PREFIX = "org/apache/commons/jexl3/internal/CompiledScript$";
+    /** The base class. */
+    private static final String BYTECODE = "org/apache/commons/jexl3/internal/ScriptCompiler$Bytecode";
+    /** The node descriptor. */
+    private static final String NODE = "Lorg/apache/commons/jexl3/parser/JexlNode;";
+    /** The interpreter descriptor. */
+    private static final String INTERPRETER = "Lorg/apache/commons/jexl3/internal/Interpreter;";
+    /** The object descriptor. */
+    private static final String OBJECT = "Ljava/lang/Object;";
+    /** The constructor descriptor. */
+    private static final String INIT = "([" + NODE + "[" + OBJECT + ")V";
+    /** The descriptor of a helper with no operand. */
+    private static final String HELPER0 = "(" + INTERPRETER + NODE + ")" + OBJECT;
+    /** The descriptor of a helper with one operand. */
+    private static final String HELPER1 = "(" + INTERPRETER + NODE + OBJECT + ")" + OBJECT;
+    /** The descriptor of a helper with two operands. */
+    private static final String HELPER2 = "(" + INTERPRETER + NODE + OBJECT + OBJECT + ")" + OBJECT;
+    /** The descriptor of the boolean coercion helper. */
+    private static final String TEST = "(" + INTERPRETER + NODE + OBJECT + ")Z";
+    /** The descriptor of the condition test helper. */
+    private static final String CONDITION = "(" + INTERPRETER + OBJECT + ")Z";
+    /** The descriptor of the null operand condition helper. */
+    private static final String NULL_CONDITION = "(Lorg/apache/commons/jexl3/JexlException;)" + OBJECT;
+
+    // the opcodes in use
+    private static final int ACONST_NULL = 0x01;
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int AALOAD = 0x32;
+    private static final int ASTORE = 0x3a;
+    private static final int POP = 0x57;
+    private static final int IFEQ = 0x99;
+    private static final int IFNE = 0x9a;
+    private static final int GOTO = 0xa7;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int GETFIELD = 0xb4;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    /**
+     * The base class of generated scripts.
+     * <p>The static methods are the operations the generated code calls; they are protected so that
+     * generated classes, defined in another class loader, can call them.</p>
+     */
+    public abstract static class Bytecode extends Compiled {
+        /** The nodes referred to by the generated code. */
+        protected final JexlNode[] nodes;
+        /** The constants referred to by the generated code. */
+        protected final Object[] constants;
+
+        /**
+         * Creates a compiled script.
+         * @param theNodes the nodes
+         * @param theConstants the constants
+         */
+        protected Bytecode(final JexlNode[] theNodes, final Object[] theConstants) {
+            this.nodes = theNodes;
+            this.constants = theConstants;
+        }
+
+        /**
+         * Delegates the evaluation of a node to the interpreter.
+         * <p>A statement completing as a result (a return in a loop) is raised as its exception.</p>
+         * @param interpreter the interpreter
+         * @param node the node
+         * @return the node value
+         */
+        protected static Object interpret(final Interpreter interpreter, final JexlNode node) {
+            return Completion.raise(interpreter, node.jjtAccept(interpreter, null));
+        }
+
+        /**
+         * Starts an expression statement.
+         * @param interpreter the interpreter
+         * @param node the statement node
+         * @return null
+         */
+        protected static Object statement(final Interpreter interpreter, final JexlNode node) {
+            interpreter.cancelCheck(node);
+            return null;
+        }
+
+        /**
+         * Gets a variable value.
+         * @param interpreter the interpreter
+         * @param node the identifier node
+         * @return the variable value
+         */
+        protected static Object variable(final Interpreter interpreter, final JexlNode node) {
+            interpreter.cancelCheck(node);
+            return interpreter.getVariable(interpreter.frame, interpreter.block, (ASTIdentifier) node);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left + right
+         */
+        protected static Object add(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.add(node, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left - right
+         */
+        protected static Object subtract(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.subtract(node, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left * right
+         */
+        protected static Object multiply(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.multiply(node, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left / right
+         */
+        protected static Object divide(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.divide(node, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left % right
+         */
+        protected static Object mod(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.mod(node, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left == right
+         */
+        protected static Object eq(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.compare(node, JexlOperator.EQ, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left != right
+         */
+        protected static Object ne(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.compare(node, JexlOperator.NE, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left &lt; right
+         */
+        protected static Object lt(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.compare(node, JexlOperator.LT, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left &lt;= right
+         */
+        protected static Object le(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.compare(node, JexlOperator.LTE, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left &gt; right
+         */
+        protected static Object gt(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.compare(node, JexlOperator.GT, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param left the left operand
+         * @param right the right operand
+         * @return left &gt;= right
+         */
+        protected static Object ge(final Interpreter interpreter, final JexlNode node, final Object left, final Object right) {
+            return interpreter.compare(node, JexlOperator.GTE, left, right);
+        }
+
+        /**
+         * @param interpreter the interpreter
+         * @param node the operator node
+         * @param value the operand
+         * @return !value
+         */
+        protected static Object not(final Interpreter interpreter, final JexlNode node, final Object value) {
+            return interpreter.not(node, value);
+        }
+
+        /**
+         * Coerces the operand of a logical operator to a boolean.
+         * @param interpreter the interpreter
+         * @param node the operand node
+         * @param value the operand value
+         * @return the boolean value
+         */
+        protected static boolean test(final Interpreter interpreter, final JexlNode node, final Object value) {
+            try {
+                return interpreter.arithmetic.toBoolean(value);
+            } catch (final ArithmeticException xrt) {
+                throw interpreter.createException(node, "boolean coercion error", xrt);
+            }
+        }
+
+        /**
+         * Tests the condition of a conditional operator.
+         * @param interpreter the interpreter
+         * @param condition the condition value
+         * @return true if not null and true
+         */
+        protected static boolean condition(final Interpreter interpreter, final Object condition) {
+            return condition != null && interpreter.arithmetic.toBoolean(condition);
+        }
+
+        /**
+         * Handles an error evaluating the condition of a conditional operator.
+         * @param xany the error
+         * @return null if the error is due to a null operand
+         */
+        protected static Object condition(final JexlException xany) {
+            if (!(xany.getCause() instanceof JexlArithmetic.NullOperand)) {
+                throw xany;
+            }
+            return null;
+        }
+    }
+
+    /** The nodes, by index. */
+    private final List<JexlNode> nodes = new ArrayList<>();
+    /** The node indices. */
+    private final Map<JexlNode, Integer> nodeIndices = new IdentityHashMap<>();
+    /** The nodes lowered to bytecode. */
+    private final Lowering lowering = new Lowering();
+    /** The constants, by index. */
+    private final List<Object> constants = new ArrayList<>();
+    /** The constant pool. */
+    private final Pool pool = new Pool();
+    /** The code being generated. */
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    /** The exception table entries, 4 per entry. */
+    private final List<Integer> handlers = new ArrayList<>();
+    /** The unresolved branches, as pairs of instruction position and label. */
+    private final List<Object> branches = new ArrayList<>();
+    /** The next free local variable slot. */
+    private int locals = 2;
+    /** The number of nodes compiled to bytecode rather than delegated. */
+    private int compiled = 0;
+
+    /**
+     * A branch target.
+     */
+    private static final class Label {
+        /** The code position, -1 until placed. */
+        private int position = -1;
+    }
+
+    /**
+     * The class file constant pool.
+     */
+    private static final class Pool {
+        /** The entries bytes. */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        /** The output over the entries bytes. */
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        /** The entry indices, by key. */
+        private final Map<String, Integer> entries = new HashMap<>();
+        /** The next index. */
+        private int next = 1;
+
+        /**
+         * Finds or adds an entry.
+         * @param key the entry key
+         * @param tag the entry tag
+         * @param first the first index
+         * @param second the second index, negative if none
+         * @return the entry index
+         */
+        private int entry(final String key, final int tag, final int first, final int second) throws IOException {
+            Integer index = entries.get(key);
+            if (index == null) {
+                out.writeByte(tag);
+                out.writeShort(first);
+                if (second >= 0) {
+                    out.writeShort(second);
+                }
+                index = next++;
+                entries.put(key, index);
+            }
+            return index;
+        }
+
+        int utf8(final String str) throws IOException {
+            final String key = "U" + str;
+            Integer index = entries.get(key);
+            if (index == null) {
+                out.writeByte(1);
+                out.writeUTF(str);
+                index = next++;
+                entries.put(key, index);
+            }
+            return index;
+        }
+
+        int type(final String name) throws IOException {
+            return entry("C" + name, 7, utf8(name), -1);
+        }
+
+        int member(final int tag, final String owner, final String name, final String desc) throws IOException {
+            final int nat = entry("N" + name + ' ' + desc, 12, utf8(name), utf8(desc));
+            return entry(tag + owner + '.' + name + ' ' + desc, tag, type(owner), nat);
+        }
+
+        int field(final String owner, final String name, final String desc) throws IOException {
+            return member(9, owner, name, desc);
+        }
+
+        int method(final String owner, final String name, final String desc) throws IOException {
+            return member(10, owner, name, desc);
+        }
+    }
+
+    /**
+     * Use the compile method.
+     */
+    private ScriptCompiler() {
+    }
+
+    /**
+     * Checks whether this class belongs to a named module.
+     * @return true if in a named module, false otherwise or before Java 9
+     */
+    private static boolean isNamedModule() {
+        try {
+            final Object module = Class.class.getMethod("getModule").invoke(ScriptCompiler.class);
+            return (Boolean) module.getClass().getMethod("isNamed").invoke(module);
+        } catch (final ReflectiveOperationException | RuntimeException xany) {
+            return false;
+        }
+    }
+
+    /**
+     * @return whether generated classes can be loaded
+     */
+    static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Compiles a script.
+     * @param script the script
+     * @return the compiled script or null if nothing in the script could be compiled
+     * @throws IOException never in practice, writes to memory
+     * @throws ReflectiveOperationException if the generated class can not be instantiated
+     */
+    static Compiled compile(final ASTJexlScript script) throws IOException, ReflectiveOperationException {
+        return SUPPORTED ? new ScriptCompiler().generate(script) : null;
+    }
+
+    /**
+     * Generates and loads the class for a script.
+     * @param script the script
+     * @return the compiled script or null
+     */
+    private Compiled generate(final ASTJexlScript script) throws IOException, ReflectiveOperationException {
+        final int count = script.jjtGetNumChildren();
+        if (count == 0) {
+            op(ACONST_NULL);
+        }
+        for (int c = 0; c < count; ++c) {
+            if (c > 0) {
+                op(POP);
+            }
+            compile(script.jjtGetChild(c));
+        }
+        op(ARETURN);
+        if (compiled == 0 || code.size() >= MAX_CODE) {
+            return null;
+        }
+        final String name = PREFIX + COUNTER.incrementAndGet();
+        final byte[] bytes = classFile(name);
+        final Class<?> clazz = new Loader(ScriptCompiler.class.getClassLoader()).define(name.replace('/', '.'), bytes);
+        return (Compiled) clazz.getConstructor(JexlNode[].class, Object[].class)
+            .newInstance(nodes.toArray(new JexlNode[0]), constants.toArray());
+    }
+
+    /**
+     * The class loader of one generated class.
+     */
+    private static final class Loader extends ClassLoader {
+        /**
+         * Creates a loader.
+         * @param parent the loader of this library
+         */
+        Loader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        /**
+         * Defines the generated class.
+         * @param name the class name
+         * @param bytes the class bytes
+         * @return the class
+         */
+        Class<?> define(final String name, final byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Checks whether a node is compiled or delegated.
+     * @param node the node
+     * @return true if compiled
+     */
+    private boolean isNative(final JexlNode node) {
+        final Lowering.Kind kind = Lowering.kindOf(node);
+        if (kind == Lowering.Kind.ENCLOSED) {
+            // the interpreter catches yields in enclosed expressions, only compile if nothing can yield
+            return lowering.isLowered(node.jjtGetChild(0));
+        }
+        return kind != null;
+    }
+
+    /**
+     * Generates the code evaluating a node.
+     * <p>The operand stack is empty when evaluating a node starts and holds the node value when it ends;
+     * intermediate values are kept in local variables so that exception handlers can be used anywhere.</p>
+     * @param node the node
+     */
+    private void compile(final JexlNode node) throws IOException {
+        if (!isNative(node)) {
+            helper("interpret", HELPER0, node);
+            return;
+        }
+        compiled += 1;
+        switch (Lowering.kindOf(node)) {
+            case CONSTANT:
+                final Object value = Lowering.constant(node);
+                if (value == null) {
+                    op(ACONST_NULL);
+                } else {
+                    constant(value);
+                }
+                break;
+            case VARIABLE:
+                helper("variable", HELPER0, node);
+                break;
+            case STATEMENT:
+                helper("statement", HELPER0, node);
+                op(POP);
+                compile(node.jjtGetChild(0));
+                break;
+            case ENCLOSED:
+                compile(node.jjtGetChild(0));
+                break;
+            case AND:
+                logical(node, true);
+                break;
+            case OR:
+                logical(node, false);
+                break;
+            case TERNARY:
+                conditional(node, false);
+                break;
+            case ELVIS:
+                conditional(node, true);
+                break;
+            case NOT:
+                final int operand = evaluate(node.jjtGetChild(0));
+                op(ALOAD_1);
+                node(node);
+                load(operand);
+                invoke("not", HELPER1);
+                break;
+            default:
+                binary(node, helperName(node));
+                break;
+        }
+    }
+
+    /**
+     * Gets the name of the helper applying a binary operator.
+     * @param node the operator node
+     * @return the helper name
+     */
+    private static String helperName(final JexlNode node) {
+        switch (Lowering.kindOf(node)) {
+            case ADD: return "add";
+            case SUBTRACT: return "subtract";
+            case MULTIPLY: return "multiply";
+            case DIVIDE: return "divide";
+            case MOD: return "mod";
+            default: break;
+        }
+        switch (Lowering.comparison(node)) {
+            case EQ: return "eq";
+            case NE: return "ne";
+            case LT: return "lt";
+            case LTE: return "le";
+            case GT: return "gt";
+            default: return "ge";
+        }
+    }
+
+    /**
+     * Generates a binary operation.
+     * @param node the operator node
+     * @param name the helper name
+     */
+    private void binary(final JexlNode node, final String name) throws IOException {
+        final int left = evaluate(node.jjtGetChild(0));
+        final int right = evaluate(node.jjtGetChild(1));
+        op(ALOAD_1);
+        node(node);
+        load(left);
+        load(right);
+        invoke(name, HELPER2);
+    }
+
+    /**
+     * Generates the code evaluating a node and storing its value in a new local variable.
+     * @param node the node
+     * @return the local variable slot
+     */
+    private int evaluate(final JexlNode node) throws IOException {
+        compile(node);
+        final int slot = locals++;
+        op(ASTORE);
+        code.write(slot);
+        return slot;
+    }
+
+    /**
+     * Generates a short-circuit and/or.
+     * @param node the operator node
+     * @param and true for and, false for or
+     */
+    private void logical(final JexlNode node, final boolean and) throws IOException {
+        final Label shortcut = new Label();
+        final Label end = new Label();
+        for (int c = 0; c < 2; ++c) {
+            final JexlNode operand = node.jjtGetChild(c);
+            final int value = evaluate(operand);
+            op(ALOAD_1);
+            node(operand);
+            load(value);
+            invoke("test", TEST);
+            // and: false shortcuts, or: true shortcuts
+            jump(and ? IFEQ : IFNE, shortcut);
+        }
+        bool(and);
+        jump(GOTO, end);
+        place(shortcut);
+        bool(!and);
+        place(end);
+    }
+
+    /**
+     * Generates a conditional, ternary or elvis.
+     * @param node the operator node
+     * @param elvis true for elvis, false for ternary
+     */
+    private void conditional(final JexlNode node, final boolean elvis) throws IOException {
+        // evaluate the condition, a null operand error is a null condition
+        final int start = code.size();
+        compile(node.jjtGetChild(0));
+        final int end = code.size();
+        final Label join = new Label();
+        jump(GOTO, join);
+        final int handler = code.size();
+        invoke("condition", NULL_CONDITION);
+        handlers.add(start);
+        handlers.add(end);
+        handlers.add(handler);
+        handlers.add(pool.type("org/apache/commons/jexl3/JexlException"));
+        place(join);
+        final int condition = locals++;
+        op(ASTORE);
+        code.write(condition);
+        op(ALOAD_1);
+        load(condition);
+        invoke("condition", CONDITION);
+        final Label otherwise = new Label();
+        final Label done = new Label();
+        jump(IFEQ, otherwise);
+        if (elvis) {
+            load(condition);
+        } else {
+            compile(node.jjtGetChild(1));
+        }
+        jump(GOTO, done);
+        place(otherwise);
+        final int alternative = elvis ? 1 : 2;
+        if (node.jjtGetNumChildren() > alternative) {
+            compile(node.jjtGetChild(alternative));
+        } else {
+            op(ACONST_NULL);
+        }
+        place(done);
+    }
+
+    /**
+     * Generates a call to a helper.
+     * @param name the helper name
+     * @param desc the helper descriptor
+     * @param node the node argument
+     */
+    private void helper(final String name, final String desc, final JexlNode node) throws IOException {
+        op(ALOAD_1);
+        node(node);
+        invoke(name, desc);
+    }
+
+    private void invoke(final String name, final String desc) throws IOException {
+        op(INVOKESTATIC);
+        u2(pool.method(BYTECODE, name, desc));
+    }
+
+    private void node(final JexlNode node) throws IOException {
+        Integer index = nodeIndices.get(node);
+        if (index == null) {
+            index = nodes.size();
+            nodes.add(node);
+            nodeIndices.put(node, index);
+        }
+        element("nodes", "[" + NODE, index);
+    }
+
+    private void constant(final Object value) throws IOException {
+        final int index = constants.size();
+        constants.add(value);
+        element("constants", "[" + OBJECT, index);
+    }
+
+    private void element(final String field, final String desc, final int index) throws IOException {
+        op(ALOAD_0);
+        op(GETFIELD);
+        u2(pool.field(BYTECODE, field, desc));
+        if (index <= 5) {
+            op(ICONST_0 + index);
+        } else if (index <= Byte.MAX_VALUE) {
+            op(BIPUSH);
+            code.write(index);
+        } else if (index <= Short.MAX_VALUE) {
+            op(SIPUSH);
+            u2(index);
+        } else {
+            throw new IOException("too many constants");
+        }
+        op(AALOAD);
+    }
+
+    private void bool(final boolean value) throws IOException {
+        op(GETSTATIC);
+        u2(pool.field("java/lang/Boolean", value ? "TRUE" : "FALSE", "Ljava/lang/Boolean;"));
+    }
+
+    private void load(final int slot) {
+        op(ALOAD);
+        code.write(slot);
+    }
+
+    private void jump(final int opcode, final Label label) {
+        branches.add(code.size());
+        branches.add(label);
+        op(opcode);
+        u2(0);
+    }
+
+    private void place(final Label label) {
+        label.position = code.size();
+    }
+
+    private void op(final int opcode) {
+        code.write(opcode);
+    }
+
+    private void u2(final int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    /**
+     * Assembles the class file.
+     * @param name the class internal name
+     * @return the class bytes
+     */
+    private byte[] classFile(final String name) throws IOException {
+        if (locals > 255) {
+            throw new IOException("too many locals");
+        }
+        // resolve branches
+        final byte[] bytecode = code.toByteArray();
+        for (int b = 0; b < branches.size(); b += 2) {
+            final int at = (Integer) branches.get(b);
+            final int offset = ((Label) branches.get(b + 1)).position - at;
+            bytecode[at + 1] = (byte) (offset >> 8);
+            bytecode[at + 2] = (byte) offset;
+        }
+        // the constant pool entries must exist before writing it
+        final int thisClass = pool.type(name);
+        final int superClass = pool.type(BYTECODE);
+        final int codeName = pool.utf8("Code");
+        final int initName = pool.utf8("<init>");
+        final int initDesc = pool.utf8(INIT);
+        final int superInit = pool.method(BYTECODE, "<init>", INIT);
+        final int executeName = pool.utf8("execute");
+        final int executeDesc = pool.utf8("(" + INTERPRETER + ")" + OBJECT);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(bytecode.length + 1024);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0);
+        out.writeShort(VERSION);
+        out.writeShort(pool.next);
+        pool.out.flush();
+        pool.bytes.writeTo(out);
+        // public final super
+        out.writeShort(0x0031);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        // no interfaces, no fields, 2 methods
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(2);
+        // the constructor calls super
+        final byte[] init = {
+            ALOAD_0, ALOAD_1, ALOAD_2,
+            (byte) INVOKESPECIAL, (byte) (superInit >> 8), (byte) superInit,
+            (byte) RETURN
+        };
+        method(out, initName, initDesc, codeName, 3, 3, init, new ArrayList<>());
+        method(out, executeName, executeDesc, codeName, MAX_STACK, locals, bytecode, handlers);
+        // no attributes
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a public method.
+     */
+    private static void method(final DataOutputStream out, final int name, final int desc, final int codeName,
+                               final int stack, final int maxLocals, final byte[] bytecode, final List<Integer> table)
+        throws IOException {
+        out.writeShort(0x0001);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + bytecode.length + 2 * table.size());
+        out.writeShort(stack);
+        out.writeShort(maxLocals);
+        out.writeInt(bytecode.length);
+        out.write(bytecode);
+        out.writeShort(table.size() / 4);
+        for (final Integer entry : table) {
+            out.writeShort(entry);
+        }
+        out.writeShort(0);
+    }
+}
@@ -79,6 +79,16 @@ public class SoftCache<K, V> implements JexlCache<K, V> {
      */
     protected volatile SoftReference<Map<K, V>> reference;
 
+    /**
+     * The cache statistics.
+     */
+    final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * The number of entries the cache map held when last modified, counted as evictions if the GC clears it.
+     */
+    private volatile int held;
+
     /**
      * Creates a new instance of a soft cache.
      *
@@ -108,11 +118,35 @@ public class SoftCache<K, V> implements JexlCache<K, V> {
             if (map != null) {
                 map.clear();
             }
+            held = 0;
         }
     }
 
+    /**
+     * Gets the map held by a reference, counting its entries as evicted if the GC cleared it.
+     * @param ref the reference, may be null
+     * @return the map or null
+     */
+    private Map<K, V> map(final SoftReference<Map<K, V>> ref) {
+        if (ref == null) {
+            return null;
+        }
+        final Map<K, V> map = ref.get();
+        if (map == null) {
+            synchronized (this) {
+                if (reference == ref) {
+                    reference = null;
+                    statistics.recordEvictions(held);
+                    held = 0;
+                }
+            }
+        }
+        return map;
+    }
+
     /**
      * Creates a cache store.
+     * <p>The store records its evictions in this cache statistics.</p>
      *
      * @param <KT> the key type
      * @param <VT> the value type
@@ -120,7 +154,28 @@ public class SoftCache<K, V> implements JexlCache<K, V> {
      * @return a Map usable as a cache bounded to the given size
      */
     protected <KT, VT> Map<KT, VT> createMap(final int cacheSize) {
-        return createSynchronizedLinkedHashMap(cacheSize);
+        return Collections.synchronizedMap(new java.util.LinkedHashMap<KT, VT>(cacheSize, LOAD_FACTOR, true) {
+            /**
+             * Serial version UID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public VT put(final KT key, final VT value) {
+                final VT previous = super.put(key, value);
+                held = super.size();
+                return previous;
+            }
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<KT, VT> eldest) {
+                if (super.size() > cacheSize) {
+                    statistics.recordEviction();
+                    return true;
+                }
+                return false;
+            }
+        });
     }
 
     /**
@@ -128,8 +183,7 @@ public class SoftCache<K, V> implements JexlCache<K, V> {
      */
     @Override
     public Collection<Map.Entry<K, V>> entries() {
-        final SoftReference<Map<K, V>> ref = reference;
-        final Map<K, V> map = ref != null ? ref.get() : null;
+        final Map<K, V> map = map(reference);
         return map == null? Collections.emptyList() : map.entrySet();
     }
 
@@ -138,9 +192,14 @@ public class SoftCache<K, V> implements JexlCache<K, V> {
      */
     @Override
     public V get(final K key) {
-        final SoftReference<Map<K, V>> ref = reference;
-        final Map<K, V> map = ref != null ? ref.get() : null;
-        return map != null ? map.get(key) : null;
+        final Map<K, V> map = map(reference);
+        final V value = map != null ? map.get(key) : null;
+        if (value != null) {
+            statistics.recordHit();
+        } else {
+            statistics.recordMiss();
+        }
+        return value;
     }
 
     /**
@@ -148,28 +207,34 @@ public class SoftCache<K, V> implements JexlCache<K, V> {
      */
     @Override
     public V put(final K key, final V script) {
-        SoftReference<Map<K, V>> ref = reference;
-        Map<K, V> map = ref != null ? ref.get() : null;
+        Map<K, V> map = map(reference);
         if (map == null) {
             synchronized (this) {
-                ref = reference;
-                map = ref != null ? ref.get() : null;
+                map = map(reference);
                 if (map == null) {
                     map = createMap(capacity);
                     reference = new SoftReference<>(map);
                 }
             }
         }
+        statistics.recordPut();
         return map.put(key, script);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Statistics statistics() {
+        return statistics.snapshot();
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public int size() {
-        final SoftReference<Map<K, V>> ref = reference;
-        final Map<K, V> map = ref != null ? ref.get() : null;
+        final Map<K, V> map = map(reference);
         return map != null ? map.size() : 0;
     }
 }
@@ -24,6 +24,8 @@ import java.util.Objects;
  * Maintains the set of allowed features associated with a script/expression source.
  * <p>This is meant for caching scripts using their 'source' as key but still distinguishing
  * scripts with different features and prevent false sharing.
+ * <p>Scripts parsed with a scope, i.e. with parameters or within a template, are also distinguished
+ * by the scope signature so that variants of the same source may coexist in the cache.</p>
  */
 public final class Source implements Comparable<Source> {
     /** The hash code, pre-computed for fast op. */
@@ -32,21 +34,59 @@ public final class Source implements Comparable<Source> {
     private final JexlFeatures features;
     /** The actual source script/expression. */
     private final String str;
+    /** The scope signature, empty if none. */
+    private final String scope;
 
     /**
      * Default constructor.
      * @param theFeatures the features
      * @param theStr the script source
      */
-    Source(final JexlFeatures theFeatures, final String theStr) { // CSOFF: MagicNumber
+    Source(final JexlFeatures theFeatures, final String theStr) {
+        this(theFeatures, "", theStr);
+    }
+
+    /**
+     * Creates a source parsed using a scope.
+     * @param theFeatures the features
+     * @param theScope the scope, may be null
+     * @param theStr the script source
+     */
+    Source(final JexlFeatures theFeatures, final Scope theScope, final String theStr) {
+        this(theFeatures, theScope == null ? "" : theScope.getSignature(), theStr);
+    }
+
+    /**
+     * Full constructor.
+     * @param theFeatures the features
+     * @param theScope the scope signature
+     * @param theStr the script source
+     */
+    Source(final JexlFeatures theFeatures, final String theScope, final String theStr) { // CSOFF: MagicNumber
         this.features = theFeatures;
+        this.scope = theScope;
         this.str = theStr;
         int hash = 3;
         hash = 37 * hash + features.hashCode();
         hash = 37 * hash + str.hashCode() ;
+        hash = 37 * hash + scope.hashCode();
         this.hashCode = hash;
     }
 
+    /**
+     * @return a source with the same features and text but no scope
+     */
+    Source unscoped() {
+        return scope.isEmpty() ? this : new Source(features, "", str);
+    }
+
+    /**
+     * @return the scope signature, empty if none
+     */
+    String getScope() {
+        return scope;
+    }
+
     /**
      * @return the length of the script source
      */
@@ -86,6 +126,9 @@ public final class Source implements Comparable<Source> {
         if (!Objects.equals(features, other.features)) {
             return false;
         }
+        if (!Objects.equals(scope, other.scope)) {
+            return false;
+        }
         return true;
     }
 
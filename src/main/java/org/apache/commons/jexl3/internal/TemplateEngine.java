@@ -47,6 +47,8 @@ import java.util.function.UnaryOperator;
 public final class TemplateEngine extends JxltEngine {
     /** The TemplateExpression cache. */
     final JexlCache<String, TemplateExpression> cache;
+    /** The cache statistics recorded by this engine, the parsing time. */
+    final CacheStatistics parseStatistics = new CacheStatistics();
     /** The JEXL engine instance. */
     final Engine jexl;
     /** The logger. */
@@ -224,6 +226,11 @@ public final class TemplateEngine extends JxltEngine {
         }
     }
 
+    @Override
+    public JexlCache.Statistics getCacheStatistics() {
+        return parseStatistics.snapshot(cache.statistics());
+    }
+
     /**
      * The abstract base class for all unified expressions, immediate '${...}' and deferred '#{...}'.
      */
@@ -797,7 +804,9 @@ public final class TemplateEngine extends JxltEngine {
         try {
             stmt = cache.get(expression);
             if (stmt == null) {
+                final long start = System.nanoTime();
                 stmt = parseExpression(info, expression, null);
+                parseStatistics.recordParseTime(System.nanoTime() - start);
                 cache.put(expression, stmt);
             }
         } catch (final JexlException xjexl) {
@@ -0,0 +1,432 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlCache;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * The operand type feedback of an arithmetic or comparison node.
+ * <p>An instance is stored as the node value; it records the class of the operands seen by the node and,
+ * as long as both operands are of the same Integer, Long, Double or String class, allows the interpreter
+ * to bypass the generic coercion ladder of {@link JexlArithmetic}. Whenever a node sees another operand
+ * class, it reverts to the generic evaluation for good.</p>
+ * <p>Specialization is only attempted for operators that are neither overloaded nor overridden by the
+ * arithmetic; the operator overload cache is kept by this instance so it can be used as the node reference
+ * in {@link Operator#tryOverload(JexlCache.Reference, JexlOperator, Object, Object)}.</p>
+ * @since 4.0
+ */
+final class TypeFeedback implements JexlCache.Reference {
+    /** No operand seen yet. */
+    static final int UNKNOWN = 0;
+    /** Integer operands. */
+    static final int INTEGER = 1;
+    /** Long operands. */
+    static final int LONG = 2;
+    /** Double operands. */
+    static final int DOUBLE = 3;
+    /** String operands. */
+    static final int STRING = 4;
+    /** Mixed or other operands, the generic path is used. */
+    static final int GENERIC = -1;
+
+    /** The operators whose semantics the fast paths reproduce. */
+    private static final Set<JexlOperator> OPERATORS = Collections.unmodifiableSet(EnumSet.of(
+            JexlOperator.ADD, JexlOperator.SUBTRACT, JexlOperator.MULTIPLY, JexlOperator.DIVIDE, JexlOperator.MOD,
+            JexlOperator.EQ, JexlOperator.LT, JexlOperator.LTE, JexlOperator.GT, JexlOperator.GTE));
+
+    /** The comparison operators. */
+    private static final Set<JexlOperator> COMPARISONS = Collections.unmodifiableSet(EnumSet.of(
+            JexlOperator.EQ, JexlOperator.LT, JexlOperator.LTE, JexlOperator.GT, JexlOperator.GTE));
+
+    /** The arithmetic helpers the fast paths depend upon. */
+    private static final Object[][] HELPERS = {
+        {"isLongPrecisionNumber", Object.class},
+        {"isIntegerPrecisionNumber", Object.class},
+        {"isFloatingPointNumber", Object.class},
+        {"isFloatingPoint", Object.class},
+        {"isNumberable", Object.class},
+        {"toString", Object.class},
+        {"compare", Object.class, Object.class, String.class},
+        {"compare", Object.class, Object.class, JexlOperator.class}
+    };
+
+    /** The operators that can be specialized per arithmetic class. */
+    private static final ClassValue<Set<JexlOperator>> SPECIALIZABLE = new ClassValue<Set<JexlOperator>>() {
+        @Override
+        protected Set<JexlOperator> computeValue(final Class<?> type) {
+            if (JexlArithmetic.class.equals(type)) {
+                return OPERATORS;
+            }
+            for (final Object[] helper : HELPERS) {
+                if (isOverridden(type, helper)) {
+                    return Collections.emptySet();
+                }
+            }
+            final Set<JexlOperator> ops = EnumSet.noneOf(JexlOperator.class);
+            for (final JexlOperator op : OPERATORS) {
+                if (!isOverridden(type, new Object[]{op.getMethodName(), Object.class, Object.class})) {
+                    ops.add(op);
+                }
+            }
+            return Collections.unmodifiableSet(ops);
+        }
+    };
+
+    /**
+     * Checks whether an arithmetic class overrides one of the JexlArithmetic methods.
+     * @param type the arithmetic class
+     * @param signature the method name followed by its parameter types
+     * @return true if the method is declared by a class other than JexlArithmetic
+     */
+    static boolean isOverridden(final Class<?> type, final Object[] signature) {
+        final String name = (String) signature[0];
+        final Class<?>[] parms = new Class<?>[signature.length - 1];
+        for (int p = 0; p < parms.length; ++p) {
+            parms[p] = (Class<?>) signature[p + 1];
+        }
+        for (Class<?> clazz = type; clazz != null && clazz != JexlArithmetic.class; clazz = clazz.getSuperclass()) {
+            try {
+                clazz.getDeclaredMethod(name, parms);
+                return true;
+            } catch (final NoSuchMethodException | SecurityException xany) {
+                // not declared at this level
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether an operator can be specialized.
+     * @param arithmetic the arithmetic
+     * @param operators the operators
+     * @param operator the operator
+     * @return true if the operator evaluation can use type feedback
+     */
+    static boolean isSpecializable(final JexlArithmetic arithmetic,
+                                   final JexlOperator.Uberspect operators,
+                                   final JexlOperator operator) {
+        if (!SPECIALIZABLE.get(arithmetic.getClass()).contains(operator) || operators.overloads(operator)) {
+            return false;
+        }
+        // comparisons may be implemented through compare
+        return !COMPARISONS.contains(operator) || !operators.overloads(JexlOperator.COMPARE);
+    }
+
+    /**
+     * Determines the operands kind.
+     * @param left the left operand
+     * @param right the right operand
+     * @return the kind, GENERIC if operands are not of the same specializable class
+     */
+    static int kindOf(final Object left, final Object right) {
+        if (left == null || right == null) {
+            return GENERIC;
+        }
+        final Class<?> clazz = left.getClass();
+        if (clazz != right.getClass()) {
+            return GENERIC;
+        }
+        if (clazz == Integer.class) {
+            return INTEGER;
+        }
+        if (clazz == Long.class) {
+            return LONG;
+        }
+        if (clazz == Double.class) {
+            return DOUBLE;
+        }
+        if (clazz == String.class) {
+            return STRING;
+        }
+        return GENERIC;
+    }
+
+    /** The operator node. */
+    private final JexlNode node;
+    /** Whether string operands can be specialized. */
+    private final boolean strings;
+    /** The operand kind. */
+    private volatile int kind = UNKNOWN;
+    /** The operator overload cache. */
+    private volatile Object cache;
+
+    /**
+     * Creates a feedback instance.
+     * @param theNode the operator node
+     * @param operator the node operator
+     */
+    TypeFeedback(final JexlNode theNode, final JexlOperator operator) {
+        node = theNode;
+        strings = operator == JexlOperator.ADD || COMPARISONS.contains(operator);
+    }
+
+    @Override
+    public Object getCache() {
+        return cache;
+    }
+
+    @Override
+    public void setCache(final Object c) {
+        cache = c;
+    }
+
+    /**
+     * @return the operator node
+     */
+    JexlNode getNode() {
+        return node;
+    }
+
+    /**
+     * @return the recorded kind
+     */
+    int getKind() {
+        return kind;
+    }
+
+    /**
+     * Checks whether operands match the recorded kind.
+     * @param left the left operand
+     * @param right the right operand
+     * @return the kind if matched, UNKNOWN or GENERIC otherwise
+     */
+    int guard(final Object left, final Object right) {
+        final int k = kind;
+        return k > 0 && kindOf(left, right) == k ? k : GENERIC;
+    }
+
+    /**
+     * Records the operands seen by a generic evaluation.
+     * <p>The first evaluation sets the kind; any later mismatch makes the node generic.</p>
+     * @param left the left operand
+     * @param right the right operand
+     */
+    void record(final Object left, final Object right) {
+        final int k = kind;
+        if (k == GENERIC) {
+            return;
+        }
+        final int seen = kindOf(left, right);
+        if (k == UNKNOWN && (seen != STRING || strings)) {
+            kind = seen;
+        } else if (k != seen) {
+            kind = GENERIC;
+        }
+    }
+
+    /**
+     * Narrows a long result of two integer operands.
+     * @param result the result
+     * @return an Integer if it fits, a Long otherwise
+     */
+    private static Object narrow(final long result) {
+        if (result >= Integer.MIN_VALUE && result <= Integer.MAX_VALUE) {
+            return (int) result;
+        }
+        return result;
+    }
+
+    /**
+     * Adds two operands of a given kind.
+     * @param k the kind
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result or TRY_FAILED on long overflow
+     */
+    static Object add(final int k, final Object left, final Object right) {
+        switch (k) {
+            case INTEGER:
+                return narrow((long) (Integer) left + (Integer) right);
+            case LONG: {
+                final long l = (Long) left;
+                final long r = (Long) right;
+                final long result = l + r;
+                return ((l ^ result) & (r ^ result)) < 0 ? JexlEngine.TRY_FAILED : (Object) result;
+            }
+            case DOUBLE:
+                return (Double) left + (Double) right;
+            case STRING:
+                return ((String) left).concat((String) right);
+            default:
+                return JexlEngine.TRY_FAILED;
+        }
+    }
+
+    /**
+     * Subtracts two operands of a given kind.
+     * @param k the kind
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result or TRY_FAILED on long overflow
+     */
+    static Object subtract(final int k, final Object left, final Object right) {
+        switch (k) {
+            case INTEGER:
+                return narrow((long) (Integer) left - (Integer) right);
+            case LONG: {
+                final long l = (Long) left;
+                final long r = (Long) right;
+                final long result = l - r;
+                return ((l ^ r) & (l ^ result)) < 0 ? JexlEngine.TRY_FAILED : (Object) result;
+            }
+            case DOUBLE:
+                return (Double) left - (Double) right;
+            default:
+                return JexlEngine.TRY_FAILED;
+        }
+    }
+
+    /**
+     * Multiplies two operands of a given kind.
+     * @param k the kind
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result or TRY_FAILED on long overflow
+     */
+    static Object multiply(final int k, final Object left, final Object right) {
+        switch (k) {
+            case INTEGER:
+                return narrow((long) (Integer) left * (Integer) right);
+            case LONG: {
+                final long l = (Long) left;
+                final long r = (Long) right;
+                final long result = l * r;
+                final long al = Math.abs(l);
+                final long ar = Math.abs(r);
+                if ((al | ar) >>> (Integer.SIZE - 1) != 0
+                    && (r != 0 && result / r != l || l == Long.MIN_VALUE && r == -1)) {
+                    return JexlEngine.TRY_FAILED;
+                }
+                return result;
+            }
+            case DOUBLE:
+                return (Double) left * (Double) right;
+            default:
+                return JexlEngine.TRY_FAILED;
+        }
+    }
+
+    /**
+     * Divides two operands of a given kind.
+     * @param k the kind
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result
+     * @throws ArithmeticException if right is zero
+     */
+    static Object divide(final int k, final Object left, final Object right) {
+        switch (k) {
+            case INTEGER: {
+                final int r = (Integer) right;
+                if (r == 0) {
+                    throw new ArithmeticException("/");
+                }
+                return narrow((long) (Integer) left / r);
+            }
+            case LONG: {
+                final long r = (Long) right;
+                if (r == 0L) {
+                    throw new ArithmeticException("/");
+                }
+                return (Long) left / r;
+            }
+            case DOUBLE: {
+                final double r = (Double) right;
+                if (r == 0.0) {
+                    throw new ArithmeticException("/");
+                }
+                return (Double) left / r;
+            }
+            default:
+                return JexlEngine.TRY_FAILED;
+        }
+    }
+
+    /**
+     * Computes the modulo of two operands of a given kind.
+     * @param k the kind
+     * @param left the left operand
+     * @param right the right operand
+     * @return the result
+     * @throws ArithmeticException if right is zero
+     */
+    static Object mod(final int k, final Object left, final Object right) {
+        switch (k) {
+            case INTEGER: {
+                final int r = (Integer) right;
+                if (r == 0) {
+                    throw new ArithmeticException("%");
+                }
+                return narrow((long) (Integer) left % r);
+            }
+            case LONG: {
+                final long r = (Long) right;
+                if (r == 0L) {
+                    throw new ArithmeticException("%");
+                }
+                return (Long) left % r;
+            }
+            case DOUBLE: {
+                final double r = (Double) right;
+                if (r == 0.0) {
+                    throw new ArithmeticException("%");
+                }
+                return (Double) left % r;
+            }
+            default:
+                return JexlEngine.TRY_FAILED;
+        }
+    }
+
+    /**
+     * Compares two operands of a given kind.
+     * <p>Follows the JexlArithmetic comparison, NaN being equal to NaN and lesser than any other double.</p>
+     * @param k the kind
+     * @param left the left operand
+     * @param right the right operand
+     * @return -1, 0 or +1
+     */
+    static int compare(final int k, final Object left, final Object right) {
+        switch (k) {
+            case INTEGER:
+                return Integer.compare((Integer) left, (Integer) right);
+            case LONG:
+                return Long.compare((Long) left, (Long) right);
+            case DOUBLE: {
+                final double l = (Double) left;
+                final double r = (Double) right;
+                if (Double.isNaN(l)) {
+                    return Double.isNaN(r) ? 0 : -1;
+                }
+                if (Double.isNaN(r)) {
+                    return +1;
+                }
+                return Double.compare(l, r);
+            }
+            default:
+                return ((String) left).compareTo((String) right);
+        }
+    }
+}
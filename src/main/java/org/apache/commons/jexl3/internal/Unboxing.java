@@ -0,0 +1,655 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.parser.ASTAddNode;
+import org.apache.commons.jexl3.parser.ASTBlock;
+import org.apache.commons.jexl3.parser.ASTEnclosedExpression;
+import org.apache.commons.jexl3.parser.ASTForInitializationNode;
+import org.apache.commons.jexl3.parser.ASTForStatement;
+import org.apache.commons.jexl3.parser.ASTIdentifier;
+import org.apache.commons.jexl3.parser.ASTIfStatement;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.apache.commons.jexl3.parser.ASTMulNode;
+import org.apache.commons.jexl3.parser.ASTNumberLiteral;
+import org.apache.commons.jexl3.parser.ASTSubNode;
+import org.apache.commons.jexl3.parser.ASTVar;
+import org.apache.commons.jexl3.parser.ASTVarStatement;
+import org.apache.commons.jexl3.parser.JexlNode;
+
+/**
+ * The unboxed evaluation of operators on int, long and double local variables.
+ * <p>Locals declared with one of these types are stored in the {@link Frame} long and double banks.
+ * Assignments, self-assignments and increments of such locals are computed on primitive values, as are
+ * additions, subtractions, multiplications and comparisons involving such a local whose other operands are
+ * number literals or locals holding an Integer, Long or Double; operators without a typed local operand are
+ * left to the operand type feedback. The value of a statement whose result is discarded, like a for-loop
+ * step or the body of a for-loop, is not even boxed.</p>
+ * <p>Evaluation has no side effect: whenever an operand is of another kind, an operator is overloaded
+ * or overridden by the arithmetic, or a result would overflow into another class, the evaluation fails
+ * and the interpreter uses the generic path which keeps the {@link org.apache.commons.jexl3.JexlArithmetic}
+ * semantics.</p>
+ * @since 4.0
+ */
+final class Unboxing {
+    /** Failed evaluation. */
+    private static final int FAILED = TypeFeedback.GENERIC;
+    /** Int value kind. */
+    private static final int INTEGER = TypeFeedback.INTEGER;
+    /** Long value kind. */
+    private static final int LONG = TypeFeedback.LONG;
+    /** Double value kind. */
+    private static final int DOUBLE = TypeFeedback.DOUBLE;
+
+    /** The self-assignment and increment helpers of the arithmetic. */
+    private static final Object[][] HELPERS = {
+        {"selfAdd", Object.class, Object.class},
+        {"selfSubtract", Object.class, Object.class},
+        {"selfMultiply", Object.class, Object.class},
+        {"increment", Object.class},
+        {"decrement", Object.class}
+    };
+
+    /** Whether an arithmetic class keeps the default self-assignment and increment helpers. */
+    private static final ClassValue<Boolean> SELF_ASSIGNABLE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(final Class<?> type) {
+            for (final Object[] helper : HELPERS) {
+                if (TypeFeedback.isOverridden(type, helper)) {
+                    return Boolean.FALSE;
+                }
+            }
+            return Boolean.TRUE;
+        }
+    };
+
+    /** The number of operators. */
+    private static final int OPERATORS = JexlOperator.values().length;
+    /** Unknown operator specialization. */
+    private static final byte UNKNOWN = 0;
+    /** Specializable operator. */
+    private static final byte SPECIALIZABLE = 1;
+    /** Operator that can not be specialized. */
+    private static final byte GENERIC = 2;
+
+    /** The interpreter. */
+    private final Interpreter interpreter;
+    /** The operator specializations, per operator ordinal. */
+    private final byte[] specializations = new byte[OPERATORS];
+    /** Whether discarded results can be detected from the tree. */
+    private final boolean discarding;
+    /** The last int or long value. */
+    private long longValue;
+    /** The last double value. */
+    private double doubleValue;
+    /** Whether an unboxed local was read since the last reset. */
+    private boolean typed;
+
+    /**
+     * Creates an evaluator.
+     * @param ii the interpreter
+     */
+    Unboxing(final Interpreter ii) {
+        interpreter = ii;
+        // derived interpreters may use statement results differently, probes observe them
+        discarding = ii.getClass() == Interpreter.class && ii.jexl.getProbe() == null;
+    }
+
+    /**
+     * Gets the unboxed marker of a primitive type.
+     * @param type the type
+     * @return the marker or null if the type is not int, long or double
+     */
+    static Frame.Unboxed markerOf(final Class<?> type) {
+        if (type == Integer.TYPE) {
+            return Frame.Unboxed.INT;
+        }
+        if (type == Long.TYPE) {
+            return Frame.Unboxed.LONG;
+        }
+        if (type == Double.TYPE) {
+            return Frame.Unboxed.DOUBLE;
+        }
+        return null;
+    }
+
+    /**
+     * Stores a value in a typed local, unboxed if possible.
+     * @param frame the frame
+     * @param symbol the local symbol
+     * @param type the local type
+     * @param value the value
+     * @return true if stored unboxed, false otherwise
+     */
+    static boolean store(final Frame frame, final int symbol, final Class<?> type, final Object value) {
+        if (type == Integer.TYPE && value instanceof Integer) {
+            frame.setLong(symbol, Frame.Unboxed.INT, (Integer) value);
+            return true;
+        }
+        if (type == Long.TYPE && value instanceof Long) {
+            frame.setLong(symbol, Frame.Unboxed.LONG, (Long) value);
+            return true;
+        }
+        if (type == Double.TYPE && value instanceof Double) {
+            frame.setDouble(symbol, (Double) value);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates an expression.
+     * <p>On success, the value is in longValue for int and long kinds, in doubleValue for the double kind.</p>
+     * @param node the expression
+     * @return the value kind or FAILED
+     */
+    private int eval(final JexlNode node) {
+        if (node instanceof ASTNumberLiteral) {
+            return number(((ASTNumberLiteral) node).getLiteral());
+        }
+        if (node.getClass() == ASTIdentifier.class) {
+            return local((ASTIdentifier) node);
+        }
+        if (node instanceof ASTEnclosedExpression) {
+            return eval(node.jjtGetChild(0));
+        }
+        if (node instanceof ASTAddNode) {
+            return arithmetic(JexlOperator.ADD, node);
+        }
+        if (node instanceof ASTSubNode) {
+            return arithmetic(JexlOperator.SUBTRACT, node);
+        }
+        if (node instanceof ASTMulNode) {
+            return arithmetic(JexlOperator.MULTIPLY, node);
+        }
+        return FAILED;
+    }
+
+    /**
+     * Reads a number.
+     * @param value the number
+     * @return the value kind or FAILED
+     */
+    private int number(final Object value) {
+        if (value instanceof Integer) {
+            longValue = (Integer) value;
+            return INTEGER;
+        }
+        if (value instanceof Long) {
+            longValue = (Long) value;
+            return LONG;
+        }
+        if (value instanceof Double) {
+            doubleValue = (Double) value;
+            return DOUBLE;
+        }
+        return FAILED;
+    }
+
+    /**
+     * Reads a local variable.
+     * @param identifier the variable
+     * @return the value kind or FAILED
+     */
+    private int local(final ASTIdentifier identifier) {
+        final Frame frame = interpreter.frame;
+        final int symbol = identifier.getSymbol();
+        if (symbol < 0 || frame == null || identifier.isShaded() || !frame.has(symbol)) {
+            return FAILED;
+        }
+        final Frame.Unboxed unboxed = frame.unboxed(symbol);
+        if (unboxed == null) {
+            return number(frame.get(symbol));
+        }
+        typed = true;
+        switch (unboxed) {
+            case INT:
+                longValue = frame.getLong(symbol);
+                return INTEGER;
+            case LONG:
+                longValue = frame.getLong(symbol);
+                return LONG;
+            default:
+                doubleValue = frame.getDouble(symbol);
+                return DOUBLE;
+        }
+    }
+
+    /**
+     * Checks whether an operator can be evaluated unboxed.
+     * <p>The arithmetic and operators of an interpreter do not change, the result is kept.</p>
+     * @param operator the operator
+     * @return true if the operator keeps the default arithmetic behavior
+     */
+    private boolean isSpecializable(final JexlOperator operator) {
+        final int ordinal = operator.ordinal();
+        byte specialization = specializations[ordinal];
+        if (specialization == UNKNOWN) {
+            final boolean specializable;
+            switch (operator) {
+                case SELF_ADD:
+                case SELF_SUBTRACT:
+                case SELF_MULTIPLY:
+                case INCREMENT_AND_GET:
+                case GET_AND_INCREMENT:
+                case DECREMENT_AND_GET:
+                case GET_AND_DECREMENT:
+                    specializable = isSelfAssignable(operator);
+                    break;
+                default:
+                    specializable = TypeFeedback.isSpecializable(interpreter.arithmetic, interpreter.operators, operator);
+            }
+            specialization = specializable ? SPECIALIZABLE : GENERIC;
+            specializations[ordinal] = specialization;
+        }
+        return specialization == SPECIALIZABLE;
+    }
+
+    /**
+     * Evaluates an addition, subtraction or multiplication.
+     * @param operator the operator
+     * @param node the operator node
+     * @return the value kind or FAILED
+     */
+    private int arithmetic(final JexlOperator operator, final JexlNode node) {
+        if (!isSpecializable(operator)) {
+            return FAILED;
+        }
+        final int lk = eval(node.jjtGetChild(0));
+        if (lk == FAILED) {
+            return FAILED;
+        }
+        final long ll = longValue;
+        final double ld = doubleValue;
+        final int rk = eval(node.jjtGetChild(1));
+        if (rk == FAILED) {
+            return FAILED;
+        }
+        return compute(operator, lk, ll, ld, rk, longValue, doubleValue);
+    }
+
+    /**
+     * Computes an addition, subtraction or multiplication.
+     * <p>Integer operands narrow to int when the result fits, long overflows fail.</p>
+     * @param operator the operator
+     * @param lk the left kind
+     * @param ll the left long value
+     * @param ld the left double value
+     * @param rk the right kind
+     * @param rl the right long value
+     * @param rd the right double value
+     * @return the value kind or FAILED
+     */
+    private int compute(final JexlOperator operator,
+                        final int lk, final long ll, final double ld,
+                        final int rk, final long rl, final double rd) {
+        if (lk == DOUBLE || rk == DOUBLE) {
+            final double l = lk == DOUBLE ? ld : ll;
+            final double r = rk == DOUBLE ? rd : rl;
+            switch (operator) {
+                case ADD:
+                    doubleValue = l + r;
+                    break;
+                case SUBTRACT:
+                    doubleValue = l - r;
+                    break;
+                default:
+                    doubleValue = l * r;
+            }
+            return DOUBLE;
+        }
+        final long result;
+        try {
+            switch (operator) {
+                case ADD:
+                    result = Math.addExact(ll, rl);
+                    break;
+                case SUBTRACT:
+                    result = Math.subtractExact(ll, rl);
+                    break;
+                default:
+                    result = Math.multiplyExact(ll, rl);
+            }
+        } catch (final ArithmeticException xoverflow) {
+            return FAILED;
+        }
+        longValue = result;
+        return lk == INTEGER && rk == INTEGER && (int) result == result ? INTEGER : LONG;
+    }
+
+    /**
+     * Boxes the last value.
+     * @param kind the value kind
+     * @return the boxed value
+     */
+    private Object box(final int kind) {
+        switch (kind) {
+            case INTEGER:
+                return (int) longValue;
+            case LONG:
+                return longValue;
+            default:
+                return doubleValue;
+        }
+    }
+
+    /**
+     * Evaluates an addition, subtraction or multiplication.
+     * @param operator the operator
+     * @param node the operator node
+     * @return the boxed result or TRY_FAILED
+     */
+    Object evaluate(final JexlOperator operator, final JexlNode node) {
+        typed = false;
+        final int kind = arithmetic(operator, node);
+        return kind == FAILED || !typed ? JexlEngine.TRY_FAILED : box(kind);
+    }
+
+    /**
+     * Evaluates a comparison.
+     * <p>Doubles compare as in JexlArithmetic, NaN being equal to NaN and lesser than any other double.</p>
+     * @param operator the comparison operator
+     * @param node the operator node
+     * @return the result or null if the comparison can not be evaluated unboxed
+     */
+    Boolean compare(final JexlOperator operator, final JexlNode node) {
+        if (!isSpecializable(operator == JexlOperator.NE ? JexlOperator.EQ : operator)) {
+            return null;
+        }
+        typed = false;
+        final int lk = eval(node.jjtGetChild(0));
+        if (lk == FAILED) {
+            return null;
+        }
+        final long ll = longValue;
+        final double ld = doubleValue;
+        final int rk = eval(node.jjtGetChild(1));
+        if (rk == FAILED || !typed) {
+            return null;
+        }
+        final int cmp;
+        if (lk == DOUBLE || rk == DOUBLE) {
+            final double l = lk == DOUBLE ? ld : ll;
+            final double r = rk == DOUBLE ? doubleValue : longValue;
+            if (Double.isNaN(l)) {
+                cmp = Double.isNaN(r) ? 0 : -1;
+            } else {
+                cmp = Double.isNaN(r) ? 1 : Double.compare(l, r);
+            }
+        } else {
+            cmp = Long.compare(ll, longValue);
+        }
+        switch (operator) {
+            case EQ:
+                return cmp == 0;
+            case NE:
+                return cmp != 0;
+            case LT:
+                return cmp < 0;
+            case LTE:
+                return cmp <= 0;
+            case GT:
+                return cmp > 0;
+            default:
+                return cmp >= 0;
+        }
+    }
+
+    /**
+     * Gets the marker of an assignable unboxed local.
+     * <p>An unboxed local is never final and its marker is its declared type.</p>
+     * @param left the assigned expression
+     * @return the marker or null if not an unboxed local
+     */
+    private Frame.Unboxed assignable(final JexlNode left) {
+        if (left.getClass() != ASTIdentifier.class) {
+            return null;
+        }
+        final ASTIdentifier variable = (ASTIdentifier) left;
+        final int symbol = variable.getSymbol();
+        final Frame frame = interpreter.frame;
+        if (symbol < 0 || variable.isShaded() || !frame.has(symbol)) {
+            return null;
+        }
+        return frame.unboxed(symbol);
+    }
+
+    /**
+     * Stores the last value in a typed local.
+     * <p>Conversions follow the ones the arithmetic performs: an int local only accepts ints,
+     * a long local accepts ints and longs, a double local accepts all kinds.</p>
+     * @param symbol the local symbol
+     * @param marker the local type marker
+     * @param kind the value kind
+     * @return the stored value kind or FAILED
+     */
+    private int store(final int symbol, final Frame.Unboxed marker, final int kind) {
+        final Frame frame = interpreter.frame;
+        switch (marker) {
+            case INT:
+                if (kind != INTEGER) {
+                    return FAILED;
+                }
+                frame.setLong(symbol, marker, longValue);
+                return INTEGER;
+            case LONG:
+                if (kind == DOUBLE) {
+                    return FAILED;
+                }
+                frame.setLong(symbol, marker, longValue);
+                return LONG;
+            default:
+                if (kind != DOUBLE) {
+                    doubleValue = longValue;
+                }
+                frame.setDouble(symbol, doubleValue);
+                return DOUBLE;
+        }
+    }
+
+    /**
+     * Evaluates an assignment to a typed local.
+     * @param node the assignment node
+     * @param left the assigned expression
+     * @param right the value expression
+     * @return the result or TRY_FAILED
+     */
+    Object assign(final JexlNode node, final JexlNode left, final JexlNode right) {
+        final Frame.Unboxed marker = assignable(left);
+        if (marker == null) {
+            return JexlEngine.TRY_FAILED;
+        }
+        final int symbol = ((ASTIdentifier) left).getSymbol();
+        final int kind = eval(right);
+        if (kind == FAILED) {
+            return JexlEngine.TRY_FAILED;
+        }
+        interpreter.cancelCheck(node);
+        final int stored = store(symbol, marker, kind);
+        if (stored == FAILED) {
+            return JexlEngine.TRY_FAILED;
+        }
+        return isDiscarded(node) ? null : box(stored);
+    }
+
+    /**
+     * Evaluates the initialization of a typed local.
+     * @param node the initialization node
+     * @param left the declared variable
+     * @param right the value expression
+     * @return the result or TRY_FAILED
+     */
+    Object initialize(final JexlNode node, final ASTVar left, final JexlNode right) {
+        final Frame.Unboxed marker = markerOf(left.getType());
+        if (marker == null || left.isConstant()) {
+            return JexlEngine.TRY_FAILED;
+        }
+        final int kind = eval(right);
+        if (kind == FAILED || (marker == Frame.Unboxed.INT ? kind != INTEGER : marker == Frame.Unboxed.LONG && kind == DOUBLE)) {
+            return JexlEngine.TRY_FAILED;
+        }
+        final long lv = longValue;
+        final double dv = doubleValue;
+        // declare the variable
+        left.jjtAccept(interpreter, null);
+        longValue = lv;
+        doubleValue = dv;
+        final int stored = store(left.getSymbol(), marker, kind);
+        return isDiscarded(node) ? null : box(stored);
+    }
+
+    /**
+     * Evaluates a self-assignment of a typed local.
+     * @param node the assignment node
+     * @param operator the SELF_ADD, SELF_SUBTRACT or SELF_MULTIPLY operator
+     * @param left the assigned expression
+     * @param right the operand expression
+     * @return the result or TRY_FAILED
+     */
+    Object selfAssign(final JexlNode node, final JexlOperator operator, final JexlNode left, final JexlNode right) {
+        final Frame.Unboxed marker = assignable(left);
+        if (marker == null || !isSpecializable(operator)) {
+            return JexlEngine.TRY_FAILED;
+        }
+        final Frame frame = interpreter.frame;
+        final int symbol = ((ASTIdentifier) left).getSymbol();
+        final int kind = eval(right);
+        // the operand is cast to the local type before the operation
+        if (kind == FAILED || (marker == Frame.Unboxed.INT ? kind != INTEGER : marker == Frame.Unboxed.LONG && kind == DOUBLE)) {
+            return JexlEngine.TRY_FAILED;
+        }
+        final JexlOperator base = operator.getBaseOperator();
+        final int result;
+        if (marker == Frame.Unboxed.DOUBLE) {
+            result = compute(base, DOUBLE, 0L, frame.getDouble(symbol),
+                DOUBLE, 0L, kind == DOUBLE ? doubleValue : longValue);
+        } else {
+            final int self = marker == Frame.Unboxed.INT ? INTEGER : LONG;
+            result = compute(base, self, frame.getLong(symbol), 0d, self, longValue, 0d);
+        }
+        if (result == FAILED) {
+            return JexlEngine.TRY_FAILED;
+        }
+        interpreter.cancelCheck(node);
+        final int stored = store(symbol, marker, result);
+        if (stored == FAILED) {
+            return JexlEngine.TRY_FAILED;
+        }
+        return isDiscarded(node) ? null : box(stored);
+    }
+
+    /**
+     * Evaluates an increment or decrement of a typed local.
+     * @param node the operator node
+     * @param operator the INCREMENT_AND_GET, GET_AND_INCREMENT, DECREMENT_AND_GET or GET_AND_DECREMENT operator
+     * @param left the incremented expression
+     * @return the result or TRY_FAILED
+     */
+    Object increment(final JexlNode node, final JexlOperator operator, final JexlNode left) {
+        final Frame.Unboxed marker = assignable(left);
+        if (marker == null || !isSpecializable(operator)) {
+            return JexlEngine.TRY_FAILED;
+        }
+        final Frame frame = interpreter.frame;
+        final int symbol = ((ASTIdentifier) left).getSymbol();
+        final boolean increment = operator.getBaseOperator() == JexlOperator.INCREMENT;
+        final boolean postfix = operator == JexlOperator.GET_AND_INCREMENT
+            || operator == JexlOperator.GET_AND_DECREMENT;
+        interpreter.cancelCheck(node);
+        final boolean discarded = isDiscarded(node);
+        switch (marker) {
+            case DOUBLE: {
+                final double value = frame.getDouble(symbol);
+                frame.setDouble(symbol, increment ? value + 1.0d : value - 1.0d);
+                return discarded ? null : postfix ? value : frame.getDouble(symbol);
+            }
+            default: {
+                final long value = frame.getLong(symbol);
+                final long bound = marker == Frame.Unboxed.INT
+                    ? increment ? Integer.MAX_VALUE : Integer.MIN_VALUE
+                    : increment ? Long.MAX_VALUE : Long.MIN_VALUE;
+                if (value == bound) {
+                    // overflows into another class
+                    return JexlEngine.TRY_FAILED;
+                }
+                final long next = increment ? value + 1L : value - 1L;
+                frame.setLong(symbol, marker, next);
+                if (discarded) {
+                    return null;
+                }
+                final long result = postfix ? value : next;
+                return marker == Frame.Unboxed.INT ? (Object) (int) result : (Object) result;
+            }
+        }
+    }
+
+    /**
+     * Checks whether a self-assignment or increment operator keeps the default arithmetic behavior.
+     * @param operator the operator
+     * @return true if it can be evaluated unboxed
+     */
+    private boolean isSelfAssignable(final JexlOperator operator) {
+        final JexlOperator.Uberspect operators = interpreter.operators;
+        final JexlOperator base = operator.getBaseOperator();
+        if (operators.overloads(operator) || operators.overloads(base)
+            || !SELF_ASSIGNABLE.get(interpreter.arithmetic.getClass())) {
+            return false;
+        }
+        // increments and decrements are self additions and subtractions
+        final JexlOperator arithmetic = base == JexlOperator.INCREMENT
+            ? JexlOperator.ADD
+            : base == JexlOperator.DECREMENT ? JexlOperator.SUBTRACT : base;
+        return TypeFeedback.isSpecializable(interpreter.arithmetic, operators, arithmetic);
+    }
+
+    /**
+     * Checks whether the result of an expression is discarded.
+     * <p>This is the case of for-loop initialization, step and body, of statements that are not the last one
+     * of their block and of the last statement of a block whose result is discarded.</p>
+     * @param node the expression
+     * @return true if the result is never used
+     */
+    private boolean isDiscarded(final JexlNode node) {
+        if (!discarding) {
+            return false;
+        }
+        JexlNode child = node;
+        for (JexlNode parent = node.jjtGetParent(); parent != null; parent = parent.jjtGetParent()) {
+            if (parent instanceof ASTForStatement) {
+                return parent.jjtGetChild(1) != child;
+            }
+            if (parent instanceof ASTForInitializationNode) {
+                return true;
+            }
+            final boolean last = parent.jjtGetChild(parent.jjtGetNumChildren() - 1) == child;
+            if (parent instanceof ASTJexlScript) {
+                return !last;
+            }
+            if (parent instanceof ASTBlock || parent instanceof ASTVarStatement) {
+                if (!last) {
+                    return true;
+                }
+            } else if (!(parent instanceof ASTIfStatement) || parent.jjtGetChild(0) == child) {
+                return false;
+            }
+            child = parent;
+        }
+        return false;
+    }
+}
@@ -16,6 +16,8 @@
  */
 package org.apache.commons.jexl3.internal.introspection;
 
+import java.lang.reflect.InvocationTargetException;
+
 import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.introspection.JexlMethod;
 import org.apache.commons.jexl3.introspection.JexlPropertyGet;
@@ -97,15 +99,42 @@ abstract class AbstractExecutor {
     protected final Class<?> objectClass;
     /** Method to be executed. */
     protected final java.lang.reflect.Method method;
+    /** The member bound to a method handle, null when using reflection. */
+    protected final BoundInvoker invoker;
 
     /**
-     * Default and sole constructor.
+     * Default constructor.
      * @param theClass the class this executor applies to
      * @param theMethod the method held by this executor
      */
     protected AbstractExecutor(final Class<?> theClass, final java.lang.reflect.Method theMethod) {
+        this(theClass, theMethod, null);
+    }
+
+    /**
+     * Creates an executor invoking its member through a bound invoker.
+     * @param theClass the class this executor applies to
+     * @param theMethod the method held by this executor
+     * @param theInvoker the bound member invoker, null to use reflection
+     * @since 4.0
+     */
+    AbstractExecutor(final Class<?> theClass, final java.lang.reflect.Method theMethod, final BoundInvoker theInvoker) {
         objectClass = theClass;
         method = theMethod;
+        invoker = theInvoker;
+    }
+
+    /**
+     * Invokes the method of this executor.
+     * @param target the target instance
+     * @param args the arguments, may be null
+     * @return the method result
+     * @throws IllegalAccessException if the method is not accessible
+     * @throws InvocationTargetException if the method throws
+     */
+    final Object invokeMethod(final Object target, final Object[] args)
+        throws IllegalAccessException, InvocationTargetException {
+        return invoker != null ? invoker.invoke(target, args) : method.invoke(target, args);
     }
 
     @Override
@@ -219,6 +248,16 @@ abstract class AbstractExecutor {
         protected Get(final Class<?> theClass, final java.lang.reflect.Method theMethod) {
             super(theClass, theMethod);
         }
+
+        /**
+         * Creates an executor invoking its member through a bound invoker.
+         * @param theClass the class this executor applies to
+         * @param theMethod the method held by this executor
+         * @param theInvoker the bound member invoker, null to use reflection
+         */
+        Get(final Class<?> theClass, final java.lang.reflect.Method theMethod, final BoundInvoker theInvoker) {
+            super(theClass, theMethod, theInvoker);
+        }
     }
 
     /**
@@ -233,6 +272,16 @@ abstract class AbstractExecutor {
         protected Set(final Class<?> theClass, final java.lang.reflect.Method theMethod) {
             super(theClass, theMethod);
         }
+
+        /**
+         * Creates an executor invoking its member through a bound invoker.
+         * @param theClass the class this executor applies to
+         * @param theMethod the method held by this executor
+         * @param theInvoker the bound member invoker, null to use reflection
+         */
+        Set(final Class<?> theClass, final java.lang.reflect.Method theMethod, final BoundInvoker theInvoker) {
+            super(theClass, theMethod, theInvoker);
+        }
     }
 
     /**
@@ -263,7 +312,18 @@ abstract class AbstractExecutor {
          * @param k the MethodKey
          */
         protected Method(final Class<?> c, final java.lang.reflect.Method m, final MethodKey k) {
-            super(c, m);
+            this(c, m, k, null);
+        }
+
+        /**
+         * Creates an executor invoking its method through a bound invoker.
+         * @param c the class this executor applies to
+         * @param m the method
+         * @param k the MethodKey
+         * @param i the bound method invoker, null to use reflection
+         */
+        Method(final Class<?> c, final java.lang.reflect.Method m, final MethodKey k, final BoundInvoker i) {
+            super(c, m, i);
             key = k;
         }
 
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal.introspection;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A resolved method or field bound to a method handle, or to a function generated through the
+ * {@link LambdaMetafactory} for plain getters and setters.
+ * <p>
+ * Invocations only go through the bound form when the target and arguments are instances of the
+ * member declared types; any other call (argument widening, null primitive, wrong target) falls back to
+ * reflection so errors and conversions stay the same as with {@link Method#invoke}.
+ * Exceptions thrown by the member are wrapped in an {@link InvocationTargetException}.
+ * </p>
+ * @since 4.0
+ */
+final class BoundInvoker {
+    /** The lookup used to bind members. */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    /** No argument. */
+    private static final Object[] NO_ARGS = {};
+    /** The method or field. */
+    private final Member member;
+    /** Whether the field is set, false if get. */
+    private final boolean fieldSet;
+    /** The target class, null if static. */
+    private final Class<?> receiver;
+    /** The (boxed) parameter types. */
+    private final Class<?>[] parameters;
+    /** Whether the parameter types are primitive. */
+    private final boolean[] primitives;
+    /** The generated getter if any. */
+    private final Function<Object, Object> getter;
+    /** The generated setter if any. */
+    private final BiConsumer<Object, Object> setter;
+    /** The handle, of (Object, Object[])Object type. */
+    private final MethodHandle handle;
+
+    /**
+     * Creates an invoker.
+     * @param theMember the member
+     * @param set whether the member is a field to set
+     * @param types the parameter types
+     * @param fun the generated getter or null
+     * @param consumer the generated setter or null
+     * @param mh the spread handle
+     */
+    private BoundInvoker(final Member theMember, final boolean set, final Class<?>[] types,
+                         final Function<Object, Object> fun, final BiConsumer<Object, Object> consumer,
+                         final MethodHandle mh) {
+        member = theMember;
+        fieldSet = set;
+        receiver = Modifier.isStatic(theMember.getModifiers()) ? null : theMember.getDeclaringClass();
+        parameters = new Class<?>[types.length];
+        primitives = new boolean[types.length];
+        for (int p = 0; p < types.length; ++p) {
+            primitives[p] = types[p].isPrimitive();
+            parameters[p] = boxed(types[p]);
+        }
+        getter = fun;
+        setter = consumer;
+        handle = mh;
+    }
+
+    /**
+     * Binds a method.
+     * @param method the method
+     * @return the invoker or null if the method can not be bound
+     */
+    static BoundInvoker bind(final Method method) {
+        try {
+            final Class<?>[] types = method.getParameterTypes();
+            final MethodHandle direct = LOOKUP.unreflect(method);
+            Function<Object, Object> fun = null;
+            BiConsumer<Object, Object> consumer = null;
+            if (!Modifier.isStatic(method.getModifiers()) && isGenerable(method.getDeclaringClass())) {
+                final Class<?> returned = method.getReturnType();
+                if (types.length == 0 && returned != void.class) {
+                    fun = generate(Function.class, "apply", direct,
+                        MethodType.methodType(Object.class, Object.class),
+                        MethodType.methodType(boxed(returned), method.getDeclaringClass()));
+                } else if (types.length == 1 && returned == void.class) {
+                    consumer = generate(BiConsumer.class, "accept", direct,
+                        MethodType.methodType(void.class, Object.class, Object.class),
+                        MethodType.methodType(void.class, method.getDeclaringClass(), boxed(types[0])));
+                }
+            }
+            MethodHandle mh = direct.asFixedArity();
+            if (Modifier.isStatic(method.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            return new BoundInvoker(method, false, types, fun, consumer, spread(mh, types.length));
+        } catch (final IllegalAccessException | RuntimeException xany) {
+            return null;
+        }
+    }
+
+    /**
+     * Binds a field.
+     * @param field the field
+     * @param set whether the invoker sets the field, false if it gets it
+     * @return the invoker or null if the field can not be bound
+     */
+    static BoundInvoker bind(final Field field, final boolean set) {
+        try {
+            MethodHandle mh = set ? LOOKUP.unreflectSetter(field) : LOOKUP.unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            final Class<?>[] types = set ? new Class<?>[]{field.getType()} : new Class<?>[0];
+            return new BoundInvoker(field, set, types, null, null, spread(mh, types.length));
+        } catch (final IllegalAccessException | RuntimeException xany) {
+            return null;
+        }
+    }
+
+    /**
+     * Adapts a handle taking a target and arguments to the (Object, Object[])Object type.
+     * @param mh the handle
+     * @param argc the number of arguments
+     * @return the adapted handle
+     */
+    private static MethodHandle spread(final MethodHandle mh, final int argc) {
+        final MethodHandle generic = mh.asType(MethodType.genericMethodType(argc + 1));
+        return argc == 0
+            ? MethodHandles.dropArguments(generic, 1, Object[].class)
+            : generic.asSpreader(Object[].class, argc);
+    }
+
+    /**
+     * Gets the wrapper class of a primitive type.
+     * @param type the type
+     * @return the wrapper class or the type if not primitive
+     */
+    private static Class<?> boxed(final Class<?> type) {
+        return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+    }
+
+    /**
+     * Whether a class can be the target of a generated function.
+     * <p>The generated class is defined in the JEXL class loader, the target class must be visible from it.</p>
+     * @param clazz the class
+     * @return true if a function can be generated
+     */
+    private static boolean isGenerable(final Class<?> clazz) {
+        if (!Modifier.isPublic(clazz.getModifiers())) {
+            return false;
+        }
+        try {
+            return Class.forName(clazz.getName(), false, BoundInvoker.class.getClassLoader()) == clazz;
+        } catch (final ClassNotFoundException | LinkageError xany) {
+            return false;
+        }
+    }
+
+    /**
+     * Generates a functional interface implementation.
+     * @param <T> the interface type
+     * @param fi the functional interface
+     * @param name the interface method name
+     * @param impl the implementation handle
+     * @param erased the interface method type
+     * @param instantiated the implementation type
+     * @return the implementation or null if it could not be generated
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T generate(final Class<?> fi, final String name, final MethodHandle impl,
+                                  final MethodType erased, final MethodType instantiated) {
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(LOOKUP, name, MethodType.methodType(fi),
+                erased, impl, instantiated);
+            return (T) site.getTarget().invoke();
+        } catch (final Throwable xany) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks whether a target and arguments match the member declared types.
+     * @param target the target
+     * @param args the arguments
+     * @return true if the bound form can be invoked
+     */
+    private boolean accepts(final Object target, final Object[] args) {
+        if (receiver != null && !receiver.isInstance(target)) {
+            return false;
+        }
+        final int argc = args == null ? 0 : args.length;
+        if (argc != parameters.length) {
+            return false;
+        }
+        for (int a = 0; a < argc; ++a) {
+            final Object arg = args[a];
+            if (arg == null ? primitives[a] : !parameters[a].isInstance(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Invokes the member with reflection.
+     * @param target the target
+     * @param args the arguments
+     * @return the result
+     * @throws IllegalAccessException if the member is not accessible
+     * @throws InvocationTargetException if the member throws
+     */
+    private Object reflect(final Object target, final Object[] args)
+        throws IllegalAccessException, InvocationTargetException {
+        if (member instanceof Method) {
+            return ((Method) member).invoke(target, args);
+        }
+        final Field field = (Field) member;
+        if (fieldSet) {
+            field.set(target, args[0]);
+            return null;
+        }
+        return field.get(target);
+    }
+
+    /**
+     * Invokes the member.
+     * @param target the target, ignored if static
+     * @param args the arguments, may be null if none
+     * @return the result, null if void or when setting a field
+     * @throws IllegalAccessException if the member is not accessible
+     * @throws InvocationTargetException if the member throws
+     */
+    Object invoke(final Object target, final Object[] args) throws IllegalAccessException, InvocationTargetException {
+        if (!accepts(target, args)) {
+            return reflect(target, args);
+        }
+        try {
+            if (getter != null) {
+                return getter.apply(target);
+            }
+            if (setter != null) {
+                setter.accept(target, args[0]);
+                return null;
+            }
+            final Object[] argv = args == null ? NO_ARGS : args;
+            return (Object) handle.invokeExact(target, argv);
+        } catch (final Throwable xany) {
+            throw new InvocationTargetException(xany);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return member.toString();
+    }
+}
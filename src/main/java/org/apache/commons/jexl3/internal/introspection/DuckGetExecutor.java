@@ -45,7 +45,7 @@ public final class DuckGetExecutor extends AbstractExecutor.Get {
      */
     public static DuckGetExecutor discover(final Introspector is, final Class<?> clazz, final Object identifier) {
         final java.lang.reflect.Method method = is.getMethod(clazz, "get", identifier);
-        return method == null? null : new DuckGetExecutor(clazz, method, identifier);
+        return method == null? null : new DuckGetExecutor(clazz, method, identifier, is.getInvoker(method));
     }
 
     /**
@@ -53,9 +53,11 @@ public final class DuckGetExecutor extends AbstractExecutor.Get {
      * @param clazz he class the get method applies to
      * @param method the method held by this executor
      * @param identifier the property to get
+     * @param invoker the bound method invoker, null to use reflection
      */
-    private DuckGetExecutor(final Class<?> clazz, final java.lang.reflect.Method method, final Object identifier) {
-        super(clazz, method);
+    private DuckGetExecutor(final Class<?> clazz, final java.lang.reflect.Method method, final Object identifier,
+                            final BoundInvoker invoker) {
+        super(clazz, method, invoker);
         property = identifier;
         args = new Object[] {property};
     }
@@ -67,7 +69,7 @@ public final class DuckGetExecutor extends AbstractExecutor.Get {
 
     @Override
     public Object invoke(final Object obj) throws IllegalAccessException, InvocationTargetException {
-        return method.invoke(obj, args);
+        return invokeMethod(obj, args);
     }
 
     @Override
@@ -78,7 +80,7 @@ public final class DuckGetExecutor extends AbstractExecutor.Get {
             && ((property == null && key == null)
                  || (property != null && property.equals(key)))) {
             try {
-                return method.invoke(obj, args);
+                return invokeMethod(obj, args);
             } catch (IllegalAccessException | IllegalArgumentException xill) {
                 return TRY_FAILED;// fail
             } catch (final InvocationTargetException xinvoke) {
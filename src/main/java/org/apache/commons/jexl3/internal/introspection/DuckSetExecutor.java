@@ -56,7 +56,7 @@ public final class DuckSetExecutor extends AbstractExecutor.Set {
         if (method == null) {
             method = is.getMethod(clazz, "put", key, value);
         }
-        return method == null? null : new DuckSetExecutor(clazz, method, key, value);
+        return method == null? null : new DuckSetExecutor(clazz, method, key, value, is.getInvoker(method));
     }
 
     /**
@@ -65,9 +65,11 @@ public final class DuckSetExecutor extends AbstractExecutor.Set {
      * @param method the method called through this executor
      * @param key the key to use as 1st argument to the set method
      * @param value the value to use as 2nd argument to the set method
+     * @param invoker the bound method invoker, null to use reflection
      */
-    private DuckSetExecutor(final Class<?> clazz, final java.lang.reflect.Method method, final Object key, final Object value) {
-        super(clazz, method);
+    private DuckSetExecutor(final Class<?> clazz, final java.lang.reflect.Method method, final Object key, final Object value,
+                            final BoundInvoker invoker) {
+        super(clazz, method, invoker);
         property = key;
         valueClass = classOf(value);
     }
@@ -80,7 +82,7 @@ public final class DuckSetExecutor extends AbstractExecutor.Set {
     @Override
     public Object invoke(final Object obj, final Object value) throws IllegalAccessException, InvocationTargetException {
         final Object[] pargs = {property, value};
-        method.invoke(obj, pargs);
+        invokeMethod(obj, pargs);
         return value;
     }
 
@@ -93,7 +95,7 @@ public final class DuckSetExecutor extends AbstractExecutor.Set {
             && valueClass == classOf(value)) {
             try {
                 final Object[] args = {property, value};
-                method.invoke(obj, args);
+                invokeMethod(obj, args);
                 return value;
             } catch (IllegalAccessException | IllegalArgumentException xill) {
                 return TRY_FAILED;// fail
@@ -18,6 +18,8 @@
 package org.apache.commons.jexl3.internal.introspection;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.introspection.JexlPropertyGet;
 
 /**
@@ -45,31 +47,34 @@ public final class FieldGetExecutor extends AbstractExecutor.Get {
         }
         final Field field = is.getField(clazz, identifier);
         if (field != null) {
-            return new FieldGetExecutor(field);
+            return new FieldGetExecutor(field, is.getInvoker(field, false));
         }
         return null;
     }
     /**
      * Creates a new instance of FieldPropertyGet.
      * @param theField the class public field
+     * @param theInvoker the bound field invoker, null to use reflection
      */
-    private FieldGetExecutor(final Field theField) {
-        super(theField.getDeclaringClass(), FIELD_GET);
+    private FieldGetExecutor(final Field theField, final BoundInvoker theInvoker) {
+        super(theField.getDeclaringClass(), FIELD_GET, theInvoker);
         field = theField;
     }
 
     @Override
     public Object invoke(final Object obj) throws Exception {
-        return field.get(obj);
+        return invoker != null ? invoker.invoke(obj, null) : field.get(obj);
     }
 
     @Override
     public Object tryInvoke(final Object obj, final Object key) {
         if (objectClass == obj.getClass() && field.getName().equals(castString(key))) {
             try {
-                return field.get(obj);
-            } catch (IllegalAccessException xill) {
+                return invoker != null ? invoker.invoke(obj, null) : field.get(obj);
+            } catch (final IllegalAccessException xill) {
                 return TRY_FAILED;
+            } catch (final InvocationTargetException xinvoke) {
+                throw JexlException.tryFailed(xinvoke); // throw
             }
         }
         return TRY_FAILED;
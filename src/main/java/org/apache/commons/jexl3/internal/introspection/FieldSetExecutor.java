@@ -18,7 +18,9 @@
 package org.apache.commons.jexl3.internal.introspection;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.introspection.JexlPropertySet;
 
 /**
@@ -52,7 +54,7 @@ public final class FieldSetExecutor extends AbstractExecutor.Set {
         if (field != null
             && !Modifier.isFinal(field.getModifiers())
             && (value == null || MethodKey.isInvocationConvertible(field.getType(), value.getClass(), false))) {
-            return new FieldSetExecutor(field);
+            return new FieldSetExecutor(field, is.getInvoker(field, true));
         }
         return null;
     }
@@ -60,15 +62,16 @@ public final class FieldSetExecutor extends AbstractExecutor.Set {
     /**
      * Creates a new instance of FieldPropertySet.
      * @param theField the class public field
+     * @param theInvoker the bound field invoker, null to use reflection
      */
-    private FieldSetExecutor(final Field theField) {
-        super(theField.getDeclaringClass(), FIELD_SET);
+    private FieldSetExecutor(final Field theField, final BoundInvoker theInvoker) {
+        super(theField.getDeclaringClass(), FIELD_SET, theInvoker);
         field = theField;
     }
 
     @Override
     public Object invoke(final Object obj, final Object arg) throws Exception {
-        field.set(obj, arg);
+        set(obj, arg);
         return arg;
     }
 
@@ -78,15 +81,32 @@ public final class FieldSetExecutor extends AbstractExecutor.Set {
             && field.getName().equals(castString(key))
             && (value == null || MethodKey.isInvocationConvertible(field.getType(), value.getClass(), false))) {
             try {
-                field.set(obj, value);
+                set(obj, value);
                 return value;
             } catch (final IllegalAccessException xill) {
                 return TRY_FAILED;
+            } catch (final InvocationTargetException xinvoke) {
+                throw JexlException.tryFailed(xinvoke); // throw
             }
         }
         return TRY_FAILED;
     }
 
+    /**
+     * Sets the field value.
+     * @param obj the object
+     * @param value the value
+     * @throws IllegalAccessException if the field is not accessible
+     * @throws InvocationTargetException if the bound invoker fails
+     */
+    private void set(final Object obj, final Object value) throws IllegalAccessException, InvocationTargetException {
+        if (invoker != null) {
+            invoker.invoke(obj, new Object[]{value});
+        } else {
+            field.set(obj, value);
+        }
+    }
+
     @Override
     public boolean isCacheable() {
         return true;
@@ -21,6 +21,7 @@ import org.apache.commons.logging.Log;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 
 import java.util.ArrayList;
@@ -81,6 +82,14 @@ public final class Introspector {
      * Holds the set of classes we have introspected.
      */
     private final Map<String, Class<?>> constructibleClasses = new ConcurrentHashMap<>();
+    /**
+     * Holds the members bound to method handles, null if executors use reflection.
+     */
+    private final Map<Member, BoundInvoker> boundMembers;
+    /**
+     * Holds the fields bound to setter handles, null if executors use reflection.
+     */
+    private final Map<Field, BoundInvoker> boundSetters;
 
     /**
      * Create the introspector.
@@ -98,9 +107,49 @@ public final class Introspector {
      * @param perms the permissions
      */
     public Introspector(final Log log, final ClassLoader cloader, final JexlPermissions perms) {
+        this(log, cloader, perms, false);
+    }
+
+    /**
+     * Create the introspector.
+     * @param log     the logger to use
+     * @param cloader the class loader
+     * @param perms the permissions
+     * @param bind whether executors bind members to method handles instead of using reflection
+     * @since 4.0
+     */
+    public Introspector(final Log log, final ClassLoader cloader, final JexlPermissions perms, final boolean bind) {
         this.logger = log;
         this.loader = cloader;
         this.permissions = perms == null? JexlPermissions.RESTRICTED : perms;
+        this.boundMembers = bind ? new ConcurrentHashMap<>() : null;
+        this.boundSetters = bind ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Gets the invoker bound to a method.
+     * @param method the method
+     * @return the invoker or null if executors use reflection or the method could not be bound
+     */
+    BoundInvoker getInvoker(final Method method) {
+        return boundMembers != null && method != null
+            ? boundMembers.computeIfAbsent(method, m -> BoundInvoker.bind((Method) m))
+            : null;
+    }
+
+    /**
+     * Gets the invoker bound to a field.
+     * @param field the field
+     * @param set whether to set the field, false if to get it
+     * @return the invoker or null if executors use reflection or the field could not be bound
+     */
+    BoundInvoker getInvoker(final Field field, final boolean set) {
+        if (boundMembers == null || field == null) {
+            return null;
+        }
+        return set
+            ? boundSetters.computeIfAbsent(field, f -> BoundInvoker.bind(f, true))
+            : boundMembers.computeIfAbsent(field, f -> BoundInvoker.bind((Field) f, false));
     }
 
     /**
@@ -361,6 +410,11 @@ public final class Introspector {
                     centries.remove();
                 }
             }
+            // clean up bound members
+            if (boundMembers != null) {
+                boundMembers.keySet().removeIf(member -> isLoadedBy(previous, member.getDeclaringClass()));
+                boundSetters.keySet().removeIf(field -> isLoadedBy(previous, field.getDeclaringClass()));
+            }
             loader = current;
         }
     }
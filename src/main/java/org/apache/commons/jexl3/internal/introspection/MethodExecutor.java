@@ -56,7 +56,7 @@ public final class MethodExecutor extends AbstractExecutor.Method {
         if (m == null && obj instanceof Class<?>) {
             m = is.getMethod((Class<?>) obj, key);
         }
-        return m == null ? null : new MethodExecutor(clazz, m, key);
+        return m == null ? null : new MethodExecutor(clazz, m, key, is.getInvoker(m));
     }
 
     /**
@@ -83,7 +83,7 @@ public final class MethodExecutor extends AbstractExecutor.Method {
         for (int i = 0; i < methods.length; i++) {
             java.lang.reflect.Method m = methods[i];
             if (!unambiguous || !is.isMethodAmbiguous(clazz, method))
-                result.add(new MethodExecutor(clazz, m, new MethodKey(m)));
+                result.add(new MethodExecutor(clazz, m, new MethodKey(m), is.getInvoker(m)));
         }
         return result.toArray(EMPTY_ARRAY);
     }
@@ -93,9 +93,10 @@ public final class MethodExecutor extends AbstractExecutor.Method {
      * @param c the class this executor applies to
      * @param m the method
      * @param k the MethodKey
+     * @param i the bound method invoker, null to use reflection
      */
-    private MethodExecutor(final Class<?> c, final java.lang.reflect.Method m, final MethodKey k) {
-        super(c, m, k);
+    private MethodExecutor(final Class<?> c, final java.lang.reflect.Method m, final MethodKey k, final BoundInvoker i) {
+        super(c, m, k, i);
         int vastart = -1;
         Class<?> vaclass = null;
         if (MethodKey.isVarArgs(method)) {
@@ -113,7 +114,7 @@ public final class MethodExecutor extends AbstractExecutor.Method {
         if (vaClass != null && args != null) {
             args = handleVarArg(args);
         }
-        return method.invoke(o, args);
+        return invokeMethod(o, args);
     }
 
     @Override
@@ -165,7 +166,14 @@ public final class MethodExecutor extends AbstractExecutor.Method {
             // if no or multiple values are being passed into the vararg,
             // put them in an array of the expected type
             final Object varargs = Array.newInstance(vaclass, varargc);
-            System.arraycopy(actual, vastart, varargs, 0, varargc);
+            if (vaclass.isPrimitive()) {
+                // arraycopy can not unbox into a primitive array
+                for (int v = 0; v < varargc; ++v) {
+                    Array.set(varargs, v, actual[vastart + v]);
+                }
+            } else {
+                System.arraycopy(actual, vastart, varargs, 0, varargc);
+            }
             // put all arguments into a new actual array of the appropriate size
             final Object[] newActual = new Object[vastart + 1];
             System.arraycopy(actual, 0, newActual, 0, vastart);
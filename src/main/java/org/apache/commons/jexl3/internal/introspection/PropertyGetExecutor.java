@@ -43,7 +43,7 @@ public final class PropertyGetExecutor extends AbstractExecutor.Get {
             return null;
         }
         final java.lang.reflect.Method m = is.getPropertyGet(clazz, property);
-        return m == null ? null : new PropertyGetExecutor(clazz, m, property);
+        return m == null ? null : new PropertyGetExecutor(clazz, m, property, is.getInvoker(m));
     }
 
     /**
@@ -51,9 +51,11 @@ public final class PropertyGetExecutor extends AbstractExecutor.Get {
      * @param clazz he class the get method applies to
      * @param method the method held by this executor
      * @param identifier the property to get
+     * @param invoker the bound method invoker, null to use reflection
      */
-    private PropertyGetExecutor(final Class<?> clazz, final java.lang.reflect.Method method, final String identifier) {
-        super(clazz, method);
+    private PropertyGetExecutor(final Class<?> clazz, final java.lang.reflect.Method method, final String identifier,
+                                final BoundInvoker invoker) {
+        super(clazz, method, invoker);
         property = identifier;
     }
 
@@ -64,14 +66,14 @@ public final class PropertyGetExecutor extends AbstractExecutor.Get {
 
     @Override
     public Object invoke(final Object o) throws IllegalAccessException, InvocationTargetException {
-        return method == null ? null : method.invoke(o, (Object[]) null);
+        return method == null ? null : invokeMethod(o, null);
     }
 
     @Override
     public Object tryInvoke(final Object o, final Object identifier) {
         if (o != null && objectClass == o.getClass() && property.equals(castString(identifier))) {
             try {
-                return method.invoke(o, (Object[]) null);
+                return invokeMethod(o, null);
             } catch (IllegalAccessException | IllegalArgumentException xill) {
                 return TRY_FAILED;// fail
             } catch (final InvocationTargetException xinvoke) {
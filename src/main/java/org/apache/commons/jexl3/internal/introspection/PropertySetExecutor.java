@@ -51,7 +51,7 @@ public class PropertySetExecutor extends AbstractExecutor.Set {
         if (m == null && isEmptyArray(value)) {
             m = is.lookupSetEmptyArrayProperty(clazz, property);
         }
-        return m == null ? null : new PropertySetExecutor(clazz, m, property, value);
+        return m == null ? null : new PropertySetExecutor(clazz, m, property, value, is.getInvoker(m));
     }
 
     /**
@@ -65,7 +65,23 @@ public class PropertySetExecutor extends AbstractExecutor.Set {
                                   final java.lang.reflect.Method method,
                                   final String key,
                                   final Object value) {
-        super(clazz, method);
+        this(clazz, method, key, value, null);
+    }
+
+    /**
+     * Creates an instance invoking its method through a bound invoker.
+     * @param clazz  the class the set method applies to
+     * @param method the method called through this executor
+     * @param key    the key to use as 1st argument to the set method
+     * @param value    the value
+     * @param invoker the bound method invoker, null to use reflection
+     */
+    PropertySetExecutor(final Class<?> clazz,
+                        final java.lang.reflect.Method method,
+                        final String key,
+                        final Object value,
+                        final BoundInvoker invoker) {
+        super(clazz, method, invoker);
         property = key;
         valueClass = classOf(value);
     }
@@ -88,7 +104,7 @@ public class PropertySetExecutor extends AbstractExecutor.Set {
                     arg = Array.newInstance(componentType, 0);
                 }
             }
-            method.invoke(o, arg);
+            invokeMethod(o, new Object[]{arg});
         }
         return arg;
     }
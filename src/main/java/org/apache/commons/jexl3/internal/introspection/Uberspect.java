@@ -62,6 +62,8 @@ public class Uberspect implements JexlUberspect {
     private final JexlUberspect.ResolverStrategy strategy;
     /** The permissions. */
     private final JexlPermissions permissions;
+    /** Whether executors bind members to method handles. */
+    private final boolean bind;
     /** The introspector version. */
     private final AtomicInteger version;
     /** The soft reference to the introspector currently in use. */
@@ -92,6 +94,20 @@ public class Uberspect implements JexlUberspect {
      * @param perms the introspector permissions
      */
     public Uberspect(final Log runtimeLogger, final JexlUberspect.ResolverStrategy sty, final JexlPermissions perms) {
+        this(runtimeLogger, sty, perms, false);
+    }
+
+    /**
+     * Creates a new Uberspect.
+     * @param runtimeLogger the logger used for all logging needs
+     * @param sty the resolver strategy
+     * @param perms the introspector permissions
+     * @param bindHandles whether executors bind members to method handles instead of using reflection
+     * @since 4.0
+     */
+    public Uberspect(final Log runtimeLogger, final JexlUberspect.ResolverStrategy sty, final JexlPermissions perms,
+                     final boolean bindHandles) {
+        bind = bindHandles;
         logger = runtimeLogger == null? LogFactory.getLog(JexlEngine.class) : runtimeLogger;
         strategy = sty == null? JexlUberspect.JEXL_STRATEGY : sty;
         permissions = perms == null? JexlPermissions.RESTRICTED : perms;
@@ -114,7 +130,7 @@ public class Uberspect implements JexlUberspect {
             synchronized (this) {
                 intro = ref.get();
                 if (intro == null) {
-                    intro = new Introspector(logger, loader, permissions);
+                    intro = new Introspector(logger, loader, permissions, bind);
                     ref = new SoftReference<>(intro);
                     version.incrementAndGet();
                 }
@@ -130,7 +146,7 @@ public class Uberspect implements JexlUberspect {
             if (intro != null) {
                 intro.setLoader(nloader);
             } else {
-                intro = new Introspector(logger, nloader, permissions);
+                intro = new Introspector(logger, nloader, permissions, bind);
                 ref = new SoftReference<>(intro);
             }
             loader = nloader;
@@ -17,8 +17,11 @@
 package org.apache.commons.jexl3.parser;
 
 import org.apache.commons.jexl3.JexlFeatures;
+import org.apache.commons.jexl3.internal.Compiled;
 import org.apache.commons.jexl3.internal.Scope;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.apache.commons.jexl3.internal.Frame;
 
 /**
@@ -33,6 +36,18 @@ public class ASTJexlScript extends JexlLexicalNode  {
     private transient JexlFeatures features = null;
     /** The script scope. */
     private transient Scope scope = null;
+    /** The number of executions, counted until reaching the compile threshold. */
+    private transient volatile int executions = 0;
+    /** The compiled form of this script if any. */
+    private transient volatile Compiled compiled = null;
+    /** Whether compiling this script failed, it then stays interpreted. */
+    private transient volatile boolean uncompilable = false;
+    /** Updates the number of executions; an updater rather than an atomic field keeps the node serializable. */
+    private static final AtomicIntegerFieldUpdater<ASTJexlScript> EXECUTIONS =
+        AtomicIntegerFieldUpdater.newUpdater(ASTJexlScript.class, "executions");
+    /** Installs the compiled form. */
+    private static final AtomicReferenceFieldUpdater<ASTJexlScript, Compiled> COMPILED =
+        AtomicReferenceFieldUpdater.newUpdater(ASTJexlScript.class, Compiled.class, "compiled");
 
     public ASTJexlScript(final int id) {
         super(id);
@@ -110,6 +125,61 @@ public class ASTJexlScript extends JexlLexicalNode  {
         return scope;
     }
 
+    /**
+     * Counts one more execution of this script until reaching a threshold.
+     * <p>Counting stops at the threshold so the count never wraps around; exactly one caller, the one
+     * whose execution reaches the threshold, gets a true result.</p>
+     * @param threshold the number of executions, strictly positive
+     * @return true if this execution reached the threshold, false otherwise
+     */
+    public boolean countExecution(final int threshold) {
+        int count;
+        do {
+            count = executions;
+            if (count >= threshold || uncompilable) {
+                return false;
+            }
+        } while (!EXECUTIONS.compareAndSet(this, count, count + 1));
+        return count + 1 == threshold;
+    }
+
+    /**
+     * Marks this script as not compilable; counting stops and it is never compiled.
+     */
+    public void setUncompilable() {
+        uncompilable = true;
+    }
+
+    /**
+     * @return true if compiling this script failed
+     */
+    public boolean isUncompilable() {
+        return uncompilable;
+    }
+
+    /**
+     * @return the number of executions counted so far, at most the compile threshold
+     */
+    public int getExecutions() {
+        return executions;
+    }
+
+    /**
+     * Installs the compiled form of this script unless one is already installed.
+     * @param theCompiled the compiled script
+     * @return true if installed, false if this script was already compiled
+     */
+    public boolean setCompiled(final Compiled theCompiled) {
+        return COMPILED.compareAndSet(this, null, theCompiled);
+    }
+
+    /**
+     * @return the compiled form of this script, null if interpreted
+     */
+    public Compiled getCompiled() {
+        return compiled;
+    }
+
     /**
      * Creates an array of arguments by copying values up to the number of parameters.
      * @param caller the calling frame
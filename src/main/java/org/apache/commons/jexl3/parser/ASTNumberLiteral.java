@@ -75,6 +75,15 @@ public final class ASTNumberLiteral extends JexlNode implements JexlNode.Constan
         nlp.assignReal(s);
     }
 
+    /**
+     * Sets this node literal value and class.
+     * @param value the literal value
+     * @param type the literal class
+     */
+    void setLiteral(final Number value, final Class<? extends Number> type) {
+        nlp.assignLiteral(value, type);
+    }
+
     @Override
     public Object jjtAccept(final ParserVisitor visitor, final Object data) {
         return visitor.visit(this, data);
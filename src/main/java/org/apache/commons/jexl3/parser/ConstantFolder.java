@@ -0,0 +1,552 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.parser;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.internal.ScriptVisitor;
+
+/**
+ * Folds constant sub-expressions and simplifies a parsed script.
+ * <p>This pass runs after parsing and before caching, when the
+ * {@link org.apache.commons.jexl3.JexlFeatures#supportsConstantFolding()} feature is enabled.
+ * Each visit returns the node that replaces the visited one in its parent.</p>
+ * <p>Folding uses the engine arithmetic and is restrained to what can not depend on evaluation options:</p>
+ * <ul>
+ *   <li>arithmetic, bitwise and comparison operators on Integer, Long, Float or Double literals,</li>
+ *   <li>concatenation and comparison of string literals, equality of boolean literals,</li>
+ *   <li>negation, complement and logical not of literals, size of string and array literals,</li>
+ *   <li>ternary and if statements whose condition is a boolean literal (unless the statement is labelled),</li>
+ *   <li>boolean identities: <code>false &amp;&amp; x</code>, <code>true || x</code> and, when x is a boolean
+ *   expression, <code>true &amp;&amp; x</code>, <code>x &amp;&amp; true</code>, <code>false || x</code>,
+ *   <code>x || false</code>.</li>
+ * </ul>
+ * <p>Operators overloaded by the arithmetic are never folded; an evaluation error leaves the expression
+ * untouched so the error still occurs at runtime. The folded literals keep the location of the expression
+ * they replace so error reports still point to the original source.</p>
+ * @since 4.0
+ */
+public final class ConstantFolder extends ScriptVisitor {
+    /** Marker for a non-literal node. */
+    private static final Object NONE = new Object();
+    /** The arithmetic. */
+    private final JexlArithmetic arithmetic;
+    /** The operators, may be null. */
+    private final JexlOperator.Uberspect operators;
+
+    /**
+     * Creates a folder.
+     * @param theArithmetic the engine arithmetic
+     * @param theOperators the engine arithmetic operators, null if none are overloaded
+     */
+    public ConstantFolder(final JexlArithmetic theArithmetic, final JexlOperator.Uberspect theOperators) {
+        this.arithmetic = theArithmetic;
+        this.operators = theOperators;
+    }
+
+    /**
+     * Folds a script in place.
+     * @param script the script
+     * @return the script
+     */
+    public ASTJexlScript fold(final ASTJexlScript script) {
+        script.jjtAccept(this, null);
+        return script;
+    }
+
+    /**
+     * Checks whether an operator is overloaded.
+     * @param operator the operator
+     * @return true if overloaded
+     */
+    private boolean overloads(final JexlOperator operator) {
+        return operators != null && operators.overloads(operator);
+    }
+
+    /**
+     * Gets a literal node value.
+     * @param node the node
+     * @return the value or NONE if the node is not a number, string or boolean literal
+     */
+    private static Object literal(final JexlNode node) {
+        if (node instanceof ASTNumberLiteral) {
+            return ((ASTNumberLiteral) node).getLiteral();
+        }
+        if (node instanceof ASTStringLiteral) {
+            return ((ASTStringLiteral) node).getLiteral();
+        }
+        if (node instanceof ASTBooleanLiteral) {
+            return ((ASTBooleanLiteral) node).getLiteral();
+        }
+        return NONE;
+    }
+
+    /**
+     * Whether a value is a number whose arithmetic does not depend on the math context.
+     * @param value the value
+     * @return true if Integer, Long, Float or Double
+     */
+    private static boolean isNumber(final Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Float || value instanceof Double;
+    }
+
+    /**
+     * Whether a value is an integral number.
+     * @param value the value
+     * @return true if Integer or Long
+     */
+    private static boolean isIntegral(final Object value) {
+        return value instanceof Integer || value instanceof Long;
+    }
+
+    /**
+     * Whether a node always evaluates as a boolean.
+     * <p>A comparison whose operator is overloaded by the arithmetic may return any type.</p>
+     * @param node the node
+     * @return true if node is a non-overloaded comparison, a logical and/or or a boolean literal
+     */
+    private boolean isBoolean(final JexlNode node) {
+        final JexlOperator operator;
+        if (node instanceof ASTEQNode) {
+            operator = JexlOperator.EQ;
+        } else if (node instanceof ASTNENode) {
+            operator = JexlOperator.NE;
+        } else if (node instanceof ASTLTNode) {
+            operator = JexlOperator.LT;
+        } else if (node instanceof ASTLENode) {
+            operator = JexlOperator.LTE;
+        } else if (node instanceof ASTGTNode) {
+            operator = JexlOperator.GT;
+        } else if (node instanceof ASTGENode) {
+            operator = JexlOperator.GTE;
+        } else {
+            return node instanceof ASTAndNode || node instanceof ASTOrNode || node instanceof ASTBooleanLiteral;
+        }
+        // != is evaluated through ==, all comparisons may go through compare
+        return !overloads(operator)
+            && (operator != JexlOperator.NE || !overloads(JexlOperator.EQ))
+            && !overloads(JexlOperator.COMPARE);
+    }
+
+    /**
+     * Creates a literal node for a value.
+     * @param node the node the literal replaces
+     * @param value the value
+     * @return the literal node or the original node if the value can not be expressed as a literal
+     */
+    private static JexlNode literal(final JexlNode node, final Object value) {
+        final JexlNode literal;
+        if (value instanceof Boolean) {
+            final ASTBooleanLiteral bool = new ASTBooleanLiteral(ParserTreeConstants.JJTBOOLEANLITERAL);
+            bool.setLiteral((Boolean) value);
+            literal = bool;
+        } else if (value instanceof String) {
+            final ASTStringLiteral str = new ASTStringLiteral(ParserTreeConstants.JJTSTRINGLITERAL);
+            str.setLiteral((String) value);
+            literal = str;
+        } else if (isNumber(value)) {
+            final double real = ((Number) value).doubleValue();
+            if (Double.isNaN(real) || Double.isInfinite(real)) {
+                return node;
+            }
+            final ASTNumberLiteral number = new ASTNumberLiteral(ParserTreeConstants.JJTNUMBERLITERAL);
+            number.setLiteral((Number) value, ((Number) value).getClass());
+            literal = number;
+        } else {
+            return node;
+        }
+        literal.setLineColumn(node.getLineColumn());
+        return literal;
+    }
+
+    /**
+     * Replaces a node in its parent.
+     * @param node the node
+     * @param replacement the replacement
+     * @return the replacement
+     */
+    private static JexlNode replace(final JexlNode node, final JexlNode replacement) {
+        if (replacement != node) {
+            final JexlNode parent = node.jjtGetParent();
+            replacement.jjtSetParent(parent);
+            if (parent != null) {
+                for (int c = 0; c < parent.jjtGetNumChildren(); ++c) {
+                    if (parent.jjtGetChild(c) == node) {
+                        parent.jjtAddChild(replacement, c);
+                        break;
+                    }
+                }
+            }
+        }
+        return replacement;
+    }
+
+    /**
+     * Folds the children of a node.
+     * @param node the node
+     * @param data the visitor argument
+     */
+    private void foldChildren(final JexlNode node, final Object data) {
+        for (int c = 0; c < node.jjtGetNumChildren(); ++c) {
+            node.jjtGetChild(c).jjtAccept(this, data);
+        }
+    }
+
+    @Override
+    protected Object visitNode(final JexlNode node, final Object data) {
+        foldChildren(node, data);
+        return node;
+    }
+
+    /**
+     * Folds a binary operator.
+     * @param node the operator node
+     * @param operator the operator
+     * @param data the visitor argument
+     * @return the replacement node
+     */
+    private Object binary(final JexlNode node, final JexlOperator operator, final Object data) {
+        foldChildren(node, data);
+        if (node.jjtGetNumChildren() != 2 || overloads(operator)) {
+            return node;
+        }
+        final Object left = literal(node.jjtGetChild(0));
+        final Object right = literal(node.jjtGetChild(1));
+        if (left == NONE || right == NONE) {
+            return node;
+        }
+        final boolean numbers = isNumber(left) && isNumber(right);
+        final boolean strings = left instanceof String && right instanceof String;
+        final boolean integrals = isIntegral(left) && isIntegral(right);
+        try {
+            final Object result;
+            switch (operator) {
+                case ADD:
+                    result = numbers || strings ? arithmetic.add(left, right) : NONE;
+                    break;
+                case SUBTRACT:
+                    result = numbers ? arithmetic.subtract(left, right) : NONE;
+                    break;
+                case MULTIPLY:
+                    result = numbers ? arithmetic.multiply(left, right) : NONE;
+                    break;
+                case DIVIDE:
+                    result = numbers ? arithmetic.divide(left, right) : NONE;
+                    break;
+                case MOD:
+                    result = numbers ? arithmetic.mod(left, right) : NONE;
+                    break;
+                case AND:
+                    result = integrals ? arithmetic.and(left, right) : NONE;
+                    break;
+                case OR:
+                    result = integrals ? arithmetic.or(left, right) : NONE;
+                    break;
+                case XOR:
+                    result = integrals ? arithmetic.xor(left, right) : NONE;
+                    break;
+                case SHIFTLEFT:
+                    result = integrals ? arithmetic.shiftLeft(left, right) : NONE;
+                    break;
+                case SHIFTRIGHT:
+                    result = integrals ? arithmetic.shiftRight(left, right) : NONE;
+                    break;
+                case SHIFTRIGHTU:
+                    result = integrals ? arithmetic.shiftRightUnsigned(left, right) : NONE;
+                    break;
+                default:
+                    result = compare(operator, left, right, numbers || strings);
+                    break;
+            }
+            return result == NONE ? node : replace(node, literal(node, result));
+        } catch (final ArithmeticException xrt) {
+            // let the error occur at runtime
+            return node;
+        }
+    }
+
+    /**
+     * Folds a comparison.
+     * @param operator the comparison operator
+     * @param left the left operand
+     * @param right the right operand
+     * @param comparable whether operands are both numbers or both strings
+     * @return the comparison result or NONE
+     */
+    private Object compare(final JexlOperator operator, final Object left, final Object right, final boolean comparable) {
+        if (overloads(JexlOperator.COMPARE)) {
+            return NONE;
+        }
+        final boolean booleans = left instanceof Boolean && right instanceof Boolean;
+        switch (operator) {
+            case EQ:
+                return comparable || booleans ? (Object) arithmetic.equals(left, right) : NONE;
+            case NE:
+                return comparable || booleans ? (Object) !arithmetic.equals(left, right) : NONE;
+            case LT:
+                return comparable ? (Object) arithmetic.lessThan(left, right) : NONE;
+            case LTE:
+                return comparable ? (Object) arithmetic.lessThanOrEqual(left, right) : NONE;
+            case GT:
+                return comparable ? (Object) arithmetic.greaterThan(left, right) : NONE;
+            case GTE:
+                return comparable ? (Object) arithmetic.greaterThanOrEqual(left, right) : NONE;
+            default:
+                return NONE;
+        }
+    }
+
+    @Override
+    protected Object visit(final ASTAddNode node, final Object data) {
+        return binary(node, JexlOperator.ADD, data);
+    }
+
+    @Override
+    protected Object visit(final ASTSubNode node, final Object data) {
+        return binary(node, JexlOperator.SUBTRACT, data);
+    }
+
+    @Override
+    protected Object visit(final ASTMulNode node, final Object data) {
+        return binary(node, JexlOperator.MULTIPLY, data);
+    }
+
+    @Override
+    protected Object visit(final ASTDivNode node, final Object data) {
+        return binary(node, JexlOperator.DIVIDE, data);
+    }
+
+    @Override
+    protected Object visit(final ASTModNode node, final Object data) {
+        return binary(node, JexlOperator.MOD, data);
+    }
+
+    @Override
+    protected Object visit(final ASTBitwiseAndNode node, final Object data) {
+        return binary(node, JexlOperator.AND, data);
+    }
+
+    @Override
+    protected Object visit(final ASTBitwiseOrNode node, final Object data) {
+        return binary(node, JexlOperator.OR, data);
+    }
+
+    @Override
+    protected Object visit(final ASTBitwiseXorNode node, final Object data) {
+        return binary(node, JexlOperator.XOR, data);
+    }
+
+    @Override
+    protected Object visit(final ASTShiftLeftNode node, final Object data) {
+        return binary(node, JexlOperator.SHIFTLEFT, data);
+    }
+
+    @Override
+    protected Object visit(final ASTShiftRightNode node, final Object data) {
+        return binary(node, JexlOperator.SHIFTRIGHT, data);
+    }
+
+    @Override
+    protected Object visit(final ASTShiftRightUnsignedNode node, final Object data) {
+        return binary(node, JexlOperator.SHIFTRIGHTU, data);
+    }
+
+    @Override
+    protected Object visit(final ASTEQNode node, final Object data) {
+        return binary(node, JexlOperator.EQ, data);
+    }
+
+    @Override
+    protected Object visit(final ASTNENode node, final Object data) {
+        return binary(node, JexlOperator.NE, data);
+    }
+
+    @Override
+    protected Object visit(final ASTLTNode node, final Object data) {
+        return binary(node, JexlOperator.LT, data);
+    }
+
+    @Override
+    protected Object visit(final ASTLENode node, final Object data) {
+        return binary(node, JexlOperator.LTE, data);
+    }
+
+    @Override
+    protected Object visit(final ASTGTNode node, final Object data) {
+        return binary(node, JexlOperator.GT, data);
+    }
+
+    @Override
+    protected Object visit(final ASTGENode node, final Object data) {
+        return binary(node, JexlOperator.GTE, data);
+    }
+
+    @Override
+    protected Object visit(final ASTUnaryMinusNode node, final Object data) {
+        foldChildren(node, data);
+        final Object value = literal(node.jjtGetChild(0));
+        if (isNumber(value) && !overloads(JexlOperator.NEGATE)) {
+            try {
+                final Object result = arithmetic.negate(value);
+                if (result instanceof Number) {
+                    final Class<?> type = ((ASTNumberLiteral) node.jjtGetChild(0)).getLiteralClass();
+                    return replace(node, literal(node, arithmetic.narrowNumber((Number) result, type)));
+                }
+            } catch (final ArithmeticException xrt) {
+                // let the error occur at runtime
+            }
+        }
+        return node;
+    }
+
+    @Override
+    protected Object visit(final ASTBitwiseComplNode node, final Object data) {
+        foldChildren(node, data);
+        final Object value = literal(node.jjtGetChild(0));
+        if (isIntegral(value) && !overloads(JexlOperator.COMPLEMENT)) {
+            try {
+                return replace(node, literal(node, arithmetic.complement(value)));
+            } catch (final ArithmeticException xrt) {
+                // let the error occur at runtime
+            }
+        }
+        return node;
+    }
+
+    @Override
+    protected Object visit(final ASTNotNode node, final Object data) {
+        foldChildren(node, data);
+        final Object value = literal(node.jjtGetChild(0));
+        if (value instanceof Boolean && !overloads(JexlOperator.NOT)) {
+            return replace(node, literal(node, arithmetic.not(value)));
+        }
+        return node;
+    }
+
+    @Override
+    protected Object visit(final ASTSizeFunction node, final Object data) {
+        foldChildren(node, data);
+        if (overloads(JexlOperator.SIZE)) {
+            return node;
+        }
+        JexlNode operand = node.jjtGetChild(0);
+        while (operand instanceof ASTEnclosedExpression) {
+            operand = operand.jjtGetChild(0);
+        }
+        if (operand instanceof ASTStringLiteral) {
+            final Integer size = arithmetic.size(((ASTStringLiteral) operand).getLiteral(), null);
+            return size != null ? replace(node, literal(node, size)) : node;
+        }
+        if (operand instanceof ASTArrayLiteral) {
+            final int count = operand.jjtGetNumChildren();
+            for (int c = 0; c < count; ++c) {
+                final JexlNode element = operand.jjtGetChild(c);
+                if (literal(element) == NONE && !(element instanceof ASTNullLiteral)) {
+                    return node;
+                }
+            }
+            return replace(node, literal(node, count));
+        }
+        return node;
+    }
+
+    @Override
+    protected Object visit(final ASTEnclosedExpression node, final Object data) {
+        foldChildren(node, data);
+        final JexlNode child = node.jjtGetChild(0);
+        return literal(child) != NONE ? replace(node, child) : node;
+    }
+
+    @Override
+    protected Object visit(final ASTAndNode node, final Object data) {
+        foldChildren(node, data);
+        final JexlNode left = node.jjtGetChild(0);
+        final JexlNode right = node.jjtGetChild(1);
+        final Object lvalue = literal(left);
+        if (lvalue instanceof Boolean) {
+            if (!(Boolean) lvalue) {
+                // false && x
+                return replace(node, left);
+            }
+            // true && x
+            if (isBoolean(right)) {
+                return replace(node, right);
+            }
+        } else if (Boolean.TRUE.equals(literal(right)) && isBoolean(left)) {
+            // x && true
+            return replace(node, left);
+        }
+        return node;
+    }
+
+    @Override
+    protected Object visit(final ASTOrNode node, final Object data) {
+        foldChildren(node, data);
+        final JexlNode left = node.jjtGetChild(0);
+        final JexlNode right = node.jjtGetChild(1);
+        final Object lvalue = literal(left);
+        if (lvalue instanceof Boolean) {
+            if ((Boolean) lvalue) {
+                // true || x
+                return replace(node, left);
+            }
+            // false || x
+            if (isBoolean(right)) {
+                return replace(node, right);
+            }
+        } else if (Boolean.FALSE.equals(literal(right)) && isBoolean(left)) {
+            // x || false
+            return replace(node, left);
+        }
+        return node;
+    }
+
+    @Override
+    protected Object visit(final ASTTernaryNode node, final Object data) {
+        foldChildren(node, data);
+        final Object condition = literal(node.jjtGetChild(0));
+        if (condition instanceof Boolean) {
+            if ((Boolean) condition) {
+                return replace(node, node.jjtGetChild(1));
+            }
+            if (node.jjtGetNumChildren() == 3) {
+                return replace(node, node.jjtGetChild(2));
+            }
+            final JexlNode nil = new ASTNullLiteral(ParserTreeConstants.JJTNULLLITERAL);
+            nil.setLineColumn(node.getLineColumn());
+            return replace(node, nil);
+        }
+        return node;
+    }
+
+    @Override
+    protected Object visit(final ASTIfStatement node, final Object data) {
+        foldChildren(node, data);
+        final Object condition = literal(node.jjtGetChild(0));
+        // a labelled if may be the target of a break
+        if (condition instanceof Boolean && node.getLabel() == null) {
+            if ((Boolean) condition) {
+                return replace(node, node.jjtGetChild(1));
+            }
+            // without an else, the statement is kept so the script text remains parsable
+            if (node.jjtGetNumChildren() > 2) {
+                return replace(node, node.jjtGetChild(2));
+            }
+        }
+        return node;
+    }
+}
@@ -19,6 +19,7 @@ package org.apache.commons.jexl3.parser;
 import org.apache.commons.jexl3.JexlArithmetic;
 import org.apache.commons.jexl3.JexlCache;
 import org.apache.commons.jexl3.JexlInfo;
+import org.apache.commons.jexl3.internal.InlineCache;
 import org.apache.commons.jexl3.introspection.JexlMethod;
 import org.apache.commons.jexl3.introspection.JexlPropertyGet;
 import org.apache.commons.jexl3.introspection.JexlPropertySet;
@@ -71,6 +72,21 @@ public abstract class JexlNode extends SimpleNode implements JexlCache.Reference
         return this.lc & 0xfff;
     }
 
+    /**
+     * @return the encoded line and column, -1 if never set
+     */
+    int getLineColumn() {
+        return lc;
+    }
+
+    /**
+     * Sets the encoded line and column.
+     * @param theLc the encoded line and column
+     */
+    void setLineColumn(final int theLc) {
+        this.lc = theLc;
+    }
+
     /**
      * Gets the associated JexlInfo instance.
      *
@@ -113,7 +129,7 @@ public abstract class JexlNode extends SimpleNode implements JexlCache.Reference
     public interface Funcall {}
 
     /**
-     * Clears any cached value of type JexlProperty{G,S}et or JexlMethod.
+     * Clears any cached value of type JexlProperty{G,S}et, JexlMethod or InlineCache.
      * <p>
      * This is called when the engine detects the evaluation of a script occurs with a class loader
      * different that the one that created it.</p>
@@ -124,6 +140,7 @@ public abstract class JexlNode extends SimpleNode implements JexlCache.Reference
             || value instanceof JexlPropertySet
             || value instanceof JexlMethod
             || value instanceof Funcall
+            || value instanceof InlineCache
             || value instanceof Class  ) {
             jjtSetValue(null);
         }
@@ -75,6 +75,18 @@ public final class NumberParser implements Serializable {
         return literal;
     }
 
+    /**
+     * Sets this parser literal value and class directly.
+     * @param value the literal value
+     * @param type the literal class
+     * @return this parser instance
+     */
+    NumberParser assignLiteral(final Number value, final Class<? extends Number> type) {
+        literal = value;
+        clazz = type;
+        return this;
+    }
+
     private static boolean isNegative(Token token) {
         return token != null && "-".equals(token.image);
     }
@@ -0,0 +1,774 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.jexl3.JexlFeatures;
+import org.apache.commons.jexl3.JexlInfo;
+import org.apache.commons.jexl3.internal.LexicalScope;
+import org.apache.commons.jexl3.internal.Scope;
+
+/**
+ * Encodes and decodes script syntax trees in a compact binary form.
+ * <p>This allows storing precompiled scripts and restoring them without parsing. Each node is written as its
+ * type identifier, its encoded position, the attributes specific to its class and its children; strings, classes
+ * and scopes are written once per script and then referred to by index.</p>
+ * <p>Classes are resolved through the codec class loader when decoding; the {@link #fingerprint()} identifies
+ * the grammar and format a tree was encoded with and must be checked by callers before decoding.</p>
+ * <p>A codec instance is stateless and can be used concurrently.</p>
+ * @since 4.0
+ */
+public final class ScriptCodec {
+    /** The encoding format version. */
+    private static final int FORMAT = 1;
+    /** The grammar and format fingerprint. */
+    private static final int FINGERPRINT = 31 * Arrays.hashCode(ParserTreeConstants.jjtNodeName) + FORMAT;
+    /** The node constructors indexed by node type identifier. */
+    private static final Constructor<?>[] CTORS = new Constructor<?>[ParserTreeConstants.jjtNodeName.length];
+    /** The primitive classes by name. */
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+    static {
+        for (int id = 0; id < CTORS.length; ++id) {
+            try {
+                final Class<?> clazz = Class.forName(ScriptCodec.class.getPackage().getName()
+                        + ".AST" + ParserTreeConstants.jjtNodeName[id]);
+                CTORS[id] = clazz.getDeclaredConstructor(int.class);
+            } catch (final ClassNotFoundException | NoSuchMethodException xnode) {
+                CTORS[id] = null;
+            }
+        }
+        for (final Class<?> c : Arrays.asList(boolean.class, byte.class, char.class, short.class, int.class,
+                long.class, float.class, double.class, void.class)) {
+            PRIMITIVES.put(c.getName(), c);
+        }
+    }
+
+    /** Constant tags. */
+    private static final int C_NULL = 0;
+    private static final int C_TRUE = 1;
+    private static final int C_FALSE = 2;
+    private static final int C_INTEGER = 3;
+    private static final int C_LONG = 4;
+    private static final int C_DOUBLE = 5;
+    private static final int C_FLOAT = 6;
+    private static final int C_BIGINTEGER = 7;
+    private static final int C_BIGDECIMAL = 8;
+    private static final int C_STRING = 9;
+    private static final int C_CHARACTER = 10;
+    private static final int C_BYTE = 11;
+    private static final int C_SHORT = 12;
+    private static final int C_PATTERN = 13;
+    private static final int C_CLASS = 14;
+    private static final int C_ENUM = 15;
+    private static final int C_SET = 16;
+
+    /** Scope symbol flags. */
+    private static final int S_LEXICAL = 1;
+    private static final int S_FINAL = 2;
+    private static final int S_REQUIRED = 4;
+    private static final int S_CAPTURED = 8;
+
+    /** The class loader used to resolve classes when decoding. */
+    private final ClassLoader loader;
+
+    /**
+     * Creates a codec.
+     * @param classLoader the class loader used to resolve classes when decoding
+     */
+    public ScriptCodec(final ClassLoader classLoader) {
+        this.loader = classLoader != null ? classLoader : getClass().getClassLoader();
+    }
+
+    /**
+     * Gets the fingerprint of the grammar and encoding format.
+     * <p>Trees encoded with a different fingerprint can not be decoded.</p>
+     * @return the fingerprint
+     */
+    public static int fingerprint() {
+        return FINGERPRINT;
+    }
+
+    /**
+     * Encodes a script tree.
+     * @param out the output
+     * @param script the script
+     * @throws IOException if writing fails or the tree contains a constant that can not be encoded
+     */
+    public void encode(final DataOutput out, final ASTJexlScript script) throws IOException {
+        new Encoder(out).encodeScript(script);
+    }
+
+    /**
+     * Decodes a script tree.
+     * @param in the input
+     * @param features the features to set on the decoded script
+     * @return the script
+     * @throws IOException if reading fails, the data is corrupted or a class can not be resolved
+     */
+    public ASTJexlScript decode(final DataInput in, final JexlFeatures features) throws IOException {
+        return new Decoder(in).decodeScript(features);
+    }
+
+    /**
+     * Writes an unsigned variable length integer.
+     * @param out the output
+     * @param value the value, positive
+     * @throws IOException if writing fails
+     */
+    static void writeVarInt(final DataOutput out, final int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    /**
+     * Reads an unsigned variable length integer.
+     * @param in the input
+     * @return the value
+     * @throws IOException if reading fails
+     */
+    static int readVarInt(final DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("malformed integer");
+    }
+
+    /**
+     * The per-script encoding state.
+     */
+    private static final class Encoder {
+        /** The output. */
+        private final DataOutput out;
+        /** The strings already written. */
+        private final Map<String, Integer> strings = new HashMap<>();
+        /** The scopes already written. */
+        private final Map<Scope, Integer> scopes = new IdentityHashMap<>();
+
+        Encoder(final DataOutput output) {
+            this.out = output;
+        }
+
+        void encodeScript(final ASTJexlScript script) throws IOException {
+            final Object value = script.jjtGetValue();
+            if (value instanceof JexlInfo) {
+                final JexlInfo info = (JexlInfo) value;
+                out.writeBoolean(true);
+                writeString(info.getName());
+                writeString(info.getPath());
+                writeVarInt(out, info.getLine());
+                writeVarInt(out, info.getColumn());
+            } else {
+                out.writeBoolean(false);
+            }
+            out.writeBoolean(script.getFeatures() != null);
+            encodeNode(script);
+        }
+
+        void encodeNode(final JexlNode node) throws IOException {
+            writeVarInt(out, node.id);
+            writeVarInt(out, node.getLineColumn() + 1);
+            encodeAttributes(node);
+            final int count = node.jjtGetNumChildren();
+            writeVarInt(out, count);
+            for (int c = 0; c < count; ++c) {
+                encodeNode(node.jjtGetChild(c));
+            }
+        }
+
+        void encodeAttributes(final JexlNode node) throws IOException {
+            if (node instanceof JexlLexicalNode) {
+                writeLocals(((JexlLexicalNode) node).getLexicalScope());
+            }
+            if (node instanceof ASTLabelledStatement) {
+                writeString(((ASTLabelledStatement) node).getLabel());
+            } else if (node instanceof ASTJexlScript) {
+                final ASTJexlScript script = (ASTJexlScript) node;
+                writeScope(script.getScope());
+                final Map<String, Object> pragmas = script.getPragmas();
+                if (pragmas == null) {
+                    writeVarInt(out, 0);
+                } else {
+                    writeVarInt(out, pragmas.size() + 1);
+                    for (final Map.Entry<String, Object> pragma : pragmas.entrySet()) {
+                        writeString(pragma.getKey());
+                        writeConstant(pragma.getValue());
+                    }
+                }
+            } else if (node instanceof ASTIdentifier) {
+                final ASTIdentifier identifier = (ASTIdentifier) node;
+                writeString(identifier.name);
+                writeVarInt(out, identifier.symbol + 1);
+                writeVarInt(out, identifier.flags);
+                if (node instanceof ASTNamespaceIdentifier) {
+                    writeString(((ASTNamespaceIdentifier) node).getNamespace());
+                } else if (node instanceof ASTVar) {
+                    final ASTVar var = (ASTVar) node;
+                    writeClass(var.getType());
+                    out.writeBoolean(var.isRequired());
+                    if (node instanceof ASTMultiVar) {
+                        final ASTMultiVar multi = (ASTMultiVar) node;
+                        writeVarInt(out, multi.getTypes().size());
+                        for (final Class<?> type : multi.getTypes()) {
+                            writeClass(type);
+                        }
+                    }
+                } else if (node instanceof ASTYieldStatement) {
+                    out.writeBoolean(((ASTYieldStatement) node).isReturn());
+                }
+            } else if (node instanceof ASTIdentifierAccess) {
+                writeString(((ASTIdentifierAccess) node).getName());
+            } else if (node instanceof ASTClassLiteral) {
+                final ASTClassLiteral literal = (ASTClassLiteral) node;
+                writeClass(literal.getLiteral());
+                out.writeBoolean(literal.simpleName);
+                if (node instanceof ASTTypeLiteral) {
+                    writeVarInt(out, ((ASTTypeLiteral) node).getArray());
+                }
+            } else if (node instanceof ASTNumberLiteral) {
+                final ASTNumberLiteral literal = (ASTNumberLiteral) node;
+                writeClass(literal.getLiteralClass());
+                writeConstant(literal.getLiteral());
+            } else if (node instanceof ASTStringLiteral) {
+                writeText(((ASTStringLiteral) node).getLiteral());
+            } else if (node instanceof ASTTextBlockLiteral) {
+                writeText(((ASTTextBlockLiteral) node).getLiteral());
+                writeString(node.toString());
+            } else if (node instanceof ASTBooleanLiteral) {
+                writeConstant(((ASTBooleanLiteral) node).getLiteral());
+            } else if (node instanceof ASTRegexLiteral) {
+                writeString(((ASTRegexLiteral) node).getLiteral().pattern());
+            } else if (node instanceof ASTJxltLiteral) {
+                writeString(((ASTJxltLiteral) node).getLiteral());
+            } else if (node instanceof ASTAnnotation) {
+                writeString(((ASTAnnotation) node).getName());
+            } else if (node instanceof ASTAttributeReference) {
+                writeString(((ASTAttributeReference) node).getName());
+            } else if (node instanceof ASTArrayLiteral) {
+                final ASTArrayLiteral literal = (ASTArrayLiteral) node;
+                out.writeBoolean(literal.isExtended());
+                out.writeBoolean(literal.isImmutable());
+            } else if (node instanceof ASTMapLiteral) {
+                final ASTMapLiteral literal = (ASTMapLiteral) node;
+                out.writeBoolean(literal.isImmutable());
+                out.writeBoolean(literal.isOrdered());
+            } else if (node instanceof ASTSetLiteral) {
+                final ASTSetLiteral literal = (ASTSetLiteral) node;
+                out.writeBoolean(literal.isImmutable());
+                out.writeBoolean(literal.isOrdered());
+            } else if (node instanceof ASTMultipleIdentifier) {
+                out.writeBoolean(((ASTMultipleIdentifier) node).isConstant());
+            } else if (node instanceof ASTSetOperand) {
+                out.writeBoolean(((ASTSetOperand) node).isAny());
+            } else if (node instanceof ASTSwitchCaseLabel) {
+                out.writeBoolean(((ASTSwitchCaseLabel) node).isDefault());
+            }
+        }
+
+        void writeLocals(final LexicalScope locals) throws IOException {
+            final int count = locals != null ? locals.getSymbolCount() : 0;
+            writeVarInt(out, count);
+            for (int s = 0, found = 0; found < count; ++s) {
+                if (locals.hasSymbol(s)) {
+                    found += 1;
+                    writeVarInt(out, s);
+                    int flags = 0;
+                    if (locals.isVariableLexical(s)) {
+                        flags |= S_LEXICAL;
+                    }
+                    if (locals.isVariableFinal(s)) {
+                        flags |= S_FINAL;
+                    }
+                    if (locals.isVariableRequired(s)) {
+                        flags |= S_REQUIRED;
+                    }
+                    out.writeByte(flags);
+                    writeClass(locals.typeof(s));
+                }
+            }
+        }
+
+        void writeScope(final Scope scope) throws IOException {
+            if (scope == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            final Integer index = scopes.get(scope);
+            if (index != null) {
+                writeVarInt(out, index + 2);
+                return;
+            }
+            writeVarInt(out, 1);
+            writeScope(scope.getParent());
+            scopes.put(scope, scopes.size());
+            final String[] symbols = scope.getSymbols();
+            writeVarInt(out, symbols.length);
+            for (int s = 0; s < symbols.length; ++s) {
+                writeString(symbols[s]);
+                writeClass(scope.getVariableType(s));
+                final int captured = scope.getCaptureDeclaration(s);
+                int flags = 0;
+                if (scope.isVariableLexical(s)) {
+                    flags |= S_LEXICAL;
+                }
+                if (scope.isVariableFinal(s)) {
+                    flags |= S_FINAL;
+                }
+                if (scope.isVariableRequired(s)) {
+                    flags |= S_REQUIRED;
+                }
+                if (captured >= 0) {
+                    flags |= S_CAPTURED;
+                }
+                out.writeByte(flags);
+                if (captured >= 0) {
+                    writeVarInt(out, captured);
+                }
+                writeConstant(scope.getVariableValue(s));
+            }
+            writeVarInt(out, scope.getArgCount());
+            writeVarInt(out, scope.getVariableCount());
+            out.writeBoolean(scope.isVarArgs());
+            out.writeBoolean(scope.isStatic());
+            writeClass(scope.getReturnType());
+        }
+
+        void writeString(final String str) throws IOException {
+            if (str == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            final Integer index = strings.get(str);
+            if (index != null) {
+                writeVarInt(out, index + 2);
+                return;
+            }
+            strings.put(str, strings.size());
+            final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, 1);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        void writeText(final String str) throws IOException {
+            // literals are distinct instances, as if parsed; do not share them
+            final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        void writeClass(final Class<?> clazz) throws IOException {
+            writeString(clazz != null ? clazz.getName() : null);
+        }
+
+        void writeConstant(final Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(C_NULL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((Boolean) value ? C_TRUE : C_FALSE);
+            } else if (value instanceof Integer) {
+                out.writeByte(C_INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(C_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(C_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                out.writeByte(C_FLOAT);
+                out.writeFloat((Float) value);
+            } else if (value instanceof BigInteger) {
+                out.writeByte(C_BIGINTEGER);
+                writeString(value.toString());
+            } else if (value instanceof BigDecimal) {
+                out.writeByte(C_BIGDECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof String) {
+                out.writeByte(C_STRING);
+                writeText((String) value);
+            } else if (value instanceof Character) {
+                out.writeByte(C_CHARACTER);
+                out.writeChar((Character) value);
+            } else if (value instanceof Byte) {
+                out.writeByte(C_BYTE);
+                out.writeByte((Byte) value);
+            } else if (value instanceof Short) {
+                out.writeByte(C_SHORT);
+                out.writeShort((Short) value);
+            } else if (value instanceof Pattern) {
+                out.writeByte(C_PATTERN);
+                writeString(((Pattern) value).pattern());
+                writeVarInt(out, ((Pattern) value).flags());
+            } else if (value instanceof Class<?>) {
+                out.writeByte(C_CLASS);
+                writeClass((Class<?>) value);
+            } else if (value instanceof Enum<?>) {
+                out.writeByte(C_ENUM);
+                writeClass(((Enum<?>) value).getDeclaringClass());
+                writeString(((Enum<?>) value).name());
+            } else if (value instanceof Set<?>) {
+                out.writeByte(C_SET);
+                final Set<?> set = (Set<?>) value;
+                writeVarInt(out, set.size());
+                for (final Object item : set) {
+                    writeConstant(item);
+                }
+            } else {
+                throw new NotSerializableException(value.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * The per-script decoding state.
+     */
+    private final class Decoder {
+        /** The input. */
+        private final DataInput in;
+        /** The strings already read. */
+        private final List<String> strings = new ArrayList<>();
+        /** The scopes already read. */
+        private final List<Scope> scopes = new ArrayList<>();
+
+        Decoder(final DataInput input) {
+            this.in = input;
+        }
+
+        ASTJexlScript decodeScript(final JexlFeatures features) throws IOException {
+            JexlInfo info = null;
+            if (in.readBoolean()) {
+                final String name = readString();
+                final String path = readString();
+                final int line = readVarInt(in);
+                final int column = readVarInt(in);
+                info = new JexlInfo(name, path, line, column);
+            }
+            final boolean hasFeatures = in.readBoolean();
+            final JexlNode node = decodeNode();
+            if (!(node instanceof ASTJexlScript)) {
+                throw new StreamCorruptedException("not a script: " + node);
+            }
+            final ASTJexlScript script = (ASTJexlScript) node;
+            if (info != null) {
+                script.jjtSetValue(info);
+            }
+            if (hasFeatures) {
+                script.setFeatures(features);
+            }
+            return script;
+        }
+
+        JexlNode decodeNode() throws IOException {
+            final int id = readVarInt(in);
+            final Constructor<?> ctor = id < CTORS.length ? CTORS[id] : null;
+            if (ctor == null) {
+                throw new StreamCorruptedException("unknown node type " + id);
+            }
+            final JexlNode node;
+            try {
+                node = (JexlNode) ctor.newInstance(id);
+            } catch (final ReflectiveOperationException xany) {
+                throw new StreamCorruptedException("can not create node " + ParserTreeConstants.jjtNodeName[id]);
+            }
+            node.setLineColumn(readVarInt(in) - 1);
+            decodeAttributes(node);
+            final int count = readVarInt(in);
+            for (int c = 0; c < count; ++c) {
+                final JexlNode child = decodeNode();
+                child.jjtSetParent(node);
+                node.jjtAddChild(child, c);
+            }
+            node.jjtClose();
+            return node;
+        }
+
+        void decodeAttributes(final JexlNode node) throws IOException {
+            if (node instanceof JexlLexicalNode) {
+                readLocals((JexlLexicalNode) node);
+            }
+            if (node instanceof ASTLabelledStatement) {
+                ((ASTLabelledStatement) node).setLabel(readString());
+            } else if (node instanceof ASTJexlScript) {
+                final ASTJexlScript script = (ASTJexlScript) node;
+                script.setScope(readScope());
+                final int size = readVarInt(in) - 1;
+                if (size == 0) {
+                    script.setPragmas(Collections.emptyMap());
+                } else if (size > 0) {
+                    final Map<String, Object> pragmas = new TreeMap<>();
+                    for (int p = 0; p < size; ++p) {
+                        final String key = readString();
+                        pragmas.put(key, readConstant());
+                    }
+                    script.setPragmas(Collections.unmodifiableMap(pragmas));
+                }
+            } else if (node instanceof ASTIdentifier) {
+                final ASTIdentifier identifier = (ASTIdentifier) node;
+                final String name = readString();
+                identifier.setSymbol(readVarInt(in) - 1, name);
+                identifier.flags = readVarInt(in);
+                if (node instanceof ASTNamespaceIdentifier) {
+                    ((ASTNamespaceIdentifier) node).setNamespace(readString(), name);
+                } else if (node instanceof ASTVar) {
+                    final ASTVar var = (ASTVar) node;
+                    var.setType(readClass());
+                    if (in.readBoolean()) {
+                        var.setRequired();
+                    }
+                    if (node instanceof ASTMultiVar) {
+                        final int ntypes = readVarInt(in);
+                        for (int t = 0; t < ntypes; ++t) {
+                            ((ASTMultiVar) node).addType(readClass());
+                        }
+                    }
+                } else if (node instanceof ASTYieldStatement) {
+                    if (in.readBoolean()) {
+                        ((ASTYieldStatement) node).setReturn();
+                    }
+                }
+            } else if (node instanceof ASTIdentifierAccess) {
+                ((ASTIdentifierAccess) node).setIdentifier(readString());
+            } else if (node instanceof ASTClassLiteral) {
+                final ASTClassLiteral literal = (ASTClassLiteral) node;
+                literal.setLiteral(readClass());
+                if (in.readBoolean()) {
+                    literal.setSimpleName();
+                }
+                if (node instanceof ASTTypeLiteral) {
+                    final int array = readVarInt(in);
+                    for (int a = 0; a < array; ++a) {
+                        ((ASTTypeLiteral) node).setArray();
+                    }
+                }
+            } else if (node instanceof ASTNumberLiteral) {
+                @SuppressWarnings("unchecked")
+                final Class<? extends Number> type = (Class<? extends Number>) readClass();
+                ((ASTNumberLiteral) node).setLiteral((Number) readConstant(), type);
+            } else if (node instanceof ASTStringLiteral) {
+                ((ASTStringLiteral) node).setLiteral(readText());
+            } else if (node instanceof ASTTextBlockLiteral) {
+                final ASTTextBlockLiteral literal = (ASTTextBlockLiteral) node;
+                literal.setLiteral(readText());
+                literal.setImage(readString());
+            } else if (node instanceof ASTBooleanLiteral) {
+                ((ASTBooleanLiteral) node).setLiteral((Boolean) readConstant());
+            } else if (node instanceof ASTRegexLiteral) {
+                ((ASTRegexLiteral) node).setLiteral(readString());
+            } else if (node instanceof ASTJxltLiteral) {
+                ((ASTJxltLiteral) node).setLiteral(readString());
+            } else if (node instanceof ASTAnnotation) {
+                ((ASTAnnotation) node).setName(readString());
+            } else if (node instanceof ASTAttributeReference) {
+                ((ASTAttributeReference) node).setName(readString());
+            } else if (node instanceof ASTArrayLiteral) {
+                final ASTArrayLiteral literal = (ASTArrayLiteral) node;
+                if (in.readBoolean()) {
+                    literal.setExtended();
+                }
+                if (in.readBoolean()) {
+                    literal.setImmutable();
+                }
+            } else if (node instanceof ASTMapLiteral) {
+                final ASTMapLiteral literal = (ASTMapLiteral) node;
+                if (in.readBoolean()) {
+                    literal.setImmutable();
+                }
+                if (in.readBoolean()) {
+                    literal.setOrdered();
+                }
+            } else if (node instanceof ASTSetLiteral) {
+                final ASTSetLiteral literal = (ASTSetLiteral) node;
+                if (in.readBoolean()) {
+                    literal.setImmutable();
+                }
+                if (in.readBoolean()) {
+                    literal.setOrdered();
+                }
+            } else if (node instanceof ASTMultipleIdentifier) {
+                ((ASTMultipleIdentifier) node).setConstant(in.readBoolean());
+            } else if (node instanceof ASTSetOperand) {
+                if (in.readBoolean()) {
+                    ((ASTSetOperand) node).setAny();
+                }
+            } else if (node instanceof ASTSwitchCaseLabel) {
+                if (in.readBoolean()) {
+                    ((ASTSwitchCaseLabel) node).setDefault();
+                }
+            }
+        }
+
+        void readLocals(final JexlLexicalNode node) throws IOException {
+            final int count = readVarInt(in);
+            for (int l = 0; l < count; ++l) {
+                final int symbol = readVarInt(in);
+                final int flags = in.readByte();
+                final Class<?> type = readClass();
+                if (flags == 0 && type == null) {
+                    node.declareSymbol(symbol);
+                } else {
+                    node.declareSymbol(symbol, type,
+                            (flags & S_LEXICAL) != 0, (flags & S_FINAL) != 0, (flags & S_REQUIRED) != 0);
+                }
+            }
+        }
+
+        Scope readScope() throws IOException {
+            final int tag = readVarInt(in);
+            if (tag == 0) {
+                return null;
+            }
+            if (tag > 1) {
+                if (tag - 2 >= scopes.size()) {
+                    throw new StreamCorruptedException("unknown scope " + (tag - 2));
+                }
+                return scopes.get(tag - 2);
+            }
+            final Scope parent = readScope();
+            final Scope scope = new Scope(parent);
+            scopes.add(scope);
+            final int nsymbols = readVarInt(in);
+            for (int s = 0; s < nsymbols; ++s) {
+                final String name = readString();
+                final Class<?> type = readClass();
+                final int flags = in.readByte();
+                final int captured = (flags & S_CAPTURED) != 0 ? readVarInt(in) : -1;
+                final Object value = readConstant();
+                scope.restoreSymbol(name, type,
+                        (flags & S_LEXICAL) != 0, (flags & S_FINAL) != 0, (flags & S_REQUIRED) != 0,
+                        value, captured);
+            }
+            final int parms = readVarInt(in);
+            final int vars = readVarInt(in);
+            final boolean varArgs = in.readBoolean();
+            final boolean isStatic = in.readBoolean();
+            scope.restoreSignature(parms, vars, varArgs, isStatic, readClass());
+            return scope;
+        }
+
+        String readString() throws IOException {
+            final int tag = readVarInt(in);
+            if (tag == 0) {
+                return null;
+            }
+            if (tag > 1) {
+                if (tag - 2 >= strings.size()) {
+                    throw new StreamCorruptedException("unknown string " + (tag - 2));
+                }
+                return strings.get(tag - 2);
+            }
+            final byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            final String str = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(str);
+            return str;
+        }
+
+        String readText() throws IOException {
+            final byte[] bytes = new byte[readVarInt(in)];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Class<?> readClass() throws IOException {
+            final String name = readString();
+            if (name == null) {
+                return null;
+            }
+            final Class<?> primitive = PRIMITIVES.get(name);
+            if (primitive != null) {
+                return primitive;
+            }
+            try {
+                return Class.forName(name, false, loader);
+            } catch (final ClassNotFoundException xclass) {
+                throw new IOException("can not resolve class " + name, xclass);
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Object readConstant() throws IOException {
+            final int tag = in.readByte();
+            switch (tag) {
+                case C_NULL: return null;
+                case C_TRUE: return Boolean.TRUE;
+                case C_FALSE: return Boolean.FALSE;
+                case C_INTEGER: return in.readInt();
+                case C_LONG: return in.readLong();
+                case C_DOUBLE: return in.readDouble();
+                case C_FLOAT: return in.readFloat();
+                case C_BIGINTEGER: return new BigInteger(readString());
+                case C_BIGDECIMAL: return new BigDecimal(readString());
+                case C_STRING: return readText();
+                case C_CHARACTER: return in.readChar();
+                case C_BYTE: return in.readByte();
+                case C_SHORT: return in.readShort();
+                case C_PATTERN: {
+                    final String pattern = readString();
+                    return Pattern.compile(pattern, readVarInt(in));
+                }
+                case C_CLASS: return readClass();
+                case C_ENUM: {
+                    final Class<?> clazz = readClass();
+                    final String name = readString();
+                    if (clazz == null || !clazz.isEnum()) {
+                        throw new StreamCorruptedException("not an enum " + clazz);
+                    }
+                    return Enum.valueOf((Class<? extends Enum>) clazz, name);
+                }
+                case C_SET: {
+                    final int size = readVarInt(in);
+                    final Set<Object> set = new LinkedHashSet<>();
+                    for (int i = 0; i < size; ++i) {
+                        set.add(readConstant());
+                    }
+                    return set;
+                }
+                default:
+                    throw new StreamCorruptedException("unknown constant tag " + tag);
+            }
+        }
+    }
+}
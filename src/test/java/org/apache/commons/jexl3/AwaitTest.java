@@ -16,12 +16,22 @@
  */
 package org.apache.commons.jexl3;
 
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests for await function.
@@ -49,4 +59,200 @@ public class AwaitTest extends JexlTestCase {
         Assert.assertEquals(10, o);
     }
 
+    /**
+     * A completion stage that is not a future.
+     * @param future the delegate
+     * @return the stage
+     */
+    private static CompletionStage<?> stage(final CompletableFuture<?> future) {
+        return (CompletionStage<?>) Proxy.newProxyInstance(AwaitTest.class.getClassLoader(),
+            new Class<?>[]{CompletionStage.class}, (proxy, method, args) -> method.invoke(future, args));
+    }
+
+    @Test
+    public void testAwaitCompletionStage() throws Exception {
+        final JexlContext jc = new MapContext();
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        jc.set("x", stage(future));
+        final CompletableFuture<Object> result = JEXL.createScript("await x").executeAsync(jc);
+        future.complete(42);
+        Assert.assertEquals(42, result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitFutureTask() throws Exception {
+        final JexlContext jc = new MapContext();
+        final FutureTask<Integer> task = new FutureTask<>(() -> 42);
+        jc.set("x", task);
+        final CompletableFuture<Object> result = JEXL.createScript("await x").executeAsync(jc);
+        task.run();
+        Assert.assertEquals(42, result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        final JexlScript script = JEXL.createScript("(await x) + y", "x", "y");
+        final CompletableFuture<Integer> gate = new CompletableFuture<>();
+        final List<CompletableFuture<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            results.add(script.executeAsync(null, gate, i));
+        }
+        gate.complete(1000);
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertEquals(1000 + i, results.get(i).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * A script implementation that only delegates the methods without default.
+     */
+    private static class DelegatingScript implements JexlScript {
+        private final JexlScript script;
+
+        DelegatingScript(final JexlScript delegate) {
+            script = delegate;
+        }
+
+        @Override
+        public String getSourceText() {
+            return script.getSourceText();
+        }
+
+        @Override
+        public String getParsedText() {
+            return script.getParsedText();
+        }
+
+        @Override
+        public String getParsedText(final int indent) {
+            return script.getParsedText(indent);
+        }
+
+        @Override
+        public Object execute(final JexlContext context) {
+            return script.execute(context);
+        }
+
+        @Override
+        public Object execute(final JexlContext context, final Object... args) {
+            return script.execute(context, args);
+        }
+
+        @Override
+        public String[] getParameters() {
+            return script.getParameters();
+        }
+
+        @Override
+        public String[] getUnboundParameters() {
+            return script.getUnboundParameters();
+        }
+
+        @Override
+        public String[] getLocalVariables() {
+            return script.getLocalVariables();
+        }
+
+        @Override
+        public Set<List<String>> getVariables() {
+            return script.getVariables();
+        }
+
+        @Override
+        public Map<String, Object> getPragmas() {
+            return script.getPragmas();
+        }
+
+        @Override
+        public Callable<Object> callable(final JexlContext context) {
+            return script.callable(context);
+        }
+
+        @Override
+        public Callable<Object> callable(final JexlContext context, final Object... args) {
+            return script.callable(context, args);
+        }
+
+        @Override
+        public JexlScript curry(final Object... args) {
+            return new DelegatingScript(script.curry(args));
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncDefault() throws Exception {
+        final JexlScript script = new DelegatingScript(JEXL.createScript("x * 2", "x"));
+        Assert.assertEquals(42, script.executeAsync(null, 21).get(10, TimeUnit.SECONDS));
+        final JexlContext jc = new MapContext();
+        jc.set("x", 4);
+        Assert.assertEquals(8, new DelegatingScript(JEXL.createScript("x * 2")).executeAsync(jc).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testExecuteAsyncExecutor() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().asyncExecutor(Runnable::run).create();
+        final CompletableFuture<Object> result = jexl.createScript("x * 2", "x").executeAsync(null, 21);
+        Assert.assertTrue(result.isDone());
+        Assert.assertEquals(42, result.get());
+    }
+
+    /**
+     * Gives scripts the thread they run on.
+     */
+    public static class Current {
+        public Thread thread() {
+            return Thread.currentThread();
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncThread() throws Exception {
+        final JexlContext jc = new MapContext();
+        jc.set("current", new Current());
+        final Object thread = new JexlBuilder().create().createScript("current.thread()")
+            .executeAsync(jc).get(10, TimeUnit.SECONDS);
+        boolean virtual;
+        try {
+            virtual = (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (final NoSuchMethodException xnomethod) {
+            virtual = false;
+        }
+        // a virtual thread per execution when available, the common pool otherwise
+        Assert.assertTrue(String.valueOf(thread), virtual || thread instanceof ForkJoinWorkerThread);
+    }
+
+    @Test
+    public void testExecuteAsyncFailure() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().strict(true).create();
+        final CompletableFuture<Object> result = jexl.createScript("x.y").executeAsync(null);
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            Assert.fail("should have failed");
+        } catch (final ExecutionException xexec) {
+            Assert.assertTrue(xexec.getCause() instanceof JexlException);
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncCancel() throws Exception {
+        final JexlContext jc = new MapContext();
+        final CompletableFuture<Integer> never = new CompletableFuture<>();
+        final CompletableFuture<Object> started = new CompletableFuture<>();
+        final CompletableFuture<Object> ended = new CompletableFuture<>();
+        jc.set("started", started);
+        jc.set("x", never);
+        final JexlEngine jexl = new JexlBuilder().asyncExecutor(task -> new Thread(() -> {
+            task.run();
+            ended.complete(Thread.currentThread().isInterrupted());
+        }).start()).create();
+        final JexlScript script = jexl.createScript("started.complete(true); await x");
+        final CompletableFuture<Object> result = script.executeAsync(jc);
+        started.get(10, TimeUnit.SECONDS);
+        Assert.assertTrue(result.cancel(true));
+        Assert.assertTrue(result.isCancelled());
+        // the interrupted await ends the execution, the interruption is cleared
+        Assert.assertEquals(false, ended.get(10, TimeUnit.SECONDS));
+        // the executor is still usable
+        Assert.assertEquals(3, JEXL.createScript("1 + 2").executeAsync(null).get(10, TimeUnit.SECONDS));
+    }
 }
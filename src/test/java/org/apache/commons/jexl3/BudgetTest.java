@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests for execution budgets.
+ * @since 4.0
+ */
+public class BudgetTest extends JexlTestCase {
+
+    public BudgetTest() {
+        super("BudgetTest");
+    }
+
+    private static String exceeded(final JexlScript script, final JexlContext ctxt, final Object... args) {
+        try {
+            script.execute(ctxt, args);
+            Assert.fail("budget should be exceeded");
+            return null;
+        } catch (final JexlException.Budget xbudget) {
+            Assert.assertTrue(xbudget.getMessage().contains(xbudget.getBudget() + " budget exceeded"));
+            return xbudget.getBudget();
+        }
+    }
+
+    @Test
+    public void testNodes() {
+        final JexlEvalContext ctxt = new JexlEvalContext();
+        ctxt.getEngineOptions().setNodeBudget(10_000);
+        final JexlScript sum = JEXL.createScript("var s = 0; for (var i : 1 .. n) { s += i } s", "n");
+        Assert.assertEquals(5050, sum.execute(ctxt, 100));
+        Assert.assertEquals("nodes", exceeded(sum, ctxt, 100_000));
+        Assert.assertEquals("nodes", exceeded(JEXL.createScript("while (true) { }"), ctxt));
+        // a script can not catch it
+        Assert.assertEquals("nodes", exceeded(JEXL.createScript("try { while (true) { } } catch (var e) { 42 }"), ctxt));
+        // without budget
+        Assert.assertEquals(5000050000L, sum.execute(new JexlEvalContext(), 100_000));
+    }
+
+    @Test
+    public void testShared() {
+        final JexlEvalContext ctxt = new JexlEvalContext();
+        ctxt.getEngineOptions().setNodeBudget(2_000);
+        final JexlScript calls = JEXL.createScript(
+            "var f = () -> { var s = 0; for (var i : 1 .. 100) { s += i } s }; var t = 0; for (var c : 1 .. n) { t += f() } t",
+            "n");
+        Assert.assertEquals(5050, calls.execute(ctxt, 1));
+        // each call is within the budget, not the evaluation as a whole
+        Assert.assertEquals("nodes", exceeded(calls, ctxt, 50));
+        final JexlScript generator = JEXL.createScript("var t = 0; for (var x : ...{ while (true) { yield 1 } }) { t += x } t");
+        Assert.assertEquals("nodes", exceeded(generator, ctxt));
+    }
+
+    @Test
+    public void testTime() {
+        final JexlEvalContext ctxt = new JexlEvalContext();
+        ctxt.getEngineOptions().setTimeBudget(100);
+        final long start = System.nanoTime();
+        Assert.assertEquals("time", exceeded(JEXL.createScript("var x = 0; while (true) { x += 1 }"), ctxt));
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+    }
+
+    @Test
+    public void testAllocation() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled());
+        final JexlEvalContext ctxt = new JexlEvalContext();
+        ctxt.getEngineOptions().setAllocationBudget(16 * 1024 * 1024);
+        Assert.assertEquals("allocation", exceeded(JEXL.createScript("var s = ''; while (true) { s = s + 'abcdefgh' }"), ctxt));
+    }
+
+    @Test
+    public void testNotCancellable() {
+        final JexlEvalContext ctxt = new JexlEvalContext();
+        ctxt.getEngineOptions().setNodeBudget(1_000);
+        ctxt.getEngineOptions().setCancellable(false);
+        Assert.assertNull(JEXL.createScript("while (true) { }").execute(ctxt));
+    }
+
+    @Test
+    public void testOptions() {
+        final JexlOptions options = new JexlOptions();
+        Assert.assertEquals(0L, options.getNodeBudget());
+        options.setNodeBudget(10);
+        options.setTimeBudget(20);
+        options.setAllocationBudget(-1);
+        final JexlOptions copy = options.copy();
+        Assert.assertEquals(10L, copy.getNodeBudget());
+        Assert.assertEquals(20L, copy.getTimeBudget());
+        Assert.assertEquals(0L, copy.getAllocationBudget());
+        final JexlBuilder builder = new JexlBuilder();
+        builder.options().setNodeBudget(1_000);
+        Assert.assertEquals("nodes", exceeded(builder.create().createScript("while (true) { }"), null));
+    }
+}
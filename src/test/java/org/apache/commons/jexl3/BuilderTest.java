@@ -23,6 +23,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.nio.charset.Charset;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Checking the builder basics.
@@ -58,6 +59,21 @@ public class BuilderTest {
         Assert.assertEquals(0, builder().collectMode(0).collectMode());
         Assert.assertEquals(32, builder().cacheThreshold(32).cacheThreshold());
         Assert.assertEquals(8, builder().stackOverflow(8).stackOverflow());
+        Assert.assertEquals(4, builder().parserPool(4).parserPool());
+        Assert.assertEquals(1, builder().parserPool(0).parserPool());
+        Assert.assertNull(builder().executor());
+        Assert.assertSame(ForkJoinPool.commonPool(), builder().executor(ForkJoinPool.commonPool()).executor());
+        Assert.assertNull(builder().asyncExecutor());
+        Assert.assertSame(ForkJoinPool.commonPool(), builder().asyncExecutor(ForkJoinPool.commonPool()).asyncExecutor());
+        Assert.assertEquals(0, builder().compileThreshold());
+        Assert.assertEquals(1000, builder().compileThreshold(1000).compileThreshold());
+        Assert.assertEquals(0, builder().compileThreshold(-1).compileThreshold());
+        Assert.assertFalse(builder().closureTree());
+        Assert.assertTrue(builder().closureTree(true).closureTree());
+        Assert.assertFalse(builder().methodHandles());
+        Assert.assertTrue(builder().methodHandles(true).methodHandles());
+        Assert.assertFalse(builder().continuations());
+        Assert.assertTrue(builder().continuations(true).continuations());
     }
 
     @Test
@@ -16,6 +16,7 @@
  */
 package org.apache.commons.jexl3;
 
+import java.io.StringWriter;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
@@ -700,4 +701,93 @@ public class CacheTest extends JexlTestCase {
         args.value = new Object[]{new Integer(2), "quux"};
         doCOMPUTE(args, LOOPS, true);
     }
+
+    @Test
+    public void testScopeVariants() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().cache(16).create();
+        final JexlScript a = jexl.createScript("a + (b ?? 1)", "a");
+        final JexlScript ab = jexl.createScript("a + (b ?? 1)", "a", "b");
+        Assert.assertEquals(2, jexl.getCacheStatistics().getMisses());
+        Assert.assertEquals(1, jexl.getCacheStatistics().getScopeMisses());
+        // both variants coexist
+        Assert.assertEquals(2, jexl.createScript("a + (b ?? 1)", "a").execute(null, 1));
+        Assert.assertEquals(3, jexl.createScript("a + (b ?? 1)", "a", "b").execute(null, 1, 2));
+        Assert.assertEquals(2, jexl.getCacheStatistics().getHits());
+        Assert.assertEquals(2, jexl.getCacheStatistics().getMisses());
+        Assert.assertArrayEquals(a.getParameters(), jexl.createScript("a + (b ?? 1)", "a").getParameters());
+        Assert.assertArrayEquals(ab.getParameters(), jexl.createScript("a + (b ?? 1)", "a", "b").getParameters());
+        // same names, same variant
+        jexl.createScript("a + (b ?? 1)", new String[]{"a", "b"});
+        Assert.assertEquals(2, jexl.getCacheStatistics().getMisses());
+        // other names, other variant
+        jexl.createScript("a + (b ?? 1)", "b", "a");
+        Assert.assertEquals(3, jexl.getCacheStatistics().getMisses());
+        Assert.assertEquals(2, jexl.getCacheStatistics().getScopeMisses());
+    }
+
+    @Test
+    public void testScopeVariantsStatistics() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().cache(2).create();
+        jexl.createExpression("1 + 1");
+        jexl.createScript("x + 1", "x");
+        jexl.createScript("x + 1", "x", "y");
+        // capacity is 2, both variants are cached and '1 + 1' was evicted
+        Assert.assertEquals(1, jexl.getCacheStatistics().getEvictions());
+        Assert.assertEquals(1, jexl.getCacheStatistics().getScopeMisses());
+        // expressions parsed within a lambda scope are neither cached nor counted as bypasses
+        final JxltEngine jxlt = jexl.createJxltEngine();
+        final JxltEngine.Template t = jxlt.createTemplate("$$ var f = (x)->{\nx is ${x}\n$$ }; f(y);\n", "y");
+        final StringWriter strw = new StringWriter();
+        t.evaluate(null, strw, 42);
+        Assert.assertEquals("x is 42\n", strw.toString());
+        Assert.assertEquals(0, jexl.getCacheStatistics().getBypasses());
+    }
+
+    @Test
+    public void testScopeVariantsLru() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().cache(4).create();
+        for (int i = 1; i <= 4; ++i) {
+            jexl.createScript("a + " + i, "a");
+        }
+        // a collision on 'a + 1' makes it the most recently used variant
+        jexl.createScript("a + 1", "a", "b");
+        Assert.assertEquals(1, jexl.getCacheStatistics().getScopeMisses());
+        // evicts the variants of 'a + 2' and 'a + 3', the least recently used
+        jexl.createScript("a + 5", "a");
+        jexl.createScript("a + 6", "a");
+        jexl.createScript("a + 1", "b", "a");
+        Assert.assertEquals(2, jexl.getCacheStatistics().getScopeMisses());
+        jexl.createScript("a + 2", "a", "b");
+        Assert.assertEquals(2, jexl.getCacheStatistics().getScopeMisses());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().cache(2).cacheThreshold(16).create();
+        Assert.assertNotNull(jexl.getCacheStatistics());
+        jexl.createExpression("1 + 1");
+        jexl.createExpression("1 + 1");
+        Assert.assertEquals(1, jexl.getCacheStatistics().getMisses());
+        Assert.assertEquals(1, jexl.getCacheStatistics().getHits());
+        Assert.assertEquals(1, jexl.getCacheStatistics().getPuts());
+        // too long for the cache
+        jexl.createExpression("1 + 2 + 3 + 4 + 5 + 6");
+        Assert.assertEquals(1, jexl.getCacheStatistics().getBypasses());
+        // same source, different scope
+        jexl.createScript("x + 1", "x");
+        jexl.createScript("x + 1", "x", "y");
+        Assert.assertEquals(1, jexl.getCacheStatistics().getScopeMisses());
+        // capacity is 2, both scope variants are cached
+        jexl.createExpression("2 + 2");
+        Assert.assertEquals(2, jexl.getCacheStatistics().getEvictions());
+        Assert.assertTrue(jexl.getCacheStatistics().getParseTime() > 0);
+        Assert.assertTrue(jexl.getCacheStatistics().getHitRatio() > 0);
+        Assert.assertNull(new JexlBuilder().cache(0).create().getCacheStatistics());
+        // template engine
+        final JxltEngine jxlt = jexl.createJxltEngine();
+        jxlt.createExpression("${x}");
+        jxlt.createExpression("${x}");
+        Assert.assertEquals(1, jxlt.getCacheStatistics().getHits());
+        Assert.assertEquals(1, jxlt.getCacheStatistics().getMisses());
+    }
 }
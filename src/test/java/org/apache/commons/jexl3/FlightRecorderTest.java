@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.jexl3.internal.FlightRecorder;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests for Flight Recorder events.
+ * <p>The recording API is used by reflection since tests also compile for Java 8.</p>
+ * @since 4.0
+ */
+public class FlightRecorderTest extends JexlTestCase {
+
+    public FlightRecorderTest() {
+        super("FlightRecorderTest");
+    }
+
+    public static class Bean {
+        public int getValue() {
+            return 42;
+        }
+    }
+
+    /**
+     * Runs a workload under a recording of the JEXL events.
+     * @param workload the workload
+     * @return the recorded events, as name;source;line;cache hit, outcome, member or message
+     * @throws Exception if recording fails
+     */
+    private static List<String> record(final Runnable workload) throws Exception {
+        final Class<?> recordingc = Class.forName("jdk.jfr.Recording");
+        final Object recording = recordingc.getConstructor().newInstance();
+        final File file = File.createTempFile("jexl", ".jfr");
+        try {
+            for (final String name : new String[]{"Parse", "Execute", "IntrospectionMiss", "Exception"}) {
+                recordingc.getMethod("enable", String.class).invoke(recording, "org.apache.commons.jexl3." + name);
+            }
+            recordingc.getMethod("start").invoke(recording);
+            workload.run();
+            recordingc.getMethod("stop").invoke(recording);
+            recordingc.getMethod("dump", Path.class).invoke(recording, file.toPath());
+            final List<?> events = (List<?>) Class.forName("jdk.jfr.consumer.RecordingFile")
+                .getMethod("readAllEvents", Path.class).invoke(null, file.toPath());
+            final List<String> found = new ArrayList<>();
+            for (final Object event : events) {
+                final Object type = event.getClass().getMethod("getEventType").invoke(event);
+                final String name = (String) type.getClass().getMethod("getName").invoke(type);
+                final java.lang.reflect.Method getValue = event.getClass().getMethod("getValue", String.class);
+                final String simple = name.substring(name.lastIndexOf('.') + 1);
+                found.add(simple + ";" + getValue.invoke(event, "source") + ";" + getValue.invoke(event, "line")
+                    + ";" + getValue.invoke(event, field(simple)));
+            }
+            return found;
+        } finally {
+            recordingc.getMethod("close").invoke(recording);
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    private static String field(final String event) {
+        switch (event) {
+            case "Parse": return "cacheHit";
+            case "Execute": return "outcome";
+            case "IntrospectionMiss": return "member";
+            default: return "message";
+        }
+    }
+
+    @Test
+    public void testRecording() throws Exception {
+        Assume.assumeTrue(FlightRecorder.isAvailable());
+        final JexlEngine jexl = new JexlBuilder()
+            .permissions(org.apache.commons.jexl3.introspection.JexlPermissions.UNRESTRICTED)
+            .cache(16).strict(true).silent(false).create();
+        final List<String> events = record(() -> {
+            final JexlScript script = jexl.createScript(new JexlInfo("good.jexl", 1, 1), "return b.value", "b");
+            Assert.assertEquals(42, script.execute(null, new Bean()));
+            jexl.createScript(new JexlInfo("good.jexl", 1, 1), "return b.value", "b");
+            try {
+                jexl.createScript(new JexlInfo("miss.jexl", 1, 1), "b.nothing", "b").execute(null, new Bean());
+                Assert.fail("should have thrown");
+            } catch (final JexlException.Property xproperty) {
+                // expected
+            }
+            try {
+                jexl.createScript(new JexlInfo("bad.jexl", 1, 1), "return 1 / 0").execute(null);
+                Assert.fail("should have thrown");
+            } catch (final JexlException xjexl) {
+                // expected
+            }
+        });
+        Assert.assertTrue(events.toString(), events.contains("Parse;good.jexl;1;false"));
+        Assert.assertTrue(events.toString(), events.contains("Parse;good.jexl;1;true"));
+        Assert.assertTrue(events.toString(), events.contains("Execute;good.jexl;1;success"));
+        Assert.assertTrue(events.toString(), events.contains("IntrospectionMiss;miss.jexl;1;nothing"));
+        Assert.assertTrue(events.toString(), events.contains("Execute;bad.jexl;1;failure"));
+        boolean exception = false;
+        for (final String event : events) {
+            exception |= event.startsWith("Exception;bad.jexl;1;");
+            // successful scripts do not create exceptions, not even to return
+            Assert.assertFalse(event, event.startsWith("Exception;good.jexl"));
+        }
+        Assert.assertTrue(events.toString(), exception);
+    }
+
+    @Test
+    public void testNotRecording() {
+        // without recording, events are only checked for enablement
+        final JexlEngine jexl = new JexlBuilder().cache(16).create();
+        final JexlScript script = jexl.createScript("x * 2", "x");
+        for (int i = 0; i < 100; ++i) {
+            Assert.assertEquals(2 * i, script.execute(null, i));
+        }
+    }
+}
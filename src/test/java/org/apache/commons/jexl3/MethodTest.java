@@ -88,6 +88,22 @@ public class MethodTest extends JexlTestCase {
             return mixed + ":" + result;
         }
 
+        public int sumInts(final int... args) {
+            int result = 0;
+            for (final int arg : args) {
+                result += arg;
+            }
+            return result;
+        }
+
+        public long sumLongs(final String label, final long... args) {
+            long result = 0;
+            for (final long arg : args) {
+                result += arg;
+            }
+            return result;
+        }
+
         public String concat(final String... strs) {
             if (strs.length <= 0) {
                 return "";
@@ -154,6 +170,18 @@ public class MethodTest extends JexlTestCase {
         asserter.assertExpression("test.concat('1', '2', '3')", test.concat("1", "2", "3"));
     }
 
+    @Test
+    public void testCallPrimitiveVarArgMethod() throws Exception {
+        final VarArgs test = new VarArgs();
+        asserter.setVariable("test", test);
+        asserter.assertExpression("test.sumInts()", 0);
+        asserter.assertExpression("test.sumInts(1)", 1);
+        asserter.assertExpression("test.sumInts(1, 2, 3, 4)", 10);
+        asserter.assertExpression("test.sumLongs('l', 1, 2, 3)", 6L);
+        // the cached executor is reused
+        asserter.assertExpression("test.sumInts(1, 2, 3, 4)", 10);
+    }
+
     @Test
     public void testCallMixedVarArgMethod() throws Exception {
         final VarArgs test = new VarArgs();
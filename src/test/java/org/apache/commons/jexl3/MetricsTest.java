@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for engine metrics.
+ * @since 4.0
+ */
+public class MetricsTest extends JexlTestCase {
+
+    public MetricsTest() {
+        super("MetricsTest");
+    }
+
+    @Test
+    public void testDisabled() {
+        Assert.assertNull(new JexlBuilder().create().getMetrics());
+        Assert.assertFalse(new JexlBuilder().metrics());
+        Assert.assertTrue(new JexlBuilder().metricsListener(new JexlMetrics.Listener() { }).metrics());
+    }
+
+    @Test
+    public void testParse() {
+        final JexlEngine jexl = new JexlBuilder().metrics(true).cache(16).create();
+        final JexlMetrics metrics = jexl.getMetrics();
+        Assert.assertNotNull(metrics);
+        jexl.createScript("x + 1", "x");
+        jexl.createScript("x + 1", "x");
+        jexl.createScript("x + 1", "x");
+        jexl.createExpression("y * 2");
+        Assert.assertEquals(2, metrics.getParses());
+        Assert.assertEquals(2, metrics.getCacheMisses());
+        Assert.assertEquals(2, metrics.getCacheHits());
+        Assert.assertEquals(0.5d, metrics.getCacheHitRatio(), 0d);
+        Assert.assertEquals(2, metrics.getParseHistogram().getCount());
+        Assert.assertTrue(metrics.getMeanParseTime() > 0d);
+        // the cache hits and misses are the cache statistics
+        final JexlCache.Statistics statistics = jexl.getCacheStatistics();
+        Assert.assertEquals(statistics.getHits(), metrics.getCacheHits());
+        Assert.assertEquals(statistics.getMisses(), metrics.getCacheMisses());
+        metrics.reset();
+        Assert.assertEquals(0, metrics.getParses());
+        Assert.assertEquals(0, metrics.getCacheHits());
+        Assert.assertEquals(0d, metrics.getCacheHitRatio(), 0d);
+        jexl.createExpression("y * 2");
+        Assert.assertEquals(1, metrics.getCacheHits());
+        Assert.assertEquals(0, metrics.getCacheMisses());
+        Assert.assertEquals(3, jexl.getCacheStatistics().getHits());
+    }
+
+    @Test
+    public void testNoCache() {
+        final JexlEngine jexl = new JexlBuilder().metrics(true).cache(0).create();
+        jexl.createScript("x + 1", "x");
+        Assert.assertEquals(1, jexl.getMetrics().getParses());
+        Assert.assertEquals(0, jexl.getMetrics().getCacheMisses());
+        Assert.assertEquals(0d, jexl.getMetrics().getCacheHitRatio(), 0d);
+    }
+
+    @Test
+    public void testExecutions() {
+        final JexlEngine jexl = new JexlBuilder().metrics(true).strict(true).silent(false).create();
+        final JexlMetrics metrics = jexl.getMetrics();
+        final JexlScript script = jexl.createScript("var f = (x) -> x + 1; f(f(n))", "n");
+        for (int i = 0; i < 10; ++i) {
+            Assert.assertEquals(i + 2, script.execute(null, i));
+        }
+        // closure calls are not evaluations
+        Assert.assertEquals(10, metrics.getExecutions());
+        Assert.assertEquals(0, metrics.getFailures());
+        try {
+            jexl.createScript("throw 'boom'").execute(null);
+            Assert.fail("should have thrown");
+        } catch (final JexlException xjexl) {
+            // expected
+        }
+        Assert.assertEquals(1, metrics.getFailures());
+        final JexlEvalContext ctxt = new JexlEvalContext();
+        ctxt.getEngineOptions().setNodeBudget(100);
+        try {
+            jexl.createScript("while (true) { }").execute(ctxt);
+            Assert.fail("should have been cancelled");
+        } catch (final JexlException.Cancel xcancel) {
+            // expected
+        }
+        Assert.assertEquals(1, metrics.getCancellations());
+        Assert.assertEquals(12, metrics.getExecutions());
+        final long[] latencies = metrics.getExecutionLatencies();
+        Assert.assertEquals(metrics.getLatencyBounds().length + 1, latencies.length);
+        long count = 0;
+        for (final long latency : latencies) {
+            count += latency;
+        }
+        Assert.assertEquals(12, count);
+    }
+
+    @Test
+    public void testStackOverflow() {
+        final JexlEngine jexl = new JexlBuilder().metrics(true).stackOverflow(64).strict(true).silent(false).create();
+        try {
+            jexl.createScript("var f = (x) -> f(x + 1); f(0)").execute(null);
+            Assert.fail("should have overflowed");
+        } catch (final JexlException.StackOverflow xstack) {
+            // expected
+        }
+        Assert.assertEquals(1, jexl.getMetrics().getStackOverflows());
+        Assert.assertEquals(0, jexl.getMetrics().getFailures());
+    }
+
+    public static class Bean {
+        public int getValue() {
+            return 42;
+        }
+    }
+
+    @Test
+    public void testIntrospection() {
+        final List<String> missed = new ArrayList<>();
+        final JexlEngine jexl = new JexlBuilder()
+            .permissions(org.apache.commons.jexl3.introspection.JexlPermissions.UNRESTRICTED)
+            .safe(true).strict(false)
+            .metricsListener(new JexlMetrics.Listener() {
+                @Override
+                public void introspectionMissed(final Class<?> type, final Object member) {
+                    missed.add(type.getSimpleName() + "." + member);
+                }
+            })
+            .create();
+        final JexlMetrics metrics = jexl.getMetrics();
+        Assert.assertEquals(42, jexl.createScript("b.value", "b").execute(null, new Bean()));
+        Assert.assertEquals(0, metrics.getIntrospectionMisses());
+        Assert.assertNull(jexl.createScript("b.nothing", "b").execute(null, new Bean()));
+        Assert.assertNull(jexl.createScript("b.nothing()", "b").execute(null, new Bean()));
+        Assert.assertEquals(2, metrics.getIntrospectionMisses());
+        Assert.assertEquals("[Bean.nothing, Bean.nothing]", missed.toString());
+    }
+
+    @Test
+    public void testListener() {
+        final List<String> events = new ArrayList<>();
+        final JexlEngine jexl = new JexlBuilder().cache(16).metricsListener(new JexlMetrics.Listener() {
+            @Override
+            public void parsed(final JexlInfo info, final int length, final long nanos, final boolean hit) {
+                events.add("parsed " + length + (hit ? " hit" : ""));
+            }
+
+            @Override
+            public void executed(final JexlInfo info, final long nanos, final Throwable failure) {
+                events.add("executed " + info.getName() + (failure != null ? " failed" : ""));
+            }
+        }).create();
+        jexl.createScript(new JexlInfo("one", 1, 1), "1 + 2").execute(null);
+        jexl.createScript(new JexlInfo("two", 1, 1), "1 + 2").execute(null);
+        Assert.assertEquals("[parsed 5, executed one, parsed 5 hit, executed two]", events.toString());
+    }
+
+    @Test
+    public void testHistogram() {
+        final JexlMetrics.Histogram histogram = new JexlMetrics(null).getExecutionHistogram();
+        final long[] bounds = histogram.getBounds();
+        Assert.assertEquals(1_000L, bounds[0]);
+        Assert.assertEquals(5_000_000_000L, bounds[bounds.length - 1]);
+        Assert.assertEquals(0L, histogram.getPercentile(50));
+        histogram.record(500L);
+        histogram.record(1_000L);
+        histogram.record(1_500L);
+        histogram.record(3_000_000L);
+        histogram.record(60_000_000_000L);
+        final long[] counts = histogram.getCounts();
+        Assert.assertEquals(2, counts[0]);
+        Assert.assertEquals(1, counts[1]);
+        Assert.assertEquals(1, counts[11]);
+        Assert.assertEquals(1, counts[bounds.length]);
+        Assert.assertEquals(5, histogram.getCount());
+        Assert.assertEquals(2_000L, histogram.getPercentile(50));
+        Assert.assertEquals(5_000_000L, histogram.getPercentile(80));
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().jmxName("MetricsTest").create();
+        final JexlMetrics metrics = jexl.getMetrics();
+        final ObjectName name = metrics.getObjectName();
+        Assert.assertNotNull(name);
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertTrue(server.isRegistered(name));
+            jexl.createScript("40 + 2").execute(null);
+            Assert.assertEquals(1L, server.getAttribute(name, "Executions"));
+            Assert.assertEquals(1L, server.getAttribute(name, "Parses"));
+            Assert.assertArrayEquals(metrics.getLatencyBounds(), (long[]) server.getAttribute(name, "LatencyBounds"));
+            server.invoke(name, "reset", null, null);
+            Assert.assertEquals(0L, server.getAttribute(name, "Executions"));
+        } finally {
+            metrics.unregister();
+        }
+        Assert.assertNull(metrics.getObjectName());
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
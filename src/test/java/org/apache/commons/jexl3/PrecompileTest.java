@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks bulk precompilation.
+ */
+public class PrecompileTest {
+
+    @Test
+    public void testPrecompile() {
+        final JexlEngine jexl = new JexlBuilder().cache(256).create();
+        final List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            sources.add("var x = " + i + "; x + y");
+        }
+        sources.add("var x = ; x");
+        sources.add("var x = 0; x + y");
+        sources.add("(");
+        final JexlEngine.Precompiled result = jexl.precompile(sources);
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertEquals(100, result.getScripts().size());
+        Assert.assertEquals(Arrays.asList("var x = ; x", "("), new ArrayList<>(result.getErrors().keySet()));
+        Assert.assertTrue(result.getErrors().get("(") instanceof JexlException.Parsing);
+        // infos are named after the source position
+        Assert.assertEquals("precompile[100]", result.getErrors().get("var x = ; x").getInfo().getName());
+        Assert.assertEquals("precompile[102]", result.getErrors().get("(").getInfo().getName());
+        final MapContext ctxt = new MapContext();
+        ctxt.set("y", 1);
+        int i = 0;
+        for (final JexlScript script : result.getScripts().values()) {
+            Assert.assertEquals(i + 1, script.execute(ctxt));
+            i += 1;
+        }
+        // scripts are cached, creating them again does not parse
+        final long misses = jexl.getCacheStatistics().getMisses();
+        for (final String src : result.getScripts().keySet()) {
+            jexl.createScript(src);
+        }
+        Assert.assertEquals(misses, jexl.getCacheStatistics().getMisses());
+    }
+
+    @Test
+    public void testPrecompileExecutor() {
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        final AtomicInteger tasks = new AtomicInteger();
+        try {
+            final JexlEngine jexl = new JexlBuilder().executor(r -> {
+                tasks.incrementAndGet();
+                pool.execute(r);
+            }).create();
+            final JexlEngine.Precompiled result = jexl.precompile(Arrays.asList("1 + 1", "2 + 2", "3 + 3"));
+            Assert.assertTrue(result.isSuccess());
+            Assert.assertEquals(3, result.getScripts().size());
+            Assert.assertTrue(tasks.get() > 0);
+            Assert.assertEquals(6, result.getScripts().get("3 + 3").execute(null));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
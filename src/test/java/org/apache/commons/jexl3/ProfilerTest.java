@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the profiler probe.
+ * @since 4.0
+ */
+public class ProfilerTest extends JexlTestCase {
+    /** The profiled source, one statement per line. */
+    private static final String SOURCE =
+        "function f(n) {\n"
+      + "  var s = 0;\n"
+      + "  for (var i : 1 .. n) {\n"
+      + "    s += i\n"
+      + "  }\n"
+      + "  s\n"
+      + "}\n"
+      + "var g = (x) -> x * 2;\n"
+      + "var t = 0;\n"
+      + "for (var c : 1 .. m) {\n"
+      + "  t += g(f(c))\n"
+      + "}\n"
+      + "t\n";
+
+    public ProfilerTest() {
+        super("ProfilerTest");
+    }
+
+    private static JexlScript script(final JexlProfiler profiler) {
+        final JexlEngine jexl = new JexlBuilder().probe(profiler).create();
+        return jexl.createScript(new JexlInfo("prof.jexl", 1, 1), SOURCE, "m");
+    }
+
+    private static JexlProfiler.Hotspot spot(final List<JexlProfiler.Hotspot> spots, final String site) {
+        for (final JexlProfiler.Hotspot spot : spots) {
+            if (spot.getSite().equals(site)) {
+                return spot;
+            }
+        }
+        Assert.fail("no hot spot " + site + " in " + spots);
+        return null;
+    }
+
+    @Test
+    public void testExact() throws IOException {
+        final JexlProfiler profiler = new JexlProfiler();
+        Assert.assertFalse(profiler.isSampling());
+        Assert.assertEquals(2 * 1540, script(profiler).execute(null, 20));
+        final List<JexlProfiler.Hotspot> spots = profiler.getHotspots();
+        // frames
+        Assert.assertEquals(1, spot(spots, "prof.jexl").getCalls());
+        Assert.assertTrue(spot(spots, "prof.jexl").isFrame());
+        Assert.assertEquals(20, spot(spots, "f@prof.jexl:1:11").getCalls());
+        Assert.assertEquals(20, spot(spots, "lambda@prof.jexl:8:9").getCalls());
+        // lines
+        Assert.assertEquals(20, spot(spots, "prof.jexl:11").getCalls());
+        Assert.assertEquals(210, spot(spots, "prof.jexl:4").getCalls());
+        Assert.assertFalse(spot(spots, "prof.jexl:4").isFrame());
+        Assert.assertEquals(4, spot(spots, "prof.jexl:4").getLine());
+        Assert.assertEquals("prof.jexl", spot(spots, "prof.jexl:4").getSource());
+        // the script spends all its time in lines and frames
+        final JexlProfiler.Hotspot top = spot(spots, "prof.jexl");
+        long self = 0;
+        for (final JexlProfiler.Hotspot spot : spots) {
+            Assert.assertTrue(spot.getSelfTime() >= 0);
+            Assert.assertTrue(spot.getSelfTime() <= spot.getTotalTime());
+            Assert.assertTrue(spot.getTotalTime() <= top.getTotalTime());
+            Assert.assertEquals(0, spot.getSamples());
+            self += spot.getSelfTime();
+        }
+        Assert.assertEquals(top.getTotalTime(), self);
+        // sorted by self time
+        for (int s = 1; s < spots.size(); ++s) {
+            Assert.assertTrue(spots.get(s - 1).getSelfTime() >= spots.get(s).getSelfTime());
+        }
+        final StringBuilder report = new StringBuilder();
+        profiler.writeHotspots(report);
+        Assert.assertTrue(report.toString().contains("f@prof.jexl:1:11"));
+        Assert.assertEquals(spots.size() + 1, report.toString().split("\n").length);
+    }
+
+    @Test
+    public void testCollapsed() throws IOException {
+        final JexlProfiler profiler = new JexlProfiler();
+        script(profiler).execute(null, 200);
+        final Map<String, Long> stacks = profiler.getCollapsedStacks();
+        Assert.assertTrue(stacks.keySet().toString(),
+            stacks.containsKey("prof.jexl;prof.jexl:10;prof.jexl:11;f@prof.jexl:1:11;prof.jexl:3;prof.jexl:4"));
+        for (final String stack : stacks.keySet()) {
+            Assert.assertTrue(stack, stack.startsWith("prof.jexl"));
+        }
+        final StringBuilder out = new StringBuilder();
+        profiler.writeCollapsedStacks(out);
+        for (final String line : out.toString().split("\n")) {
+            final int space = line.lastIndexOf(' ');
+            Assert.assertTrue(stacks.containsKey(line.substring(0, space)));
+            Assert.assertTrue(Long.parseLong(line.substring(space + 1)) > 0);
+        }
+    }
+
+    @Test
+    public void testSampling() throws Exception {
+        try (JexlProfiler profiler = new JexlProfiler(100, TimeUnit.MICROSECONDS)) {
+            Assert.assertTrue(profiler.isSampling());
+            final JexlScript script = script(profiler);
+            // the sampled stacks nest the statements as the exact ones do
+            final String inner = "prof.jexl;prof.jexl:10;prof.jexl:11;f@prof.jexl:1:11;prof.jexl:3;prof.jexl:4";
+            long samples = 0;
+            for (int run = 0; run < 100 && samples < 10; ++run) {
+                Assert.assertEquals(2 * 20958500, script.execute(null, 500));
+                samples = profiler.getCollapsedStacks().getOrDefault(inner, 0L);
+            }
+            Assert.assertTrue(profiler.getCollapsedStacks().toString(), samples >= 10);
+            for (final JexlProfiler.Hotspot spot : profiler.getHotspots()) {
+                Assert.assertEquals(0, spot.getSelfTime());
+                // statements are not counted when sampling
+                Assert.assertEquals(0, spot.getCalls());
+            }
+            Assert.assertTrue(spot(profiler.getHotspots(), "prof.jexl:4").getSamples() >= 10);
+        }
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        final JexlProfiler profiler = new JexlProfiler();
+        final JexlScript script = script(profiler);
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> script.execute(null, 10));
+            threads[t].start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final List<JexlProfiler.Hotspot> spots = profiler.getHotspots();
+        Assert.assertEquals(4, spot(spots, "prof.jexl").getCalls());
+        Assert.assertEquals(40, spot(spots, "f@prof.jexl:1:11").getCalls());
+        Assert.assertEquals(4 * 55, spot(spots, "prof.jexl:4").getCalls());
+        // the profiles of the finished threads are merged
+        Assert.assertEquals(0, profiler.getProfileCount());
+    }
+
+    @Test
+    public void testShortLivedThreads() throws Exception {
+        final JexlProfiler profiler = new JexlProfiler();
+        final JexlScript script = script(profiler);
+        for (int t = 0; t < 500; ++t) {
+            final Thread thread = new Thread(() -> script.execute(null, 2));
+            thread.start();
+            thread.join();
+        }
+        // finished threads are drained as new ones register, not only when reporting
+        Assert.assertTrue(profiler.getProfileCount() < 500);
+        final List<JexlProfiler.Hotspot> spots = profiler.getHotspots();
+        Assert.assertEquals(0, profiler.getProfileCount());
+        Assert.assertEquals(500, spot(spots, "prof.jexl").getCalls());
+        Assert.assertEquals(1000, spot(spots, "f@prof.jexl:1:11").getCalls());
+        Assert.assertEquals(500 * 3, spot(spots, "prof.jexl:4").getCalls());
+    }
+
+    @Test
+    public void testErrors() {
+        final JexlProfiler profiler = new JexlProfiler();
+        final JexlEngine jexl = new JexlBuilder().probe(profiler).strict(true).silent(false).create();
+        final JexlScript script = jexl.createScript(new JexlInfo("err.jexl", 1, 1),
+            "var f = (x) -> { if (x > 2) { throw 'boom' } x };\nvar s = 0;\ntry {\n  for (var i : 1 .. 5) { s += f(i) }\n} catch (var e) { }\ns");
+        Assert.assertEquals(3, script.execute(null));
+        final List<JexlProfiler.Hotspot> spots = profiler.getHotspots();
+        Assert.assertEquals(1, spot(spots, "err.jexl").getCalls());
+        Assert.assertEquals(3, spot(spots, "f@err.jexl:1:9").getCalls());
+        // the frames and lines left by the exception were all ended
+        Assert.assertEquals(spot(spots, "err.jexl").getTotalTime(),
+            spots.stream().mapToLong(JexlProfiler.Hotspot::getSelfTime).sum());
+        // expressions run no statement
+        final JexlExpression expr = jexl.createExpression(new JexlInfo("expr.jexl", 1, 1), "1 + 2");
+        Assert.assertEquals(3, expr.evaluate(null));
+        Assert.assertEquals(1, spot(profiler.getHotspots(), "expr.jexl").getCalls());
+    }
+
+    @Test
+    public void testDisabled() {
+        final JexlProfiler profiler = new JexlProfiler();
+        profiler.setEnabled(false);
+        Assert.assertEquals(2 * 35, script(profiler).execute(null, 5));
+        Assert.assertTrue(profiler.getHotspots().isEmpty());
+        Assert.assertTrue(profiler.getCollapsedStacks().isEmpty());
+    }
+}
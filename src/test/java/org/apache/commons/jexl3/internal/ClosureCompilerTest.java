@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the compilation of scripts to closure trees.
+ */
+public class ClosureCompilerTest {
+    private static final String[] SOURCES = {
+        "1 + 2 * 3 - 4 / 2 % 3",
+        "x + y * 2 + a",
+        "(x + b) * (x - y)",
+        "x < y && y <= 10 || !(x == y)",
+        "a > y ? 'greater' : x != y ? 'lesser' : 'equal'",
+        "z ?: b",
+        "s + '!' + x",
+        "var t = x * 2; t + y",
+        "let u = a; u - b",
+        "var r = 0; for (var i : 1 .. x) { r += i }; r + (y * 2)",
+        "x.class.simpleName + ':' + (x + 1)",
+        "x + 1; y + 2; a * b",
+        "z + 1",
+        "undefined + 1"
+    };
+
+    private static JexlContext context() {
+        final MapContext ctxt = new MapContext();
+        ctxt.set("x", 3);
+        ctxt.set("y", 7);
+        ctxt.set("s", "str");
+        ctxt.set("z", null);
+        return ctxt;
+    }
+
+    private static Object result(final JexlScript script, final Object... args) {
+        try {
+            return script.execute(context(), args);
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    @Test
+    public void testCompiledResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine interpreted = new JexlBuilder().strict(strict).create();
+            final JexlEngine compiling = new JexlBuilder().strict(strict).closureTree(true).compileThreshold(1).create();
+            for (final String src : SOURCES) {
+                final Object expected = result(interpreted.createScript(src, "a", "b"), 5, null);
+                final JexlScript script = compiling.createScript(src, "a", "b");
+                Assert.assertTrue(src, Objects.deepEquals(expected, result(script, 5, null)));
+                final Compiled compiled = ((Script) script).getScript().getCompiled();
+                Assert.assertTrue(src, compiled instanceof ClosureCompiler.Tree);
+                Assert.assertTrue(src, Objects.deepEquals(expected, result(script, 5, null)));
+            }
+        }
+    }
+
+    @Test
+    public void testLexicalShade() {
+        final JexlEngine jexl = new JexlBuilder().lexicalShade(true).strict(true).closureTree(true).compileThreshold(1).create();
+        final JexlScript script = jexl.createScript("{ let x = 1; } x + 1");
+        for (int i = 0; i < 2; ++i) {
+            try {
+                script.execute(null);
+                Assert.fail("x is shaded");
+            } catch (final JexlException.Variable xvar) {
+                Assert.assertEquals("x", xvar.getVariable());
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlDebugger;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.parser.ASTBreak;
+import org.apache.commons.jexl3.parser.ASTContinue;
+import org.apache.commons.jexl3.parser.JexlNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks break, continue, remove and return statements completing as results.
+ */
+public class CompletionTest {
+    private static final String[] SOURCES = {
+        "var s = 0; for (var i : 1 .. 10) { if (i % 2 == 0) continue; if (i > 7) break; s += i } s",
+        "var s = 0; for (let i = 0; i < 10; ++i) { if (i == 3) { continue } s += i; if (s > 20) break } s",
+        "var s = 0; var i = 0; while (i < 10) { i += 1; if (i < 5) continue; s += i; if (i == 8) break } s",
+        "var s = 0; var i = 0; do { i += 1; if (i < 3) continue; s += i; if (i == 6) break } while (i < 10); s",
+        "var s = 0; foo : for (var i : 1 .. 5) { for (var j : 1 .. 5) { if (j > i) continue foo; if (i == 4) break foo; s += j } } s",
+        "var s = 0; foo : while (s < 100) { bar : while (true) { s += 7; if (s > 30) break foo; break bar } } s",
+        "var l = {1, 2, 3, 4, 5, 6}; for (var e : l) { if (e % 2 == 0) remove } l",
+        "var l = {1, 2, 3, 4, 5, 6}; foo : for (var e : l) { for (var i : 1 .. 2) { if (e > 4) remove foo } } l",
+        "var l = {1, 2, 3, 4}; for (var e : l) { for (let i = 0; i < 2; ++i) { if (e == 2) remove } } l",
+        "function f(n) { for (var i : 0 .. n) { if (i * i > n) return i } -1 } f(50) + f(-1)",
+        "function f(n) { var i = 0; while (true) { if (++i > n) { if (i > 3) { return i * 2 } return -i } } } f(2) + f(5)",
+        "for (var i : 1 .. 10) { if (i == 4) return i } 0",
+        "return 42; 43",
+        "var x = 1; foo : { x = 2; if (x > 1) break foo; x = 3 } x",
+        "var x = 1; foo : if (x == 1) { x = 2; break foo; x = 3 } x",
+        "var x = 0; switch (x) { case 0 : for (var i : 1 .. 3) { if (i == 2) break; x += i } break; default : x = -1 } x",
+        "var i = 0; while (true) { i += 1; try { if (i < 42) continue else break } finally { } } i",
+        "var s = 0; for (var i : 1 .. 3) { s += (x -> { if (x > 1) return x * 10; x })(i) } s",
+        "var s = 0; for (var i : 1 .. 3) { synchronized (s) { if (i == 2) continue; s += i } } s",
+        "var l = [1, 2, 3]; var r = 0; for (var e : l) { r = e; if (e == 2) break } r",
+        "break",
+        "continue",
+        "var s = 0; for (var i : 1 .. 3) { s += i; { if (i == 2) break } } s"
+    };
+
+    private static Object result(final JexlEngine jexl, final String src) {
+        try {
+            final Object result = jexl.createScript(src).execute(new MapContext());
+            return result instanceof List ? new ArrayList<>((List<?>) result) : result;
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    /**
+     * A disabled probe, control statements are then only thrown.
+     * @return the builder of an engine whose control statements complete as exceptions
+     */
+    private static JexlBuilder throwing() {
+        return new JexlBuilder().probe(new JexlDebugger() { });
+    }
+
+    @Test
+    public void testResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine throwing = throwing().strict(strict).create();
+            final List<JexlEngine> engines = Arrays.asList(
+                new JexlBuilder().strict(strict).create(),
+                new JexlBuilder().strict(strict).compileThreshold(1).create(),
+                new JexlBuilder().strict(strict).compileThreshold(1).closureTree(true).create());
+            for (final String src : SOURCES) {
+                final Object expected = result(throwing, src);
+                for (final JexlEngine jexl : engines) {
+                    Assert.assertTrue(src + ": " + expected, Objects.deepEquals(expected, result(jexl, src)));
+                    // second execution is compiled if it can be
+                    Assert.assertTrue(src + ": " + expected, Objects.deepEquals(expected, result(jexl, src)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledReturn() {
+        final JexlEngine jexl = new JexlBuilder().compileThreshold(1).create();
+        final JexlScript script = jexl.createScript("for (var i : 1 .. 10) { if (i > x) return i * 2 } x * 3", "x");
+        for (int i = 0; i < 3; ++i) {
+            Assert.assertEquals(8, script.execute(null, 3));
+            Assert.assertEquals(60, script.execute(null, 20));
+        }
+        Assert.assertNotNull(((Script) script).getScript().getCompiled());
+    }
+
+    @Test
+    public void testSignalledOnce() {
+        final JexlEngine jexl = new JexlBuilder().create();
+        final Script script = (Script) jexl.createScript(
+            "var n = 0; foo : for (var i : 1 .. 3) { n += i; if (i == 1) continue foo; break } n");
+        final List<JexlNode> statements = new ArrayList<>();
+        collect(script.getScript(), statements);
+        Assert.assertEquals(2, statements.size());
+        for (final JexlNode statement : statements) {
+            Assert.assertNull(statement.jjtGetValue());
+            Assert.assertTrue(Completion.isSignalled(statement));
+            // the walk result is kept by the node
+            Assert.assertEquals(Boolean.TRUE, statement.jjtGetValue());
+            Assert.assertTrue(Completion.isSignalled(statement));
+        }
+        Assert.assertEquals(3, script.execute(null));
+    }
+
+    private static void collect(final JexlNode node, final List<JexlNode> statements) {
+        if (node instanceof ASTBreak || node instanceof ASTContinue) {
+            statements.add(node);
+        }
+        for (int c = 0; c < node.jjtGetNumChildren(); ++c) {
+            collect(node.jjtGetChild(c), statements);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlCache;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlExpression;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the concurrent cache behavior and compares it with the soft cache.
+ */
+public class ConcurrentCacheTest {
+
+    @Test
+    public void testBasics() {
+        final JexlCache<String, Integer> cache = new ConcurrentCache<>(8);
+        Assert.assertEquals(8, cache.capacity());
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNull(cache.put("a", 1));
+        Assert.assertEquals(1, (int) cache.get("a"));
+        Assert.assertEquals(1, (int) cache.put("a", 2));
+        Assert.assertEquals(2, (int) cache.get("a"));
+        for (int i = 0; i < 32; ++i) {
+            cache.put("k" + i, i);
+        }
+        Assert.assertEquals(8, cache.size());
+        Assert.assertEquals(8, cache.entries().size());
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void testScanResistance() {
+        final int capacity = 100;
+        final JexlCache<String, Integer> cache = new ConcurrentCache<>(capacity);
+        // a hot set, accessed repeatedly
+        for (int loop = 0; loop < 8; ++loop) {
+            for (int i = 0; i < 50; ++i) {
+                final String key = "hot" + i;
+                if (cache.get(key) == null) {
+                    cache.put(key, i);
+                }
+            }
+        }
+        // a burst of one-off keys
+        for (int i = 0; i < 10 * capacity; ++i) {
+            cache.put("cold" + i, i);
+        }
+        int hot = 0;
+        for (int i = 0; i < 50; ++i) {
+            if (cache.get("hot" + i) != null) {
+                hot += 1;
+            }
+        }
+        Assert.assertTrue("hot entries evicted: " + hot, hot >= 45);
+        Assert.assertTrue(cache.size() <= capacity);
+    }
+
+    @Test
+    public void testSoftStatistics() {
+        final SoftCache<String, Integer> cache = new SoftCache<>(8);
+        for (int i = 0; i < 3; ++i) {
+            cache.put("k" + i, i);
+        }
+        Assert.assertEquals(1, (int) cache.get("k1"));
+        final JexlCache.Statistics before = cache.statistics();
+        Assert.assertEquals(3, before.getPuts());
+        Assert.assertEquals(1, before.getHits());
+        Assert.assertEquals(0, before.getEvictions());
+        // as if the GC reclaimed the map, its entries count as evicted
+        cache.reference.clear();
+        Assert.assertNull(cache.get("k1"));
+        Assert.assertEquals(0, cache.size());
+        final JexlCache.Statistics after = cache.statistics();
+        Assert.assertEquals(3, after.getEvictions());
+        Assert.assertEquals(1, after.getMisses());
+        // snapshots do not change
+        Assert.assertEquals(0, before.getEvictions());
+        Assert.assertEquals(0, before.getMisses());
+        // counted once
+        cache.put("k0", 0);
+        Assert.assertEquals(3, cache.statistics().getEvictions());
+    }
+
+    @Test
+    public void testEngine() {
+        final JexlEngine jexl = new JexlBuilder().cache(16).cacheFactory(ConcurrentCache::new).create();
+        final MapContext ctxt = new MapContext();
+        ctxt.set("x", 20);
+        for (int i = 0; i < 64; ++i) {
+            final JexlExpression e = jexl.createExpression("x + " + (i % 4));
+            Assert.assertEquals(20 + (i % 4), e.evaluate(ctxt));
+        }
+        Assert.assertTrue(((Engine) jexl).cache instanceof ConcurrentCache);
+        Assert.assertEquals(4, ((Engine) jexl).cache.size());
+    }
+
+    /**
+     * Hammers a cache from several threads with a skewed key distribution.
+     * <p>Each thread uses its own seeded sequence so that runs are reproducible; values are always the key itself.</p>
+     * @param cache the cache
+     * @param nthreads the number of threads
+     * @param loops the number of operations per thread
+     * @param keys the size of the key space
+     * @return the number of hits
+     */
+    static int hammer(final JexlCache<Integer, Integer> cache, final int nthreads, final int loops, final int keys)
+        throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        try {
+            final List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < nthreads; ++t) {
+                final Random rnd = new Random(t);
+                tasks.add(() -> {
+                    int hits = 0;
+                    for (int i = 0; i < loops; ++i) {
+                        // 90% of accesses on 10% of the key space, the whole space is visited once first
+                        final int key = i < keys ? i : rnd.nextInt(10) == 0 ? rnd.nextInt(keys) : rnd.nextInt(keys / 10);
+                        final Integer value = cache.get(key);
+                        if (value != null) {
+                            Assert.assertEquals(key, value.intValue());
+                            hits += 1;
+                        } else {
+                            final Integer previous = cache.put(key, key);
+                            Assert.assertTrue(previous == null || previous == key);
+                        }
+                    }
+                    return hits;
+                });
+            }
+            int hits = 0;
+            for (final Future<Integer> future : executor.invokeAll(tasks)) {
+                hits += future.get();
+            }
+            return hits;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Checks a cache content: size within capacity, no duplicated keys and each value equal to its key.
+     * @param cache the cache
+     * @return the keys
+     */
+    private static Set<Integer> checkContent(final JexlCache<Integer, Integer> cache) {
+        final Collection<Map.Entry<Integer, Integer>> entries = cache.entries();
+        final Set<Integer> keys = new HashSet<>();
+        for (final Map.Entry<Integer, Integer> entry : entries) {
+            Assert.assertTrue("duplicated " + entry.getKey(), keys.add(entry.getKey()));
+            Assert.assertEquals(entry.getKey(), entry.getValue());
+        }
+        Assert.assertEquals(cache.size(), keys.size());
+        Assert.assertTrue(keys.size() <= cache.capacity());
+        return keys;
+    }
+
+    @Test
+    public void testConcurrentHammer() throws Exception {
+        final int nthreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        final int loops = 20_000;
+        // a key space that fits: no entry may be lost, both caches end up with every key
+        final JexlCache<Integer, Integer> soft = new SoftCache<>(256);
+        final JexlCache<Integer, Integer> concurrent = new ConcurrentCache<>(256);
+        Assert.assertTrue(hammer(soft, nthreads, loops, 200) > 0);
+        Assert.assertTrue(hammer(concurrent, nthreads, loops, 200) > 0);
+        final Set<Integer> all = new HashSet<>();
+        for (int i = 0; i < 200; ++i) {
+            all.add(i);
+        }
+        Assert.assertEquals(all, checkContent(soft));
+        Assert.assertEquals(all, checkContent(concurrent));
+        for (final Integer key : all) {
+            Assert.assertEquals(soft.get(key), concurrent.get(key));
+        }
+        // a key space 4 times the capacity: evictions keep both caches full and consistent
+        final JexlCache<Integer, Integer> softer = new SoftCache<>(256);
+        final JexlCache<Integer, Integer> bounded = new ConcurrentCache<>(256);
+        hammer(softer, nthreads, loops, 1024);
+        hammer(bounded, nthreads, loops, 1024);
+        Assert.assertEquals(256, checkContent(softer).size());
+        Assert.assertEquals(256, checkContent(bounded).size());
+        for (int key = 0; key < 1024; ++key) {
+            final Integer s = softer.get(key);
+            final Integer c = bounded.get(key);
+            // whichever cache holds the key, it maps to the same value
+            Assert.assertTrue(s == null || c == null || s.equals(c));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.Iterator;
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Checks generators running as continuations.
+ */
+public class ContinuationTest {
+    private static final String[] SOURCES = {
+        "[...{yield 1; yield 2; {yield 3; yield 4;}; yield 5;}]",
+        "[...{yield 1; yield 2; x: {yield 3; break x; yield 4;}; yield 5;}]",
+        "[...{var i = 1; yield i; var j = i + 1; yield j; yield i+j;}]",
+        "[...{if (true) {yield 1; yield 2;}; if (false) {} else {yield 4; yield 5;}}]",
+        "[...{var i = 0; while (i < 4) {i = i + 1; yield i; continue; }}]",
+        "[...{var i = 0; do {i = i + 1; yield i; } while (i < 4) }]",
+        "[...{for(var i = 0; i < 4; i++) yield i+1; }]",
+        "[...{for(var i, a : [40,41,42,43]) { yield i+a; }}]",
+        "[...{switch(0) {case 0: yield 1; yield 2; case 1 : yield 3; yield 4;}}]",
+        "[...{yield switch(0) {case 0 -> {yield 1;} case 1 -> {yield 3;}}}]",
+        "[...{yield ({yield 3;})}]",
+        "[...{42;}]",
+        "[...{a1;}]",
+        "[...{for (var i : 1 .. 3) { for (var j : 1 .. 3) { if (i != j) { yield i * 10 + j } } }}]",
+        "var s = 0; for (var e : ...{ for (var i : 1 .. 5) { yield i } }) { if (e > 3) break; s += e } s",
+        "function Power(int number, int exponent) {return ...{int result = 1; for (int i = 0; i < exponent; i++) "
+            + "{result = result * number; yield result;}}}; [...Power(2,8)]",
+        "var x = 3; [...{yield x; x = 4; yield x}, x]"
+    };
+
+    private static Object result(final JexlEngine jexl, final String src) {
+        try {
+            return jexl.createScript(src).execute(new MapContext());
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    @Test
+    public void testResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine replay = new JexlBuilder().strict(strict).continuations(false).create();
+            final JexlEngine continuations = new JexlBuilder().strict(strict).continuations(true).create();
+            for (final String src : SOURCES) {
+                final Object expected = result(replay, src);
+                Assert.assertTrue(src + ": " + expected, Objects.deepEquals(expected, result(continuations, src)));
+            }
+        }
+    }
+
+    @Test
+    public void testReplayed() {
+        final JexlEngine jexl = new JexlBuilder().continuations(true).create();
+        final Object gen = jexl.createScript("...{ yield 1 }").execute(null);
+        Assert.assertEquals(Continuation.isVirtual(), gen instanceof Continuation);
+    }
+
+    @Test
+    public void testIterator() {
+        Assume.assumeTrue(Continuation.isVirtual());
+        final JexlEngine jexl = new JexlBuilder().continuations(true).create();
+        final Object gen = jexl.createScript("...{ for (var i : 1 .. 3) { yield i } }").execute(null);
+        Assert.assertTrue(gen instanceof Continuation);
+        final Iterator<?> iterator = (Iterator<?>) gen;
+        for (int i = 1; i <= 3; ++i) {
+            Assert.assertTrue(iterator.hasNext());
+            Assert.assertEquals(i, iterator.next());
+        }
+        Assert.assertFalse(iterator.hasNext());
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void testAbandoned() throws Exception {
+        Assume.assumeTrue(Continuation.isVirtual());
+        final JexlEngine jexl = new JexlBuilder().continuations(true).create();
+        final JexlScript script = jexl.createScript("...{ var i = 0; while (true) { yield i++ } }");
+        final int active = Continuation.getActiveCount();
+        Iterator<?> iterator = (Iterator<?>) script.execute(null);
+        Assert.assertEquals(0, iterator.next());
+        Assert.assertEquals(1, iterator.next());
+        Assert.assertEquals(active + 1, Continuation.getActiveCount());
+        iterator = null;
+        for (int i = 0; i < 100 && Continuation.getActiveCount() > active; ++i) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        Assert.assertEquals(active, Continuation.getActiveCount());
+    }
+
+    @Test
+    public void testNested() {
+        Assume.assumeTrue(Continuation.isVirtual());
+        final JexlEngine jexl = new JexlBuilder().continuations(true).metrics(true).stackOverflow(16).create();
+        final JexlScript script = jexl.createScript("var s = 0; for (var e : ...{ yield 1; yield 2 }) { s += e } s");
+        Assert.assertEquals(3, script.execute(null));
+        // the generator body is not an execution of its own
+        Assert.assertEquals(1, jexl.getMetrics().getExecutions());
+        // the generator body inherits the frame height
+        final JexlScript deep = jexl.createScript("function f(n) { n > 0 ? [...{ yield f(n - 1) }][0] : 0 } f(x)", "x");
+        Assert.assertEquals(0, deep.execute(null, 2));
+        try {
+            deep.execute(null, 32);
+            Assert.fail("should have overflowed");
+        } catch (final JexlException.StackOverflow xstack) {
+            Assert.assertTrue(xstack.getMessage().contains("jexl"));
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlOperator;
+import org.apache.commons.jexl3.JexlScript;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the polymorphic inline caches of call sites.
+ */
+public class InlineCacheTest {
+    public static class Bean {
+        private int value;
+
+        public Bean(final int v) {
+            value = v;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(final int v) {
+            value = v;
+        }
+
+        public int twice() {
+            return 2 * value;
+        }
+    }
+
+    public static class Bean1 extends Bean {
+        public Bean1(final int v) {
+            super(v);
+        }
+    }
+
+    public static class Bean2 extends Bean {
+        public Bean2(final int v) {
+            super(v);
+        }
+    }
+
+    public static class Bean3 extends Bean {
+        public Bean3(final int v) {
+            super(v);
+        }
+    }
+
+    public static class Bean4 extends Bean {
+        public Bean4(final int v) {
+            super(v);
+        }
+    }
+
+    public static class Bean5 extends Bean {
+        public Bean5(final int v) {
+            super(v);
+        }
+    }
+
+    private static InlineCache site(final JexlScript script) {
+        final List<InlineCache> caches = ((Script) script).getInlineCaches();
+        Assert.assertEquals(1, caches.size());
+        return caches.get(0);
+    }
+
+    @Test
+    public void testPolymorphic() {
+        final JexlEngine jexl = new JexlBuilder().cache(32).create();
+        final JexlScript script = jexl.createScript("e.value", "e");
+        final Map<String, Object> map = new HashMap<>();
+        map.put("value", 4);
+        final List<Object> elements = Arrays.asList(new Bean(1), new Bean1(2), new Bean2(3), map);
+        for (int i = 0; i < 3; ++i) {
+            for (int e = 0; e < elements.size(); ++e) {
+                Assert.assertEquals(e + 1, script.execute(null, elements.get(e)));
+            }
+        }
+        final InlineCache ic = site(script);
+        Assert.assertFalse(ic.isMegamorphic());
+        Assert.assertEquals(4, ic.size());
+        Assert.assertEquals(4, ic.getMisses());
+        Assert.assertEquals(8, ic.getHits());
+        Assert.assertNotNull(ic.getInfo());
+    }
+
+    @Test
+    public void testMegamorphic() {
+        final JexlEngine jexl = new JexlBuilder().cache(32).create();
+        final JexlScript script = jexl.createScript("e.value = e.value + 1", "e");
+        final List<Bean> elements = Arrays.asList(
+            new Bean(0), new Bean1(1), new Bean2(2), new Bean3(3), new Bean4(4), new Bean5(5));
+        for (int i = 0; i < 3; ++i) {
+            for (int e = 0; e < elements.size(); ++e) {
+                Assert.assertEquals(e + i + 1, script.execute(null, elements.get(e)));
+            }
+        }
+        final List<InlineCache> caches = ((Script) script).getInlineCaches();
+        Assert.assertEquals(2, caches.size());
+        for (final InlineCache ic : caches) {
+            Assert.assertTrue(ic.toString(), ic.isMegamorphic());
+            Assert.assertEquals(InlineCache.POLYMORPHIC, ic.size());
+            // 6 resolutions, the last 2 feeding the shared lookup
+            Assert.assertEquals(ic.toString(), 6, ic.getMisses());
+            Assert.assertEquals(ic.toString(), 12, ic.getHits());
+        }
+        // the shared lookup serves other megamorphic sites of the same engine
+        final JexlScript other = jexl.createScript("e.value", "e");
+        for (int i = 0; i < 2; ++i) {
+            for (final Bean bean : elements) {
+                Assert.assertEquals(bean.getValue(), other.execute(null, bean));
+            }
+        }
+        final InlineCache ic = site(other);
+        Assert.assertTrue(ic.isMegamorphic());
+        Assert.assertEquals(ic.toString(), 5, ic.getMisses());
+        Assert.assertEquals(ic.toString(), 7, ic.getHits());
+    }
+
+    @Test
+    public void testMethod() {
+        final JexlEngine jexl = new JexlBuilder().cache(32).create();
+        final JexlScript script = jexl.createScript("e.twice()", "e");
+        final List<Bean> elements = Arrays.asList(new Bean(1), new Bean1(2), new Bean2(3));
+        for (int i = 0; i < 2; ++i) {
+            for (final Bean bean : elements) {
+                Assert.assertEquals(2 * bean.getValue(), script.execute(null, bean));
+            }
+        }
+        final InlineCache ic = site(script);
+        Assert.assertEquals(3, ic.size());
+        Assert.assertEquals(3, ic.getMisses());
+        Assert.assertEquals(3, ic.getHits());
+    }
+
+    @Test
+    public void testMegamorphicMethod() {
+        final JexlEngine jexl = new JexlBuilder().cache(32).create();
+        final JexlScript script = jexl.createScript("e.twice()", "e");
+        final List<Bean> elements = Arrays.asList(
+            new Bean(0), new Bean1(1), new Bean2(2), new Bean3(3), new Bean4(4), new Bean5(5));
+        for (int i = 0; i < 3; ++i) {
+            for (final Bean bean : elements) {
+                Assert.assertEquals(2 * bean.getValue(), script.execute(null, bean));
+            }
+        }
+        final InlineCache ic = site(script);
+        Assert.assertTrue(ic.isMegamorphic());
+        Assert.assertEquals(InlineCache.POLYMORPHIC, ic.size());
+        // 6 resolutions, the last 2 feeding the shared lookup
+        Assert.assertEquals(ic.toString(), 6, ic.getMisses());
+        Assert.assertEquals(ic.toString(), 12, ic.getHits());
+    }
+
+    @Test
+    public void testMegamorphicArrayAccess() {
+        final JexlEngine jexl = new JexlBuilder().cache(32).create();
+        final JexlScript script = jexl.createScript("c[i]", "c", "i");
+        final List<Object> containers = Arrays.asList(
+            new ArrayList<>(Arrays.asList(0, 1, 2)),
+            new LinkedList<>(Arrays.asList(0, 1, 2)),
+            new Vector<>(Arrays.asList(0, 1, 2)),
+            new CopyOnWriteArrayList<>(Arrays.asList(0, 1, 2)),
+            Arrays.asList(0, 1, 2),
+            Collections.unmodifiableList(Arrays.asList(0, 1, 2)));
+        for (int i = 0; i < 3; ++i) {
+            for (final Object container : containers) {
+                Assert.assertEquals(i, script.execute(null, container, i));
+            }
+        }
+        final InlineCache ic = site(script);
+        Assert.assertTrue(ic.isMegamorphic());
+        // indices are keyed by class, the shared lookup serves all of them
+        Assert.assertEquals(ic.toString(), 6, ic.getMisses());
+        Assert.assertEquals(ic.toString(), 12, ic.getHits());
+    }
+
+    @Test
+    public void testLookupEviction() {
+        final InlineCache.Lookup lookup = new InlineCache.Lookup(16);
+        for (int i = 0; i < 64; ++i) {
+            lookup.put(JexlOperator.PROPERTY_GET, Bean.class, "p" + i, i);
+        }
+        Assert.assertTrue(lookup.size() <= 16);
+        Assert.assertEquals(63, lookup.get(JexlOperator.PROPERTY_GET, Bean.class, "p63"));
+        // indices share one key per class
+        lookup.put(JexlOperator.ARRAY_GET, Bean.class, 1, "index");
+        Assert.assertEquals("index", lookup.get(JexlOperator.ARRAY_GET, Bean.class, 42));
+        // method calls have no operator
+        lookup.put(null, Bean.class, "twice", "method");
+        Assert.assertEquals("method", lookup.get(null, Bean.class, "twice"));
+        lookup.clear();
+        Assert.assertEquals(0, lookup.size());
+    }
+
+    @Test
+    public void testNoCache() {
+        final JexlScript script = new JexlBuilder().create().createScript("e.value", "e");
+        Assert.assertEquals(1, script.execute(null, new Bean(1)));
+        Assert.assertEquals(Collections.emptyList(), ((Script) script).getInlineCaches());
+    }
+
+    @Test
+    public void testHeterogeneousLoop() {
+        final JexlEngine jexl = new JexlBuilder().cache(32).create();
+        final List<Object> elements = new ArrayList<>();
+        for (int i = 0; i < 60; ++i) {
+            switch (i % 3) {
+                case 0: elements.add(new Bean(i)); break;
+                case 1: elements.add(new Bean3(i)); break;
+                default: elements.add(Collections.singletonMap("value", i));
+            }
+        }
+        final JexlScript script = jexl.createScript("var s = 0; for (var e : list) { s += e.value }; s", "list");
+        Assert.assertEquals(59 * 30, script.execute(null, elements));
+        final InlineCache ic = site(script);
+        Assert.assertEquals(3, ic.size());
+        Assert.assertEquals(3, ic.getMisses());
+        Assert.assertEquals(57, ic.getHits());
+    }
+}
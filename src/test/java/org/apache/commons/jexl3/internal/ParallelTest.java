@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.introspection.JexlPermissions;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks parallel projections and selections.
+ */
+public class ParallelTest {
+    private static final String[] SOURCES = {
+        "[...list.{@ * 2}]",
+        "[...list.{x -> x * x}]",
+        "[...list.{(i, x) -> i * 100 + x}]",
+        "[...list.{@, @ + 1}]",
+        "[...list.{@ : @ * 3}]",
+        "[...list.{'k' : @, 'v' : @ * 2}]",
+        "[...list.[@ % 3 == 0]]",
+        "[...list.[x -> x > 40]]",
+        "[...list.[(i, x) -> i % 2 == 0]]",
+        "[...list.[@ % 2 == 0].{@ * 10}.[@ > 100]]",
+        "[...(...list).{@ + 1}]",
+        "[...array.{@ - 1}]",
+        "[...ints.{@ * @}]",
+        "[...ints.[@ > 5]]",
+        "[...(1 .. 50).{@ * 2}]",
+        "[...(50 .. 1).[@ % 7 == 0]]",
+        "[...(1L .. 30L).{@ + 1}]",
+        "[...map.{@.key}]",
+        "[...list.[< 5]]",
+        "[...list.[> 45]]",
+        "var y = 10; [...list.{@ + y}]",
+        "[...list.{@.foo}]",
+        "[...list.{1 / (@ - 25)}]",
+        "[...empty.{@ + 1}]",
+        "[...one.{@ + 1}]"
+    };
+
+    private static JexlContext context() {
+        final List<Integer> list = new ArrayList<>();
+        for (int i = 1; i <= 50; ++i) {
+            list.add(i);
+        }
+        final Map<String, Integer> map = new LinkedHashMap<>();
+        map.put("one", 1);
+        map.put("two", 2);
+        final JexlContext ctxt = new MapContext();
+        ctxt.set("list", list);
+        ctxt.set("array", list.toArray());
+        ctxt.set("ints", new int[]{3, 5, 7, 9, 11});
+        ctxt.set("map", map);
+        ctxt.set("empty", Collections.emptyList());
+        ctxt.set("one", Collections.singletonList(1));
+        return ctxt;
+    }
+
+    private static Object result(final JexlEngine jexl, final String src) {
+        try {
+            return jexl.createScript(src).execute(context());
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    @Test
+    public void testResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine sequential = new JexlBuilder().strict(strict).create();
+            final JexlEngine parallel = new JexlBuilder().strict(strict).parallel(true).create();
+            for (final String src : SOURCES) {
+                final Object expected = result(sequential, src);
+                Assert.assertTrue(src + ": " + expected, Objects.deepEquals(expected, result(parallel, src)));
+            }
+        }
+    }
+
+    @Test
+    public void testPragma() {
+        final String src = "var l = 1 .. 3; ...l.{@ * 2}";
+        final JexlEngine jexl = new JexlBuilder().create();
+        Assert.assertFalse(jexl.createScript(src).execute(null) instanceof Parallel.Elements);
+        final Object result = jexl.createScript("#pragma jexl.options '+parallel'\n" + src).execute(null);
+        Assert.assertTrue(result instanceof Parallel.Elements);
+    }
+
+    /**
+     * Records the threads evaluating elements.
+     */
+    public static class Threads {
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        public int record(final int value) throws InterruptedException {
+            threads.add(Thread.currentThread());
+            Thread.sleep(5);
+            return value;
+        }
+
+        public int size() {
+            return threads.size();
+        }
+    }
+
+    @Test
+    public void testWorkers() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final JexlEngine jexl = new JexlBuilder().permissions(JexlPermissions.UNRESTRICTED)
+                .executor(pool).parallel(true).create();
+            final Threads threads = new Threads();
+            final JexlContext ctxt = new MapContext();
+            ctxt.set("threads", threads);
+            final Object result = jexl.createScript("[...(1 .. 40).{x -> threads.record(x) * 2}]").execute(ctxt);
+            final int[] expected = new int[40];
+            for (int i = 0; i < 40; ++i) {
+                expected[i] = (i + 1) * 2;
+            }
+            Assert.assertArrayEquals(expected, (int[]) result);
+            Assert.assertTrue(threads.size() > 1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testNested() {
+        final JexlEngine jexl = new JexlBuilder().parallel(true).create();
+        final JexlScript script = jexl.createScript("[...(1 .. 4).{x -> [...(1 .. 3).{y -> x * 10 + y}]}]");
+        final Object[] result = (Object[]) script.execute(null);
+        Assert.assertEquals(4, result.length);
+        Assert.assertArrayEquals(new int[]{21, 22, 23}, (int[]) result[1]);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.parser.JexlScriptParser;
+import org.apache.commons.jexl3.parser.Parser;
+import org.apache.commons.jexl3.parser.StringProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the parser pool behavior.
+ */
+public class ParserPoolTest {
+
+    @Test
+    public void testAcquireRelease() {
+        final ParserPool pool = new ParserPool(2, () -> new Parser(new StringProvider(";")));
+        Assert.assertEquals(2, pool.capacity());
+        Assert.assertEquals(1, pool.size());
+        final JexlScriptParser p0 = pool.acquire();
+        final JexlScriptParser p1 = pool.acquire();
+        final JexlScriptParser p2 = pool.acquire();
+        Assert.assertEquals(1, pool.hits());
+        Assert.assertEquals(2, pool.misses());
+        Assert.assertEquals(0, pool.size());
+        pool.release(p0);
+        pool.release(p1);
+        // pool is full, p2 is dropped
+        pool.release(p2);
+        Assert.assertEquals(2, pool.size());
+        Assert.assertEquals(3, pool.borrowed());
+        Assert.assertEquals(3, pool.returned());
+        final JexlScriptParser p3 = pool.acquire();
+        Assert.assertTrue(p3 == p0 || p3 == p1);
+        Assert.assertEquals(2, pool.hits());
+    }
+
+    @Test
+    public void testConcurrentParse() throws Exception {
+        final int nthreads = 4;
+        final Engine jexl = (Engine) new JexlBuilder().cache(0).parserPool(nthreads).create();
+        Assert.assertEquals(nthreads, jexl.getParserPool().capacity());
+        final ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < nthreads; ++t) {
+                final int base = t;
+                futures.add(executor.submit((Callable<Integer>) () -> {
+                    int sum = 0;
+                    for (int i = 0; i < 256; ++i) {
+                        final JexlScript script = jexl.createScript("(x, y) -> { x + y + " + base + " }");
+                        sum += ((Number) script.execute(null, i, 1)).intValue();
+                    }
+                    return sum;
+                }));
+            }
+            for (int t = 0; t < nthreads; ++t) {
+                Assert.assertEquals(256 * 257 / 2 + 256 * t, futures.get(t).get().intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final ParserPool pool = jexl.getParserPool();
+        Assert.assertEquals(nthreads * 256, pool.borrowed());
+        // every borrowed parser is given back, the pool never holds more than its capacity
+        Assert.assertEquals(pool.borrowed(), pool.returned());
+        Assert.assertTrue(pool.size() >= 1 && pool.size() <= pool.capacity());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlDebugger;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks fused projection and selection chains.
+ */
+public class PipelineTest {
+    private static final String[] SOURCES = {
+        "[...list.[@ > 3].{@ * 2}.[@ < 15]]",
+        "[...(...list).[@ > 0].{@ * 2}.[< 3]]",
+        "[...list.{x -> x + 1}.[x -> x % 2 == 0]]",
+        "[...list.[> 2].{@ * 10}]",
+        "[...list.{@ * 10}.[> 2].[< 2]]",
+        "[...list.[< 4].[> 1].{@}]",
+        "[...list.[@ % 2 == 0].[< 0].{@}]",
+        "[...list.{x -> { var y = x * 2; y + 1 }}.[@ > 5]]",
+        "[...list.{x -> { var y; if (x > 3) y = x; y }}.{@}]",
+        "[...list.{(int x) -> x * 2}.{@ + 1}]",
+        "[...list.{(i, x) -> i * 100 + x}.[@ > 200]]",
+        "[...list.[(i, x) -> i % 2 == 0].{@ * 3}]",
+        "[...list.{@, @ * 2}.{@[1]}]",
+        "var k = 3; [...list.{x -> x * k}.[@ > k]]",
+        "var k = 3; [...list.{x -> (y -> x + y + k)}.{f -> f(1)}]",
+        "[...list.{x -> x.foo}.{@}]",
+        "[...list.{x -> 10 / (x - 3)}.{@}]",
+        "[...list.[@ > 10].{@ + 1}]",
+        "[...none.[@ > 0].{@ + 1}]",
+        "[...map.{@.value}.[@ > 1]]",
+        "[...(1 .. 8).[@ % 2 == 1].{@ * @}.[> 1]]",
+        "var s = 0; for (var e : ...list.{@ * 2}.[@ > 4]) { s += e } s",
+        "var l = {1, 2, 3}; [...l.{x -> { l.size() + x }}.[@ > 4]]"
+    };
+
+    private static JexlContext context() {
+        final List<Integer> list = new ArrayList<>();
+        for (int i = 1; i <= 9; ++i) {
+            list.add(i);
+        }
+        final JexlContext ctxt = new MapContext();
+        ctxt.set("list", list);
+        ctxt.set("none", new ArrayList<>());
+        final java.util.Map<String, Integer> map = new java.util.LinkedHashMap<>();
+        map.put("a", 1);
+        map.put("b", 2);
+        map.put("c", 3);
+        ctxt.set("map", map);
+        return ctxt;
+    }
+
+    private static Object result(final JexlEngine jexl, final String src) {
+        try {
+            return jexl.createScript(src).execute(context());
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    /**
+     * A disabled probe, chains are then evaluated one stage iterator after the other.
+     * @return the builder of an engine that does not fuse chains
+     */
+    private static JexlBuilder stacked() {
+        return new JexlBuilder().probe(new JexlDebugger() { });
+    }
+
+    @Test
+    public void testResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine stacked = stacked().strict(strict).create();
+            final JexlEngine fused = new JexlBuilder().strict(strict).create();
+            for (final String src : SOURCES) {
+                final Object expected = result(stacked, src);
+                Assert.assertTrue(src + ": " + expected, Objects.deepEquals(expected, result(fused, src)));
+            }
+        }
+    }
+
+    @Test
+    public void testFused() {
+        final JexlEngine jexl = new JexlBuilder().create();
+        final JexlContext ctxt = context();
+        Assert.assertTrue(jexl.createScript("...list.[@ > 3].{@ * 2}.[< 2]").execute(ctxt) instanceof Pipeline);
+        // a single stage is not fused, nor is a projection using the index
+        Assert.assertFalse(jexl.createScript("...list.{@ * 2}").execute(ctxt) instanceof Pipeline);
+        Assert.assertFalse(jexl.createScript("...list.[@ > 3].{(i, x) -> i}").execute(ctxt) instanceof Pipeline);
+        Assert.assertFalse(stacked().create().createScript("...list.[@ > 3].{@ * 2}").execute(ctxt) instanceof Pipeline);
+    }
+}
@@ -16,10 +16,15 @@
  */
 package org.apache.commons.jexl3.internal;
 
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlDebugger;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
 import org.apache.commons.jexl3.JexlTestCase;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -30,6 +35,33 @@ import org.junit.Test;
  */
 @SuppressWarnings({"UnnecessaryBoxing", "AssertEqualsBetweenInconvertibleTypes"})
 public class RangeTest extends JexlTestCase {
+    /** Range loops evaluated with and without the primitive range cursors. */
+    private static final String[] LOOPS = {
+        "var s = 0; for (var i : 1 .. 100) { s += i } s",
+        "var s = 0; for (var i : 100 .. 1) { s = s * 3 + i } s",
+        "long s = 0; for (var i : 4294967296 .. 4294967306) { s += i - 4294967296 } s",
+        "var c = null; for (var i : 1 .. 2) { c = i } c",
+        "var c = null; for (var i : 4294967296 .. 4294967297) { c = i } c",
+        "var c = null; for (long i : 1 .. 2) { c = i } c",
+        "var c = null; for (int i : 1 .. 2) { c = i } c",
+        "double s = 0; for (double d : 1 .. 3) { s += d } s",
+        "var s = ''; for (var i : 1 .. 3) { i = i + 'x'; s += i } s",
+        "var s = 0; for (var i : 1 .. 3) { i = i * 10; s += i } s",
+        "var s = 0; for (var i : 1 .. 3) { i += 2147483647; s = i } s",
+        "var s = 0; var f = null; for (var i : 1 .. 3) { f = () -> i * 10; s += f() } s",
+        "var s = 0; for (let i : 1 .. 10) { if (i > 3) break; s += i } s",
+        "var s = 0; for (var i : 1 .. 10) { if (i % 2 == 0) continue; s += i } s",
+        "var s = 0; for (var i : 1 .. 3) { for (var j : 1 .. i) { s += i * j } } s",
+        "var s = 0; for (var i : 1 .. 5) { s += i.intValue() } s",
+        "var s = 0; for (var i : ...(1 .. 4)) { s += i } s",
+        "var s = 0; for (var i : ...(1 .. 9).[@ % 2 == 0].{@ * 3}) { s += i } s",
+        "var s = 0; for (var i, v : 3 .. 5) { s += i * v } s",
+        "[...(1 .. 10).[> 3].{@ * 2}.[< 4]]",
+        "[...(10 .. 1).[> 8].{@}.[@ > 0]]",
+        "[...(4294967296 .. 4294967298).[> 1].{@}.{@}]",
+        "[...(1 .. 5).[> 0].{@ - 1}.{@}]",
+        "var r = ...(1 .. 3); [...r]"
+    };
 
     public RangeTest() {
         super("InternalTest");
@@ -170,5 +202,55 @@ public class RangeTest extends JexlTestCase {
         }
 
     }
-}
 
+    private static Object result(final JexlEngine jexl, final String src) {
+        try {
+            return jexl.createScript(src).execute(null);
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    @Test
+    public void testLoops() {
+        // a probe disables the primitive range cursors
+        final JexlEngine boxed = new JexlBuilder().probe(new JexlDebugger() { }).create();
+        final JexlEngine jexl = new JexlBuilder().create();
+        for (final String src : LOOPS) {
+            final Object expected = result(boxed, src);
+            final Object actual = result(jexl, src);
+            Assert.assertTrue(src + ": " + expected + " / " + actual, Objects.deepEquals(expected, actual));
+            if (expected != null) {
+                Assert.assertEquals(src, expected.getClass(), actual.getClass());
+            }
+        }
+    }
+
+    @Test
+    public void testRangeIterator() {
+        final RangeIterator ri = RangeIterator.of(IntegerRange.create(Integer.MAX_VALUE - 1, Integer.MAX_VALUE));
+        Assert.assertTrue(ri.isInteger());
+        Assert.assertEquals(Integer.MAX_VALUE - 1, ri.next());
+        Assert.assertEquals(Integer.MAX_VALUE, ri.nextLong());
+        Assert.assertFalse(ri.hasNext());
+        final RangeIterator rl = RangeIterator.of(LongRange.create(Long.MAX_VALUE, Long.MIN_VALUE));
+        Assert.assertFalse(rl.isInteger());
+        Assert.assertEquals(Long.MAX_VALUE, rl.next());
+        Assert.assertEquals(10L, rl.skip(10L));
+        Assert.assertEquals(Long.MAX_VALUE - 11L, rl.nextLong());
+        final RangeIterator rs = RangeIterator.of(IntegerRange.create(1, 5));
+        Assert.assertEquals(5L, rs.skip(10L));
+        Assert.assertFalse(rs.hasNext());
+        Assert.assertEquals(0L, rs.skip(1L));
+        try {
+            rs.next();
+            Assert.fail();
+        } catch (final NoSuchElementException xns) {
+            // ok
+        }
+        Assert.assertNull(RangeIterator.of(Collections.emptyList()));
+        final JexlEngine jexl = new JexlBuilder().create();
+        Assert.assertEquals(2, jexl.createScript(
+            "var n = 0; for (var i : 2147483646 .. 2147483647) { n += 1 } n").execute(null));
+    }
+}
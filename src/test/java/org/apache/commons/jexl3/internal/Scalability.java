@@ -0,0 +1,760 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.management.LockInfo;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlEvalContext;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.JxltEngine;
+import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.introspection.JexlPermissions;
+
+/**
+ * A scalability harness running a mixed parse and evaluation workload on one shared engine from 1 to N threads.
+ * <p>Each step creates an engine, runs the workload from a number of threads for a warm-up period then for a
+ * measured period, and reports the throughput, the speedup and efficiency relative to the first step and the
+ * time the workers spent blocked or waiting. During the measured period, the workers are sampled through the
+ * thread management bean; samples of a worker blocked or waiting on a lock are counted by lock class and
+ * innermost JEXL frame, which gives the contention profile of the step.</p>
+ * <p>The operations target the shared state of an engine: the parser pool and the script cache when parsing,
+ * the class maps and inline caches when evaluating over many classes, the template cache and its clearing,
+ * and the per-evaluation import resolver when options import packages.</p>
+ * <p>Results are written as CSV and can be compared with a baseline recorded on the same machine, so the
+ * harness can be used as a regression gate; see ScalabilityTest and {@link #main(String[])}.</p>
+ */
+public class Scalability {
+    /**
+     * The workload operations.
+     */
+    public enum Operation {
+        /** Parses a source never seen before: parser pool, cache miss and insertion. */
+        PARSE(100),
+        /** Parses one of a few sources: cache hit. */
+        CACHED(300),
+        /** Evaluates a shared script looping over bean properties. */
+        EVALUATE(290),
+        /** Evaluates a shared script over collections of many classes: class maps and inline caches. */
+        INTROSPECT(150),
+        /** Creates and renders one of a few templates: template cache. */
+        TEMPLATE(100),
+        /** Evaluates with options importing packages: import resolver. */
+        IMPORTS(59),
+        /** Clears the template cache. */
+        CLEAR(1);
+
+        /** The weight of the operation, out of 1000. */
+        private final int weight;
+
+        Operation(final int weight) {
+            this.weight = weight;
+        }
+
+        /**
+         * @return the weight of the operation, out of 1000
+         */
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Picks an operation according to weights.
+         * @param rnd a random number between 0 and 999
+         * @return the operation
+         */
+        static Operation pick(final int rnd) {
+            int sum = 0;
+            for (final Operation op : values()) {
+                sum += op.weight;
+                if (rnd < sum) {
+                    return op;
+                }
+            }
+            return CACHED;
+        }
+    }
+
+    /** The sources of cached parses. */
+    private static final String[] SOURCES = {
+        "x + y", "x * y - 1", "x > y ? x : y", "[x, y, x + y]", "{ 'x' : x, 'y' : y }", "x =~ [1, 2, 3]",
+        "var t = x; t += y; t", "size([x, y])"
+    };
+    /** The templates. */
+    private static final String[] TEMPLATES = {
+        "hello ${name}!",
+        "$$ for (var i : 0 .. 3) {\n${name}:${i}\n$$ }\n",
+        "${name.length()} ${name.toUpperCase()}",
+        "#{name} ${1 + 2}"
+    };
+
+    /**
+     * The bean of evaluated scripts.
+     */
+    public static class Bean {
+        public int getValue() {
+            return 3;
+        }
+
+        public String getName() {
+            return "jexl";
+        }
+    }
+
+    /** The engine builder. */
+    private final JexlBuilder builder;
+    /** The thread management bean. */
+    private final ThreadMXBean mxbean = ManagementFactory.getThreadMXBean();
+    /** The warm-up period per step, in milliseconds. */
+    private long warmup = 1000L;
+    /** The measured period per step, in milliseconds. */
+    private long duration = 5000L;
+    /** The contention sampling period, in milliseconds. */
+    private long sampling = 5L;
+
+    /**
+     * Creates a harness with a default engine configuration.
+     */
+    public Scalability() {
+        this(new JexlBuilder().cache(512));
+    }
+
+    /**
+     * Creates a harness.
+     * <p>The builder is used to create an engine for each step; permissions are set to unrestricted.</p>
+     * @param builder the engine builder
+     */
+    public Scalability(final JexlBuilder builder) {
+        this.builder = builder.permissions(JexlPermissions.UNRESTRICTED);
+    }
+
+    /**
+     * Sets the periods of each step.
+     * @param warmupMillis the warm-up period in milliseconds
+     * @param durationMillis the measured period in milliseconds
+     * @return this harness
+     */
+    public Scalability periods(final long warmupMillis, final long durationMillis) {
+        this.warmup = warmupMillis;
+        this.duration = durationMillis;
+        return this;
+    }
+
+    /**
+     * Sets the contention sampling period.
+     * <p>Each sample captures the stacks of all workers, which briefly pauses them; a shorter period gives
+     * a finer profile at the cost of throughput.</p>
+     * @param millis the period in milliseconds
+     * @return this harness
+     */
+    public Scalability sampling(final long millis) {
+        this.sampling = Math.max(1L, millis);
+        return this;
+    }
+
+    /**
+     * The state shared by the workers of a step.
+     */
+    private static final class Workload {
+        private final JexlEngine jexl;
+        private final JxltEngine jxlt;
+        private final JexlContext context;
+        private final JexlContext importing;
+        private final JexlScript evaluate;
+        private final JexlScript introspect;
+        private final JexlScript imports;
+        private final Object[] collections;
+
+        Workload(final JexlEngine jexl) {
+            this.jexl = jexl;
+            this.jxlt = jexl.createJxltEngine();
+            this.context = new MapContext();
+            context.set("bean", new Bean());
+            context.set("name", "jexl");
+            final JexlEvalContext options = new JexlEvalContext();
+            options.getEngineOptions().setImports(Arrays.asList("java.util", "java.util.concurrent"));
+            this.importing = options;
+            this.evaluate = jexl.createScript("var s = 0; for (var i : 0 .. 9) { s += bean.value * i } s + size(bean.name)");
+            this.introspect = jexl.createScript("x.isEmpty() ? -1 : x.size() + x.hashCode() * 0", "x");
+            this.imports = jexl.createScript("x * 2 + 1", "x");
+            this.collections = collections();
+        }
+
+        /**
+         * @return non-empty collections and maps of 16 classes
+         */
+        private static Object[] collections() {
+            final List<Collection<Object>> collections = Arrays.asList(new ArrayList<>(), new LinkedList<>(),
+                new HashSet<>(), new TreeSet<>(), new ArrayDeque<>(), new Vector<>(), new PriorityQueue<>(),
+                new LinkedHashSet<>(), new CopyOnWriteArrayList<>());
+            final List<Map<Object, Object>> maps = Arrays.asList(new HashMap<>(), new TreeMap<>(),
+                new LinkedHashMap<>(), new ConcurrentHashMap<>(), new IdentityHashMap<>(),
+                Collections.synchronizedMap(new HashMap<>()), new Hashtable<>());
+            final List<Object> all = new ArrayList<>();
+            for (final Collection<Object> collection : collections) {
+                collection.add(1);
+                collection.add(2);
+                all.add(collection);
+            }
+            for (final Map<Object, Object> map : maps) {
+                map.put(Operation.PARSE, 1);
+                map.put(Operation.CACHED, 2);
+                all.add(map);
+            }
+            return all.toArray();
+        }
+
+        /**
+         * Runs an operation.
+         * @param op the operation
+         * @param thread the worker number
+         * @param count the operation count of the worker
+         * @return true if the result is correct
+         */
+        boolean run(final Operation op, final int thread, final long count) {
+            final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            switch (op) {
+                case PARSE: {
+                    final JexlScript script = jexl.createScript("x + " + thread + " * y - " + count, "x", "y");
+                    return Integer.valueOf(1 + thread - (int) count).equals(script.execute(null, 1, 1));
+                }
+                case CACHED:
+                    return jexl.createScript(SOURCES[rnd.nextInt(SOURCES.length)], "x", "y") != null;
+                case EVALUATE:
+                    return Integer.valueOf(139).equals(evaluate.execute(context));
+                case INTROSPECT:
+                    return Integer.valueOf(2).equals(introspect.execute(null, collections[rnd.nextInt(collections.length)]));
+                case TEMPLATE: {
+                    final StringWriter writer = new StringWriter();
+                    jxlt.createTemplate(TEMPLATES[rnd.nextInt(TEMPLATES.length)]).evaluate(context, writer);
+                    return writer.getBuffer().length() > 0;
+                }
+                case IMPORTS:
+                    return Integer.valueOf(43).equals(imports.execute(importing, 21));
+                case CLEAR:
+                    jxlt.clearCache();
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * The result of a step.
+     */
+    public static final class Result {
+        /** The number of threads. */
+        private final int threads;
+        /** The throughput in operations per second. */
+        private final double throughput;
+        /** The operation counts. */
+        private final Map<Operation, Long> operations;
+        /** The number of incorrect results or failures. */
+        private final long errors;
+        /** The first failure, if any. */
+        private final Throwable failure;
+        /** The number of times workers blocked on a monitor, -1 if not monitored. */
+        private final long blockedCount;
+        /** The time workers were blocked on a monitor, in milliseconds, -1 if not monitored. */
+        private final long blockedTime;
+        /** The number of times workers waited, -1 if not monitored. */
+        private final long waitedCount;
+        /** The time workers waited, in milliseconds, -1 if not monitored. */
+        private final long waitedTime;
+        /** The number of samples. */
+        private final long samples;
+        /** The contended samples per lock and site, most contended first. */
+        private final Map<String, Long> contention;
+
+        Result(final int threads, final long nanos, final Map<Operation, Long> operations, final long errors,
+               final Throwable failure, final long[] monitoring, final long samples, final Map<String, Long> contention) {
+            this.threads = threads;
+            this.operations = operations;
+            this.errors = errors;
+            this.failure = failure;
+            this.blockedCount = monitoring[0];
+            this.blockedTime = monitoring[1];
+            this.waitedCount = monitoring[2];
+            this.waitedTime = monitoring[3];
+            this.samples = samples;
+            this.contention = contention;
+            long count = 0;
+            for (final long ops : operations.values()) {
+                count += ops;
+            }
+            this.throughput = nanos > 0 ? count * 1e9d / nanos : 0d;
+        }
+
+        /**
+         * Creates a result from a baseline.
+         * @param threads the number of threads
+         * @param throughput the throughput in operations per second
+         */
+        Result(final int threads, final double throughput) {
+            this.threads = threads;
+            this.throughput = throughput;
+            this.operations = Collections.emptyMap();
+            this.errors = 0L;
+            this.failure = null;
+            this.blockedCount = -1L;
+            this.blockedTime = -1L;
+            this.waitedCount = -1L;
+            this.waitedTime = -1L;
+            this.samples = 0L;
+            this.contention = Collections.emptyMap();
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public Map<Operation, Long> getOperations() {
+            return operations;
+        }
+
+        public long getOperationCount() {
+            long count = 0;
+            for (final long ops : operations.values()) {
+                count += ops;
+            }
+            return count;
+        }
+
+        /**
+         * @return the throughput in operations per second
+         */
+        public double getThroughput() {
+            return throughput;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public long getBlockedCount() {
+            return blockedCount;
+        }
+
+        public long getBlockedTime() {
+            return blockedTime;
+        }
+
+        public long getWaitedCount() {
+            return waitedCount;
+        }
+
+        public long getWaitedTime() {
+            return waitedTime;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        /**
+         * @return the contended samples per lock class and site, most contended first
+         */
+        public Map<String, Long> getContention() {
+            return contention;
+        }
+
+        /**
+         * @return the ratio of worker samples blocked or waiting on a lock
+         */
+        public double getContentionRatio() {
+            long contended = 0;
+            for (final long count : contention.values()) {
+                contended += count;
+            }
+            return samples == 0 ? 0d : (double) contended / samples;
+        }
+    }
+
+    /**
+     * Describes a lock and the innermost engine frame waiting on it.
+     * @param info the worker thread info
+     * @return the description or null if the worker is not blocked or waiting on a lock
+     */
+    static String contentionSite(final ThreadInfo info) {
+        final Thread.State state = info.getThreadState();
+        final LockInfo lock = info.getLockInfo();
+        if (lock == null || state == Thread.State.RUNNABLE || state == Thread.State.NEW) {
+            return null;
+        }
+        final String harness = Scalability.class.getName();
+        String site = null;
+        for (final StackTraceElement frame : info.getStackTrace()) {
+            final String cls = frame.getClassName();
+            if (cls.startsWith("org.apache.commons.jexl3.") && !cls.startsWith(harness)) {
+                site = cls.substring(cls.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+                break;
+            }
+        }
+        if (site == null) {
+            final StackTraceElement[] frames = info.getStackTrace();
+            site = frames.length > 0 ? frames[0].getClassName() + "." + frames[0].getMethodName() : "?";
+        }
+        final String lockClass = lock.getClassName();
+        return (state == Thread.State.BLOCKED ? "blocked on " : "waiting on ")
+            + lockClass.substring(lockClass.lastIndexOf('.') + 1) + " in " + site;
+    }
+
+    /**
+     * Runs one step.
+     * @param nthreads the number of worker threads
+     * @return the result
+     * @throws InterruptedException if interrupted
+     */
+    public Result run(final int nthreads) throws InterruptedException {
+        final Workload workload = new Workload(builder.create());
+        final Operation[] ops = Operation.values();
+        final AtomicLongArray counts = new AtomicLongArray(nthreads * (ops.length + 1));
+        final Throwable[] failures = new Throwable[1];
+        final Thread[] workers = new Thread[nthreads];
+        final long[] ids = new long[nthreads];
+        final AtomicBoolean stop = new AtomicBoolean();
+        for (int t = 0; t < nthreads; ++t) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                final ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                final int base = thread * (ops.length + 1);
+                long count = 0;
+                while (!stop.get()) {
+                    final Operation op = Operation.pick(rnd.nextInt(1000));
+                    boolean ok;
+                    try {
+                        ok = workload.run(op, thread, count++);
+                    } catch (final RuntimeException | StackOverflowError xany) {
+                        synchronized (failures) {
+                            if (failures[0] == null) {
+                                failures[0] = xany;
+                            }
+                        }
+                        ok = false;
+                    }
+                    counts.lazySet(base + op.ordinal(), counts.get(base + op.ordinal()) + 1);
+                    if (!ok) {
+                        counts.lazySet(base + ops.length, counts.get(base + ops.length) + 1);
+                    }
+                }
+            }, "jexl-scalability-" + t);
+            workers[t].setDaemon(true);
+            ids[t] = workers[t].getId();
+        }
+        final boolean monitored = mxbean.isThreadContentionMonitoringSupported();
+        final boolean wasMonitoring = monitored && mxbean.isThreadContentionMonitoringEnabled();
+        if (monitored && !wasMonitoring) {
+            mxbean.setThreadContentionMonitoringEnabled(true);
+        }
+        try {
+            for (final Thread worker : workers) {
+                worker.start();
+            }
+            Thread.sleep(warmup);
+            // measure
+            final long[] before = snapshot(counts);
+            final long[] monitoringBefore = monitoring(ids, monitored);
+            final Map<String, Long> contention = new HashMap<>();
+            long samples = 0;
+            final long start = System.nanoTime();
+            final long end = start + duration * 1_000_000L;
+            long now = start;
+            while (now < end) {
+                for (final ThreadInfo info : mxbean.getThreadInfo(ids, 32)) {
+                    if (info != null) {
+                        samples += 1;
+                        final String site = contentionSite(info);
+                        if (site != null) {
+                            contention.merge(site, 1L, Long::sum);
+                        }
+                    }
+                }
+                Thread.sleep(sampling);
+                now = System.nanoTime();
+            }
+            final long[] after = snapshot(counts);
+            final long[] monitoringAfter = monitoring(ids, monitored);
+            final long nanos = now - start;
+            stop.set(true);
+            for (final Thread worker : workers) {
+                worker.join();
+            }
+            final Map<Operation, Long> operations = new EnumMap<>(Operation.class);
+            long errors = 0;
+            for (int t = 0; t < nthreads; ++t) {
+                final int base = t * (ops.length + 1);
+                for (final Operation op : ops) {
+                    operations.merge(op, after[base + op.ordinal()] - before[base + op.ordinal()], Long::sum);
+                }
+                errors += after[base + ops.length] - before[base + ops.length];
+            }
+            final long[] monitoring = new long[4];
+            for (int m = 0; m < monitoring.length; ++m) {
+                monitoring[m] = monitored ? monitoringAfter[m] - monitoringBefore[m] : -1L;
+            }
+            final List<Map.Entry<String, Long>> sorted = new ArrayList<>(contention.entrySet());
+            sorted.sort((l, r) -> Long.compare(r.getValue(), l.getValue()));
+            final Map<String, Long> profile = new LinkedHashMap<>();
+            for (final Map.Entry<String, Long> entry : sorted) {
+                profile.put(entry.getKey(), entry.getValue());
+            }
+            final Throwable failure;
+            synchronized (failures) {
+                failure = failures[0];
+            }
+            return new Result(nthreads, nanos, operations, errors, failure, monitoring, samples, profile);
+        } finally {
+            stop.set(true);
+            if (monitored && !wasMonitoring) {
+                mxbean.setThreadContentionMonitoringEnabled(false);
+            }
+        }
+    }
+
+    private static long[] snapshot(final AtomicLongArray counts) {
+        final long[] values = new long[counts.length()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = counts.get(i);
+        }
+        return values;
+    }
+
+    /**
+     * Sums the blocked and waited counts and times of threads.
+     * @param ids the thread ids
+     * @param monitored whether contention monitoring is enabled
+     * @return blocked count, blocked time, waited count and waited time
+     */
+    private long[] monitoring(final long[] ids, final boolean monitored) {
+        final long[] values = new long[4];
+        if (monitored) {
+            for (final ThreadInfo info : mxbean.getThreadInfo(ids)) {
+                if (info != null) {
+                    values[0] += info.getBlockedCount();
+                    values[1] += Math.max(0L, info.getBlockedTime());
+                    values[2] += info.getWaitedCount();
+                    values[3] += Math.max(0L, info.getWaitedTime());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Runs steps for each number of threads.
+     * <p>A first step with the largest number of threads is run and discarded so that the code is compiled
+     * before the first measured step.</p>
+     * @param threads the numbers of threads
+     * @return the results
+     * @throws InterruptedException if interrupted
+     */
+    public List<Result> sweep(final int... threads) throws InterruptedException {
+        final List<Result> results = new ArrayList<>(threads.length);
+        if (threads.length > 0) {
+            run(threads[threads.length - 1]);
+        }
+        for (final int nthreads : threads) {
+            results.add(run(nthreads));
+        }
+        return results;
+    }
+
+    /**
+     * The numbers of threads from 1 to max, doubling at each step.
+     * @param max the maximum number of threads
+     * @return the numbers of threads, including max
+     */
+    public static int[] steps(final int max) {
+        final List<Integer> steps = new ArrayList<>();
+        for (int n = 1; n < max; n *= 2) {
+            steps.add(n);
+        }
+        steps.add(Math.max(1, max));
+        final int[] array = new int[steps.size()];
+        for (int s = 0; s < array.length; ++s) {
+            array[s] = steps.get(s);
+        }
+        return array;
+    }
+
+    /**
+     * Writes the throughput curve and the contention profile of each step.
+     * @param results the results, the first one being the reference of speedup and efficiency
+     * @param out the output
+     * @param sites the maximum number of contention sites per step
+     * @throws IOException if writing fails
+     */
+    public static void report(final List<Result> results, final Appendable out, final int sites) throws IOException {
+        out.append(String.format("%8s %14s %8s %10s %10s %12s %10s %12s %8s%n", "threads", "ops/s", "speedup",
+            "efficiency", "blocked", "blocked(ms)", "waited", "waited(ms)", "errors"));
+        final double reference = results.isEmpty() ? 0d : results.get(0).getThroughput() / results.get(0).getThreads();
+        for (final Result result : results) {
+            final double speedup = result.getThroughput() / (reference * results.get(0).getThreads());
+            out.append(String.format("%8d %14.0f %8.2f %10.2f %10d %12d %10d %12d %8d%n", result.getThreads(),
+                result.getThroughput(), speedup, speedup * results.get(0).getThreads() / result.getThreads(),
+                result.getBlockedCount(), result.getBlockedTime(), result.getWaitedCount(), result.getWaitedTime(),
+                result.getErrors()));
+        }
+        for (final Result result : results) {
+            out.append(String.format("%nthreads=%d contention=%.1f%% of %d samples, operations=%s%n",
+                result.getThreads(), result.getContentionRatio() * 100d, result.getSamples(), result.getOperations()));
+            int count = 0;
+            for (final Map.Entry<String, Long> entry : result.getContention().entrySet()) {
+                if (count++ >= sites) {
+                    break;
+                }
+                out.append(String.format("  %6.2f%% %s%n", entry.getValue() * 100d / result.getSamples(), entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Writes the throughput curve as CSV.
+     * @param results the results
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    public static void writeCsv(final List<Result> results, final Appendable out) throws IOException {
+        out.append("threads,throughput,errors,blockedMillis,waitedMillis,contention\n");
+        for (final Result result : results) {
+            out.append(String.format("%d,%.1f,%d,%d,%d,%.4f%n", result.getThreads(), result.getThroughput(),
+                result.getErrors(), result.getBlockedTime(), result.getWaitedTime(), result.getContentionRatio()));
+        }
+    }
+
+    /**
+     * Reads the throughput curve written as CSV.
+     * @param in the input
+     * @return the results, only carrying their number of threads and throughput
+     * @throws IOException if reading fails
+     */
+    public static List<Result> readCsv(final Reader in) throws IOException {
+        final List<Result> results = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(in);
+        String line = reader.readLine();
+        while ((line = reader.readLine()) != null) {
+            final String[] fields = line.trim().split(",");
+            if (fields.length >= 2) {
+                results.add(new Result(Integer.parseInt(fields[0]), Double.parseDouble(fields[1])));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Compares results with a baseline.
+     * @param results the results
+     * @param baseline the baseline, recorded on the same machine
+     * @param tolerance the accepted throughput loss, between 0 and 1
+     * @return the descriptions of errors and of steps whose throughput is below the tolerated baseline
+     */
+    public static List<String> regressions(final List<Result> results, final List<Result> baseline, final double tolerance) {
+        final Map<Integer, Double> expected = new HashMap<>();
+        for (final Result base : baseline) {
+            expected.put(base.getThreads(), base.getThroughput());
+        }
+        final List<String> regressions = new ArrayList<>();
+        for (final Result result : results) {
+            if (result.getErrors() > 0) {
+                regressions.add(String.format("threads=%d: %d errors, %s", result.getThreads(), result.getErrors(),
+                    result.getFailure()));
+            }
+            final Double base = expected.get(result.getThreads());
+            if (base != null && result.getThroughput() < base * (1d - tolerance)) {
+                regressions.add(String.format("threads=%d: %.0f ops/s, baseline %.0f ops/s (-%.1f%%)",
+                    result.getThreads(), result.getThroughput(), base, (1d - result.getThroughput() / base) * 100d));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Runs the harness from 1 to N threads and prints the report.
+     * <p>Arguments, all optional: the maximum number of threads (2 x cores), the measured seconds per step (5),
+     * a CSV file to write the curve to, a baseline CSV file to compare with and the tolerance (0.1).
+     * Exits with status 1 if the comparison finds regressions.</p>
+     * @param args the arguments
+     * @throws Exception if the harness fails
+     */
+    public static void main(final String[] args) throws Exception {
+        final int max = args.length > 0 ? Integer.parseInt(args[0]) : 2 * Runtime.getRuntime().availableProcessors();
+        final long seconds = args.length > 1 ? Long.parseLong(args[1]) : 5L;
+        final Scalability harness = new Scalability().periods(1000L, seconds * 1000L);
+        final List<Result> results = harness.sweep(steps(max));
+        report(results, System.out, 8);
+        if (args.length > 2) {
+            final StringBuilder csv = new StringBuilder();
+            writeCsv(results, csv);
+            Files.write(Paths.get(args[2]), csv.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (args.length > 3) {
+            final List<Result> baseline;
+            try (Reader reader = Files.newBufferedReader(Paths.get(args[3]), StandardCharsets.UTF_8)) {
+                baseline = readCsv(reader);
+            }
+            final double tolerance = args.length > 4 ? Double.parseDouble(args[4]) : 0.1d;
+            final List<String> regressions = regressions(results, baseline, tolerance);
+            for (final String regression : regressions) {
+                System.out.println("REGRESSION " + regression);
+            }
+            if (!regressions.isEmpty()) {
+                System.exit(1);
+            }
+        }
+    }
+}
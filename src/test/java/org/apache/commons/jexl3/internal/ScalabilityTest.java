@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlTestCase;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Checks the scalability harness and runs it as a regression gate.
+ * <p>The gate only runs when a baseline file is given; when the file does not exist, the gate records it,
+ * otherwise it fails if the throughput of a step falls below the baseline by more than the tolerance:</p>
+ * <pre>
+ * mvn test -Dtest=ScalabilityTest#testGate -Djexl.scalability.baseline=baseline.csv -Djexl.scalability.threads=64
+ * </pre>
+ * <p>Other properties are jexl.scalability.seconds, the measured period per step (5), and
+ * jexl.scalability.tolerance, the accepted throughput loss (0.1). The baseline should be recorded on the same
+ * machine and through the same command as the runs it gates. The report of each run, with its contention
+ * sites, is written next to the baseline as <i>baseline</i>.report.</p>
+ */
+public class ScalabilityTest extends JexlTestCase {
+
+    public ScalabilityTest() {
+        super("ScalabilityTest");
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        final Scalability harness = new Scalability().periods(200L, 500L);
+        final List<Scalability.Result> results = harness.sweep(1, 2);
+        Assert.assertEquals(2, results.size());
+        for (final Scalability.Result result : results) {
+            Assert.assertEquals(String.valueOf(result.getFailure()), 0, result.getErrors());
+            Assert.assertTrue(result.getThroughput() > 0d);
+            Assert.assertTrue(result.getSamples() > 0);
+            for (final Scalability.Operation op : Scalability.Operation.values()) {
+                if (op != Scalability.Operation.CLEAR) {
+                    Assert.assertTrue(op.toString(), result.getOperations().get(op) > 0);
+                }
+            }
+        }
+        final StringBuilder report = new StringBuilder();
+        Scalability.report(results, report, 5);
+        Assert.assertTrue(report.toString(), report.toString().contains("threads=2 contention="));
+        final StringBuilder csv = new StringBuilder();
+        Scalability.writeCsv(results, csv);
+        final List<Scalability.Result> read = Scalability.readCsv(new StringReader(csv.toString()));
+        Assert.assertEquals(2, read.size());
+        Assert.assertEquals(2, read.get(1).getThreads());
+        Assert.assertEquals(results.get(1).getThroughput(), read.get(1).getThroughput(), 0.1d);
+        // same results, no regression
+        Assert.assertTrue(Scalability.regressions(results, read, 0.01d).isEmpty());
+    }
+
+    @Test
+    public void testRegressions() throws Exception {
+        final List<Scalability.Result> baseline = Scalability.readCsv(new StringReader(
+            "threads,throughput,errors,blockedMillis,waitedMillis,contention\n1,1000.0\n2,2000.0\n4,4000.0\n"));
+        final List<Scalability.Result> results = Scalability.readCsv(new StringReader(
+            "threads,throughput\n1,990.0\n2,1500.0\n8,100.0\n"));
+        final List<String> regressions = Scalability.regressions(results, baseline, 0.1d);
+        Assert.assertEquals(regressions.toString(), 1, regressions.size());
+        Assert.assertTrue(regressions.get(0), regressions.get(0).startsWith("threads=2:"));
+        Assert.assertTrue(Scalability.regressions(results, baseline, 0.3d).isEmpty());
+    }
+
+    @Test
+    public void testSteps() {
+        Assert.assertArrayEquals(new int[]{1}, Scalability.steps(1));
+        Assert.assertArrayEquals(new int[]{1, 2, 4, 8}, Scalability.steps(8));
+        Assert.assertArrayEquals(new int[]{1, 2, 4, 6}, Scalability.steps(6));
+    }
+
+    @Test
+    public void testContentionSite() throws Exception {
+        final Object lock = new Object();
+        final Thread contender;
+        synchronized (lock) {
+            contender = new Thread(() -> {
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            });
+            contender.start();
+            while (contender.getState() != Thread.State.BLOCKED) {
+                Thread.sleep(1);
+            }
+            final String site = Scalability.contentionSite(
+                ManagementFactory.getThreadMXBean().getThreadInfo(contender.getId(), 8));
+            Assert.assertNotNull(site);
+            Assert.assertTrue(site, site.startsWith("blocked on Object in "));
+        }
+        contender.join();
+    }
+
+    @Test
+    public void testGate() throws Exception {
+        final String path = System.getProperty("jexl.scalability.baseline");
+        Assume.assumeTrue(path != null);
+        final int threads = Integer.getInteger("jexl.scalability.threads", 2 * Runtime.getRuntime().availableProcessors());
+        final long seconds = Long.getLong("jexl.scalability.seconds", 5L);
+        final double tolerance = Double.parseDouble(System.getProperty("jexl.scalability.tolerance", "0.1"));
+        final List<Scalability.Result> results = new Scalability(new JexlBuilder().cache(512))
+            .periods(1000L, seconds * 1000L)
+            .sweep(Scalability.steps(threads));
+        final StringBuilder report = new StringBuilder();
+        Scalability.report(results, report, 8);
+        final Path file = Paths.get(path);
+        Files.write(file.resolveSibling(file.getFileName() + ".report"),
+            report.toString().getBytes(StandardCharsets.UTF_8));
+        for (final Scalability.Result result : results) {
+            Assert.assertEquals(report.toString(), 0, result.getErrors());
+        }
+        if (!Files.exists(file)) {
+            final StringBuilder csv = new StringBuilder();
+            Scalability.writeCsv(results, csv);
+            Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        final List<Scalability.Result> baseline;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            baseline = Scalability.readCsv(reader);
+        }
+        final List<String> regressions = Scalability.regressions(results, baseline, tolerance);
+        Assert.assertFalse("empty baseline " + path, baseline.isEmpty());
+        Assert.assertTrue(report + "\n" + String.join("\n", regressions), regressions.isEmpty());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlFeatures;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks precompiled script bundles.
+ */
+public class ScriptBundleTest {
+    private static final String[] SOURCES = {
+        "#pragma jexl.options '+strict'\n#pragma my.set 1\n#pragma my.set 'two'\n1 + 2 * 3",
+        "var x = function(var a = 41, var b = 1) {a + b}; x()",
+        "var x = function(var a = ~/ABC.*/) {a}; x() =~ 'ABCD'",
+        "var x = function(var a = 42H, var b = 1.5B, var c = 2.5f) { a + b + c }; x()",
+        "let z = 2; const k = 3; var f = (y) -> { y * z + k }; f(13)",
+        "var s = 0; for (var i : 1 .. 10) { if (i == 5) continue; s += i }; s",
+        "switch (y) { case 1 : return 'one'; case 2 : return 'two'; default: return 'many' }",
+        "var m = { 'a' : 1, 'b' : [1, 2, 3] }; m.b[1] + m['a'] + size({ 1, 2 })",
+        "int i = 40; long l = 2L; i + l",
+        "Integer.class",
+        "`hello ${y}`",
+        "(x, y) -> { x + y }",
+        "var o = 0; label: while (o < 10) { o++; if (o > 5) break label; }; o",
+        "@synchronized(y) { y * 2 }"
+    };
+
+    private static JexlEngine createEngine() {
+        return new JexlBuilder().cache(64).features(new JexlFeatures().annotation(true)).create();
+    }
+
+    private static Object eval(final JexlScript script) {
+        final MapContext ctxt = new MapContext();
+        ctxt.set("y", 2);
+        final Object result = script.execute(ctxt, 20, 22);
+        return result instanceof JexlScript ? ((JexlScript) result).getParsedText() : result;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final JexlEngine jexl = createEngine();
+        final List<JexlScript> scripts = new ArrayList<>();
+        for (final String src : SOURCES) {
+            scripts.add(jexl.createScript(src));
+        }
+        scripts.add((JexlScript) jexl.createExpression("y + 1"));
+        final Path file = Files.createTempFile("jexl", ".bundle");
+        try {
+            jexl.writeScripts(file, scripts);
+            final JexlEngine loader = createEngine();
+            final Map<String, JexlScript> loaded = loader.readScripts(file);
+            Assert.assertEquals(scripts.size(), loaded.size());
+            for (int s = 0; s < scripts.size(); ++s) {
+                final JexlScript script = scripts.get(s);
+                // the last one is an expression
+                final JexlScript copy = loaded.get(JexlEngine.bundleKey(s == SOURCES.length, script.getSourceText()));
+                Assert.assertNotNull(copy);
+                Assert.assertEquals(script.getParsedText(), copy.getParsedText());
+                Assert.assertEquals(script.getPragmas(), copy.getPragmas());
+                Assert.assertArrayEquals(script.getParameters(), copy.getParameters());
+                Assert.assertArrayEquals(script.getLocalVariables(), copy.getLocalVariables());
+                Assert.assertTrue(Objects.deepEquals(eval(script), eval(copy)));
+            }
+            // decoded scripts are cached, creating them again does not parse
+            final long misses = loader.getCacheStatistics().getMisses();
+            for (final String src : SOURCES) {
+                loader.createScript(src);
+            }
+            Assert.assertEquals(misses, loader.getCacheStatistics().getMisses());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLazyDecode() throws IOException {
+        final JexlEngine jexl = createEngine();
+        final List<JexlScript> scripts = new ArrayList<>();
+        for (int i = 0; i < 32; ++i) {
+            scripts.add(jexl.createScript("var x = " + i + "; x * 2"));
+        }
+        final Path file = Files.createTempFile("jexl", ".bundle");
+        try {
+            jexl.writeScripts(file, scripts);
+            final JexlEngine loader = createEngine();
+            final Map<String, JexlScript> loaded = loader.readScripts(file);
+            // only the accessed script is decoded, hence cached
+            Assert.assertEquals(0, ((Engine) loader).cache.size());
+            Assert.assertEquals(26, loaded.get(JexlEngine.bundleKey(false, "var x = 13; x * 2")).execute(null));
+            Assert.assertEquals(1, ((Engine) loader).cache.size());
+            Assert.assertSame(loaded.get(JexlEngine.bundleKey(false, "var x = 13; x * 2")), loaded.get(JexlEngine.bundleKey(false, "var x = 13; x * 2")));
+            Assert.assertEquals(new ArrayList<>(loaded.keySet()).get(31), JexlEngine.bundleKey(false, "var x = 31; x * 2"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testScriptAndExpression() throws IOException {
+        final JexlEngine jexl = createEngine();
+        final JexlScript script = jexl.createScript("y + 1");
+        final JexlScript expression = (JexlScript) jexl.createExpression("y + 1");
+        final Path file = Files.createTempFile("jexl", ".bundle");
+        try {
+            jexl.writeScripts(file, Arrays.asList(script, expression));
+            final Map<String, JexlScript> loaded = createEngine().readScripts(file);
+            // same source, different kinds, no collision
+            Assert.assertEquals(2, loaded.size());
+            Assert.assertNotNull(loaded.get(JexlEngine.bundleKey(false, "y + 1")));
+            Assert.assertNotNull(loaded.get(JexlEngine.bundleKey(true, "y + 1")));
+            Assert.assertNotSame(loaded.get(JexlEngine.bundleKey(false, "y + 1")),
+                loaded.get(JexlEngine.bundleKey(true, "y + 1")));
+            Assert.assertNull(loaded.get("y + 1"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testParameters() throws IOException {
+        final JexlEngine jexl = createEngine();
+        final String src = "var t = a * b; t + 1";
+        final Path file = Files.createTempFile("jexl", ".bundle");
+        try {
+            jexl.writeScripts(file, Collections.singletonList(jexl.createScript(src, "a", "b")));
+            final JexlEngine loader = createEngine();
+            Assert.assertEquals(7, loader.readScripts(file).get(JexlEngine.bundleKey(false, src)).execute(null, 2, 3));
+            // cached with the signature of the scope it was parsed with, its local variable ignored
+            final long misses = loader.getCacheStatistics().getMisses();
+            Assert.assertEquals(13, loader.createScript(src, "a", "b").execute(null, 3, 4));
+            Assert.assertEquals(misses, loader.getCacheStatistics().getMisses());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStaleBundle() throws IOException {
+        final JexlEngine jexl = createEngine();
+        final Path file = Files.createTempFile("jexl", ".bundle");
+        try {
+            jexl.writeScripts(file, Collections.singletonList(jexl.createScript("1 + 1")));
+            final JexlEngine other = new JexlBuilder().features(new JexlFeatures().lambda(false)).create();
+            try {
+                other.readScripts(file);
+                Assert.fail("features differ, bundle should be rejected");
+            } catch (final IOException xio) {
+                Assert.assertTrue(xio.getMessage().contains("stale"));
+            }
+            final byte[] bytes = Files.readAllBytes(file);
+            // corrupt the grammar fingerprint
+            bytes[8] ^= 0x5a;
+            Files.write(file, bytes);
+            try {
+                createEngine().readScripts(file);
+                Assert.fail("fingerprint differs, bundle should be rejected");
+            } catch (final IOException xio) {
+                Assert.assertTrue(xio.getMessage().contains("stale"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testForeignFeatures() throws IOException {
+        final JexlEngine jexl = createEngine();
+        final JexlScript script = jexl.createScript(new JexlFeatures().loops(false), null, "1 + 1");
+        final Path file = Files.createTempFile("jexl", ".bundle");
+        try {
+            jexl.writeScripts(file, Arrays.asList(script));
+            Assert.fail("script features differ from engine features");
+        } catch (final IllegalArgumentException xarg) {
+            Assert.assertTrue(xarg.getMessage().contains("features"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.parser.ASTJexlScript;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the bytecode compilation of scripts.
+ */
+public class ScriptCompilerTest {
+    private static final String[] SOURCES = {
+        "1 + 2 * 3 - 4 / 2 % 3",
+        "x + y * 2",
+        "(x + y) * (x - y)",
+        "x < y && y <= 10 || !(x == y)",
+        "x > y ? 'greater' : x != y ? 'lesser' : 'equal'",
+        "z ?: 'default'",
+        "x >= 2 and y > 1",
+        "s + '!' + x",
+        "null",
+        "true && !false",
+        "var t = x * 2; t + y",
+        "var r = 0; for (var i : 1 .. x) { r += i }; r + (y * 2)",
+        "x.class.simpleName + ':' + (x + 1)",
+        "(a, b) -> { a + b }",
+        "x =~ [1, 2, 3] ? x / 2 : y % 2",
+        "x + 1; y + 2; x * y"
+    };
+
+    private static JexlContext context() {
+        final MapContext ctxt = new MapContext();
+        ctxt.set("x", 3);
+        ctxt.set("y", 7);
+        ctxt.set("s", "str");
+        ctxt.set("z", null);
+        return ctxt;
+    }
+
+    private static Object result(final JexlScript script, final Object... args) {
+        try {
+            final Object result = script.execute(context(), args);
+            return result instanceof JexlScript ? ((JexlScript) result).getParsedText() : result;
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    @Test
+    public void testCompiledResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine interpreted = new JexlBuilder().strict(strict).create();
+            final JexlEngine compiling = new JexlBuilder().strict(strict).compileThreshold(1).create();
+            for (final String src : SOURCES) {
+                final Object expected = result(interpreted.createScript(src));
+                final JexlScript script = compiling.createScript(src);
+                // first execution compiles, second runs compiled code
+                Assert.assertTrue(src, Objects.deepEquals(expected, result(script)));
+                if (!src.contains("->")) {
+                    Assert.assertNotNull(src, ((Script) script).getScript().getCompiled());
+                }
+                Assert.assertTrue(src, Objects.deepEquals(expected, result(script)));
+            }
+        }
+    }
+
+    @Test
+    public void testThreshold() {
+        final JexlEngine jexl = new JexlBuilder().compileThreshold(3).create();
+        final Script script = (Script) jexl.createScript("x + y");
+        for (int i = 0; i < 2; ++i) {
+            Assert.assertEquals(10, script.execute(context()));
+            Assert.assertNull(script.getScript().getCompiled());
+        }
+        Assert.assertEquals(10, script.execute(context()));
+        Assert.assertNotNull(script.getScript().getCompiled());
+        Assert.assertEquals(10, script.execute(context()));
+        // disabled by default
+        final Script other = (Script) new JexlBuilder().create().createScript("x + y");
+        for (int i = 0; i < 5; ++i) {
+            other.execute(context());
+        }
+        Assert.assertNull(other.getScript().getCompiled());
+        // nothing worth compiling
+        final Script loop = (Script) jexl.createScript("for (var i : 1 .. 3) { x += i }");
+        for (int i = 0; i < 5; ++i) {
+            loop.execute(context());
+        }
+        Assert.assertNull(loop.getScript().getCompiled());
+    }
+
+    @Test
+    public void testErrors() {
+        final JexlEngine jexl = new JexlBuilder().strict(true).compileThreshold(1).create();
+        final JexlScript script = jexl.createScript("x + undefinedVariable");
+        for (int i = 0; i < 2; ++i) {
+            try {
+                script.execute(context());
+                Assert.fail("undefined variable should fail");
+            } catch (final JexlException.Variable xvar) {
+                Assert.assertEquals("undefinedVariable", xvar.getVariable());
+            }
+        }
+        // null operand error in condition is a null condition
+        final JexlScript ternary = new JexlBuilder().strict(false).arithmetic(new JexlArithmetic(true))
+            .compileThreshold(1).create().createScript("(z + 1) ? 'yes' : 'no'");
+        Assert.assertEquals("no", ternary.execute(context()));
+        Assert.assertEquals("no", ternary.execute(context()));
+        // non strict division by zero
+        final JexlScript div = new JexlBuilder().strict(false).compileThreshold(1).create().createScript("x / 0");
+        Assert.assertEquals(0.0d, div.execute(context()));
+        Assert.assertEquals(0.0d, div.execute(context()));
+    }
+
+    @Test
+    public void testCountExecution() throws Exception {
+        final ASTJexlScript script = new ASTJexlScript(0);
+        final int nthreads = 8;
+        final AtomicInteger reached = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(nthreads);
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < nthreads; ++t) {
+                tasks.add(() -> {
+                    for (int i = 0; i < 10_000; ++i) {
+                        if (script.countExecution(1000)) {
+                            reached.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            for (final Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        // only one execution reaches the threshold, counting stops there
+        Assert.assertEquals(1, reached.get());
+        Assert.assertEquals(1000, script.getExecutions());
+    }
+
+    @Test
+    public void testConcurrentCompilation() throws Exception {
+        final JexlEngine jexl = new JexlBuilder().compileThreshold(100).create();
+        final Script script = (Script) jexl.createScript("x + y");
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                tasks.add(() -> {
+                    for (int i = 0; i < 1000; ++i) {
+                        Assert.assertEquals(10, script.execute(context()));
+                    }
+                    return null;
+                });
+            }
+            for (final Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        final Compiled compiled = script.getScript().getCompiled();
+        Assert.assertNotNull(compiled);
+        Assert.assertEquals(100, script.getScript().getExecutions());
+        // once installed, the compiled form is never replaced
+        Assert.assertFalse(script.getScript().setCompiled(ScriptCompiler.compile(script.getScript())));
+        Assert.assertSame(compiled, script.getScript().getCompiled());
+    }
+
+    @Test
+    public void testCompilerFailure() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final Engine jexl = new Engine(new JexlBuilder().compileThreshold(2)) {
+            @Override
+            protected Compiled compile(final ASTJexlScript script) {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("unexpected tree");
+            }
+        };
+        final Script script = (Script) jexl.createScript("x + y");
+        for (int i = 0; i < 5; ++i) {
+            // the execution crossing the threshold still interprets
+            Assert.assertEquals(10, script.execute(context()));
+        }
+        Assert.assertEquals(1, attempts.get());
+        Assert.assertTrue(script.getScript().isUncompilable());
+        Assert.assertNull(script.getScript().getCompiled());
+    }
+
+    /**
+     * An arithmetic overloading addition of strings.
+     */
+    public static class ConcatArithmetic extends JexlArithmetic {
+        public ConcatArithmetic(final boolean strict) {
+            super(strict);
+        }
+
+        public Object add(final String left, final String right) {
+            return left + "&" + right;
+        }
+    }
+
+    @Test
+    public void testOverload() {
+        final JexlEngine jexl = new JexlBuilder().arithmetic(new ConcatArithmetic(true)).compileThreshold(1).create();
+        final JexlScript script = jexl.createScript("s + s + x");
+        Assert.assertEquals("str&str3", script.execute(context()));
+        Assert.assertEquals("str&str3", script.execute(context()));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlScript;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the operand type feedback of operator nodes.
+ */
+public class TypeFeedbackTest {
+    private static final String[] OPERATORS = {
+        "+", "-", "*", "/", "%", "==", "!=", "<", "<=", ">", ">="
+    };
+
+    private static final Object[][] OPERANDS = {
+        {3, 7}, {7, 0}, {Integer.MAX_VALUE, 2}, {Integer.MIN_VALUE, -1},
+        {3L, 7L}, {Long.MAX_VALUE, 1L}, {Long.MIN_VALUE, 1L}, {Long.MAX_VALUE, 3L}, {9L, 0L},
+        {1.5d, 2.5d}, {Double.NaN, Double.NaN}, {Double.NaN, 1.0d}, {0.0d, -0.0d}, {3.0d, 0.0d},
+        {"abc", "abd"}, {"12", "3"},
+        {3, 7L}, {"4", 2}, {null, 2}
+    };
+
+    private static Object result(final JexlScript script, final Object left, final Object right) {
+        try {
+            return script.execute(null, left, right);
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    private static TypeFeedback feedback(final JexlScript script) {
+        final Object value = ((Script) script).getScript().jjtGetChild(0).jjtGetChild(0).jjtGetValue();
+        return value instanceof TypeFeedback ? (TypeFeedback) value : null;
+    }
+
+    @Test
+    public void testSpecializedResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine generic = new JexlBuilder().strict(strict).create();
+            final JexlEngine specializing = new JexlBuilder().strict(strict).cache(32).create();
+            for (final String op : OPERATORS) {
+                final String src = "a " + op + " b";
+                for (final Object[] operands : OPERANDS) {
+                    final Object expected = result(generic.createScript(src, "a", "b"), operands[0], operands[1]);
+                    final JexlScript script = specializing.createScript(src, "a", "b");
+                    for (int i = 0; i < 3; ++i) {
+                        final Object actual = result(script, operands[0], operands[1]);
+                        final String msg = src + " " + operands[0] + ", " + operands[1];
+                        Assert.assertTrue(msg, Objects.deepEquals(expected, actual));
+                        if (expected != null && actual != null) {
+                            Assert.assertEquals(msg, expected.getClass(), actual.getClass());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGuard() {
+        final JexlEngine jexl = new JexlBuilder().cache(32).create();
+        final JexlScript script = jexl.createScript("a + b", "a", "b");
+        Assert.assertEquals(10, script.execute(null, 3, 7));
+        Assert.assertEquals(TypeFeedback.INTEGER, feedback(script).getKind());
+        // overflow promotes to long, guard still holds
+        Assert.assertEquals(1L + Integer.MAX_VALUE, script.execute(null, Integer.MAX_VALUE, 1));
+        Assert.assertEquals(TypeFeedback.INTEGER, feedback(script).getKind());
+        // other operand classes fall back to the generic path for good
+        Assert.assertEquals("ab", script.execute(null, "a", "b"));
+        Assert.assertEquals(TypeFeedback.GENERIC, feedback(script).getKind());
+        Assert.assertEquals(10, script.execute(null, 3, 7));
+        // long overflow, using another engine since the source is cached
+        final JexlScript lscript = new JexlBuilder().cache(32).create().createScript("a + b", "a", "b");
+        Assert.assertEquals(3L, lscript.execute(null, 1L, 2L));
+        Assert.assertEquals(TypeFeedback.LONG, feedback(lscript).getKind());
+        Assert.assertEquals(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE), lscript.execute(null, Long.MAX_VALUE, 1L));
+        Assert.assertEquals(TypeFeedback.LONG, feedback(lscript).getKind());
+        // strings are only specialized for concatenation and comparison
+        final JexlScript sscript = jexl.createScript("a - b", "a", "b");
+        Assert.assertEquals(9, sscript.execute(null, "12", "3"));
+        Assert.assertEquals(TypeFeedback.GENERIC, feedback(sscript).getKind());
+        final JexlScript cscript = jexl.createScript("a < b", "a", "b");
+        Assert.assertEquals(true, cscript.execute(null, "12", "3"));
+        Assert.assertEquals(TypeFeedback.STRING, feedback(cscript).getKind());
+    }
+
+    @Test
+    public void testNoCache() {
+        final JexlScript script = new JexlBuilder().create().createScript("a * b", "a", "b");
+        Assert.assertEquals(21, script.execute(null, 3, 7));
+        Assert.assertNull(feedback(script));
+    }
+
+    /**
+     * An arithmetic overriding subtraction.
+     */
+    public static class SaturatingArithmetic extends JexlArithmetic {
+        public SaturatingArithmetic(final boolean strict) {
+            super(strict);
+        }
+
+        @Override
+        public Object subtract(final Object left, final Object right) {
+            final Object result = super.subtract(left, right);
+            return result instanceof Integer && (Integer) result < 0 ? 0 : result;
+        }
+    }
+
+    @Test
+    public void testOverloads() {
+        final JexlEngine concat = new JexlBuilder().arithmetic(new ScriptCompilerTest.ConcatArithmetic(true)).cache(32).create();
+        final JexlScript add = concat.createScript("a + b", "a", "b");
+        for (int i = 0; i < 2; ++i) {
+            Assert.assertEquals("x&y", add.execute(null, "x", "y"));
+            Assert.assertEquals(3, add.execute(null, 1, 2));
+        }
+        Assert.assertNull(feedback(add));
+        final JexlEngine saturating = new JexlBuilder().arithmetic(new SaturatingArithmetic(true)).cache(32).create();
+        final JexlScript sub = saturating.createScript("a - b", "a", "b");
+        for (int i = 0; i < 2; ++i) {
+            Assert.assertEquals(0, sub.execute(null, 1, 2));
+        }
+        Assert.assertNull(feedback(sub));
+        // other operators are still specialized
+        final JexlScript mul = saturating.createScript("a * b", "a", "b");
+        Assert.assertEquals(2, mul.execute(null, 1, 2));
+        Assert.assertEquals(TypeFeedback.INTEGER, feedback(mul).getKind());
+    }
+}
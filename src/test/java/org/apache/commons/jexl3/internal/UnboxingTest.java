@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal;
+
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlScript;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the unboxed evaluation of typed locals.
+ */
+public class UnboxingTest {
+    /**
+     * An arithmetic that disables the unboxed evaluation.
+     */
+    public static class GenericArithmetic extends JexlArithmetic {
+        public GenericArithmetic(final boolean strict) {
+            super(strict);
+        }
+
+        @Override
+        public boolean isNumberable(final Object o) {
+            return super.isNumberable(o);
+        }
+    }
+
+    private static final String[] SOURCES = {
+        "int t = 0; for (int i = 0; i < 10; ++i) { t += i; } t",
+        "long t = 0; for (int i = 0; i < 10; i++) { t += i * 2; } t",
+        "double d = 0; for (int i = 0; i < 4; i++) { d += 0.5; } d",
+        "double d = 1; for (int i = 0; i < 4; i++) { d *= i + 1; } d",
+        "int i = 2147483647; i += 1; i",
+        "int i = -2147483648; i -= 1; i",
+        "int i = 2147483647; ++i",
+        "int i = -2147483648; i--",
+        "long l = 9223372036854775807L; l + 1",
+        "long l = 9223372036854775807L; l++; l",
+        "long l = 3037000500L; l * l",
+        "int i = 5; i++",
+        "int i = 5; i-- + i",
+        "int i = 5; --i",
+        "int i = 5; i += 2.5; i",
+        "long l = 5; l += 2.5; l",
+        "int i = 5; i = 7L; i",
+        "long l = 5; l = 7; l",
+        "double d = 5; d = 7; d",
+        "int x = 3; double y = x * 1.5; y",
+        "int x = 3; var f = () -> x + 1; f()",
+        "int x = 3; x < 4 && x > 2 && x <= 3 && x >= 3 && x == 3 && x != 4",
+        "double x = 3; x == 3 && x < 3.5 && x > 2L",
+        "double n = 0; n = n / n; n == n",
+        "double n = 0; n = n / n; n < 1 || n > 1",
+        "double z = -0.0; z < 0.0",
+        "int x = 1; while (x < 100) { x *= 3 }; x",
+        "int x = 1; var y = (x + 2) * (x - 4); y",
+        "final int x = 1; x += 1",
+        "final int x = 1; x++",
+        "int x = 1; var x; x = 'a'; x",
+        "int x = 1; { int x = 2; x += 3; } x",
+        "int x = 10; let l = 0; while (x-- > 0) { l += x } l",
+        "var s = 0; for (var e : [1, 2, 3]) { int v = e * 2; s += v; } s",
+        "int a = 1; int b = 2; a = b = 3; a + b",
+        "int i = 0; for (; i < 3; i += 1) { } i"
+    };
+
+    private static Object result(final JexlEngine jexl, final String src) {
+        try {
+            return jexl.createScript(src).execute(null);
+        } catch (final JexlException | ArithmeticException | ClassCastException xany) {
+            return xany.getClass();
+        }
+    }
+
+    @Test
+    public void testResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine generic = new JexlBuilder().strict(strict).arithmetic(new GenericArithmetic(strict)).create();
+            final JexlEngine unboxing = new JexlBuilder().strict(strict).create();
+            for (final String src : SOURCES) {
+                final Object expected = result(generic, src);
+                final Object actual = result(unboxing, src);
+                Assert.assertTrue(src + ": " + expected + " / " + actual, Objects.deepEquals(expected, actual));
+                if (expected != null) {
+                    Assert.assertEquals(src, expected.getClass(), actual.getClass());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLoop() {
+        final JexlEngine jexl = new JexlBuilder().create();
+        final JexlScript script = jexl.createScript(
+            "long t = 0; for (int i = 0; i < n; ++i) { t += i; } t", "n");
+        Assert.assertEquals(4950L, script.execute(null, 100));
+        final JexlScript doubles = jexl.createScript(
+            "double s = 0; int i = 0; while (i < n) { s += i * 0.5; i += 1; } s", "n");
+        Assert.assertEquals(2475.0d, doubles.execute(null, 100));
+    }
+
+    @Test
+    public void testFrame() {
+        final Scope scope = new Scope(null);
+        scope.declareVariable("a");
+        scope.declareVariable("b");
+        scope.declareVariable("c");
+        final Frame frame = scope.createFrame(null);
+        frame.setLong(0, Frame.Unboxed.INT, 42L);
+        frame.setLong(1, Frame.Unboxed.LONG, 42L);
+        frame.setDouble(2, 4.2d);
+        Assert.assertEquals(42, frame.get(0));
+        Assert.assertEquals(42L, frame.get(1));
+        Assert.assertEquals(4.2d, frame.get(2));
+        final Frame copy = frame.clone();
+        frame.set(0, "x");
+        Assert.assertNull(frame.unboxed(0));
+        Assert.assertEquals(Frame.Unboxed.INT, copy.unboxed(0));
+        Assert.assertEquals(42, copy.get(0));
+    }
+}
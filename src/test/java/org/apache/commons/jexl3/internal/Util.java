@@ -44,7 +44,9 @@ public class Util {
             return;
         }
         final Engine jdbg = new Engine(jexl);
-        JexlScriptParser jexlp = jdbg.parser;
+        // borrow the only idle parser and give it back so parsing uses it
+        final JexlScriptParser jexlp = jdbg.parsers.acquire();
+        jdbg.parsers.release(jexlp);
         if (!(jexlp instanceof Parser)) {
             // jexl-438 escape
             return;
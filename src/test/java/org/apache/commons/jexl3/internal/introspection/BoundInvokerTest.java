@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.internal.introspection;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.MapContext;
+import org.apache.commons.jexl3.introspection.JexlPermissions;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the executors bound to method handles.
+ */
+public class BoundInvokerTest {
+    public static class Bean {
+        public int count;
+        private int value;
+        private String name = "b";
+
+        public int getValue() {
+            return value;
+        }
+
+        public void setValue(final int v) {
+            value = v;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(final String n) {
+            name = n;
+        }
+
+        public long sum(final long l, final long r) {
+            return l + r;
+        }
+
+        public String join(final String sep, final Object... args) {
+            final StringBuilder strb = new StringBuilder();
+            for (final Object arg : args) {
+                if (strb.length() > 0) {
+                    strb.append(sep);
+                }
+                strb.append(arg);
+            }
+            return strb.toString();
+        }
+
+        public static int twice(final int i) {
+            return 2 * i;
+        }
+
+        public Object get(final String key) {
+            return "get:" + key;
+        }
+
+        public String fail() {
+            throw new IllegalStateException("fail");
+        }
+    }
+
+    private static final String[] SOURCES = {
+        "b.value = 42; b.value + 1",
+        "b.name = 'x'; b.name",
+        "b.setValue(7); b.getValue()",
+        "b.sum(1, 2)",
+        "b.sum(1.5, 2)",
+        "b.join('-', 1, 2, 3)",
+        "b.join(',')",
+        "b.count = 3; b.count + 2",
+        "b.count = null",
+        "b.value = null",
+        "b['anything']",
+        "b.fail()",
+        "b.class.twice(21)",
+        "s.length() + s.substring(1).size()"
+    };
+
+    private static Object result(final JexlEngine jexl, final String src) {
+        final JexlContext ctxt = new MapContext();
+        ctxt.set("b", new Bean());
+        ctxt.set("s", "abc");
+        try {
+            return jexl.createScript(src).execute(ctxt);
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    @Test
+    public void testResults() {
+        for (final boolean strict : new boolean[]{false, true}) {
+            final JexlEngine reflect = new JexlBuilder().strict(strict).create();
+            final JexlEngine bound = new JexlBuilder().strict(strict).methodHandles(true).create();
+            for (final String src : SOURCES) {
+                final Object expected = result(reflect, src);
+                Assert.assertTrue(src + ": " + expected, Objects.deepEquals(expected, result(bound, src)));
+            }
+        }
+    }
+
+    @Test
+    public void testExecutors() throws Exception {
+        final Uberspect uber = new Uberspect(null, null, JexlPermissions.UNRESTRICTED, true);
+        final Bean bean = new Bean();
+        final AbstractExecutor setter = (AbstractExecutor) uber.getPropertySet(bean, "value", 12);
+        Assert.assertNotNull(setter.invoker);
+        ((PropertySetExecutor) setter).invoke(bean, 12);
+        final AbstractExecutor getter = (AbstractExecutor) uber.getPropertyGet(bean, "value");
+        Assert.assertNotNull(getter.invoker);
+        Assert.assertEquals(12, ((PropertyGetExecutor) getter).invoke(bean));
+        final AbstractExecutor field = (AbstractExecutor) uber.getPropertySet(bean, "count", 5);
+        Assert.assertTrue(field instanceof FieldSetExecutor);
+        Assert.assertNotNull(field.invoker);
+        ((FieldSetExecutor) field).invoke(bean, 5);
+        Assert.assertEquals(5, bean.count);
+        final AbstractExecutor method = (AbstractExecutor) uber.getMethod(bean, "sum", 1L, 2L);
+        Assert.assertNotNull(method.invoker);
+        Assert.assertEquals(3L, ((MethodExecutor) method).invoke(bean, 1L, 2L));
+        // widening conversion falls back to reflection
+        Assert.assertEquals(5L, ((MethodExecutor) method).invoke(bean, 2, 3));
+        // the member exception is wrapped
+        final MethodExecutor fail = (MethodExecutor) uber.getMethod(bean, "fail");
+        try {
+            fail.invoke(bean);
+            Assert.fail("should have thrown");
+        } catch (final InvocationTargetException xinvoke) {
+            Assert.assertTrue(xinvoke.getCause() instanceof IllegalStateException);
+        }
+        // reflection only
+        final Uberspect reflect = new Uberspect(null, null, JexlPermissions.UNRESTRICTED);
+        Assert.assertNull(((AbstractExecutor) reflect.getPropertyGet(bean, "value")).invoker);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.commons.jexl3.parser;
+
+import java.util.Objects;
+
+import org.apache.commons.jexl3.JexlArithmetic;
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlException;
+import org.apache.commons.jexl3.JexlFeatures;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the constant folding pass.
+ */
+public class ConstantFolderTest {
+    /** Sources and their expected folded text. */
+    private static final String[][] FOLDED = {
+        {"60 * 60 * 24", "86400"},
+        {"'a' + 'b' + x", "'ab' + x"},
+        {"1 + 2 < 4", "true"},
+        {"x + (2 * 3)", "x + 6"},
+        {"size([1, 2, 3]) + size('abcd')", "7"},
+        {"-(2 + 3)", "-5"},
+        {"~0 & 7", "7l"},
+        {"1 << 4", "16"},
+        {"!(1 == 1)", "false"},
+        {"true && x < y", "x < y"},
+        {"false && foo()", "false"},
+        {"true || foo()", "true"},
+        {"x < y || false", "x < y"},
+        {"1 < 2 ? x : y", "x"},
+        {"if (1 > 2) { x } else { y }", "{ y; }"},
+        {"if (1 > 2) { x }; y", "if (false) { x; }y;"},
+        {"2147483647 + 1", "2147483648l"},
+        {"0.5 * 4", "2.0d"}
+    };
+
+    /** Sources that must not be folded. */
+    private static final String[] UNFOLDED = {
+        "1 / 0",
+        "'1' + 1",
+        "null + 1",
+        "1.5b + 2.5b",
+        "true && x",
+        "x && false",
+        "size([x, 2])",
+        "l: if (true) { break l; }"
+    };
+
+    private static JexlEngine folding() {
+        return new JexlBuilder().features(new JexlFeatures().constantFolding(true)).create();
+    }
+
+    private static JexlContext context() {
+        final MapContext ctxt = new MapContext();
+        ctxt.set("x", 3);
+        ctxt.set("y", 7);
+        return ctxt;
+    }
+
+    private static String text(final JexlScript script) {
+        return script.getParsedText().replaceAll("\\s+", " ").trim();
+    }
+
+    private static Object result(final JexlScript script) {
+        try {
+            return script.execute(context());
+        } catch (final JexlException xjexl) {
+            return xjexl.getClass();
+        }
+    }
+
+    @Test
+    public void testFolded() {
+        final JexlEngine plain = new JexlBuilder().create();
+        final JexlEngine folding = folding();
+        for (final String[] folded : FOLDED) {
+            final JexlScript script = folding.createScript(folded[0]);
+            Assert.assertEquals(folded[0], folded[1], text(script));
+            final Object expected = result(plain.createScript(folded[0]));
+            Assert.assertTrue(folded[0], Objects.deepEquals(expected, result(script)));
+        }
+    }
+
+    @Test
+    public void testUnfolded() {
+        final JexlEngine plain = new JexlBuilder().create();
+        final JexlEngine folding = folding();
+        for (final String src : UNFOLDED) {
+            final JexlScript expected = plain.createScript(src);
+            final JexlScript script = folding.createScript(src);
+            Assert.assertEquals(src, expected.getParsedText(), script.getParsedText());
+            Assert.assertTrue(src, Objects.deepEquals(result(expected), result(script)));
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        final JexlScript script = new JexlBuilder().create().createScript("60 * 60 * 24");
+        Assert.assertEquals("60 * 60 * 24", text(script));
+        Assert.assertFalse(new JexlFeatures().supportsConstantFolding());
+        Assert.assertTrue(new JexlFeatures().constantFolding(true).supportsConstantFolding());
+    }
+
+    @Test
+    public void testErrorLocation() {
+        final JexlEngine jexl = new JexlBuilder().strict(true)
+            .features(new JexlFeatures().constantFolding(true)).create();
+        final JexlScript script = jexl.createScript("var z = 2 * 3;\nz + (1 + 2) + undefinedVariable");
+        try {
+            script.execute(null);
+            Assert.fail("undefined variable");
+        } catch (final JexlException.Variable xvar) {
+            Assert.assertEquals("undefinedVariable", xvar.getVariable());
+            Assert.assertTrue(xvar.getMessage(), xvar.getMessage().contains("@2:"));
+        }
+    }
+
+    /**
+     * An arithmetic overloading addition of strings.
+     */
+    public static class ConcatArithmetic extends JexlArithmetic {
+        public ConcatArithmetic(final boolean strict) {
+            super(strict);
+        }
+
+        public Object add(final String left, final String right) {
+            return left + "&" + right;
+        }
+    }
+
+    @Test
+    public void testOverload() {
+        final JexlEngine jexl = new JexlBuilder().arithmetic(new ConcatArithmetic(true))
+            .features(new JexlFeatures().constantFolding(true)).create();
+        final JexlScript script = jexl.createScript("'a' + 'b' + (2 * 3)");
+        Assert.assertEquals("'a' + 'b' + 6", text(script));
+        Assert.assertEquals("a&b6", script.execute(null));
+    }
+
+    /**
+     * An arithmetic overloading less-than to return a string.
+     */
+    public static class LessArithmetic extends JexlArithmetic {
+        public LessArithmetic(final boolean strict) {
+            super(strict);
+        }
+
+        public Object lessThan(final Integer left, final Integer right) {
+            return left + "<" + right;
+        }
+    }
+
+    @Test
+    public void testOverloadedComparison() {
+        final JexlEngine jexl = new JexlBuilder().arithmetic(new LessArithmetic(true))
+            .features(new JexlFeatures().constantFolding(true)).create();
+        JexlScript script = jexl.createScript("true && x < y", "x", "y");
+        Assert.assertEquals("true && x < y", text(script));
+        Assert.assertEquals(Boolean.TRUE, script.execute(null, 3, 7));
+        script = jexl.createScript("x < y || false", "x", "y");
+        Assert.assertEquals("x < y || false", text(script));
+        Assert.assertEquals(Boolean.TRUE, script.execute(null, 3, 7));
+    }
+}